@@ -0,0 +1,138 @@
+package com.gpicode.drone.management.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.Application;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.dto.BulkRegisterRequest;
+import com.gpicode.drone.management.dto.DroneResponse;
+import com.gpicode.drone.management.dto.MoveDroneRequest;
+import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves per second through the HTTP API when {@value #CONCURRENCY} clients move their own drone at the same time,
+ * with requests handled on Tomcat's platform thread pool or on virtual threads. With {@code FSYNC} durability every
+ * request also blocks until its history is on disk, which is where the size of the platform thread pool shows.
+ * <p>
+ * The {@code VIRTUAL} runs need Java 21 or later and fail their setup on older JVMs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentMoveBenchmark {
+
+    private static final int CONCURRENCY = 1000;
+
+    public enum Threads {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param
+    private Threads threads;
+
+    @Param({"BATCHED", "FSYNC"})
+    private String durability;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path historyDirectory;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    // Two requests per drone, moving it back and forth between two rows
+    private final List<List<HttpRequest>> rounds = List.of(new ArrayList<>(), new ArrayList<>());
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (threads == Threads.VIRTUAL && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, this is Java " + Runtime.version().feature());
+        }
+        historyDirectory = Files.createTempDirectory("drone-history-benchmark");
+        context = new SpringApplicationBuilder(Application.class)
+                .logStartupInfo(false)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + (threads == Threads.VIRTUAL),
+                        "--drone.history.storage-path=" + historyDirectory,
+                        "--drone.history.durability=" + durability,
+                        "--drone.field.width=" + CONCURRENCY,
+                        "--drone.field.height=2",
+                        "--drone.timing.slow-request-threshold-ms=-1",
+                        "--logging.level.root=WARN");
+        String api = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1/api/drones";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        List<RegisterDroneRequest> fleet = new ArrayList<>();
+        for (int x = 0; x < CONCURRENCY; x++) {
+            fleet.add(new RegisterDroneRequest(x, 0, "North"));
+        }
+        HttpResponse<String> registered = client.send(json(URI.create(api + "/register/bulk"), "POST",
+                new BulkRegisterRequest(fleet)), HttpResponse.BodyHandlers.ofString());
+        if (registered.statusCode() != 201) {
+            throw new IllegalStateException("Could not register the fleet: " + registered.body());
+        }
+        for (DroneResponse drone : objectMapper.readValue(registered.body(), DroneResponse[].class)) {
+            URI move = URI.create(api + "/" + drone.getDroneId() + "/move");
+            rounds.get(0).add(json(move, "PUT", new MoveDroneRequest(drone.getXCoordinate(), 1)));
+            rounds.get(1).add(json(move, "PUT", new MoveDroneRequest(drone.getXCoordinate(), 0)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        FileSystemUtils.deleteRecursively(historyDirectory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public void moveConcurrently() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CONCURRENCY);
+        for (HttpRequest request : rounds.get(round++ & 1)) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() != 200) {
+                throw new IllegalStateException("Move failed with status " + response.join().statusCode());
+            }
+        }
+    }
+
+    private HttpRequest json(URI uri, String method, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.gpicode.drone.management.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.config.HistoryProperties.StoreType;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading, paging and appending to a drone's history in both store formats, for short and long histories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryStoreBenchmark {
+
+    @Param({"FILE", "SEGMENT"})
+    private StoreType store;
+
+    @Param({"10", "1000", "10000"})
+    private int historyLength;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path directory;
+    private DroneHistoryStore historyStore;
+    private UUID droneId;
+    private MoveDroneResponse state;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("drone-history-benchmark");
+        HistoryProperties properties = new HistoryProperties();
+        properties.setStoragePath(directory.toString());
+        properties.setCompactionIntervalMs(0);
+        historyStore = store == StoreType.FILE ? new NdjsonDroneHistoryStore(properties) : new SegmentDroneHistoryStore(properties);
+
+        droneId = UUID.randomUUID();
+        DroneHistory history = new DroneHistory();
+        history.setDroneId(droneId);
+        for (int i = 0; i < historyLength; i++) {
+            history.getStates().add(state(i));
+        }
+        historyStore.create(history);
+        state = state(historyLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (historyStore instanceof SegmentDroneHistoryStore segmentStore) {
+            segmentStore.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public DroneHistory load() throws Throwable {
+        return historyStore.load(droneId);
+    }
+
+    @Benchmark
+    public void readLatestPage(Blackhole blackhole) throws Throwable {
+        historyStore.read(droneId, Math.max(0, historyLength - 10), 10, blackhole::consume);
+    }
+
+    /**
+     * Appends without forcing to disk, as the history writer does between group commits; the history grows by one
+     * state per invocation.
+     */
+    @Benchmark
+    public void append() throws IOException {
+        historyStore.write(List.of(new HistoryRecord(droneId, state, false)));
+    }
+
+    @Benchmark
+    public byte[] serializeState() throws IOException {
+        return objectMapper.writeValueAsBytes(state);
+    }
+
+    private MoveDroneResponse state(int i) {
+        return new MoveDroneResponse(droneId, i % 10, i / 10 % 10, "NORTH", List.of("Pointed from EAST to NORTH", "Moved to (" + i % 10 + ", " + i / 10 % 10 + ")"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.gpicode.drone.management.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rectangle, radius and nearest-drone queries against the occupancy index, with drones scattered at random over a
+ * field a hundred times larger than the fleet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpatialQueryBenchmark {
+
+    @Param({"100000"})
+    public int drones;
+
+    private final Random random = new Random(1);
+    private OccupancyIndex index;
+    private int side;
+
+    @Setup
+    public void setup() {
+        index = new OccupancyIndex();
+        side = (int) Math.sqrt(drones * 100.0);
+        int placed = 0;
+        while (placed < drones) {
+            if (index.tryOccupy(random.nextInt(side), random.nextInt(side), UUID.randomUUID())) {
+                placed++;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<DronePosition> area() {
+        int x = random.nextInt(side - 100);
+        int y = random.nextInt(side - 100);
+        return index.dronesInArea(x, y, x + 100, y + 100, 1000);
+    }
+
+    @Benchmark
+    public List<DronePosition> within() {
+        return index.dronesWithin(random.nextInt(side), random.nextInt(side), 50, 1000);
+    }
+
+    @Benchmark
+    public List<DronePosition> nearest10() {
+        return index.nearestDrones(random.nextInt(side), random.nextInt(side), 10);
+    }
+}
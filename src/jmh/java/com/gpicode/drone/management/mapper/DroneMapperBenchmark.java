@@ -0,0 +1,48 @@
+package com.gpicode.drone.management.mapper;
+
+import com.gpicode.drone.management.dto.DroneResponse;
+import com.gpicode.drone.management.dto.MoveDroneRequest;
+import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DroneMapperBenchmark {
+
+    private final RegisterDroneRequest registerRequest = new RegisterDroneRequest(4, 2, "South");
+    private final MoveDroneRequest moveRequest = new MoveDroneRequest(6, 3);
+    private final Drone drone = new Drone(UUID.randomUUID(), 4, 2, Direction.SOUTH);
+
+    @Benchmark
+    public Drone toDroneEntity() {
+        return DroneMapper.toDroneEntity(registerRequest);
+    }
+
+    @Benchmark
+    public Drone updateDroneEntity() {
+        DroneMapper.updateDroneEntity(drone, moveRequest);
+        return drone;
+    }
+
+    @Benchmark
+    public DroneResponse toDroneResponse() {
+        return DroneMapper.toDroneResponse(drone);
+    }
+}
@@ -0,0 +1,112 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.Application;
+import com.gpicode.drone.management.dto.BatchMoveResult;
+import com.gpicode.drone.management.dto.DroneResponse;
+import com.gpicode.drone.management.dto.MoveDroneRequest;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Drone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service calls through the Spring context, transactions included, with the drones kept by each drone store: the
+ * in-memory H2 database through JPA or plain JDBC, or the in-memory store with its write-ahead log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DroneServiceEndToEndBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"JPA", "JDBC", "MEMORY"})
+    public String store;
+
+    private Path historyDirectory;
+    private Path stateDirectory;
+    private ConfigurableApplicationContext context;
+    private DroneService droneService;
+    private UUID droneId;
+    private final MoveDroneRequest[] moves = {new MoveDroneRequest(1, 0), new MoveDroneRequest(0, 0)};
+    private final List<Map<UUID, MoveDroneRequest>> batches = List.of(new LinkedHashMap<>(), new LinkedHashMap<>());
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        historyDirectory = Files.createTempDirectory("drone-history-benchmark");
+        stateDirectory = Files.createTempDirectory("drone-state-benchmark");
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--drone.history.storage-path=" + historyDirectory,
+                        "--drone.store.type=" + store,
+                        "--drone.store.wal-path=" + stateDirectory,
+                        "--drone.field.width=1000",
+                        "--drone.field.height=1000",
+                        "--logging.level.root=WARN");
+        droneService = context.getBean(DroneService.class);
+
+        droneId = droneService.registerDrone(new RegisterDroneRequest(0, 0, "East")).getDroneId();
+        List<RegisterDroneRequest> fleet = new ArrayList<>();
+        for (int x = 0; x < BATCH_SIZE; x++) {
+            fleet.add(new RegisterDroneRequest(x, 10, "North"));
+        }
+        // The fleet moves back and forth between two rows.
+        for (DroneResponse drone : droneService.registerDrones(fleet)) {
+            batches.get(0).put(drone.getDroneId(), new MoveDroneRequest(drone.getXCoordinate(), 11));
+            batches.get(1).put(drone.getDroneId(), new MoveDroneRequest(drone.getXCoordinate(), 10));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(historyDirectory);
+        FileSystemUtils.deleteRecursively(stateDirectory);
+    }
+
+    @Benchmark
+    public MoveDroneResponse moveDrone() throws Throwable {
+        return droneService.moveDrone(droneId, moves[round++ & 1]);
+    }
+
+    @Benchmark
+    public List<BatchMoveResult> moveDrones() {
+        return droneService.moveDrones(batches.get(round++ & 1));
+    }
+
+    @Benchmark
+    public Drone getDrone() throws Throwable {
+        return droneService.getDrone(droneId);
+    }
+}
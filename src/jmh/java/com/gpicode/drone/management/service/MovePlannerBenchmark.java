@@ -0,0 +1,67 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.entity.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of planning a single move with {@link MovePlan#plan}, and of rendering its step details on top of that, as
+ * happens when the response is serialized.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovePlannerBenchmark {
+
+    public enum MoveKind {
+        // Straight ahead along one axis
+        SINGLE_AXIS(5, 5, Direction.EAST, 8, 5),
+        // Both coordinates change
+        TWO_AXIS(5, 5, Direction.NORTH, 8, 8),
+        // Reversing along one axis, which needs an intermediate 90 degree turn
+        U_TURN(5, 5, Direction.EAST, 2, 5);
+
+        private final int fromX;
+        private final int fromY;
+        private final Direction direction;
+        private final int toX;
+        private final int toY;
+
+        MoveKind(int fromX, int fromY, Direction direction, int toX, int toY) {
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.direction = direction;
+            this.toX = toX;
+            this.toY = toY;
+        }
+    }
+
+    @Param
+    private MoveKind kind;
+
+    @Benchmark
+    public MovePlan plan() {
+        return MovePlan.plan(kind.direction, kind.fromX, kind.fromY, kind.toX, kind.toY);
+    }
+
+    @Benchmark
+    public void planAndRender(Blackhole blackhole) {
+        for (String detail : MovePlan.plan(kind.direction, kind.fromX, kind.fromY, kind.toX, kind.toY)) {
+            blackhole.consume(detail);
+        }
+    }
+}
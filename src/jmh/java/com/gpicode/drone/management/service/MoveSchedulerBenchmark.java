@@ -0,0 +1,92 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling a batch of simultaneous moves of up to ten cells each on a 1000x1000 field, among as many drones that
+ * stay where they are.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveSchedulerBenchmark {
+
+    private static final int FIELD_SIZE = 1000;
+
+    @Param({"1000", "10000"})
+    public int moves;
+
+    private MoveScheduler moveScheduler;
+    private Direction[] facing;
+    private long[] from;
+    private long[] to;
+
+    @Setup
+    public void setup() {
+        OccupancyIndex occupancyIndex = new OccupancyIndex();
+        FieldProperties fieldProperties = new FieldProperties();
+        fieldProperties.setWidth(FIELD_SIZE);
+        fieldProperties.setHeight(FIELD_SIZE);
+        Random random = new Random(42);
+        Set<Long> taken = new HashSet<>();
+        for (int i = 0; i < moves; i++) {
+            long cell = freeCell(random, taken);
+            occupancyIndex.tryOccupy(OccupancyIndex.unpackX(cell), OccupancyIndex.unpackY(cell), UUID.randomUUID());
+        }
+        facing = new Direction[moves];
+        from = new long[moves];
+        to = new long[moves];
+        for (int i = 0; i < moves; i++) {
+            from[i] = freeCell(random, taken);
+            occupancyIndex.tryOccupy(OccupancyIndex.unpackX(from[i]), OccupancyIndex.unpackY(from[i]), UUID.randomUUID());
+            facing[i] = Direction.of(random.nextInt(4));
+        }
+        for (int i = 0; i < moves; i++) {
+            long target;
+            do {
+                int x = Math.min(FIELD_SIZE - 1, Math.max(0, OccupancyIndex.unpackX(from[i]) + random.nextInt(11) - 5));
+                int y = Math.min(FIELD_SIZE - 1, Math.max(0, OccupancyIndex.unpackY(from[i]) + random.nextInt(11) - 5));
+                target = OccupancyIndex.pack(x, y);
+            } while (!taken.add(target));
+            to[i] = target;
+        }
+        moveScheduler = new MoveScheduler(occupancyIndex, new GeofenceIndex(), fieldProperties, new PlannerProperties());
+    }
+
+    @Benchmark
+    public MovePlan[] schedule() {
+        return moveScheduler.schedule(facing, from, to);
+    }
+
+    private static long freeCell(Random random, Set<Long> taken) {
+        long cell;
+        do {
+            cell = OccupancyIndex.pack(random.nextInt(FIELD_SIZE), random.nextInt(FIELD_SIZE));
+        } while (!taken.add(cell));
+        return cell;
+    }
+}
@@ -0,0 +1,67 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing a move on a 10000x10000 field, when the direct route is free and when a wall of drones stands across it so
+ * the search has to go around. Run with {@code -prof gc} to see that a warm search allocates only the plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutePlannerBenchmark {
+
+    private static final int FIELD_SIZE = 10_000;
+
+    // Cells between origin and target, with the wall half way
+    @Param({"20", "200"})
+    public int distance;
+
+    private RoutePlanner routePlanner;
+    private final int fromX = 5000;
+    private final int fromY = 5000;
+
+    @Setup
+    public void setup() {
+        OccupancyIndex occupancyIndex = new OccupancyIndex();
+        FieldProperties fieldProperties = new FieldProperties();
+        fieldProperties.setWidth(FIELD_SIZE);
+        fieldProperties.setHeight(FIELD_SIZE);
+        // A wall across the straight route, reaching past the first search window on both sides
+        for (int y = fromY - distance / 2; y <= fromY + distance / 2; y++) {
+            occupancyIndex.tryOccupy(fromX + distance / 2, y, UUID.randomUUID());
+        }
+        routePlanner = new RoutePlanner(occupancyIndex, new GeofenceIndex(), fieldProperties, new PlannerProperties());
+    }
+
+    @Benchmark
+    public MovePlan direct() {
+        return routePlanner.plan(Direction.NORTH, fromX, fromY, fromX, fromY + distance);
+    }
+
+    @Benchmark
+    public MovePlan aroundWall() {
+        return routePlanner.plan(Direction.EAST, fromX, fromY, fromX + distance, fromY);
+    }
+}
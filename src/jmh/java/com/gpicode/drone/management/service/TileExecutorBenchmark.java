@@ -0,0 +1,133 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.Application;
+import com.gpicode.drone.management.controller.DroneController;
+import com.gpicode.drone.management.dto.DroneResponse;
+import com.gpicode.drone.management.dto.MoveDroneRequest;
+import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-drone moves per second, history included, from as many client threads as there are processors on a
+ * {@value #FIELD_SIZE}x{@value #FIELD_SIZE} field with the in-memory store: with cells claimed in the locked occupancy
+ * index and the drones locked, or by the workers owning their tiles. The tiles are single cells, so every move crosses
+ * into another tile and most go through the two-tile handoff between workers. Run with {@code -t} to see how either
+ * scales with the number of clients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class TileExecutorBenchmark {
+
+    private static final int FIELD_SIZE = 1024;
+    private static final int DRONES_PER_THREAD = 64;
+
+    @State(Scope.Benchmark)
+    public static class Field {
+
+        @Param({"DIRECT", "TILED"})
+        public String mode;
+
+        private Path historyDirectory;
+        private Path stateDirectory;
+        private ConfigurableApplicationContext context;
+        private DroneController droneController;
+        // Cells with even coordinates in random order, so every drone has a free cell to its right to move to and back
+        private final List<int[]> cells = new ArrayList<>();
+        private final AtomicInteger taken = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            historyDirectory = Files.createTempDirectory("drone-history-benchmark");
+            stateDirectory = Files.createTempDirectory("drone-state-benchmark");
+            context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.NONE)
+                    .logStartupInfo(false)
+                    .run("--drone.history.storage-path=" + historyDirectory,
+                            "--drone.store.type=MEMORY",
+                            "--drone.store.wal-path=" + stateDirectory,
+                            "--drone.executor.mode=" + mode,
+                            "--drone.executor.tile-size=1",
+                            "--drone.field.width=" + FIELD_SIZE,
+                            "--drone.field.height=" + FIELD_SIZE,
+                            "--logging.level.root=WARN");
+            droneController = context.getBean(DroneController.class);
+            for (int y = 0; y < FIELD_SIZE; y += 2) {
+                for (int x = 0; x < FIELD_SIZE; x += 2) {
+                    cells.add(new int[]{x, y});
+                }
+            }
+            Collections.shuffle(cells, new Random(42));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (context != null) {
+                context.close();
+            }
+            FileSystemUtils.deleteRecursively(historyDirectory);
+            FileSystemUtils.deleteRecursively(stateDirectory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fleet {
+        private final UUID[] droneIds = new UUID[DRONES_PER_THREAD];
+        private final int[] x = new int[DRONES_PER_THREAD];
+        private final int[] y = new int[DRONES_PER_THREAD];
+        private final boolean[] moved = new boolean[DRONES_PER_THREAD];
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup(Field field) throws Throwable {
+            for (int i = 0; i < DRONES_PER_THREAD; i++) {
+                int[] cell = field.cells.get(field.taken.getAndIncrement());
+                DroneResponse drone = (DroneResponse) field.droneController
+                        .createDrone(new RegisterDroneRequest(cell[0], cell[1], "East")).getBody();
+                droneIds[i] = drone.getDroneId();
+                x[i] = cell[0];
+                y[i] = cell[1];
+            }
+        }
+    }
+
+    @Benchmark
+    public Object move(Field field, Fleet fleet) throws Throwable {
+        int i = fleet.next;
+        fleet.next = (i + 1) % DRONES_PER_THREAD;
+        fleet.moved[i] = !fleet.moved[i];
+        MoveDroneRequest request = new MoveDroneRequest(fleet.x[i] + (fleet.moved[i] ? 1 : 0), fleet.y[i]);
+        return field.droneController.moveDrone(fleet.droneIds[i], request).getBody();
+    }
+}
@@ -0,0 +1,115 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.config.StoreProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup of the in-memory drone store with a large fleet on disk: replaying the whole write-ahead log, loading a
+ * snapshot alone, or loading a snapshot and replaying the moves made after it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MemoryStoreRecoveryBenchmark {
+
+    private static final int FIELD_WIDTH = 1000;
+    private static final int INSERT_BATCH = 10_000;
+
+    public enum Recovery {
+        // Registrations and moves replayed from the log alone
+        WAL,
+        // Everything in one snapshot
+        SNAPSHOT,
+        // A snapshot of the registrations, then the moves replayed from the log
+        SNAPSHOT_AND_TAIL
+    }
+
+    @Param({"1000000"})
+    public int drones;
+
+    // Single moves made after the registrations
+    @Param({"100000"})
+    public int moves;
+
+    @Param({"WAL", "SNAPSHOT", "SNAPSHOT_AND_TAIL"})
+    public Recovery recovery;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("drone-state-benchmark");
+        MemoryDroneStore store = new MemoryDroneStore(properties());
+        List<Drone> fleet = new ArrayList<>(drones);
+        for (int start = 0; start < drones; start += INSERT_BATCH) {
+            List<Drone> batch = new ArrayList<>(INSERT_BATCH);
+            for (int i = start; i < Math.min(drones, start + INSERT_BATCH); i++) {
+                batch.add(new Drone(null, i % FIELD_WIDTH, i / FIELD_WIDTH, Direction.NORTH));
+            }
+            fleet.addAll(store.insertAll(batch));
+        }
+        if (recovery == Recovery.SNAPSHOT_AND_TAIL) {
+            store.snapshot();
+        }
+        // Every move goes to a row above the fleet, so none of them collide
+        int rows = (drones + FIELD_WIDTH - 1) / FIELD_WIDTH;
+        for (int i = 0; i < moves; i++) {
+            Drone drone = fleet.get(i);
+            store.move(drone.getDroneId(), 0, drone.getCoordinateX(), drone.getCoordinateY() + rows, Direction.EAST);
+        }
+        if (recovery == Recovery.SNAPSHOT) {
+            store.snapshot();
+        }
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public MemoryDroneStore recover() throws IOException {
+        MemoryDroneStore store = new MemoryDroneStore(properties());
+        store.close();
+        return store;
+    }
+
+    private StoreProperties properties() {
+        StoreProperties properties = new StoreProperties();
+        properties.setType(StoreProperties.StoreType.MEMORY);
+        properties.setWalPath(directory.toString());
+        properties.setSnapshotIntervalMs(0);
+        return properties;
+    }
+}
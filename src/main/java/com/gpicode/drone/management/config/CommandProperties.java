@@ -0,0 +1,28 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * How moves accepted with {@code async=true} are queued, run and reported.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.commands")
+@Getter
+@Setter
+public class CommandProperties {
+
+    // Threads running accepted moves, each drone always on the same one; 0 for one per available processor
+    private int runners = 0;
+
+    // Moves waiting for a single runner before further ones are rejected
+    private int queueCapacity = 10_000;
+
+    // Finished commands whose outcome is kept for the status endpoint; the oldest are forgotten first
+    private int maxRetained = 100_000;
+
+    // Longest a status request may wait for its command to finish
+    private long maxWaitMs = 30_000;
+}
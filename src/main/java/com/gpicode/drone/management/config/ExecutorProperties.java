@@ -0,0 +1,34 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Who decides which drone holds a cell when single drones are registered and moved.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.executor")
+@Getter
+@Setter
+public class ExecutorProperties {
+
+    public enum Mode {
+        // The request thread, through the locked occupancy index
+        DIRECT,
+        // The worker owning the tile of the cell, without locks
+        TILED
+    }
+
+    private Mode mode = Mode.DIRECT;
+
+    // Side of the square tiles the field is split into, in cells
+    private int tileSize = 64;
+
+    // Worker threads owning the tiles, 0 for one per available processor
+    private int workers = 0;
+
+    // Registrations and moves waiting for a single worker before further ones are rejected
+    private int inboxCapacity = 10_000;
+}
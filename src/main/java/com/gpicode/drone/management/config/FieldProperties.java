@@ -0,0 +1,24 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Size of the field drones are registered and moved on, cells being numbered from 0 to width - 1 and height - 1.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.field")
+@Getter
+@Setter
+public class FieldProperties {
+
+    private int width = 10;
+
+    private int height = 10;
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+}
@@ -0,0 +1,67 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Where and how drone history is stored.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.history")
+@Getter
+@Setter
+public class HistoryProperties {
+
+    public enum StoreType {
+        // One append-only NDJSON file per drone
+        FILE,
+        // Shared log-structured segments for all drones
+        SEGMENT
+    }
+
+    public enum Durability {
+        // Every request waits until its records are written and forced to disk, sharing the fsync with concurrent requests
+        FSYNC,
+        // Requests return once their records are queued; written records are forced to disk every flush interval.
+        // Records whose write or fsync fails are dropped after the request was answered.
+        BATCHED,
+        // Requests return once their records are queued; records are written but never explicitly forced to disk,
+        // and dropped if the write fails
+        ASYNC
+    }
+
+    private String storagePath = "drone-history/";
+
+    private StoreType store = StoreType.SEGMENT;
+
+    // Size at which the active segment is sealed and a new one is started
+    private long segmentSizeBytes = 64L * 1024 * 1024;
+
+    // Number of consecutive sealed segments of about the same size that are merged into one, and the size ratio between tiers
+    private int compactionMinSegments = 4;
+
+    private long compactionIntervalMs = 60_000;
+
+    private Durability durability = Durability.BATCHED;
+
+    private long flushIntervalMs = 50;
+
+    // Maximum number of records waiting to be written before requests are held back
+    private int queueCapacity = 10_000;
+
+    // How long a request waits for room in a full queue before it is rejected
+    private long enqueueTimeoutMs = 1_000;
+
+    private int maxBatchSize = 1_000;
+
+    // Total number of states kept across all cached drone histories, 0 disables the cache
+    private long cacheMaxStates = 100_000;
+
+    // Largest page of states returned by the paginated history endpoint, and its default page size
+    private int maxPageSize = 1_000;
+
+    // Whether the background writer and compaction run on virtual threads, on Java 21 and later
+    private boolean virtualThreads = false;
+}
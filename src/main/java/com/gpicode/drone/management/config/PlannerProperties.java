@@ -0,0 +1,29 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * How moves are routed around the other drones on the field.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.planner")
+@Getter
+@Setter
+public class PlannerProperties {
+
+    // Cost of a quarter turn, in cells travelled, so routes with fewer turns are preferred over slightly shorter ones
+    private int turnCost = 2;
+
+    // Cells the search first looks beyond the rectangle spanned by the origin and the target; doubled until a route is found
+    private int searchMargin = 8;
+
+    // Largest number of cells a single search may cover before the move is rejected for reaching the search limit
+    private int maxSearchCells = 262144;
+
+    // Cells around each move of a batch that its timed route first keeps to; batch moves whose areas overlap are
+    // scheduled together, and the others in parallel
+    private int regionMargin = 16;
+}
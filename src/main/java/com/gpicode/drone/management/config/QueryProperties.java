@@ -0,0 +1,19 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits of the spatial drone queries.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.query")
+@Getter
+@Setter
+public class QueryProperties {
+
+    // Most drones a single area, radius or nearest-drone query returns, and the default when no limit is given
+    private int maxResults = 1000;
+}
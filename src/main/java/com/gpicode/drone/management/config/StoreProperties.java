@@ -0,0 +1,39 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Where the current state of every drone is kept.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.store")
+@Getter
+@Setter
+public class StoreProperties {
+
+    public enum StoreType {
+        // The Drone table through JPA entities
+        JPA,
+        // The Drone table through hand-written prepared statements
+        JDBC,
+        // Primitive arrays in memory, made durable by a write-ahead log
+        MEMORY
+    }
+
+    private StoreType type = StoreType.JPA;
+
+    // Directory of the write-ahead log of the MEMORY store
+    private String walPath = "drone-state/";
+
+    // Whether every write to the write-ahead log is forced to disk before the request returns
+    private boolean walFsync = false;
+
+    // How often the MEMORY store checks whether to write a snapshot, 0 to only snapshot on demand
+    private long snapshotIntervalMs = 60000;
+
+    // Write-ahead log bytes written since the last snapshot before a scheduled check takes a new one
+    private long snapshotMinWalBytes = 4 * 1024 * 1024;
+}
@@ -0,0 +1,22 @@
+package com.gpicode.drone.management.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-request phase timing of the drone API.
+ */
+@Component
+@ConfigurationProperties(prefix = "drone.timing")
+@Getter
+@Setter
+public class TimingProperties {
+
+    // Whether responses carry a Server-Timing header with the time spent in each phase
+    private boolean serverTimingEnabled = true;
+
+    // Requests taking at least this long are logged with their phases; 0 logs every request, -1 none
+    private long slowRequestThresholdMs = 500;
+}
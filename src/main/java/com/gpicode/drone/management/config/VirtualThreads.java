@@ -0,0 +1,70 @@
+package com.gpicode.drone.management.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the application's own background threads as virtual threads when virtual threads are enabled and the
+ * running JVM has them (Java 21 and later), and as daemon platform threads otherwise.
+ * <p>
+ * The application is compiled for Java 17, so the virtual thread builder is looked up reflectively. Request handling
+ * follows {@code spring.threads.virtual.enabled} through Spring Boot itself, which likewise only switches to virtual
+ * threads on Java 21.
+ */
+public final class VirtualThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException exception) {
+            // Not available before Java 21
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return a factory of threads named {@code name}, virtual if {@code virtual} is set and the JVM supports it
+     */
+    public static ThreadFactory factory(String name, boolean virtual) {
+        if (virtual && isSupported()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException exception) {
+                throw new IllegalStateException("Could not create virtual thread factory for " + name, exception);
+            }
+        }
+        if (virtual) {
+            log.warn("Virtual threads need Java 21 or later, {} runs on a platform thread on Java {}", name, Runtime.version().feature());
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,56 +1,89 @@
 package com.gpicode.drone.management.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.config.HistoryProperties;
 import com.gpicode.drone.management.dto.*;
 import com.gpicode.drone.management.entity.Drone;
 import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.BulkRegistrationException;
 import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
 import com.gpicode.drone.management.exception.DroneHistoryReadException;
 import com.gpicode.drone.management.exception.DroneNotFoundException;
 import com.gpicode.drone.management.exception.InvalidBoundaryException;
+import com.gpicode.drone.management.history.DroneHistoryLog;
+import com.gpicode.drone.management.history.HistoryRange;
+import com.gpicode.drone.management.index.DroneLocks;
+import com.gpicode.drone.management.metrics.DroneMetrics;
+import com.gpicode.drone.management.metrics.DroneMetrics.HistoryOperation;
+import com.gpicode.drone.management.dto.MoveCommandStatus.State;
+import com.gpicode.drone.management.exception.ErrorResponses;
 import com.gpicode.drone.management.service.DroneService;
+import com.gpicode.drone.management.service.MoveCommand;
+import com.gpicode.drone.management.service.MoveCommandQueue;
+import com.gpicode.drone.management.service.TileExecutor;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Validated
 @RestController
 @RequestMapping("/v1/api/drones")
 public class DroneController {
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private String storagePath = "drone-history/";
+
+    // Set on history reads of a drone whose acknowledged states were dropped by a failed background write
+    static final String LOST_STATES_HEADER = "Drone-History-Lost-States";
 
     @Autowired
     private DroneService droneService;
 
-    public DroneController(DroneService droneService) {
-        this.droneService = droneService;
-        initializeStoragePath();
-    }
+    @Autowired
+    private DroneHistoryLog droneHistoryLog;
 
-    private void initializeStoragePath() {
-        this.storagePath = "drone-history/";
-        createDirectoryIfNotExists(this.storagePath);
-    }
+    @Autowired
+    private HistoryProperties historyProperties;
 
-    // Setter method to override storage path (for testing)
-    public void setStoragePath(String storagePath) {
-        this.storagePath = storagePath;
-        createDirectoryIfNotExists(this.storagePath);
-    }
+    @Autowired
+    private DroneMetrics droneMetrics;
 
-    private void createDirectoryIfNotExists(String path) {
-        File directory = new File(path);
-        if (!directory.exists()) {
-            directory.mkdirs();
-        }
+    @Autowired
+    private DroneLocks droneLocks;
+
+    @Autowired
+    private MoveCommandQueue moveCommandQueue;
+
+    // With tiled claims, keeps the cells of a move held until its history is recorded, in place of the drone locks
+    @Autowired
+    private TileExecutor tileExecutor;
+
+    // Builds the error reported for a move that failed after its asynchronous request was answered
+    @Autowired
+    private ErrorResponses errorResponses;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DroneController(DroneService droneService, DroneHistoryLog droneHistoryLog, HistoryProperties historyProperties, DroneMetrics droneMetrics, DroneLocks droneLocks, MoveCommandQueue moveCommandQueue, TileExecutor tileExecutor, ErrorResponses errorResponses) {
+        this.droneService = droneService;
+        this.droneHistoryLog = droneHistoryLog;
+        this.historyProperties = historyProperties;
+        this.droneMetrics = droneMetrics;
+        this.droneLocks = droneLocks;
+        this.moveCommandQueue = moveCommandQueue;
+        this.tileExecutor = tileExecutor;
+        this.errorResponses = errorResponses;
     }
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.CREATED)
@@ -60,21 +93,130 @@ public class DroneController {
         history.setDroneId(droneResponse.getDroneId());
         history.getStates().add(convertToMoveDroneResponse(droneResponse));
 
-        saveDroneHistory(history);
+        long start = System.nanoTime();
+        droneHistoryLog.create(history);
+        droneMetrics.recordHistory(HistoryOperation.CREATE, start);
         return new ResponseEntity<>(droneResponse, HttpStatus.CREATED);
     }
 
+    @PostMapping("/register/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ResponseEntity<?> createDrones(@RequestBody @Valid BulkRegisterRequest request) throws BulkRegistrationException {
+        List<DroneResponse> droneResponses = droneService.registerDrones(request.getDrones());
+        List<DroneHistory> histories = new ArrayList<>(droneResponses.size());
+        for (DroneResponse droneResponse : droneResponses) {
+            DroneHistory history = new DroneHistory();
+            history.setDroneId(droneResponse.getDroneId());
+            history.getStates().add(convertToMoveDroneResponse(droneResponse));
+            histories.add(history);
+        }
+
+        long start = System.nanoTime();
+        droneHistoryLog.createAll(histories);
+        droneMetrics.recordHistory(HistoryOperation.CREATE, start);
+        return new ResponseEntity<>(droneResponses, HttpStatus.CREATED);
+    }
+
     @PutMapping("/{id}/move")
     public ResponseEntity<?> moveDrone(@PathVariable UUID id, @Valid @RequestBody MoveDroneRequest request) throws InvalidBoundaryException, DroneNotFoundException, DroneHistoryNotFoundException, DroneHistoryReadException {
-        MoveDroneResponse droneResponse = droneService.moveDrone(id, request);
-        DroneHistory history = loadDroneHistory(id);
-        if (history == null) {
-            throw new DroneNotFoundException("Drone not found");
+        MoveDroneResponse droneResponse = moveAndRecord(id, request);
+        return new ResponseEntity<>(droneResponse, HttpStatus.OK);
+    }
+
+    /**
+     * Accepts the move and answers right away, before the drone is even looked up. The moves of one drone accepted
+     * this way run in the order they were accepted, and the outcome is reported by {@link #getMoveCommand}.
+     */
+    @PutMapping(value = "/{id}/move", params = "async=true")
+    public ResponseEntity<?> moveDroneAsync(@PathVariable UUID id, @Valid @RequestBody MoveDroneRequest request) {
+        MoveCommand command = moveCommandQueue.submit(id, () -> moveAndRecord(id, request));
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/api/drones/commands/" + command.getCommandId()))
+                .body(toStatus(command));
+    }
+
+    /**
+     * Reports an asynchronous move, waiting up to {@code waitMs} for it to finish first.
+     */
+    @GetMapping("/commands/{commandId}")
+    public ResponseEntity<?> getMoveCommand(@PathVariable UUID commandId, @RequestParam(defaultValue = "0") long waitMs) {
+        MoveCommand command = moveCommandQueue.await(commandId, waitMs);
+        if (command == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Move command not found");
         }
+        return ResponseEntity.ok(toStatus(command));
+    }
 
-        history.getStates().add(droneResponse);
-        saveDroneHistory(history);
-        return new ResponseEntity<>(droneResponse, HttpStatus.OK);
+    private MoveCommandStatus toStatus(MoveCommand command) {
+        // Read first: the move or the failure is set before the state says so
+        State state = command.getState();
+        return new MoveCommandStatus(command.getCommandId(), command.getDroneId(), state,
+                state == State.SUCCEEDED ? command.getMove() : null,
+                state == State.FAILED ? errorResponses.of(command.getFailure()) : null);
+    }
+
+    private MoveDroneResponse moveAndRecord(UUID id, MoveDroneRequest request) throws InvalidBoundaryException, DroneNotFoundException, DroneHistoryNotFoundException {
+        // Held across the history append too, so that moves of one drone reach its history in the order they were made.
+        // With tiled claims the drone is not locked, and the workers keep its cells held until the hold is closed instead.
+        boolean locked = !tileExecutor.isTiled();
+        if (locked) {
+            droneLocks.lock(id);
+        }
+        try (TileExecutor.Hold hold = tileExecutor.hold()) {
+            MoveDroneResponse droneResponse = droneService.moveDrone(id, request);
+            long start = System.nanoTime();
+            droneHistoryLog.append(id, droneResponse);
+            droneMetrics.recordHistory(HistoryOperation.APPEND, start);
+            return droneResponse;
+        } finally {
+            if (locked) {
+                droneLocks.unlock(id);
+            }
+        }
+    }
+
+    @PutMapping("/{id}/mission")
+    public ResponseEntity<?> flyMission(@PathVariable UUID id, @Valid @RequestBody MissionRequest request) throws InvalidBoundaryException, DroneNotFoundException, DroneHistoryNotFoundException {
+        List<MoveDroneResponse> states;
+        // With tiled claims the tile workers stay paused until the hold is closed instead
+        boolean locked = !tileExecutor.isTiled();
+        if (locked) {
+            droneLocks.lock(id);
+        }
+        try (TileExecutor.Hold hold = tileExecutor.hold()) {
+            states = droneService.flyMission(id, request.getWaypoints());
+            // Every waypoint reached goes to the history, in one write
+            long start = System.nanoTime();
+            droneHistoryLog.appendAll(id, states);
+            droneMetrics.recordHistory(HistoryOperation.APPEND, start);
+        } finally {
+            if (locked) {
+                droneLocks.unlock(id);
+            }
+        }
+        return new ResponseEntity<>(states, HttpStatus.OK);
+    }
+
+    @PutMapping("/move")
+    public ResponseEntity<?> moveDrones(@Valid @RequestBody BatchMoveRequest request) {
+        List<BatchMoveResult> results;
+        List<MoveDroneResponse> moves = new ArrayList<>();
+        // With tiled claims the tile workers stay paused until the hold is closed instead
+        int[] locked = tileExecutor.isTiled() ? new int[0] : droneLocks.lockAll(request.getMoves().keySet());
+        try (TileExecutor.Hold hold = tileExecutor.hold()) {
+            results = droneService.moveDrones(request.getMoves());
+            for (BatchMoveResult result : results) {
+                if (result.isMoved()) {
+                    moves.add(result.getMove());
+                }
+            }
+            long start = System.nanoTime();
+            droneHistoryLog.appendAll(moves);
+            droneMetrics.recordHistory(HistoryOperation.APPEND, start);
+        } finally {
+            droneLocks.unlockAll(locked);
+        }
+        return new ResponseEntity<>(new BatchMoveResponse(moves.size(), results.size() - moves.size(), results), HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
@@ -83,35 +225,142 @@ public class DroneController {
         return new ResponseEntity<>(drone, HttpStatus.OK);
     }
 
+    @GetMapping("/area")
+    public ResponseEntity<?> getDronesInArea(@RequestParam int minX, @RequestParam int minY,
+                                             @RequestParam int maxX, @RequestParam int maxY,
+                                             @RequestParam(required = false) Integer limit) {
+        List<DroneResponse> drones = droneService.findDronesInArea(minX, minY, maxX, maxY, limit);
+        return new ResponseEntity<>(drones, HttpStatus.OK);
+    }
+
+    @GetMapping("/within")
+    public ResponseEntity<?> getDronesWithin(@RequestParam int x, @RequestParam int y, @RequestParam int radius,
+                                             @RequestParam(required = false) Integer limit) {
+        List<DroneResponse> drones = droneService.findDronesWithin(x, y, radius, limit);
+        return new ResponseEntity<>(drones, HttpStatus.OK);
+    }
+
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestDrones(@RequestParam int x, @RequestParam int y, @RequestParam(defaultValue = "1") int k) {
+        List<DroneResponse> drones = droneService.findNearestDrones(x, y, k);
+        return new ResponseEntity<>(drones, HttpStatus.OK);
+    }
+
+    @GetMapping("/occupancy/verify")
+    public ResponseEntity<?> verifyOccupancyIndex() {
+        OccupancyIndexReport report = droneService.verifyOccupancyIndex(false);
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
+    @PostMapping("/occupancy/repair")
+    public ResponseEntity<?> repairOccupancyIndex() {
+        OccupancyIndexReport report = droneService.verifyOccupancyIndex(true);
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
+    @GetMapping("/history/cache")
+    public ResponseEntity<?> getHistoryCacheStats() {
+        HistoryCacheStats stats = droneHistoryLog.cacheStats();
+        return new ResponseEntity<>(stats, HttpStatus.OK);
+    }
+
     @GetMapping("/getDroneHistory/{id}")
-    public ResponseEntity<?> getDroneHistory(@PathVariable UUID id) throws DroneHistoryReadException, DroneHistoryNotFoundException {
-        DroneHistory history = loadDroneHistory(id);
-        if (history == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Drone history not found");
+    public ResponseEntity<?> getDroneHistory(@PathVariable UUID id,
+                                             @RequestParam(required = false) Integer from,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) Integer latest) throws DroneHistoryReadException, DroneHistoryNotFoundException {
+        if (from == null && limit == null && latest == null) {
+            long start = System.nanoTime();
+            DroneHistory history = droneHistoryLog.load(id);
+            droneMetrics.recordHistory(HistoryOperation.LOAD, start);
+            if (history == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Drone history not found");
+            }
+
+            return ResponseEntity.ok().headers(lostStatesHeader(id)).body(history.getStates());
         }
 
-        return ResponseEntity.ok(history.getStates());
+        HistoryRange range = historyRange(from, limit, latest, historyProperties.getMaxPageSize());
+        List<MoveDroneResponse> states = new ArrayList<>();
+        long readStart = System.nanoTime();
+        int total = droneHistoryLog.read(id, range, states::add);
+        droneMetrics.recordHistory(HistoryOperation.READ, readStart);
+        int start = range.start(total);
+        int end = start + states.size();
+        int lostStates = droneHistoryLog.lostStates(id);
+        DroneHistoryPage page = new DroneHistoryPage(id, start, total, end < total ? end : null, states, lostStates);
+        return ResponseEntity.ok().headers(lostStatesHeader(id)).body(page);
     }
 
-    private void saveDroneHistory(DroneHistory history) {
-        try {
-            objectMapper.writeValue(new File(storagePath + history.getDroneId() + ".json"), history);
-        } catch (IOException e) {
-            e.printStackTrace();
+    @GetMapping("/getDroneHistory/{id}/stream")
+    public ResponseEntity<StreamingResponseBody> streamDroneHistory(@PathVariable UUID id,
+                                                                    @RequestParam(required = false) Integer from,
+                                                                    @RequestParam(required = false) Integer limit,
+                                                                    @RequestParam(required = false) Integer latest) throws DroneHistoryReadException, DroneHistoryNotFoundException {
+        HistoryRange range = historyRange(from, limit, latest, Integer.MAX_VALUE);
+        // Checked up front, since once streaming has started the response can no longer turn into a 404.
+        if (!droneHistoryLog.exists(id)) {
+            throw new DroneHistoryNotFoundException("Drone history not found for ID: " + id);
         }
+
+        StreamingResponseBody body = output -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.writeStartArray();
+            long start = System.nanoTime();
+            try {
+                droneHistoryLog.read(id, range, state -> {
+                    try {
+                        generator.writeObject(state);
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            } catch (DroneHistoryNotFoundException | DroneHistoryReadException exception) {
+                throw new IOException(exception.getMessage(), exception);
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            droneMetrics.recordHistory(HistoryOperation.READ, start);
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok().headers(lostStatesHeader(id)).contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
-    private DroneHistory loadDroneHistory(UUID id) throws DroneHistoryNotFoundException, DroneHistoryReadException {
-        File file = new File(storagePath + id + ".json");
-        if (!file.exists()) {
-            throw new DroneHistoryNotFoundException("Drone history not found for ID: " + id);
+    /**
+     * Tells the reader of a history how many of the drone's acknowledged states were dropped by a failed background
+     * write, if any were.
+     */
+    private HttpHeaders lostStatesHeader(UUID id) {
+        HttpHeaders headers = new HttpHeaders();
+        int lostStates = droneHistoryLog.lostStates(id);
+        if (lostStates > 0) {
+            headers.set(LOST_STATES_HEADER, Integer.toString(lostStates));
+        }
+        return headers;
+    }
+
+    private static HistoryRange historyRange(Integer from, Integer limit, Integer latest, int maxLimit) {
+        if (latest != null) {
+            if (from != null || limit != null) {
+                throw new IllegalArgumentException("latest cannot be combined with from or limit");
+            }
+            if (latest < 1 || latest > maxLimit) {
+                throw new IllegalArgumentException("latest must be between 1 and " + maxLimit);
+            }
+            return HistoryRange.latest(latest);
         }
-        try {
-            return objectMapper.readValue(file, DroneHistory.class);
-        } catch (IOException exception) {
-            throw new DroneHistoryReadException("Error reading drone history for ID: " + id);
+        int start = from == null ? 0 : from;
+        int count = limit == null ? maxLimit : limit;
+        if (start < 0) {
+            throw new IllegalArgumentException("from must not be negative");
         }
+        if (count < 1 || count > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        return HistoryRange.page(start, count);
     }
+
     private MoveDroneResponse convertToMoveDroneResponse(DroneResponse droneResponse) {
         MoveDroneResponse moveDroneResponse = new MoveDroneResponse();
         moveDroneResponse.setDroneId(droneResponse.getDroneId());
@@ -0,0 +1,78 @@
+package com.gpicode.drone.management.controller;
+
+import com.gpicode.drone.management.dto.NoFlyZoneRequest;
+import com.gpicode.drone.management.dto.NoFlyZonesRequest;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.NoFlyZone;
+import com.gpicode.drone.management.mapper.NoFlyZoneMapper;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * No-fly zones, published to the {@link GeofenceIndex} in one update per request. Moves in flight keep checking the
+ * zones they started with and are never held up by an update.
+ */
+@Validated
+@RestController
+@RequestMapping("/v1/api/zones")
+public class GeofenceController {
+
+    @Autowired
+    private GeofenceIndex geofenceIndex;
+
+    public GeofenceController(GeofenceIndex geofenceIndex) {
+        this.geofenceIndex = geofenceIndex;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getZones() {
+        return new ResponseEntity<>(geofenceIndex.zones(), HttpStatus.OK);
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public ResponseEntity<?> addZones(@RequestBody @Valid NoFlyZonesRequest request) {
+        List<NoFlyZone> zones = toZones(request);
+        geofenceIndex.addAll(zones);
+        return new ResponseEntity<>(zones, HttpStatus.CREATED);
+    }
+
+    @PutMapping
+    public ResponseEntity<?> replaceZones(@RequestBody @Valid NoFlyZonesRequest request) {
+        List<NoFlyZone> zones = toZones(request);
+        geofenceIndex.replaceAll(zones);
+        return new ResponseEntity<>(zones, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteZone(@PathVariable UUID id) {
+        if (!geofenceIndex.remove(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No-fly zone not found");
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Builds every zone before any is published, so a request with an invalid zone changes nothing.
+     */
+    private static List<NoFlyZone> toZones(NoFlyZonesRequest request) {
+        List<NoFlyZone> zones = new ArrayList<>(request.getZones().size());
+        for (int i = 0; i < request.getZones().size(); i++) {
+            NoFlyZoneRequest zone = request.getZones().get(i);
+            try {
+                zones.add(NoFlyZoneMapper.toZone(zone));
+            } catch (IllegalArgumentException exception) {
+                throw new IllegalArgumentException("zones[" + i + "]: " + exception.getMessage(), exception);
+            }
+        }
+        return zones;
+    }
+}
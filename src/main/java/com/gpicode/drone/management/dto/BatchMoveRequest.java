@@ -0,0 +1,26 @@
+package com.gpicode.drone.management.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BatchMoveRequest {
+
+    // Target position per drone id, results are returned in the same order
+    @NotEmpty(message = "moves are required")
+    @Size(max = 1000, message = "At most 1000 moves can be sent at once")
+    @Valid
+    private Map<UUID, MoveDroneRequest> moves = new LinkedHashMap<>();
+}
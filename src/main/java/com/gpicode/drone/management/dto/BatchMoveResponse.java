@@ -0,0 +1,22 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BatchMoveResponse {
+
+    private int moved;
+
+    private int rejected;
+
+    private List<BatchMoveResult> results;
+
+}
@@ -0,0 +1,33 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BatchMoveResult {
+
+    private UUID droneId;
+
+    private boolean moved;
+
+    // The completed move, when moved
+    private MoveDroneResponse move;
+
+    // Why the move was rejected, when not moved
+    private String error;
+
+    public static BatchMoveResult moved(MoveDroneResponse move) {
+        return new BatchMoveResult(move.getDroneId(), true, move, null);
+    }
+
+    public static BatchMoveResult rejected(UUID droneId, String error) {
+        return new BatchMoveResult(droneId, false, null, error);
+    }
+}
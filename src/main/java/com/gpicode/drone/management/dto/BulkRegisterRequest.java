@@ -0,0 +1,24 @@
+package com.gpicode.drone.management.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class BulkRegisterRequest {
+
+    @NotEmpty(message = "drones are required")
+    @Size(max = 10000, message = "At most 10000 drones can be registered at once")
+    @Valid
+    private List<RegisterDroneRequest> drones = new ArrayList<>();
+}
@@ -0,0 +1,31 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class DroneHistoryPage {
+
+    private UUID droneId;
+
+    private int from;
+
+    private int total;
+
+    // Position to pass as "from" for the next page, null on the last page
+    private Integer nextFrom;
+
+    private List<MoveDroneResponse> states;
+
+    // Acknowledged states of the drone dropped because their background write failed, missing from the history
+    private int lostStates;
+
+}
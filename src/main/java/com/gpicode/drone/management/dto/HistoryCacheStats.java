@@ -0,0 +1,28 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class HistoryCacheStats {
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long evictions;
+
+    private int cachedDrones;
+
+    private long cachedStates;
+
+    private long maxStates;
+
+}
@@ -0,0 +1,25 @@
+package com.gpicode.drone.management.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class MissionRequest {
+
+    // Positions the drone flies through in order, the last one is where it stays
+    @NotEmpty(message = "waypoints are required")
+    @Size(max = 1000, message = "At most 1000 waypoints can be sent at once")
+    @Valid
+    private List<MoveDroneRequest> waypoints = new ArrayList<>();
+}
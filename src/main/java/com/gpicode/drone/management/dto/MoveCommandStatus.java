@@ -0,0 +1,35 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class MoveCommandStatus {
+
+    public enum State {
+        // Accepted, waiting behind earlier moves
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private UUID commandId;
+
+    private UUID droneId;
+
+    private State state;
+
+    // The completed move, when succeeded
+    private MoveDroneResponse move;
+
+    // The error response the move would have had if made synchronously, when failed
+    private ErrorResponse error;
+}
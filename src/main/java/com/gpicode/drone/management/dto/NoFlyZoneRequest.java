@@ -0,0 +1,35 @@
+package com.gpicode.drone.management.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class NoFlyZoneRequest {
+
+    @NotBlank(message = "name is required")
+    private String name;
+
+    // A rectangle, bounds included, or else a polygon of [x, y] corners
+    private Integer minX;
+
+    private Integer minY;
+
+    private Integer maxX;
+
+    private Integer maxY;
+
+    private int[][] polygon;
+
+    // Both optional: in force from activeFrom and until before activeUntil
+    private Instant activeFrom;
+
+    private Instant activeUntil;
+}
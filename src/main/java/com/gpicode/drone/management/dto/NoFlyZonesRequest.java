@@ -0,0 +1,25 @@
+package com.gpicode.drone.management.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class NoFlyZonesRequest {
+
+    // May be empty when replacing every zone, which lifts them all
+    @NotNull(message = "zones are required")
+    @Size(max = 10000, message = "At most 10000 zones can be sent at once")
+    @Valid
+    private List<NoFlyZoneRequest> zones = new ArrayList<>();
+}
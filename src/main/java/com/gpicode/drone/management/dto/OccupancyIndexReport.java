@@ -0,0 +1,33 @@
+package com.gpicode.drone.management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class OccupancyIndexReport {
+
+    private boolean consistent;
+
+    private int indexedCells;
+
+    private int databaseDrones;
+
+    // Cells occupied in the database but missing from the index, as "(x, y)"
+    private List<String> missingCells;
+
+    // Cells held by the index with no drone in the database, as "(x, y)"
+    private List<String> staleCells;
+
+    // Cells the index attributes to a different drone than the database does
+    private List<String> misassignedCells;
+
+    private boolean rebuilt;
+
+}
@@ -0,0 +1,15 @@
+package com.gpicode.drone.management.entity;
+
+public enum Direction {
+    NORTH, EAST, SOUTH, WEST;
+
+    private static final Direction[] VALUES = values();
+
+    public static Direction of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public Direction opposite() {
+        return VALUES[(ordinal() + 2) % VALUES.length];
+    }
+}
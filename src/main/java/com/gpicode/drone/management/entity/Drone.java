@@ -1,5 +1,6 @@
 package com.gpicode.drone.management.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 //import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -9,7 +10,12 @@ import lombok.Setter;
 
 import java.util.UUID;
 
+/**
+ * A registered drone. The database enforces that no two drones share a cell through a unique constraint on the
+ * coordinates, and the version column lets a move update the row only if nothing changed it since it was read.
+ */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_drone_cell", columnNames = {"coordinate_x", "coordinate_y"}))
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -26,8 +32,17 @@ public class Drone {
     @Column(name = "coordinate_y")
     private int coordinateY;
 
+    @Enumerated(EnumType.STRING)
     @Column(name = "direction")
-    private String direction;
+    private Direction direction;
 
+    @Version
+    @JsonIgnore
+    @Column(name = "version")
+    private long version;
+
+    public Drone(UUID droneId, int coordinateX, int coordinateY, Direction direction) {
+        this(droneId, coordinateX, coordinateY, direction, 0);
+    }
 }
 
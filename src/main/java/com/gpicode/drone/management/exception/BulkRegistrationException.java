@@ -0,0 +1,22 @@
+package com.gpicode.drone.management.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BulkRegistrationException extends Throwable {
+
+    // One entry per rejected drone, naming its position in the request
+    private final List<String> details;
+
+    public BulkRegistrationException(List<String> details) {
+        super("No drones were registered, " + details.size() + " of the requested drones are invalid");
+        this.details = details;
+    }
+
+    public List<String> getDetails() {
+        return details;
+    }
+}
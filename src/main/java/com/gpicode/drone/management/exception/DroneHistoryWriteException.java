@@ -0,0 +1,15 @@
+package com.gpicode.drone.management.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DroneHistoryWriteException extends RuntimeException {
+    public DroneHistoryWriteException(String message) {
+        super(message);
+    }
+
+    public DroneHistoryWriteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
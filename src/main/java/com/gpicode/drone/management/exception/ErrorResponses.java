@@ -0,0 +1,40 @@
+package com.gpicode.drone.management.exception;
+
+import com.gpicode.drone.management.dto.ErrorResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the error response a request failing with an exception is answered with. Shared by the
+ * {@link GlobalExceptionHandler} and by moves that fail after their asynchronous request was already answered, so both
+ * report a failure the same way.
+ */
+@Component
+public class ErrorResponses {
+
+    public ErrorResponse of(Throwable ex) {
+        if (ex instanceof InvalidBoundaryException) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Invalid values", ex);
+        } else if (ex instanceof IllegalArgumentException) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Invalid Input", ex);
+        } else if (ex instanceof DroneNotFoundException) {
+            return errorResponse(HttpStatus.NOT_FOUND, "Invalid droneId", ex);
+        } else if (ex instanceof DroneHistoryWriteException) {
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "History storage unavailable", ex);
+        } else if (ex instanceof CommandRejectedException) {
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Move commands unavailable", ex);
+        } else if (ex instanceof DroneHistoryNotFoundException) {
+            return errorResponse(HttpStatus.NOT_FOUND, "Drone history not found", ex);
+        }
+        return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", ex);
+    }
+
+    private static ErrorResponse errorResponse(HttpStatus status, String message, Throwable ex) {
+        List<String> details = new ArrayList<>();
+        details.add(ex.getMessage());
+        return new ErrorResponse(status.value(), message, details);
+    }
+}
@@ -17,6 +17,12 @@ import java.util.List;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final ErrorResponses errorResponses;
+
+    public GlobalExceptionHandler(ErrorResponses errorResponses) {
+        this.errorResponses = errorResponses;
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -31,28 +37,26 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException ex) {
-        List<String> details = new ArrayList<>();
-        details.add(ex.getMessage());
-        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), "Invalid Input", details);
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(errorResponses.of(ex), HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(InvalidBoundaryException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> handleInvalidBoundaryException(InvalidBoundaryException ex) {
-        List<String> details = new ArrayList<>();
-        details.add(ex.getMessage());
-        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), "Invalid values", details);
+        return new ResponseEntity<>(errorResponses.of(ex), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BulkRegistrationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<ErrorResponse> handleBulkRegistrationException(BulkRegistrationException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage(), ex.getDetails());
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(DroneNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ResponseEntity<ErrorResponse> handleDroneNotFoundException(DroneNotFoundException ex) {
-        List<String> details = new ArrayList<>();
-        details.add(ex.getMessage());
-        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.NOT_FOUND.value(), "Invalid droneId", details);
-        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(errorResponses.of(ex), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(DroneHistoryNotFoundException.class)
@@ -71,4 +75,16 @@ public class GlobalExceptionHandler {
         ErrorResponse errorResponse = new ErrorResponse(HttpStatus.NOT_FOUND.value(), "Invalid droneId", details);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
+
+    @ExceptionHandler(DroneHistoryWriteException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handleDroneHistoryWriteException(DroneHistoryWriteException ex) {
+        return new ResponseEntity<>(errorResponses.of(ex), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(CommandRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handleCommandRejectedException(CommandRejectedException ex) {
+        return new ResponseEntity<>(errorResponses.of(ex), HttpStatus.SERVICE_UNAVAILABLE);
+    }
 }
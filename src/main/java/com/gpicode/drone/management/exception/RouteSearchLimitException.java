@@ -0,0 +1,11 @@
+package com.gpicode.drone.management.exception;
+
+/**
+ * Thrown by the route planner when the window a route is searched in would pass {@code drone.planner.max-search-cells}
+ * before a route was found, so that whether a route exists is not known.
+ */
+public class RouteSearchLimitException extends RuntimeException {
+    public RouteSearchLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.dto.HistoryCacheStats;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Least-recently-used cache of drone histories, bounded by the total number of states it holds.
+ * <p>
+ * Writes go through the cache, so a cached history stays complete. A history loaded after a cache miss is only
+ * cached if no write for that drone happened while it was being loaded, which is detected with a version counter
+ * per stripe of drone ids.
+ */
+class DroneHistoryCache {
+
+    private static final int VERSION_STRIPES = 256;
+
+    private final long maxStates;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<UUID, List<MoveDroneResponse>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private long cachedStates;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    DroneHistoryCache(long maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    /**
+     * @return a copy of the cached states, or {@code null} on a miss
+     */
+    List<MoveDroneResponse> get(UUID droneId) {
+        lock.lock();
+        try {
+            List<MoveDroneResponse> states = entries.get(droneId);
+            if (states == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return new ArrayList<>(states);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the states in {@code range} into {@code into}.
+     *
+     * @return the number of states in the cached history, or {@code -1} on a miss
+     */
+    int read(UUID droneId, HistoryRange range, List<MoveDroneResponse> into) {
+        lock.lock();
+        try {
+            List<MoveDroneResponse> states = entries.get(droneId);
+            if (states == null) {
+                misses++;
+                return -1;
+            }
+            hits++;
+            int total = states.size();
+            into.addAll(states.subList(range.start(total), range.end(total)));
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean contains(UUID droneId) {
+        lock.lock();
+        try {
+            return entries.containsKey(droneId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stamp to pass to {@link #putLoaded} for a history about to be loaded from storage.
+     */
+    long version(UUID droneId) {
+        return versions.get(stripe(droneId));
+    }
+
+    /**
+     * Caches a history loaded from storage, unless the drone was written to since {@code version} was taken.
+     */
+    void putLoaded(UUID droneId, List<MoveDroneResponse> states, long version) {
+        lock.lock();
+        try {
+            if (versions.get(stripe(droneId)) == version && !entries.containsKey(droneId)) {
+                store(droneId, new ArrayList<>(states));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies written records to the cached histories they belong to.
+     */
+    void write(List<HistoryRecord> records) {
+        lock.lock();
+        try {
+            for (HistoryRecord record : records) {
+                versions.incrementAndGet(stripe(record.droneId()));
+                if (record.first()) {
+                    List<MoveDroneResponse> states = new ArrayList<>();
+                    states.add(record.state());
+                    store(record.droneId(), states);
+                } else {
+                    List<MoveDroneResponse> states = entries.get(record.droneId());
+                    if (states != null && states.size() >= maxStates) {
+                        // Grown past what store() would cache in the first place
+                        drop(record.droneId());
+                    } else if (states != null) {
+                        states.add(record.state());
+                        cachedStates++;
+                    }
+                }
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    HistoryCacheStats stats() {
+        lock.lock();
+        try {
+            long requests = hits + misses;
+            double hitRatio = requests == 0 ? 0.0 : (double) hits / requests;
+            return new HistoryCacheStats(hits, misses, hitRatio, evictions, entries.size(), cachedStates, maxStates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a drone whose cached history can no longer be trusted, for instance after its records failed to write.
+     */
+    void invalidate(UUID droneId) {
+        lock.lock();
+        try {
+            versions.incrementAndGet(stripe(droneId));
+            drop(droneId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(UUID droneId, List<MoveDroneResponse> states) {
+        if (states.size() > maxStates) {
+            // Never worth evicting every other drone for a single oversized history.
+            drop(droneId);
+            return;
+        }
+        drop(droneId);
+        entries.put(droneId, states);
+        cachedStates += states.size();
+        evict();
+    }
+
+    private void drop(UUID droneId) {
+        List<MoveDroneResponse> previous = entries.remove(droneId);
+        if (previous != null) {
+            cachedStates -= previous.size();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<UUID, List<MoveDroneResponse>>> eldest = entries.entrySet().iterator();
+        while (cachedStates > maxStates && eldest.hasNext()) {
+            cachedStates -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static int stripe(UUID droneId) {
+        return droneId.hashCode() & (VERSION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,418 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.config.HistoryProperties.Durability;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.dto.HistoryCacheStats;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import com.gpicode.drone.management.exception.DroneHistoryReadException;
+import com.gpicode.drone.management.exception.DroneHistoryWriteException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Write pipeline in front of the {@link DroneHistoryStore} that takes history I/O off the request thread.
+ * <p>
+ * Requests queue their records on a bounded queue and a single writer thread drains it, writing everything queued
+ * by concurrent requests with one store write and, depending on {@code drone.history.durability}, one fsync
+ * (group commit). With {@code FSYNC} a request only returns once its records are on disk, and a failed write or fsync
+ * is reported to every request of the batch. With {@code BATCHED} and {@code ASYNC} it returns as soon as they are
+ * queued, so records already acknowledged are dropped when their background write or fsync fails: they are not
+ * retried, since a failed write may have been partly applied. Each drone's dropped states are counted and reported by
+ * {@link #lostStates(UUID)} on reads of its history. A full queue holds requests back for up to
+ * {@code drone.history.enqueue-timeout-ms} before rejecting them.
+ * <p>
+ * Reads merge the records still queued for a drone with what the store holds, so a drone's history always
+ * includes the moves that were already acknowledged. {@link #read} passes a range of states to a consumer as they are
+ * read from storage, so paging through or streaming a long history needs no more memory than one state. Recently used histories are kept in a {@link DroneHistoryCache}
+ * bounded by {@code drone.history.cache-max-states}; every accepted record is written through to it, so reading or
+ * moving a cached drone touches no storage.
+ */
+@Component
+public class DroneHistoryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(DroneHistoryLog.class);
+
+    private final DroneHistoryStore droneHistoryStore;
+    private final HistoryProperties historyProperties;
+    private final BlockingQueue<Submission> queue;
+    // Records queued but not yet written, per drone, in write order
+    private final Map<UUID, ArrayDeque<HistoryRecord>> unwritten = new ConcurrentHashMap<>();
+    // Keeps the order of records in the queue and in the unwritten map identical
+    private final ReentrantLock submitLock = new ReentrantLock();
+    // Held shared by readers, exclusively while a batch moves from the unwritten map into the store
+    private final ReentrantReadWriteLock visibilityLock = new ReentrantReadWriteLock();
+    private final DroneHistoryCache cache;
+    // Acknowledged states whose background write or fsync failed, per drone
+    private final Map<UUID, Integer> lostStates = new ConcurrentHashMap<>();
+    private final AtomicLong lostStatesTotal = new AtomicLong();
+    // States written since the last fsync in BATCHED mode, per drone; only touched by the writer thread
+    private final Map<UUID, Integer> unsyncedStates = new HashMap<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public DroneHistoryLog(DroneHistoryStore droneHistoryStore, HistoryProperties historyProperties) {
+        this.droneHistoryStore = droneHistoryStore;
+        this.historyProperties = historyProperties;
+        this.queue = new ArrayBlockingQueue<>(historyProperties.getQueueCapacity());
+        this.cache = new DroneHistoryCache(historyProperties.getCacheMaxStates());
+        this.writerThread = VirtualThreads.factory("drone-history-writer", historyProperties.isVirtualThreads())
+                .newThread(this::runWriter);
+        this.writerThread.start();
+    }
+
+    /**
+     * @return how many states of the drone were acknowledged but dropped because their background write failed
+     */
+    public int lostStates(UUID droneId) {
+        return lostStates.getOrDefault(droneId, 0);
+    }
+
+    /**
+     * @return how many acknowledged states of all drones were dropped because their background write failed
+     */
+    public long lostStates() {
+        return lostStatesTotal.get();
+    }
+
+    public void create(DroneHistory history) {
+        List<HistoryRecord> records = new ArrayList<>();
+        for (MoveDroneResponse state : history.getStates()) {
+            records.add(new HistoryRecord(history.getDroneId(), state, records.isEmpty()));
+        }
+        submit(records);
+    }
+
+    /**
+     * Starts the histories of several drones with a single submission.
+     */
+    public void createAll(List<DroneHistory> histories) {
+        List<HistoryRecord> records = new ArrayList<>();
+        for (DroneHistory history : histories) {
+            boolean first = true;
+            for (MoveDroneResponse state : history.getStates()) {
+                records.add(new HistoryRecord(history.getDroneId(), state, first));
+                first = false;
+            }
+        }
+        if (!records.isEmpty()) {
+            submit(records);
+        }
+    }
+
+    public void append(UUID droneId, MoveDroneResponse state) throws DroneHistoryNotFoundException {
+        checkExists(droneId);
+        submit(List.of(new HistoryRecord(droneId, state, false)));
+    }
+
+    /**
+     * Records several states of one drone in order with a single submission, so they reach the store in one write.
+     */
+    public void appendAll(UUID droneId, List<MoveDroneResponse> states) throws DroneHistoryNotFoundException {
+        checkExists(droneId);
+        List<HistoryRecord> records = new ArrayList<>(states.size());
+        for (MoveDroneResponse state : states) {
+            records.add(new HistoryRecord(droneId, state, false));
+        }
+        if (!records.isEmpty()) {
+            submit(records);
+        }
+    }
+
+    private void checkExists(UUID droneId) throws DroneHistoryNotFoundException {
+        try {
+            if (!cache.contains(droneId) && !unwritten.containsKey(droneId) && !droneHistoryStore.exists(droneId)) {
+                throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+            }
+        } catch (IOException exception) {
+            throw new DroneHistoryWriteException("Could not check drone history for ID: " + droneId, exception);
+        }
+    }
+
+    /**
+     * Records the latest state of several drones with a single submission. Unlike {@link #append}, a drone without
+     * a history is not rejected; its history starts with the given state.
+     */
+    public void appendAll(List<MoveDroneResponse> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        List<HistoryRecord> records = new ArrayList<>(states.size());
+        for (MoveDroneResponse state : states) {
+            records.add(new HistoryRecord(state.getDroneId(), state, false));
+        }
+        submit(records);
+    }
+
+    public DroneHistory load(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        List<MoveDroneResponse> cached = cache.get(droneId);
+        if (cached != null) {
+            DroneHistory history = new DroneHistory();
+            history.setDroneId(droneId);
+            history.setStates(cached);
+            return history;
+        }
+        long version = cache.version(droneId);
+        DroneHistory history = loadUncached(droneId);
+        cache.putLoaded(droneId, history.getStates(), version);
+        return history;
+    }
+
+    public boolean exists(UUID droneId) throws DroneHistoryReadException {
+        try {
+            return cache.contains(droneId) || unwritten.containsKey(droneId) || droneHistoryStore.exists(droneId);
+        } catch (IOException exception) {
+            throw new DroneHistoryReadException("Error reading drone history for ID: " + droneId);
+        }
+    }
+
+    /**
+     * Passes the states in {@code range} to the consumer, in order.
+     *
+     * @return the number of states in the whole history
+     */
+    public int read(UUID droneId, HistoryRange range, Consumer<MoveDroneResponse> consumer)
+            throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        List<MoveDroneResponse> cached = new ArrayList<>();
+        int total = cache.read(droneId, range, cached);
+        if (total >= 0) {
+            cached.forEach(consumer);
+            return total;
+        }
+
+        List<HistoryRecord> queued;
+        int stored;
+        visibilityLock.readLock().lock();
+        try {
+            queued = queuedRecords(droneId);
+            stored = !queued.isEmpty() && queued.get(0).first() ? 0 : droneHistoryStore.count(droneId);
+        } finally {
+            visibilityLock.readLock().unlock();
+        }
+        // The store only ever grows at the end, so its first "stored" states stay put while they are read unlocked.
+        total = stored + queued.size();
+        int start = range.start(total);
+        int end = range.end(total);
+        if (start < stored) {
+            droneHistoryStore.read(droneId, start, Math.min(end, stored) - start, consumer);
+        }
+        for (int position = Math.max(start, stored); position < end; position++) {
+            consumer.accept(queued.get(position - stored).state());
+        }
+        return total;
+    }
+
+    public HistoryCacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the batches accepted but not yet taken by the background writer
+     */
+    public int queueSize() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        writerThread.join();
+    }
+
+    private DroneHistory loadUncached(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        visibilityLock.readLock().lock();
+        try {
+            List<HistoryRecord> queued = queuedRecords(droneId);
+            DroneHistory history;
+            if (!queued.isEmpty() && queued.get(0).first()) {
+                history = new DroneHistory();
+                history.setDroneId(droneId);
+            } else {
+                history = droneHistoryStore.load(droneId);
+            }
+            for (HistoryRecord record : queued) {
+                history.getStates().add(record.state());
+            }
+            return history;
+        } finally {
+            visibilityLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the records still queued for the drone, from its latest new history on, if one is queued
+     */
+    private List<HistoryRecord> queuedRecords(UUID droneId) {
+        List<HistoryRecord> queued = new ArrayList<>();
+        unwritten.computeIfPresent(droneId, (id, records) -> {
+            queued.addAll(records);
+            return records;
+        });
+        int start = 0;
+        for (int i = 0; i < queued.size(); i++) {
+            if (queued.get(i).first()) {
+                start = i;
+            }
+        }
+        return queued.subList(start, queued.size());
+    }
+
+    private void submit(List<HistoryRecord> records) {
+        if (!running) {
+            throw new DroneHistoryWriteException("Drone history writer is shut down");
+        }
+        Submission submission = new Submission(records);
+        submitLock.lock();
+        try {
+            for (HistoryRecord record : records) {
+                unwritten.computeIfAbsent(record.droneId(), id -> new ArrayDeque<>()).addLast(record);
+            }
+            // Cached before the writer can see the records, so its invalidation of a failed batch always comes after
+            cache.write(records);
+            boolean queued = false;
+            try {
+                queued = queue.offer(submission, historyProperties.getEnqueueTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            if (!queued) {
+                forget(records, true);
+                records.forEach(record -> cache.invalidate(record.droneId()));
+                throw new DroneHistoryWriteException("Drone history write queue is full, try again later");
+            }
+        } finally {
+            submitLock.unlock();
+        }
+
+        if (historyProperties.getDurability() == Durability.FSYNC) {
+            try {
+                submission.done.get();
+            } catch (ExecutionException exception) {
+                throw new DroneHistoryWriteException("Could not write drone history: " + exception.getCause().getMessage(), exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new DroneHistoryWriteException("Interrupted while writing drone history", exception);
+            }
+        }
+    }
+
+    private void runWriter() {
+        Durability durability = historyProperties.getDurability();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(historyProperties.getFlushIntervalMs());
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        List<Submission> batch = new ArrayList<>();
+        List<HistoryRecord> records = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            Submission first;
+            try {
+                first = queue.poll(historyProperties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                continue;
+            }
+            if (first != null) {
+                batch.add(first);
+                records.addAll(first.records);
+                Submission next;
+                while (records.size() < historyProperties.getMaxBatchSize() && (next = queue.poll()) != null) {
+                    batch.add(next);
+                    records.addAll(next.records);
+                }
+                try {
+                    writeBatch(records);
+                    if (durability == Durability.FSYNC) {
+                        droneHistoryStore.sync();
+                    } else if (durability == Durability.BATCHED) {
+                        unsynced = true;
+                        records.forEach(record -> unsyncedStates.merge(record.droneId(), 1, Integer::sum));
+                    }
+                    batch.forEach(submission -> submission.done.complete(null));
+                } catch (IOException | RuntimeException exception) {
+                    log.error("Drone history write of {} records failed", records.size(), exception);
+                    if (durability != Durability.FSYNC) {
+                        records.forEach(record -> lose(record.droneId(), 1));
+                    }
+                    batch.forEach(submission -> submission.done.completeExceptionally(exception));
+                }
+                batch.clear();
+                records.clear();
+            }
+            if (unsynced && (System.nanoTime() - lastSync >= flushIntervalNanos || !running)) {
+                try {
+                    droneHistoryStore.sync();
+                } catch (IOException | RuntimeException exception) {
+                    // Whatever was written since the last fsync may not survive a crash
+                    log.error("Drone history fsync failed", exception);
+                    unsyncedStates.forEach(this::lose);
+                }
+                unsyncedStates.clear();
+                unsynced = false;
+                lastSync = System.nanoTime();
+            }
+        }
+    }
+
+    private void writeBatch(List<HistoryRecord> records) throws IOException {
+        visibilityLock.writeLock().lock();
+        try {
+            droneHistoryStore.write(records);
+        } catch (IOException | RuntimeException exception) {
+            // The cache already holds these records, but storage does not.
+            records.forEach(record -> cache.invalidate(record.droneId()));
+            throw exception;
+        } finally {
+            // Written or failed, these records are no longer waiting in the queue.
+            forget(records, false);
+            visibilityLock.writeLock().unlock();
+        }
+    }
+
+    private void forget(List<HistoryRecord> records, boolean newest) {
+        for (HistoryRecord record : records) {
+            unwritten.computeIfPresent(record.droneId(), (id, queued) -> {
+                if (newest) {
+                    queued.pollLast();
+                } else {
+                    queued.pollFirst();
+                }
+                return queued.isEmpty() ? null : queued;
+            });
+        }
+    }
+
+    private void lose(UUID droneId, int states) {
+        lostStates.merge(droneId, states, Integer::sum);
+        lostStatesTotal.addAndGet(states);
+    }
+
+    private static final class Submission {
+        private final List<HistoryRecord> records;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Submission(List<HistoryRecord> records) {
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import com.gpicode.drone.management.exception.DroneHistoryReadException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage for the states a drone went through, written once when the drone is registered
+ * and then only ever appended to as it moves.
+ */
+public interface DroneHistoryStore {
+
+    void create(DroneHistory history) throws IOException;
+
+    void append(UUID droneId, MoveDroneResponse state) throws DroneHistoryNotFoundException, IOException;
+
+    DroneHistory load(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException;
+
+    boolean exists(UUID droneId) throws IOException;
+
+    /**
+     * @return the number of states stored for the drone
+     */
+    int count(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException;
+
+    /**
+     * Passes the states at positions {@code from} to {@code from + limit - 1} to the consumer, in order, reading them
+     * as they are consumed rather than loading the whole history first.
+     */
+    void read(UUID droneId, int from, int limit, Consumer<MoveDroneResponse> consumer)
+            throws DroneHistoryNotFoundException, DroneHistoryReadException;
+
+    /**
+     * Writes a batch of records, in order, with as few writes as the storage allows.
+     * Appends for a drone the store has no history for are written as a new history.
+     */
+    void write(List<HistoryRecord> records) throws IOException;
+
+    /**
+     * Forces everything written so far to stable storage.
+     */
+    void sync() throws IOException;
+
+    /**
+     * @return the bytes the store currently takes up on disk
+     */
+    long sizeOnDisk() throws IOException;
+
+    /**
+     * @return the bytes read from disk since the store was opened
+     */
+    long bytesRead();
+
+    /**
+     * @return the bytes written to disk since the store was opened
+     */
+    long bytesWritten();
+}
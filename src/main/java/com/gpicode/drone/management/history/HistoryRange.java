@@ -0,0 +1,34 @@
+package com.gpicode.drone.management.history;
+
+/**
+ * Which states of a drone's history to read: a page of {@code count} states starting at position {@code from},
+ * or the latest {@code count} states.
+ */
+public record HistoryRange(int from, int count, boolean latest) {
+
+    public static HistoryRange all() {
+        return new HistoryRange(0, Integer.MAX_VALUE, false);
+    }
+
+    public static HistoryRange page(int from, int count) {
+        return new HistoryRange(from, count, false);
+    }
+
+    public static HistoryRange latest(int count) {
+        return new HistoryRange(0, count, true);
+    }
+
+    /**
+     * @return the position of the first state in the range, for a history of {@code total} states
+     */
+    public int start(int total) {
+        return latest ? Math.max(0, total - count) : Math.min(from, total);
+    }
+
+    /**
+     * @return the position just past the last state in the range, for a history of {@code total} states
+     */
+    public int end(int total) {
+        return (int) Math.min(total, (long) start(total) + count);
+    }
+}
@@ -0,0 +1,11 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+
+import java.util.UUID;
+
+/**
+ * One state to be written to a drone's history; {@code first} starts a new history for the drone.
+ */
+public record HistoryRecord(UUID droneId, MoveDroneResponse state, boolean first) {
+}
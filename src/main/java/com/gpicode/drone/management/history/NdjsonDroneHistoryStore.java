@@ -0,0 +1,324 @@
+package com.gpicode.drone.management.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import com.gpicode.drone.management.exception.DroneHistoryReadException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps one newline-delimited JSON file per drone ({@code <id>.ndjson}), one {@link MoveDroneResponse} per line,
+ * so that recording a move appends a single line instead of rewriting the whole history.
+ * <p>
+ * Histories written by earlier versions as a single {@code <id>.json} document are migrated to the new
+ * format the first time they are read or appended to.
+ */
+@Component
+@ConditionalOnProperty(name = "drone.history.store", havingValue = "FILE")
+public class NdjsonDroneHistoryStore implements DroneHistoryStore {
+
+    private static final String HISTORY_EXTENSION = ".ndjson";
+    private static final String LEGACY_EXTENSION = ".json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock repairLock = new ReentrantLock();
+    // Files written since the last sync
+    private final Set<Path> unsyncedFiles = ConcurrentHashMap.newKeySet();
+    private final Path storagePath;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    @Autowired
+    public NdjsonDroneHistoryStore(HistoryProperties historyProperties) {
+        this(historyProperties.getStoragePath());
+    }
+
+    public NdjsonDroneHistoryStore(String storagePath) {
+        this.storagePath = Paths.get(storagePath);
+        try {
+            Files.createDirectories(this.storagePath);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not create drone history directory " + storagePath, exception);
+        }
+    }
+
+    @Override
+    public void create(DroneHistory history) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (MoveDroneResponse state : history.getStates()) {
+            lines.append(objectMapper.writeValueAsString(state)).append('\n');
+        }
+        replaceHistoryFile(history.getDroneId(), lines);
+    }
+
+    @Override
+    public void append(UUID droneId, MoveDroneResponse state) throws DroneHistoryNotFoundException, IOException {
+        if (!exists(droneId)) {
+            throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+        }
+        appendLines(historyFile(droneId), objectMapper.writeValueAsString(state) + '\n');
+    }
+
+    @Override
+    public boolean exists(UUID droneId) throws IOException {
+        return Files.exists(historyFile(droneId)) || migrateLegacyHistory(droneId);
+    }
+
+    @Override
+    public void write(List<HistoryRecord> records) throws IOException {
+        // Coalesce the batch into one write per drone; a new history discards what preceded it in the batch.
+        Map<UUID, StringBuilder> appends = new LinkedHashMap<>();
+        Set<UUID> replaces = new HashSet<>();
+        for (HistoryRecord record : records) {
+            if (record.first()) {
+                appends.put(record.droneId(), new StringBuilder());
+                replaces.add(record.droneId());
+            }
+            appends.computeIfAbsent(record.droneId(), id -> new StringBuilder())
+                    .append(objectMapper.writeValueAsString(record.state())).append('\n');
+        }
+        for (Map.Entry<UUID, StringBuilder> entry : appends.entrySet()) {
+            UUID droneId = entry.getKey();
+            if (replaces.contains(droneId) || !exists(droneId)) {
+                replaceHistoryFile(droneId, entry.getValue());
+            } else {
+                appendLines(historyFile(droneId), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        for (Path file : unsyncedFiles) {
+            unsyncedFiles.remove(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (NoSuchFileException exception) {
+                // Replaced or migrated since it was written; its replacement is tracked on its own.
+            }
+        }
+    }
+
+    @Override
+    public long sizeOnDisk() throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storagePath, "*" + HISTORY_EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    size += Files.size(file);
+                } catch (NoSuchFileException exception) {
+                    // Replaced while the directory was listed
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    private void replaceHistoryFile(UUID droneId, CharSequence lines) throws IOException {
+        Path file = historyFile(droneId);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(temporary, bytes);
+        bytesWritten.add(bytes.length);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        unsyncedFiles.add(file);
+    }
+
+    private void appendLines(Path file, CharSequence lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        if (!endsWithNewline(file)) {
+            dropTornTail(file);
+        }
+        // A single write on an O_APPEND channel lands the whole batch at the end of the file.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                bytesWritten.add(channel.write(buffer));
+            }
+        }
+        unsyncedFiles.add(file);
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Truncates a partial last line left behind by a crash mid-append, so the next record starts on its own line.
+     */
+    private void dropTornTail(Path file) throws IOException {
+        repairLock.lock();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer single = ByteBuffer.allocate(1);
+            long position = channel.size();
+            while (position > 0) {
+                single.clear();
+                channel.read(single, position - 1);
+                if (single.get(0) == '\n') {
+                    break;
+                }
+                position--;
+            }
+            channel.truncate(position);
+        } finally {
+            repairLock.unlock();
+        }
+    }
+
+    @Override
+    public DroneHistory load(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        DroneHistory history = new DroneHistory();
+        history.setDroneId(droneId);
+        read(droneId, 0, Integer.MAX_VALUE, history.getStates()::add);
+        return history;
+    }
+
+    @Override
+    public int count(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        try {
+            if (!exists(droneId)) {
+                throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+            }
+            // Every complete line ends in a newline, so a torn last line is not counted.
+            int count = 0;
+            try (FileChannel channel = FileChannel.open(historyFile(droneId), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    bytesRead.add(buffer.remaining());
+                    while (buffer.hasRemaining()) {
+                        if (buffer.get() == '\n') {
+                            count++;
+                        }
+                    }
+                    buffer.clear();
+                }
+            }
+            return count;
+        } catch (IOException exception) {
+            throw new DroneHistoryReadException("Error reading drone history for ID: " + droneId);
+        }
+    }
+
+    @Override
+    public void read(UUID droneId, int from, int limit, Consumer<MoveDroneResponse> consumer)
+            throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        Path file = historyFile(droneId);
+        try {
+            if (!exists(droneId)) {
+                throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                int position = 0;
+                int delivered = 0;
+                String line = reader.readLine();
+                while (line != null && delivered < limit) {
+                    String next = reader.readLine();
+                    // Characters rather than bytes, which is the same for the ASCII JSON this store writes
+                    bytesRead.add(line.length() + 1);
+                    if (!line.isBlank()) {
+                        if (position++ >= from) {
+                            MoveDroneResponse state;
+                            try {
+                                state = objectMapper.readValue(line, MoveDroneResponse.class);
+                            } catch (IOException exception) {
+                                // Only the last line can be torn by a crash mid-append; anything earlier is corruption.
+                                if (next != null) {
+                                    throw exception;
+                                }
+                                break;
+                            }
+                            consumer.accept(state);
+                            delivered++;
+                        }
+                    }
+                    line = next;
+                }
+            }
+        } catch (IOException exception) {
+            throw new DroneHistoryReadException("Error reading drone history for ID: " + droneId);
+        }
+    }
+
+    /**
+     * Rewrites a legacy {@code <id>.json} history as {@code <id>.ndjson} and removes the legacy file.
+     *
+     * @return {@code false} if the drone has no history in either format
+     */
+    private boolean migrateLegacyHistory(UUID droneId) throws IOException {
+        repairLock.lock();
+        try {
+            if (Files.exists(historyFile(droneId))) {
+                return true;
+            }
+            Path legacyFile = storagePath.resolve(droneId + LEGACY_EXTENSION);
+            if (!Files.exists(legacyFile)) {
+                return false;
+            }
+            DroneHistory legacyHistory = objectMapper.readValue(legacyFile.toFile(), DroneHistory.class);
+            legacyHistory.setDroneId(droneId);
+            create(legacyHistory);
+            Files.delete(legacyFile);
+            return true;
+        } finally {
+            repairLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a drone's history in both formats, once it has been imported elsewhere.
+     */
+    void delete(UUID droneId) throws IOException {
+        Files.deleteIfExists(historyFile(droneId));
+        Files.deleteIfExists(storagePath.resolve(droneId + LEGACY_EXTENSION));
+    }
+
+    private Path historyFile(UUID droneId) {
+        return storagePath.resolve(droneId + HISTORY_EXTENSION);
+    }
+}
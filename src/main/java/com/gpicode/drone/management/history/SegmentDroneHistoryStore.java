@@ -0,0 +1,652 @@
+package com.gpicode.drone.management.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import com.gpicode.drone.management.exception.DroneHistoryReadException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the history of every drone in a shared, log-structured set of segment files instead of one file per drone.
+ * <p>
+ * Records are appended to a single active segment, which is sealed and replaced once it reaches
+ * {@code drone.history.segment-size-bytes}. An in-memory index maps each drone id to the location of its records,
+ * and is rebuilt on startup by scanning the segments. Runs of sealed segments of about the same size, compacted ones
+ * included, are merged in the background into one segment in which each drone's records are stored contiguously,
+ * dropping records that no longer belong to any history. A segment file is named after the range of segment sequence numbers it covers, so a compacted segment
+ * supersedes the segments it was built from even if the process stops before they are deleted.
+ * <p>
+ * Each record is laid out as {@code [payload length][CRC32 of payload][drone id][type][JSON payload]}; the type
+ * marks the first state of a history, which discards any earlier records of that drone when the log is replayed.
+ */
+@Component
+@ConditionalOnProperty(name = "drone.history.store", havingValue = "SEGMENT", matchIfMissing = true)
+public class SegmentDroneHistoryStore implements DroneHistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentDroneHistoryStore.class);
+
+    private static final String SEGMENT_DIRECTORY = "segments";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{12})-(\\d{12})\\.log");
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final int HEADER_BYTES = 4 + 4 + 16 + 1;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    private static final byte TYPE_NEXT = 0;
+    private static final byte TYPE_FIRST = 1;
+    private static final int OFFSET_BITS = 40;
+    // Records decoded per hold of the segments lock when reading a range, so a slow consumer never holds off compaction
+    private static final int READ_CHUNK = 256;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HistoryProperties historyProperties;
+    private final Path segmentDirectory;
+    private final NdjsonDroneHistoryStore legacyStore;
+    private final Map<UUID, RecordList> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSegmentId = new AtomicInteger();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    // Guards the active segment and every change to a record list
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Held shared while reading records, exclusively while compaction swaps segments out
+    private final ReentrantReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final ScheduledExecutorService compactionExecutor;
+    private volatile Segment active;
+
+    public SegmentDroneHistoryStore(HistoryProperties historyProperties) {
+        this.historyProperties = historyProperties;
+        this.legacyStore = new NdjsonDroneHistoryStore(historyProperties.getStoragePath());
+        this.segmentDirectory = Paths.get(historyProperties.getStoragePath(), SEGMENT_DIRECTORY);
+        try {
+            Files.createDirectories(segmentDirectory);
+            recover();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not open drone history segments in " + segmentDirectory, exception);
+        }
+        if (historyProperties.getCompactionIntervalMs() > 0) {
+            compactionExecutor = Executors.newSingleThreadScheduledExecutor(
+                    VirtualThreads.factory("drone-history-compaction", historyProperties.isVirtualThreads()));
+            long interval = historyProperties.getCompactionIntervalMs();
+            compactionExecutor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            compactionExecutor = null;
+        }
+    }
+
+    @Override
+    public void create(DroneHistory history) throws IOException {
+        List<HistoryRecord> records = new ArrayList<>();
+        for (MoveDroneResponse state : history.getStates()) {
+            records.add(new HistoryRecord(history.getDroneId(), state, records.isEmpty()));
+        }
+        write(records);
+    }
+
+    @Override
+    public void append(UUID droneId, MoveDroneResponse state) throws DroneHistoryNotFoundException, IOException {
+        if (!exists(droneId)) {
+            throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+        }
+        write(List.of(new HistoryRecord(droneId, state, false)));
+    }
+
+    @Override
+    public boolean exists(UUID droneId) throws IOException {
+        return index.containsKey(droneId) || importLegacyHistory(droneId);
+    }
+
+    @Override
+    public void write(List<HistoryRecord> records) throws IOException {
+        byte[][] payloads = new byte[records.size()][];
+        int totalBytes = 0;
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = objectMapper.writeValueAsBytes(records.get(i).state());
+            totalBytes += HEADER_BYTES + payloads[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+        int[] offsets = new int[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            HistoryRecord record = records.get(i);
+            offsets[i] = buffer.position();
+            writeRecord(buffer, record.droneId(), record.first() ? TYPE_FIRST : TYPE_NEXT, payloads[i]);
+        }
+        buffer.flip();
+
+        appendLock.lock();
+        try {
+            if (active.size > 0 && active.size + totalBytes > historyProperties.getSegmentSizeBytes()) {
+                rollActiveSegment();
+            }
+            long start = active.size;
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += active.channel.write(buffer, position);
+            }
+            active.size = position;
+            bytesWritten.add(totalBytes);
+
+            for (int i = 0; i < offsets.length; i++) {
+                HistoryRecord record = records.get(i);
+                long location = location(active.id, start + offsets[i]);
+                if (record.first()) {
+                    RecordList list = new RecordList();
+                    list.add(location);
+                    index.put(record.droneId(), list);
+                } else {
+                    index.computeIfAbsent(record.droneId(), id -> new RecordList()).add(location);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        // Sealed segments are forced when they are rolled, so only the active one can hold unsynced records.
+        active.channel.force(false);
+    }
+
+    @Override
+    public long sizeOnDisk() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public DroneHistory load(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        DroneHistory history = new DroneHistory();
+        history.setDroneId(droneId);
+        read(droneId, 0, Integer.MAX_VALUE, history.getStates()::add);
+        return history;
+    }
+
+    @Override
+    public int count(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        return records(droneId).count;
+    }
+
+    @Override
+    public void read(UUID droneId, int from, int limit, Consumer<MoveDroneResponse> consumer)
+            throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        RecordList records = records(droneId);
+        long end = Math.min(records.count, (long) from + limit);
+        List<MoveDroneResponse> chunk = new ArrayList<>(READ_CHUNK);
+        for (int position = from; position < end; position += READ_CHUNK) {
+            int chunkEnd = (int) Math.min(end, position + READ_CHUNK);
+            segmentsLock.readLock().lock();
+            try {
+                // Locations are read under the lock, as compaction may move the records once it is released.
+                for (long location : records.range(position, chunkEnd)) {
+                    chunk.add(objectMapper.readValue(readPayload(location), MoveDroneResponse.class));
+                }
+            } catch (IOException exception) {
+                throw new DroneHistoryReadException("Error reading drone history for ID: " + droneId);
+            } finally {
+                segmentsLock.readLock().unlock();
+            }
+            chunk.forEach(consumer);
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Merges runs of consecutive sealed segments of about the same size into single segments, storing each drone's
+     * records contiguously, until no run is left. Segments fall into size tiers that each span a factor of
+     * {@code drone.history.compaction-min-segments}, and a run is that many segments or more of one tier, so a
+     * compacted segment is merged again once as many segments of its own size have built up behind it. The number of
+     * segments then grows only with the logarithm of the history size, and records that no longer belong to any
+     * history are dropped from older segments too. Runs on the background compaction thread, and may be called directly.
+     */
+    public void compact() throws IOException {
+        compactionLock.lock();
+        try {
+            for (List<Segment> run = nextRun(); !run.isEmpty(); run = nextRun()) {
+                merge(run);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+        compactionLock.lock();
+        appendLock.lock();
+        try {
+            active.channel.force(true);
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private RecordList records(UUID droneId) throws DroneHistoryNotFoundException, DroneHistoryReadException {
+        try {
+            if (!exists(droneId)) {
+                throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+            }
+        } catch (IOException exception) {
+            throw new DroneHistoryReadException("Error reading drone history for ID: " + droneId);
+        }
+        return index.get(droneId);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException exception) {
+            log.error("Drone history compaction failed", exception);
+        }
+    }
+
+    /**
+     * @return the oldest run of consecutive sealed segments in one size tier that is long enough to compact,
+     * or an empty list if there is none
+     */
+    private List<Segment> nextRun() {
+        int fanout = Math.max(2, historyProperties.getCompactionMinSegments());
+        Segment current = active;
+        List<Segment> sealed = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != current) {
+                sealed.add(segment);
+            }
+        }
+        sealed.sort(Comparator.comparingLong(segment -> segment.lastSequence));
+        List<Segment> run = new ArrayList<>();
+        for (Segment segment : sealed) {
+            if (!run.isEmpty() && tier(run.get(0), fanout) != tier(segment, fanout)) {
+                if (run.size() >= fanout) {
+                    break;
+                }
+                run.clear();
+            }
+            run.add(segment);
+        }
+        return run.size() >= fanout ? run : List.of();
+    }
+
+    private int tier(Segment segment, int fanout) {
+        long bound = historyProperties.getSegmentSizeBytes() * fanout;
+        int tier = 0;
+        while (segment.size >= bound && bound <= Long.MAX_VALUE / fanout) {
+            bound *= fanout;
+            tier++;
+        }
+        return tier;
+    }
+
+    private void merge(List<Segment> run) throws IOException {
+        long firstSequence = run.get(0).firstSequence;
+        long lastSequence = run.get(run.size() - 1).lastSequence;
+        long[] runIds = run.stream().mapToLong(segment -> segment.id).toArray();
+
+        Path target = segmentDirectory.resolve(segmentName(firstSequence, lastSequence));
+        Path temporary = target.resolveSibling(target.getFileName() + COMPACTING_SUFFIX);
+        int compactedId = nextSegmentId.getAndIncrement();
+        List<Relocation> relocations = new ArrayList<>();
+        try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Map.Entry<UUID, RecordList> entry : index.entrySet()) {
+                RecordList records = entry.getValue();
+                long[] locations = records.snapshot();
+                int from = 0;
+                while (from < locations.length && !contains(runIds, segmentId(locations[from]))) {
+                    from++;
+                }
+                int to = from;
+                while (to < locations.length && contains(runIds, segmentId(locations[to]))) {
+                    to++;
+                }
+                if (from == to) {
+                    continue;
+                }
+                long[] moved = new long[to - from];
+                for (int i = from; i < to; i++) {
+                    ByteBuffer record = readRecord(locations[i]);
+                    moved[i - from] = location(compactedId, position);
+                    while (record.hasRemaining()) {
+                        position += output.write(record, position);
+                    }
+                }
+                relocations.add(new Relocation(entry.getKey(), records, from, moved));
+            }
+            output.force(true);
+            bytesWritten.add(position);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        Segment compacted = openSegment(compactedId, firstSequence, lastSequence, target);
+
+        appendLock.lock();
+        segmentsLock.writeLock().lock();
+        try {
+            for (Relocation relocation : relocations) {
+                // A history recreated while compacting no longer refers to the copied records.
+                if (index.get(relocation.droneId) == relocation.records) {
+                    relocation.records.replace(relocation.from, relocation.locations);
+                }
+            }
+            segments.put(compacted.id, compacted);
+            for (Segment segment : run) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+        } finally {
+            segmentsLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Copies a history still kept in the per-drone file format into the segments, then removes the file.
+     *
+     * @return {@code false} if the drone has no history in either place
+     */
+    private boolean importLegacyHistory(UUID droneId) throws IOException {
+        DroneHistory legacyHistory;
+        try {
+            legacyHistory = legacyStore.load(droneId);
+        } catch (DroneHistoryNotFoundException exception) {
+            return index.containsKey(droneId);
+        } catch (DroneHistoryReadException exception) {
+            throw new IOException(exception.getMessage(), exception);
+        }
+        appendLock.lock();
+        try {
+            if (!index.containsKey(droneId)) {
+                create(legacyHistory);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        legacyStore.delete(droneId);
+        return true;
+    }
+
+    private void rollActiveSegment() throws IOException {
+        active.channel.force(true);
+        long sequence = active.lastSequence + 1;
+        Path path = segmentDirectory.resolve(segmentName(sequence, sequence));
+        Segment segment = openSegment(nextSegmentId.getAndIncrement(), sequence, sequence, path);
+        segments.put(segment.id, segment);
+        active = segment;
+    }
+
+    /**
+     * Rebuilds the index by replaying every live segment in sequence order, truncating a torn record
+     * at the end of the newest segment.
+     */
+    private void recover() throws IOException {
+        List<Segment> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(segmentDirectory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                Matcher matcher = SEGMENT_NAME.matcher(name);
+                if (name.endsWith(COMPACTING_SUFFIX)) {
+                    Files.delete(path);
+                } else if (matcher.matches()) {
+                    long first = Long.parseLong(matcher.group(1));
+                    long last = Long.parseLong(matcher.group(2));
+                    found.add(new Segment(-1, first, last, path, null));
+                }
+            }
+        }
+
+        List<Segment> live = new ArrayList<>();
+        for (Segment candidate : found) {
+            boolean superseded = found.stream().anyMatch(other -> other != candidate
+                    && other.firstSequence <= candidate.firstSequence && candidate.lastSequence <= other.lastSequence);
+            if (superseded) {
+                Files.delete(candidate.path);
+            } else {
+                live.add(candidate);
+            }
+        }
+        live.sort(Comparator.comparingLong(segment -> segment.lastSequence));
+
+        long lastSequence = 0;
+        for (int i = 0; i < live.size(); i++) {
+            Segment candidate = live.get(i);
+            Segment segment = openSegment(nextSegmentId.getAndIncrement(), candidate.firstSequence, candidate.lastSequence, candidate.path);
+            segments.put(segment.id, segment);
+            replay(segment, i == live.size() - 1);
+            lastSequence = segment.lastSequence;
+        }
+
+        long sequence = lastSequence + 1;
+        active = openSegment(nextSegmentId.getAndIncrement(), sequence, sequence, segmentDirectory.resolve(segmentName(sequence, sequence)));
+        segments.put(active.id, active);
+    }
+
+    private void replay(Segment segment, boolean newest) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+        long size = segment.channel.size();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            UUID droneId = new UUID(header.getLong(), header.getLong());
+            byte type = header.get();
+            if (length < 0 || length > MAX_PAYLOAD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment.channel, payload, position + HEADER_BYTES);
+            if (checksum(payload.array()) != checksum) {
+                break;
+            }
+            long location = location(segment.id, position);
+            if (type == TYPE_FIRST) {
+                RecordList records = new RecordList();
+                records.add(location);
+                index.put(droneId, records);
+            } else {
+                index.computeIfAbsent(droneId, id -> new RecordList()).add(location);
+            }
+            position += HEADER_BYTES + length;
+        }
+        if (position < size) {
+            if (newest) {
+                log.warn("Truncating torn drone history record at {} in {}", position, segment.path);
+                segment.channel.truncate(position);
+            } else {
+                log.warn("Ignoring corrupt drone history records from {} in {}", position, segment.path);
+            }
+        }
+        segment.size = position;
+    }
+
+    private byte[] readPayload(long location) throws IOException {
+        ByteBuffer record = readRecord(location);
+        record.position(HEADER_BYTES);
+        byte[] payload = new byte[record.remaining()];
+        record.get(payload);
+        if (checksum(payload) != record.getInt(4)) {
+            throw new IOException("Checksum mismatch in drone history record");
+        }
+        return payload;
+    }
+
+    /**
+     * @return the whole record, header included, positioned at its start
+     */
+    private ByteBuffer readRecord(long location) throws IOException {
+        Segment segment = segments.get(segmentId(location));
+        long offset = location & ((1L << OFFSET_BITS) - 1);
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(segment.channel, header, offset);
+        int length = header.getInt(0);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        readFully(segment.channel, record, offset);
+        bytesRead.add(header.capacity() + record.capacity());
+        return record.flip();
+    }
+
+    private static void writeRecord(ByteBuffer buffer, UUID droneId, byte type, byte[] payload) {
+        buffer.putInt(payload.length)
+                .putInt(checksum(payload))
+                .putLong(droneId.getMostSignificantBits())
+                .putLong(droneId.getLeastSignificantBits())
+                .put(type)
+                .put(payload);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of drone history segment");
+            }
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static Segment openSegment(int id, long firstSequence, long lastSequence, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, firstSequence, lastSequence, path, channel);
+        segment.size = channel.size();
+        return segment;
+    }
+
+    private static String segmentName(long firstSequence, long lastSequence) {
+        return String.format("segment-%012d-%012d.log", firstSequence, lastSequence);
+    }
+
+    private static long location(int segmentId, long offset) {
+        return ((long) segmentId << OFFSET_BITS) | offset;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    private static boolean contains(long[] ids, int id) {
+        for (long candidate : ids) {
+            if (candidate == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final long firstSequence;
+        private final long lastSequence;
+        private final Path path;
+        private final FileChannel channel;
+        private volatile long size;
+
+        private Segment(int id, long firstSequence, long lastSequence, Path path, FileChannel channel) {
+            this.id = id;
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Locations of one drone's records, packed as {@code segment id << 40 | offset}. Mutated only under the
+     * append lock; the count is published after the array so readers never see a slot that is not filled in.
+     */
+    private static final class RecordList {
+        private volatile long[] locations = new long[4];
+        private volatile int count;
+
+        private void add(long location) {
+            long[] current = locations;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                locations = current;
+            }
+            current[count] = location;
+            count = count + 1;
+        }
+
+        private long[] snapshot() {
+            return range(0, count);
+        }
+
+        private long[] range(int from, int to) {
+            return Arrays.copyOfRange(locations, from, to);
+        }
+
+        private void replace(int from, long[] replacement) {
+            System.arraycopy(replacement, 0, locations, from, replacement.length);
+        }
+    }
+
+    private record Relocation(UUID droneId, RecordList records, int from, long[] locations) {
+    }
+}
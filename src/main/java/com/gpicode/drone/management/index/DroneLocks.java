@@ -0,0 +1,76 @@
+package com.gpicode.drone.management.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped per-drone locks, so that two requests changing the same drone run one after the other while requests for
+ * different drones run in parallel.
+ * <p>
+ * Drone ids are spread by hash over a fixed set of reentrant locks, so unrelated drones occasionally share a stripe
+ * but the memory used does not grow with the fleet. Several drones are always locked in ascending stripe order, which
+ * keeps two batches that share drones from deadlocking. A holder of these locks may go on to take the
+ * {@link OccupancyIndex} shard locks, but never the other way round.
+ */
+@Component
+public class DroneLocks {
+
+    private static final int STRIPES = 1024;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public DroneLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void lock(UUID droneId) {
+        stripes[stripe(droneId)].lock();
+    }
+
+    public void unlock(UUID droneId) {
+        stripes[stripe(droneId)].unlock();
+    }
+
+    /**
+     * Locks the stripes of every given drone, in ascending stripe order.
+     *
+     * @return the locked stripes, for {@link #unlockAll}
+     */
+    public int[] lockAll(Collection<UUID> droneIds) {
+        boolean[] involved = new boolean[STRIPES];
+        int count = 0;
+        for (UUID droneId : droneIds) {
+            int stripe = stripe(droneId);
+            if (!involved[stripe]) {
+                involved[stripe] = true;
+                count++;
+            }
+        }
+        int[] locked = new int[count];
+        count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (involved[stripe]) {
+                stripes[stripe].lock();
+                locked[count++] = stripe;
+            }
+        }
+        return locked;
+    }
+
+    public void unlockAll(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            stripes[locked[i]].unlock();
+        }
+    }
+
+    private static int stripe(UUID droneId) {
+        long h = droneId.getMostSignificantBits() ^ droneId.getLeastSignificantBits();
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 54) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,20 @@
+package com.gpicode.drone.management.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A drone and the cell it occupies, as returned by the spatial queries of {@link OccupancyIndex}.
+ */
+@Getter
+@AllArgsConstructor
+public class DronePosition {
+
+    private final UUID droneId;
+
+    private final int x;
+
+    private final int y;
+}
@@ -0,0 +1,248 @@
+package com.gpicode.drone.management.index;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The no-fly zones of the field, checked for every registration, every target and every cell of a route.
+ * <p>
+ * Zones are bucketed into square tiles of {@value #TILE_SIZE} by {@value #TILE_SIZE} cells, each listing the zones
+ * whose bounding box overlaps it, so a check looks only at the few zones near the cells in question however many there
+ * are. A zone spanning more than {@value #MAX_ZONE_TILES} tiles is kept out of the tiles and checked by every query
+ * instead, which bounds the memory of the buckets by the number of zones rather than by their area.
+ * <p>
+ * Zones and their buckets form an immutable snapshot. Publishing zones builds a new snapshot next to the current one
+ * and swaps it in with a single atomic write, so checks never wait for an update and a check or a route search sees
+ * either all of an update or none of it. Updates themselves are serialized.
+ */
+@Component
+public class GeofenceIndex {
+
+    private static final int TILE_BITS = 6;
+    static final int TILE_SIZE = 1 << TILE_BITS;
+    static final int MAX_ZONE_TILES = 1024;
+
+    private final Clock clock;
+    private final Object updateLock = new Object();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(new NoFlyZone[0]));
+
+    public GeofenceIndex() {
+        this(Clock.systemUTC());
+    }
+
+    public GeofenceIndex(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return every zone, in the order they were published
+     */
+    public List<NoFlyZone> zones() {
+        return List.of(snapshot.get().zones);
+    }
+
+    /**
+     * Adds zones in a single update.
+     */
+    public void addAll(List<NoFlyZone> zones) {
+        synchronized (updateLock) {
+            Map<UUID, NoFlyZone> updated = byId(snapshot.get().zones);
+            for (NoFlyZone zone : zones) {
+                updated.put(zone.getId(), zone);
+            }
+            snapshot.set(new Snapshot(updated.values().toArray(new NoFlyZone[0])));
+        }
+    }
+
+    /**
+     * Replaces every zone in a single update.
+     */
+    public void replaceAll(List<NoFlyZone> zones) {
+        synchronized (updateLock) {
+            snapshot.set(new Snapshot(byId(zones.toArray(new NoFlyZone[0])).values().toArray(new NoFlyZone[0])));
+        }
+    }
+
+    /**
+     * @return whether the zone existed
+     */
+    public boolean remove(UUID id) {
+        synchronized (updateLock) {
+            Map<UUID, NoFlyZone> updated = byId(snapshot.get().zones);
+            if (updated.remove(id) == null) {
+                return false;
+            }
+            snapshot.set(new Snapshot(updated.values().toArray(new NoFlyZone[0])));
+            return true;
+        }
+    }
+
+    /**
+     * @return whether a zone in force covers the cell
+     */
+    public boolean isRestricted(int x, int y) {
+        Snapshot current = snapshot.get();
+        if (current.zones.length == 0) {
+            return false;
+        }
+        Instant now = clock.instant();
+        int[] tile = current.tiles.get(OccupancyIndex.pack(x >> TILE_BITS, y >> TILE_BITS));
+        if (tile != null) {
+            for (int zone : tile) {
+                if (current.zones[zone].contains(x, y) && current.zones[zone].isActive(now)) {
+                    return true;
+                }
+            }
+        }
+        for (int zone : current.large) {
+            if (current.zones[zone].contains(x, y) && current.zones[zone].isActive(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether no cell of the rectangle, bounds included, is covered by a zone in force
+     */
+    public boolean isAreaFree(int minX, int minY, int maxX, int maxY) {
+        Snapshot current = snapshot.get();
+        return current.zones.length == 0 || !current.scan(minX, minY, maxX, maxY, clock.instant(), 0, 0, 0, null);
+    }
+
+    /**
+     * Sets the bit of every cell covered by a zone in force in a {@code width} by {@code height} window, in the
+     * row-major bitset of {@link OccupancyIndex#markOccupied}.
+     */
+    public void markRestricted(int minX, int minY, int width, int height, long[] bits) {
+        Snapshot current = snapshot.get();
+        if (current.zones.length > 0) {
+            current.scan(minX, minY, minX + width - 1, minY + height - 1, clock.instant(), minX, minY, width, bits);
+        }
+    }
+
+    private static Map<UUID, NoFlyZone> byId(NoFlyZone[] zones) {
+        Map<UUID, NoFlyZone> byId = new LinkedHashMap<>();
+        for (NoFlyZone zone : zones) {
+            byId.put(zone.getId(), zone);
+        }
+        return byId;
+    }
+
+    private static final class Snapshot {
+        private final NoFlyZone[] zones;
+        // Packed tile -> zones whose bounding box overlaps it
+        private final Map<Long, int[]> tiles = new HashMap<>();
+        // Zones too large for the tiles
+        private final int[] large;
+
+        private Snapshot(NoFlyZone[] zones) {
+            this.zones = zones;
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            List<Integer> large = new ArrayList<>();
+            for (int i = 0; i < zones.length; i++) {
+                NoFlyZone zone = zones[i];
+                long minTileX = zone.getMinX() >> TILE_BITS;
+                long minTileY = zone.getMinY() >> TILE_BITS;
+                long maxTileX = zone.getMaxX() >> TILE_BITS;
+                long maxTileY = zone.getMaxY() >> TILE_BITS;
+                if ((maxTileX - minTileX + 1) * (maxTileY - minTileY + 1) > MAX_ZONE_TILES) {
+                    large.add(i);
+                    continue;
+                }
+                for (long tileY = minTileY; tileY <= maxTileY; tileY++) {
+                    for (long tileX = minTileX; tileX <= maxTileX; tileX++) {
+                        buckets.computeIfAbsent(OccupancyIndex.pack((int) tileX, (int) tileY), tile -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+            for (Map.Entry<Long, List<Integer>> bucket : buckets.entrySet()) {
+                tiles.put(bucket.getKey(), bucket.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            this.large = large.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Looks for the zones in force covering cells of the rectangle. Without a bitset it stops at the first one;
+         * with one it marks their cells in the window. Each zone is visited once per tile it shares with the
+         * rectangle and handles only the part of the rectangle in that tile, so no cell is looked at twice.
+         *
+         * @return whether any such cell was found
+         */
+        private boolean scan(int minX, int minY, int maxX, int maxY, Instant now, int windowX, int windowY, int width, long[] bits) {
+            boolean found = false;
+            long minTileX = minX >> TILE_BITS;
+            long minTileY = minY >> TILE_BITS;
+            long maxTileX = maxX >> TILE_BITS;
+            long maxTileY = maxY >> TILE_BITS;
+            if ((maxTileX - minTileX + 1) * (maxTileY - minTileY + 1) > tiles.size()) {
+                // More tiles in the rectangle than there are buckets: walk the buckets instead
+                for (Map.Entry<Long, int[]> tile : tiles.entrySet()) {
+                    int tileX = OccupancyIndex.unpackX(tile.getKey());
+                    int tileY = OccupancyIndex.unpackY(tile.getKey());
+                    if (tileX >= minTileX && tileX <= maxTileX && tileY >= minTileY && tileY <= maxTileY) {
+                        found |= scanTile(tile.getValue(), tileX, tileY, minX, minY, maxX, maxY, now, windowX, windowY, width, bits);
+                        if (found && bits == null) {
+                            return true;
+                        }
+                    }
+                }
+            } else {
+                for (long tileY = minTileY; tileY <= maxTileY; tileY++) {
+                    for (long tileX = minTileX; tileX <= maxTileX; tileX++) {
+                        int[] tile = tiles.get(OccupancyIndex.pack((int) tileX, (int) tileY));
+                        if (tile != null) {
+                            found |= scanTile(tile, (int) tileX, (int) tileY, minX, minY, maxX, maxY, now, windowX, windowY, width, bits);
+                            if (found && bits == null) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            for (int zone : large) {
+                found |= visit(zones[zone], minX, minY, maxX, maxY, now, windowX, windowY, width, bits);
+                if (found && bits == null) {
+                    return true;
+                }
+            }
+            return found;
+        }
+
+        private boolean scanTile(int[] tile, int tileX, int tileY, int minX, int minY, int maxX, int maxY, Instant now,
+                                 int windowX, int windowY, int width, long[] bits) {
+            int fromX = Math.max(minX, tileX << TILE_BITS);
+            int fromY = Math.max(minY, tileY << TILE_BITS);
+            int toX = Math.min(maxX, (tileX << TILE_BITS) + TILE_SIZE - 1);
+            int toY = Math.min(maxY, (tileY << TILE_BITS) + TILE_SIZE - 1);
+            boolean found = false;
+            for (int zone : tile) {
+                found |= visit(zones[zone], fromX, fromY, toX, toY, now, windowX, windowY, width, bits);
+                if (found && bits == null) {
+                    return true;
+                }
+            }
+            return found;
+        }
+
+        private static boolean visit(NoFlyZone zone, int fromX, int fromY, int toX, int toY, Instant now,
+                                     int windowX, int windowY, int width, long[] bits) {
+            if (!zone.intersects(fromX, fromY, toX, toY) || !zone.isActive(now)) {
+                return false;
+            }
+            if (bits != null) {
+                zone.mark(fromX, fromY, toX, toY, windowX, windowY, width, bits);
+            }
+            return true;
+        }
+    }
+}
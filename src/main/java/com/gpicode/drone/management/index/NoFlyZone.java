@@ -0,0 +1,269 @@
+package com.gpicode.drone.management.index;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * An area of the field drones may not enter, either a rectangle of cells or a polygon whose corners are cells, and
+ * either always in force or only from {@code activeFrom} (inclusive) until {@code activeUntil} (exclusive).
+ * <p>
+ * A cell lies in a polygon when the point it stands for is inside the polygon or on its outline. Polygons are
+ * rasterized once, when the zone is created, into the runs of cells each of their rows covers, so that checking a cell
+ * or marking a window costs a look-up per row and never walks the outline again.
+ */
+@Getter
+public final class NoFlyZone {
+
+    // Corners a single polygon may have
+    public static final int MAX_CORNERS = 1000;
+
+    private final UUID id;
+    private final String name;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    // Corners as (x, y) pairs, or null for a rectangle
+    private final int[][] polygon;
+    private final Instant activeFrom;
+    private final Instant activeUntil;
+    // Runs of row minY + i are spans[rowStarts[i]] .. spans[rowStarts[i + 1]] - 1, as inclusive (from, to) pairs
+    @Getter(AccessLevel.NONE)
+    private final int[] rowStarts;
+    @Getter(AccessLevel.NONE)
+    private final int[] spans;
+
+    private NoFlyZone(UUID id, String name, int minX, int minY, int maxX, int maxY, int[][] polygon,
+                      Instant activeFrom, Instant activeUntil, int[] rowStarts, int[] spans) {
+        if (activeFrom != null && activeUntil != null && !activeFrom.isBefore(activeUntil)) {
+            throw new IllegalArgumentException("activeFrom must be before activeUntil");
+        }
+        this.id = id;
+        this.name = name;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.polygon = polygon;
+        this.activeFrom = activeFrom;
+        this.activeUntil = activeUntil;
+        this.rowStarts = rowStarts;
+        this.spans = spans;
+    }
+
+    public static NoFlyZone rectangle(UUID id, String name, int minX, int minY, int maxX, int maxY, Instant activeFrom, Instant activeUntil) {
+        if (minX > maxX || minY > maxY) {
+            throw new IllegalArgumentException("minX and minY must not be greater than maxX and maxY");
+        }
+        return new NoFlyZone(id, name, minX, minY, maxX, maxY, null, activeFrom, activeUntil, null, null);
+    }
+
+    public static NoFlyZone polygon(UUID id, String name, int[][] corners, Instant activeFrom, Instant activeUntil) {
+        if (corners.length < 3 || corners.length > MAX_CORNERS) {
+            throw new IllegalArgumentException("A polygon needs between 3 and " + MAX_CORNERS + " corners");
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int[][] copy = new int[corners.length][];
+        for (int i = 0; i < corners.length; i++) {
+            if (corners[i] == null || corners[i].length != 2) {
+                throw new IllegalArgumentException("Every corner of a polygon must be an [x, y] pair");
+            }
+            copy[i] = corners[i].clone();
+            minX = Math.min(minX, copy[i][0]);
+            minY = Math.min(minY, copy[i][1]);
+            maxX = Math.max(maxX, copy[i][0]);
+            maxY = Math.max(maxY, copy[i][1]);
+        }
+        int rows = maxY - minY + 1;
+        int[] rowStarts = new int[rows + 1];
+        int[] spans = new int[Math.max(16, rows * 2)];
+        int size = 0;
+        // Scratch space for one row: crossings of the outline, and runs before merging
+        double[] crossings = new double[copy.length];
+        int[] runs = new int[4 * copy.length];
+        for (int row = 0; row < rows; row++) {
+            rowStarts[row] = size;
+            int count = rasterizeRow(copy, minY + row, crossings, runs);
+            if (size + count > spans.length) {
+                spans = Arrays.copyOf(spans, Math.max(spans.length * 2, size + count));
+            }
+            System.arraycopy(runs, 0, spans, size, count);
+            size += count;
+        }
+        rowStarts[rows] = size;
+        return new NoFlyZone(id, name, minX, minY, maxX, maxY, copy, activeFrom, activeUntil, rowStarts, Arrays.copyOf(spans, size));
+    }
+
+    /**
+     * @return whether the zone is in force at the instant
+     */
+    public boolean isActive(Instant now) {
+        return (activeFrom == null || !now.isBefore(activeFrom)) && (activeUntil == null || now.isBefore(activeUntil));
+    }
+
+    public boolean contains(int x, int y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        if (spans == null) {
+            return true;
+        }
+        for (int i = rowStarts[y - minY], end = rowStarts[y - minY + 1]; i < end; i += 2) {
+            if (x >= spans[i] && x <= spans[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether any cell of the rectangle, bounds included, lies in the zone
+     */
+    boolean intersects(int fromX, int fromY, int toX, int toY) {
+        int lowY = Math.max(fromY, minY);
+        int highY = Math.min(toY, maxY);
+        if (Math.max(fromX, minX) > Math.min(toX, maxX) || lowY > highY) {
+            return false;
+        }
+        if (spans == null) {
+            return true;
+        }
+        for (int y = lowY; y <= highY; y++) {
+            for (int i = rowStarts[y - minY], end = rowStarts[y - minY + 1]; i < end; i += 2) {
+                if (spans[i] <= toX && spans[i + 1] >= fromX) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the bit of every cell of the zone within the rectangle {@code fromX..toX, fromY..toY} in the row-major
+     * bitset of a {@code width} cells wide window starting at {@code (windowX, windowY)}. The rectangle must lie in the
+     * window.
+     */
+    void mark(int fromX, int fromY, int toX, int toY, int windowX, int windowY, int width, long[] bits) {
+        int lowX = Math.max(fromX, minX);
+        int highX = Math.min(toX, maxX);
+        int lowY = Math.max(fromY, minY);
+        int highY = Math.min(toY, maxY);
+        for (int y = lowY; y <= highY; y++) {
+            int row = (y - windowY) * width - windowX;
+            if (spans == null) {
+                if (lowX <= highX) {
+                    setRange(bits, row + lowX, row + highX);
+                }
+                continue;
+            }
+            for (int i = rowStarts[y - minY], end = rowStarts[y - minY + 1]; i < end; i += 2) {
+                int from = Math.max(spans[i], lowX);
+                int to = Math.min(spans[i + 1], highX);
+                if (from <= to) {
+                    setRange(bits, row + from, row + to);
+                }
+            }
+        }
+    }
+
+    private static void setRange(long[] bits, int from, int to) {
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+        bits[first] |= firstMask;
+        for (int word = first + 1; word < last; word++) {
+            bits[word] = -1L;
+        }
+        bits[last] |= lastMask;
+    }
+
+    /**
+     * Writes the sorted, disjoint runs of cells row {@code y} of the polygon covers into {@code runs}.
+     *
+     * @return the number of ints written, two per run
+     */
+    private static int rasterizeRow(int[][] corners, int y, double[] crossings, int[] runs) {
+        int count = 0;
+        int crossed = 0;
+        for (int i = 0; i < corners.length; i++) {
+            long x1 = corners[i][0];
+            long y1 = corners[i][1];
+            long x2 = corners[(i + 1) % corners.length][0];
+            long y2 = corners[(i + 1) % corners.length][1];
+            if (y < Math.min(y1, y2) || y > Math.max(y1, y2)) {
+                continue;
+            }
+            if (y1 == y2) {
+                // A horizontal edge on this row is outline throughout
+                count = addRun(runs, count, (int) Math.min(x1, x2), (int) Math.max(x1, x2));
+                continue;
+            }
+            // Where the edge crosses the row, exactly: x = num / den with den > 0
+            long num = x1 * (y2 - y1) + (y - y1) * (x2 - x1);
+            long den = y2 - y1;
+            if (den < 0) {
+                num = -num;
+                den = -den;
+            }
+            if (num % den == 0) {
+                // The edge passes through a cell, which is outline
+                count = addRun(runs, count, (int) (num / den), (int) (num / den));
+            }
+            // Half-open in y, so a corner shared by two edges is crossed once or not at all
+            if (y != Math.max(y1, y2)) {
+                crossings[crossed++] = (double) num / den;
+            }
+        }
+        Arrays.sort(crossings, 0, crossed);
+        for (int i = 0; i + 1 < crossed; i += 2) {
+            int from = (int) Math.ceil(crossings[i]);
+            int to = (int) Math.floor(crossings[i + 1]);
+            if (from <= to) {
+                count = addRun(runs, count, from, to);
+            }
+        }
+        return merge(runs, count);
+    }
+
+    private static int addRun(int[] runs, int count, int from, int to) {
+        runs[count] = from;
+        runs[count + 1] = to;
+        return count + 2;
+    }
+
+    /**
+     * Sorts runs by their start and joins overlapping or adjacent ones.
+     */
+    private static int merge(int[] runs, int count) {
+        int pairs = count / 2;
+        long[] sorted = new long[pairs];
+        for (int i = 0; i < pairs; i++) {
+            sorted[i] = (long) runs[2 * i] << 32 | (runs[2 * i + 1] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(sorted);
+        int size = 0;
+        for (long run : sorted) {
+            int from = (int) (run >> 32);
+            int to = (int) run;
+            if (size > 0 && from <= runs[size - 1] + 1) {
+                runs[size - 1] = Math.max(runs[size - 1], to);
+            } else {
+                runs[size++] = from;
+                runs[size++] = to;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,587 @@
+package com.gpicode.drone.management.index;
+
+import com.gpicode.drone.management.entity.Drone;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory map of occupied field cells to the drone holding them, so that register and move can answer
+ * "is this cell taken, and by whom?" without a database round trip.
+ * <p>
+ * Cells are packed into a single {@code long} ({@code x} in the high 32 bits, {@code y} in the low 32 bits)
+ * and stored in open-addressing hash tables of primitive longs, with the owning drone id kept in two parallel
+ * {@code long} arrays. The tables are sized by the number of drones, never by the field area, so a very large
+ * sparse field costs no more than a small one holding the same drones.
+ * <p>
+ * Cells are spread by hash over {@value #SHARDS} shards, each with its own table and lock, so moves between unrelated
+ * cells proceed in parallel. An operation touching several cells locks every shard involved, always in ascending
+ * shard order so that two operations can never wait on each other, and is observed either entirely before or entirely
+ * after it ran.
+ * <p>
+ * Every change is mirrored, under the same shard locks, into a {@link SpatialGrid} that answers rectangle, radius and
+ * nearest-drone queries without visiting the whole fleet.
+ */
+@Component
+public class OccupancyIndex {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final int SHARD_BITS = 6;
+    private static final int SHARDS = 1 << SHARD_BITS;
+
+    private final Shard[] shards = new Shard[SHARDS];
+    private volatile SpatialGrid grid = new SpatialGrid();
+
+    public OccupancyIndex() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    public static int unpackY(long cell) {
+        return (int) cell;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        long cell = pack(x, y);
+        Shard shard = shardOf(cell);
+        shard.lock.readLock().lock();
+        try {
+            return shard.table.indexOf(cell) >= 0;
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the id of the drone occupying the cell, or {@code null} if it is free or its owner is not yet known
+     */
+    public UUID droneAt(int x, int y) {
+        long cell = pack(x, y);
+        Shard shard = shardOf(cell);
+        shard.lock.readLock().lock();
+        try {
+            int slot = shard.table.indexOf(cell);
+            return slot < 0 ? null : shard.table.ownerAt(slot);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Claims the cell for a drone that is about to be registered and has no id yet.
+     *
+     * @return {@code false} if the cell is already occupied
+     * @see #assign(int, int, UUID)
+     */
+    public boolean tryOccupy(int x, int y) {
+        return tryOccupy(x, y, null);
+    }
+
+    /**
+     * Claims the cell for the given drone.
+     *
+     * @return {@code false} if the cell is already occupied
+     */
+    public boolean tryOccupy(int x, int y, UUID droneId) {
+        long cell = pack(x, y);
+        Shard shard = shardOf(cell);
+        shard.lock.writeLock().lock();
+        try {
+            return insert(cell, droneId);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Claims every given cell for drones that are about to be registered, or none of them.
+     *
+     * @return {@code -1} once every cell is claimed, or the position of the first cell that is already occupied
+     */
+    public int tryOccupyAll(long[] cells) {
+        int[] locked = lockShards(cells);
+        try {
+            for (int i = 0; i < cells.length; i++) {
+                if (shardOf(cells[i]).table.indexOf(cells[i]) >= 0) {
+                    return i;
+                }
+            }
+            for (long cell : cells) {
+                insert(cell, null);
+            }
+            return -1;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Records the owner of a cell claimed through {@link #tryOccupy(int, int)} once its id has been generated.
+     */
+    public void assign(int x, int y, UUID droneId) {
+        long cell = pack(x, y);
+        Shard shard = shardOf(cell);
+        shard.lock.writeLock().lock();
+        try {
+            int slot = shard.table.indexOf(cell);
+            if (slot >= 0) {
+                shard.table.setOwner(slot, droneId);
+                grid.assign(cell, droneId);
+            }
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atomically vacates {@code (fromX, fromY)} and occupies {@code (toX, toY)}.
+     *
+     * @return {@code false}, leaving the index untouched, if the target cell is already occupied
+     */
+    public boolean tryMove(int fromX, int fromY, int toX, int toY) {
+        long from = pack(fromX, fromY);
+        long to = pack(toX, toY);
+        int[] locked = lockShards(from, to);
+        try {
+            if (shardOf(to).table.indexOf(to) >= 0) {
+                return false;
+            }
+            insert(to, remove(from));
+            return true;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Reverses a successful {@link #tryMove} of the given drone whose move could not be persisted. The target is only
+     * released if the drone still holds it, so a cell another drone has taken since is left alone.
+     *
+     * @return {@code false} if another drone has claimed the origin since, in which case the drone is not put back and
+     * the index no longer matches the store until it is rebuilt
+     */
+    public boolean undoMove(UUID droneId, int fromX, int fromY, int toX, int toY) {
+        long from = pack(fromX, fromY);
+        long to = pack(toX, toY);
+        int[] locked = lockShards(from, to);
+        try {
+            Table target = shardOf(to).table;
+            int slot = target.indexOf(to);
+            if (slot >= 0 && Objects.equals(droneId, target.ownerAt(slot))) {
+                remove(to);
+            }
+            Table origin = shardOf(from).table;
+            slot = origin.indexOf(from);
+            if (slot < 0) {
+                insert(from, droneId);
+                return true;
+            }
+            return Objects.equals(droneId, origin.ownerAt(slot));
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Atomically applies a set of moves, each taking drone {@code droneIds[i]} from cell {@code from[i]} to cell
+     * {@code to[i]}. A move may target a cell vacated by another move of the set, so chains and swaps are allowed;
+     * the targets must be distinct.
+     *
+     * @return {@code -1} once every move is applied, or the position of the first move whose drone is no longer at
+     * its origin or whose target is held outside the set, leaving the index untouched
+     */
+    public int tryMoveAll(UUID[] droneIds, long[] from, long[] to) {
+        long[] vacated = from.clone();
+        Arrays.sort(vacated);
+        int[] locked = lockShards(from, to);
+        try {
+            for (int i = 0; i < from.length; i++) {
+                Table origin = shardOf(from[i]).table;
+                int slot = origin.indexOf(from[i]);
+                if (slot < 0 || !droneIds[i].equals(origin.ownerAt(slot))) {
+                    return i;
+                }
+                if (shardOf(to[i]).table.indexOf(to[i]) >= 0 && Arrays.binarySearch(vacated, to[i]) < 0) {
+                    return i;
+                }
+            }
+            relocate(from, to);
+            return -1;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Reverses a successful {@link #tryMoveAll} whose moves could not be persisted, with the same ownership checks as
+     * {@link #undoMove}.
+     *
+     * @return {@code false} if another drone has claimed one of the origins since
+     */
+    public boolean undoMoveAll(UUID[] droneIds, long[] from, long[] to) {
+        int[] locked = lockShards(from, to);
+        try {
+            // Vacate every target before restoring any origin, so a cell the set handed from one drone to another is free.
+            for (int i = 0; i < to.length; i++) {
+                Table target = shardOf(to[i]).table;
+                int slot = target.indexOf(to[i]);
+                if (slot >= 0 && Objects.equals(droneIds[i], target.ownerAt(slot))) {
+                    remove(to[i]);
+                }
+            }
+            boolean restored = true;
+            for (int i = 0; i < from.length; i++) {
+                Table origin = shardOf(from[i]).table;
+                int slot = origin.indexOf(from[i]);
+                if (slot < 0) {
+                    insert(from[i], droneIds[i]);
+                } else if (!Objects.equals(droneIds[i], origin.ownerAt(slot))) {
+                    restored = false;
+                }
+            }
+            return restored;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    public void release(int x, int y) {
+        long cell = pack(x, y);
+        Shard shard = shardOf(cell);
+        shard.lock.writeLock().lock();
+        try {
+            remove(cell);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    public void releaseAll(long[] cells) {
+        int[] locked = lockShards(cells);
+        try {
+            for (long cell : cells) {
+                remove(cell);
+            }
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Replaces the whole index with the positions of the given drones.
+     */
+    public void rebuild(Iterable<Drone> drones) {
+        Table[] rebuilt = new Table[SHARDS];
+        Arrays.setAll(rebuilt, shard -> new Table(MIN_CAPACITY));
+        SpatialGrid rebuiltGrid = new SpatialGrid();
+        for (Drone drone : drones) {
+            long cell = pack(drone.getCoordinateX(), drone.getCoordinateY());
+            int shard = shardIndex(cell);
+            if (rebuilt[shard].indexOf(cell) < 0) {
+                rebuilt[shard] = rebuilt[shard].put(cell, drone.getDroneId());
+                rebuiltGrid.add(cell, drone.getDroneId());
+            }
+        }
+        int[] locked = lockAllShards();
+        try {
+            for (int i = 0; i < SHARDS; i++) {
+                shards[i].table = rebuilt[i];
+            }
+            grid = rebuiltGrid;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    public int size() {
+        int[] locked = lockAllShards();
+        try {
+            int size = 0;
+            for (Shard shard : shards) {
+                size += shard.table.size;
+            }
+            return size;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * @return the packed cells currently held by the index, in ascending order
+     */
+    public long[] snapshot() {
+        int[] locked = lockAllShards();
+        try {
+            int size = 0;
+            for (Shard shard : shards) {
+                size += shard.table.size;
+            }
+            long[] cells = new long[size];
+            int count = 0;
+            for (Shard shard : shards) {
+                for (long cell : shard.table.keys) {
+                    if (cell != EMPTY) {
+                        cells[count++] = cell;
+                    }
+                }
+            }
+            Arrays.sort(cells);
+            return cells;
+        } finally {
+            unlockShards(locked);
+        }
+    }
+
+    /**
+     * Drones whose cells lie in the rectangle, bounds included, at most {@code limit} of them.
+     */
+    public List<DronePosition> dronesInArea(int minX, int minY, int maxX, int maxY, int limit) {
+        return grid.area(minX, minY, maxX, maxY, limit);
+    }
+
+    /**
+     * Drones at most {@code radius} cells from {@code (x, y)} in a straight line, nearest first, at most {@code limit}
+     * of them.
+     */
+    public List<DronePosition> dronesWithin(int x, int y, int radius, int limit) {
+        return grid.within(x, y, radius, limit);
+    }
+
+    /**
+     * The {@code k} drones nearest to {@code (x, y)} in a straight line, nearest first.
+     */
+    public List<DronePosition> nearestDrones(int x, int y, int k) {
+        return grid.nearest(x, y, k);
+    }
+
+    /**
+     * @return whether no cell of the rectangle, bounds included, is occupied or claimed
+     */
+    public boolean isAreaFree(int minX, int minY, int maxX, int maxY) {
+        return grid.isEmpty(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Sets the bit of every occupied or claimed cell of a {@code width} by {@code height} window in a row-major bitset,
+     * bit {@code (y - minY) * width + (x - minX)} standing for cell {@code (x, y)}.
+     */
+    public void markOccupied(int minX, int minY, int width, int height, long[] bits) {
+        grid.markOccupied(minX, minY, width, height, bits);
+    }
+
+    private boolean insert(long cell, UUID droneId) {
+        Shard shard = shardOf(cell);
+        if (shard.table.indexOf(cell) >= 0) {
+            return false;
+        }
+        shard.table = shard.table.put(cell, droneId);
+        grid.add(cell, droneId);
+        return true;
+    }
+
+    private UUID remove(long cell) {
+        Table table = shardOf(cell).table;
+        int slot = table.indexOf(cell);
+        if (slot < 0) {
+            return null;
+        }
+        UUID owner = table.ownerAt(slot);
+        table.removeAt(slot);
+        grid.remove(cell);
+        return owner;
+    }
+
+    private void relocate(long[] from, long[] to) {
+        // Vacate every origin before occupying any target, so a cell handed from one drone to another is free.
+        UUID[] owners = new UUID[from.length];
+        for (int i = 0; i < from.length; i++) {
+            owners[i] = remove(from[i]);
+        }
+        for (int i = 0; i < to.length; i++) {
+            insert(to[i], owners[i]);
+        }
+    }
+
+    private Shard shardOf(long cell) {
+        return shards[shardIndex(cell)];
+    }
+
+    private static int shardIndex(long cell) {
+        // The top bits of the product, where the table slot uses the folded low bits
+        return (int) ((cell * 0x9E3779B97F4A7C15L) >>> (64 - SHARD_BITS));
+    }
+
+    /**
+     * Write-locks the shards holding the given cells, in ascending shard order.
+     *
+     * @return the locked shards, for {@link #unlockShards}
+     */
+    private int[] lockShards(long[]... cellArrays) {
+        boolean[] involved = new boolean[SHARDS];
+        int count = 0;
+        for (long[] cells : cellArrays) {
+            for (long cell : cells) {
+                int shard = shardIndex(cell);
+                if (!involved[shard]) {
+                    involved[shard] = true;
+                    count++;
+                }
+            }
+        }
+        int[] locked = new int[count];
+        count = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            if (involved[shard]) {
+                shards[shard].lock.writeLock().lock();
+                locked[count++] = shard;
+            }
+        }
+        return locked;
+    }
+
+    private int[] lockShards(long first, long second) {
+        int a = shardIndex(first);
+        int b = shardIndex(second);
+        int[] locked = a == b ? new int[]{a} : new int[]{Math.min(a, b), Math.max(a, b)};
+        for (int shard : locked) {
+            shards[shard].lock.writeLock().lock();
+        }
+        return locked;
+    }
+
+    private int[] lockAllShards() {
+        int[] locked = new int[SHARDS];
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shards[shard].lock.writeLock().lock();
+            locked[shard] = shard;
+        }
+        return locked;
+    }
+
+    private void unlockShards(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            shards[locked[i]].lock.writeLock().unlock();
+        }
+    }
+
+    private static int hash(long cell, int mask) {
+        long h = cell * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static final class Shard {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private Table table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * Linear-probing table of packed cells with the owning drone id split across two parallel arrays.
+     * An all-zero owner stands for "claimed, owner not yet known".
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final long[] ownerHigh;
+        private final long[] ownerLow;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            ownerHigh = new long[capacity];
+            ownerLow = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * @return the slot holding {@code cell}, or {@code -(insertionSlot + 1)} if it is absent
+         */
+        private int indexOf(long cell) {
+            int mask = keys.length - 1;
+            int slot = hash(cell, mask);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == cell) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -slot - 1;
+        }
+
+        /**
+         * Stores an absent cell, growing into a new table first when the load factor would pass one half.
+         *
+         * @return the table now holding the cell
+         */
+        private Table put(long cell, UUID droneId) {
+            Table target = this;
+            if (size + 1 > keys.length / 2) {
+                target = new Table(keys.length * 2);
+                for (int slot = 0; slot < keys.length; slot++) {
+                    if (keys[slot] != EMPTY) {
+                        target.store(-target.indexOf(keys[slot]) - 1, keys[slot], ownerHigh[slot], ownerLow[slot]);
+                    }
+                }
+            }
+            int slot = target.indexOf(cell);
+            if (slot < 0) {
+                slot = -slot - 1;
+                target.store(slot, cell, 0L, 0L);
+                target.setOwner(slot, droneId);
+            }
+            return target;
+        }
+
+        private void store(int slot, long cell, long high, long low) {
+            keys[slot] = cell;
+            ownerHigh[slot] = high;
+            ownerLow[slot] = low;
+            size++;
+        }
+
+        private UUID ownerAt(int slot) {
+            if (ownerHigh[slot] == 0L && ownerLow[slot] == 0L) {
+                return null;
+            }
+            return new UUID(ownerHigh[slot], ownerLow[slot]);
+        }
+
+        private void setOwner(int slot, UUID droneId) {
+            ownerHigh[slot] = droneId == null ? 0L : droneId.getMostSignificantBits();
+            ownerLow[slot] = droneId == null ? 0L : droneId.getLeastSignificantBits();
+        }
+
+        private void removeAt(int slot) {
+            // Backward-shift deletion keeps linear probe chains intact without tombstones.
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = hash(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    ownerHigh[hole] = ownerHigh[next];
+                    ownerLow[hole] = ownerLow[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            ownerHigh[hole] = 0L;
+            ownerLow[hole] = 0L;
+            size--;
+        }
+    }
+}
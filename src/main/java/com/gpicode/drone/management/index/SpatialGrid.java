@@ -0,0 +1,477 @@
+package com.gpicode.drone.management.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uniform grid over occupied cells, answering which drones lie in a rectangle, within a distance of a point, or nearest
+ * to it by looking only at the tiles that can hold an answer.
+ * <p>
+ * The field is cut into square tiles of {@value #TILE_SIZE} by {@value #TILE_SIZE} cells, and only tiles holding a
+ * drone are kept, so memory follows the number of drones rather than the field area. Tiles are spread over a fixed set
+ * of stripes, each a lock and an open-addressing table keyed by the packed tile position, so looking a tile up boxes
+ * nothing. Queries lock one tile at a time, so a query running alongside a move between tiles can find the moving drone
+ * at its old cell, at its new cell, at both or at neither. Drone queries drop every sighting of a drone after the
+ * first, so each drone is reported at most once, at one of its two cells.
+ */
+final class SpatialGrid {
+
+    private static final int TILE_BITS = 4;
+    static final int TILE_SIZE = 1 << TILE_BITS;
+    private static final int STRIPE_BITS = 6;
+    private static final int MIN_TILE_CAPACITY = 4;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final AtomicInteger tileCount = new AtomicInteger();
+
+    SpatialGrid() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds an occupied cell, whose owner may not be known yet.
+     */
+    void add(long cell, UUID owner) {
+        long key = tileOf(cell);
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            Tile tile = stripe.get(key);
+            if (tile == null) {
+                tile = new Tile();
+                stripe.put(key, tile);
+                tileCount.incrementAndGet();
+            }
+            tile.add(cell, owner);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    void assign(long cell, UUID owner) {
+        long key = tileOf(cell);
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            Tile tile = stripe.get(key);
+            if (tile != null) {
+                tile.assign(cell, owner);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long cell) {
+        long key = tileOf(cell);
+        Stripe stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            Tile tile = stripe.get(key);
+            if (tile != null && tile.remove(cell) && tile.size == 0) {
+                stripe.remove(key);
+                tileCount.decrementAndGet();
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Collects up to {@code limit} drones whose cells lie in the rectangle, bounds included.
+     */
+    List<DronePosition> area(int minX, int minY, int maxX, int maxY, int limit) {
+        List<DronePosition> found = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        CellFilter inside = (x, y) -> x >= minX && x <= maxX && y >= minY && y <= maxY;
+        int minTileX = minX >> TILE_BITS;
+        int minTileY = minY >> TILE_BITS;
+        int maxTileX = maxX >> TILE_BITS;
+        int maxTileY = maxY >> TILE_BITS;
+        long covered = ((long) maxTileX - minTileX + 1) * ((long) maxTileY - minTileY + 1);
+        if (covered <= tileCount.get()) {
+            for (int tileY = minTileY; tileY <= maxTileY && found.size() < limit; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX && found.size() < limit; tileX++) {
+                    scan(OccupancyIndex.pack(tileX, tileY), inside, found, seen, limit);
+                }
+            }
+        } else {
+            // A rectangle wider than the occupied part of the field is cheaper to answer from the occupied tiles
+            for (long key : tileKeys()) {
+                int tileX = OccupancyIndex.unpackX(key);
+                int tileY = OccupancyIndex.unpackY(key);
+                if (tileX >= minTileX && tileX <= maxTileX && tileY >= minTileY && tileY <= maxTileY) {
+                    scan(key, inside, found, seen, limit);
+                    if (found.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return whether no cell of the rectangle, bounds included, is occupied or claimed
+     */
+    boolean isEmpty(int minX, int minY, int maxX, int maxY) {
+        int minTileX = minX >> TILE_BITS;
+        int minTileY = minY >> TILE_BITS;
+        int maxTileX = maxX >> TILE_BITS;
+        int maxTileY = maxY >> TILE_BITS;
+        long covered = ((long) maxTileX - minTileX + 1) * ((long) maxTileY - minTileY + 1);
+        if (covered <= tileCount.get()) {
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    if (!isEmpty(OccupancyIndex.pack(tileX, tileY), minX, minY, maxX, maxY)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        for (long key : tileKeys()) {
+            int tileX = OccupancyIndex.unpackX(key);
+            int tileY = OccupancyIndex.unpackY(key);
+            if (tileX >= minTileX && tileX <= maxTileX && tileY >= minTileY && tileY <= maxTileY
+                    && !isEmpty(key, minX, minY, maxX, maxY)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets, in a row-major bitset of a {@code width} by {@code height} window whose first cell is {@code (minX, minY)},
+     * the bit of every occupied or claimed cell. Bits of free cells are left as they are.
+     */
+    void markOccupied(int minX, int minY, int width, int height, long[] bits) {
+        int maxX = minX + width - 1;
+        int maxY = minY + height - 1;
+        for (int tileY = minY >> TILE_BITS; tileY <= maxY >> TILE_BITS; tileY++) {
+            for (int tileX = minX >> TILE_BITS; tileX <= maxX >> TILE_BITS; tileX++) {
+                long key = OccupancyIndex.pack(tileX, tileY);
+                Stripe stripe = stripe(key);
+                stripe.lock.readLock().lock();
+                try {
+                    Tile tile = stripe.get(key);
+                    for (int i = 0; tile != null && i < tile.size; i++) {
+                        int x = OccupancyIndex.unpackX(tile.cells[i]);
+                        int y = OccupancyIndex.unpackY(tile.cells[i]);
+                        if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                            int bit = (y - minY) * width + (x - minX);
+                            bits[bit >>> 6] |= 1L << bit;
+                        }
+                    }
+                } finally {
+                    stripe.lock.readLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the drones at most {@code radius} cells from {@code (x, y)} in a straight line, nearest first, keeping
+     * the first {@code limit}.
+     */
+    List<DronePosition> within(int x, int y, int radius, int limit) {
+        long squared = (long) radius * radius;
+        List<DronePosition> found = new ArrayList<>();
+        CellFilter inside = (cellX, cellY) -> distanceSquared(x, y, cellX, cellY) <= squared;
+        int minX = (int) Math.max(Integer.MIN_VALUE, (long) x - radius);
+        int minY = (int) Math.max(Integer.MIN_VALUE, (long) y - radius);
+        int maxX = (int) Math.min(Integer.MAX_VALUE, (long) x + radius);
+        int maxY = (int) Math.min(Integer.MAX_VALUE, (long) y + radius);
+        for (DronePosition position : area(minX, minY, maxX, maxY, Integer.MAX_VALUE)) {
+            if (inside.accept(position.getX(), position.getY())) {
+                found.add(position);
+            }
+        }
+        found.sort(Comparator.comparingLong(position -> distanceSquared(x, y, position.getX(), position.getY())));
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * Finds the {@code k} drones nearest to {@code (x, y)}, nearest first, searching rings of tiles outwards from the
+     * tile holding the point until no unsearched tile can hold a nearer drone.
+     */
+    List<DronePosition> nearest(int x, int y, int k) {
+        // Farthest candidate on top, so it is the one dropped when a nearer drone turns up
+        PriorityQueue<DronePosition> candidates = new PriorityQueue<>(
+                Comparator.comparingLong((DronePosition position) -> distanceSquared(x, y, position.getX(), position.getY())).reversed());
+        CellFilter any = (cellX, cellY) -> true;
+        List<DronePosition> found = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        long centreX = x >> TILE_BITS;
+        long centreY = y >> TILE_BITS;
+        for (long ring = 0; ; ring++) {
+            long side = 2 * ring + 1;
+            if (side * side > 4L * tileCount.get() + 16) {
+                // The rings now cover far more tiles than are occupied, so the rest are taken from the occupied tiles
+                for (long key : tileKeys()) {
+                    long distance = Math.max(Math.abs(OccupancyIndex.unpackX(key) - centreX), Math.abs(OccupancyIndex.unpackY(key) - centreY));
+                    if (distance >= ring) {
+                        offer(key, any, found, seen, candidates, x, y, k);
+                    }
+                }
+                break;
+            }
+            for (long tileY = centreY - ring; tileY <= centreY + ring; tileY++) {
+                boolean edge = tileY == centreY - ring || tileY == centreY + ring;
+                for (long tileX = centreX - ring; tileX <= centreX + ring; tileX += edge || ring == 0 ? 1 : 2 * ring) {
+                    if (tileX >= Integer.MIN_VALUE && tileX <= Integer.MAX_VALUE && tileY >= Integer.MIN_VALUE && tileY <= Integer.MAX_VALUE) {
+                        offer(OccupancyIndex.pack((int) tileX, (int) tileY), any, found, seen, candidates, x, y, k);
+                    }
+                }
+            }
+            if (candidates.size() == k) {
+                // Every cell outside the searched square is at least this far away along one axis
+                long reach = Math.min(
+                        Math.min(x - ((centreX - ring) << TILE_BITS) + 1, ((centreX + ring + 1) << TILE_BITS) - x),
+                        Math.min(y - ((centreY - ring) << TILE_BITS) + 1, ((centreY + ring + 1) << TILE_BITS) - y));
+                DronePosition farthest = candidates.peek();
+                if (reach * reach >= distanceSquared(x, y, farthest.getX(), farthest.getY())) {
+                    break;
+                }
+            }
+        }
+        DronePosition[] nearest = candidates.toArray(new DronePosition[0]);
+        Arrays.sort(nearest, Comparator.comparingLong(position -> distanceSquared(x, y, position.getX(), position.getY())));
+        return new ArrayList<>(Arrays.asList(nearest));
+    }
+
+    private void offer(long key, CellFilter filter, List<DronePosition> found, Set<UUID> seen, PriorityQueue<DronePosition> candidates, int x, int y, int k) {
+        found.clear();
+        scan(key, filter, found, seen, Integer.MAX_VALUE);
+        for (DronePosition position : found) {
+            if (candidates.size() < k) {
+                candidates.add(position);
+            } else if (distanceSquared(x, y, position.getX(), position.getY())
+                    < distanceSquared(x, y, candidates.peek().getX(), candidates.peek().getY())) {
+                candidates.poll();
+                candidates.add(position);
+            }
+        }
+    }
+
+    /**
+     * Adds the drones of a tile that pass the filter and are not in {@code seen} yet, adding them to it.
+     */
+    private void scan(long key, CellFilter filter, List<DronePosition> found, Set<UUID> seen, int limit) {
+        Stripe stripe = stripe(key);
+        stripe.lock.readLock().lock();
+        try {
+            Tile tile = stripe.get(key);
+            if (tile == null) {
+                return;
+            }
+            for (int i = 0; i < tile.size && found.size() < limit; i++) {
+                int cellX = OccupancyIndex.unpackX(tile.cells[i]);
+                int cellY = OccupancyIndex.unpackY(tile.cells[i]);
+                // Cells claimed for a registration still in progress have no owner yet and are left out
+                if ((tile.ownerHigh[i] != 0L || tile.ownerLow[i] != 0L) && filter.accept(cellX, cellY)) {
+                    UUID owner = new UUID(tile.ownerHigh[i], tile.ownerLow[i]);
+                    // A drone moving between tiles during the query can be found in both
+                    if (seen.add(owner)) {
+                        found.add(new DronePosition(owner, cellX, cellY));
+                    }
+                }
+            }
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    private boolean isEmpty(long key, int minX, int minY, int maxX, int maxY) {
+        Stripe stripe = stripe(key);
+        stripe.lock.readLock().lock();
+        try {
+            Tile tile = stripe.get(key);
+            for (int i = 0; tile != null && i < tile.size; i++) {
+                int x = OccupancyIndex.unpackX(tile.cells[i]);
+                int y = OccupancyIndex.unpackY(tile.cells[i]);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - STRIPE_BITS))];
+    }
+
+    /**
+     * @return the positions of the occupied tiles, for queries reaching over more tiles than are occupied
+     */
+    private long[] tileKeys() {
+        long[] keys = new long[tileCount.get() + 16];
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                for (int slot = 0; slot < stripe.tiles.length; slot++) {
+                    if (stripe.tiles[slot] != null) {
+                        if (count == keys.length) {
+                            keys = Arrays.copyOf(keys, count * 2);
+                        }
+                        keys[count++] = stripe.keys[slot];
+                    }
+                }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    private static long tileOf(long cell) {
+        return OccupancyIndex.pack(OccupancyIndex.unpackX(cell) >> TILE_BITS, OccupancyIndex.unpackY(cell) >> TILE_BITS);
+    }
+
+    private static long distanceSquared(long fromX, long fromY, long toX, long toY) {
+        return (toX - fromX) * (toX - fromX) + (toY - fromY) * (toY - fromY);
+    }
+
+    @FunctionalInterface
+    private interface CellFilter {
+        boolean accept(int x, int y);
+    }
+
+    /**
+     * One lock and the linear-probing table of the tiles it guards, an empty slot holding no tile.
+     */
+    private static final class Stripe {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private long[] keys = new long[8];
+        private Tile[] tiles = new Tile[8];
+        private int size;
+
+        private Tile get(long key) {
+            int mask = tiles.length - 1;
+            for (int slot = slot(key, mask); tiles[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return tiles[slot];
+                }
+            }
+            return null;
+        }
+
+        private void put(long key, Tile tile) {
+            if ((size + 1) * 2 > tiles.length) {
+                long[] oldKeys = keys;
+                Tile[] oldTiles = tiles;
+                keys = new long[oldTiles.length * 2];
+                tiles = new Tile[oldTiles.length * 2];
+                size = 0;
+                for (int slot = 0; slot < oldTiles.length; slot++) {
+                    if (oldTiles[slot] != null) {
+                        put(oldKeys[slot], oldTiles[slot]);
+                    }
+                }
+            }
+            int mask = tiles.length - 1;
+            int slot = slot(key, mask);
+            while (tiles[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            tiles[slot] = tile;
+            size++;
+        }
+
+        private void remove(long key) {
+            int mask = tiles.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != key || tiles[slot] == null) {
+                if (tiles[slot] == null) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Backward-shift deletion, as in the occupancy tables
+            int hole = slot;
+            for (int next = (hole + 1) & mask; tiles[next] != null; next = (next + 1) & mask) {
+                int home = slot(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    tiles[hole] = tiles[next];
+                    hole = next;
+                }
+            }
+            tiles[hole] = null;
+            size--;
+        }
+
+        private static int slot(long key, int mask) {
+            // The stripe is picked by the top bits of the same product, so the slot comes from the folded low bits
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * The occupied cells of one tile, unordered, with their owners split across two parallel arrays.
+     */
+    private static final class Tile {
+        private long[] cells = new long[MIN_TILE_CAPACITY];
+        private long[] ownerHigh = new long[MIN_TILE_CAPACITY];
+        private long[] ownerLow = new long[MIN_TILE_CAPACITY];
+        private int size;
+
+        private void add(long cell, UUID owner) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                ownerHigh = Arrays.copyOf(ownerHigh, size * 2);
+                ownerLow = Arrays.copyOf(ownerLow, size * 2);
+            }
+            cells[size] = cell;
+            ownerHigh[size] = owner == null ? 0L : owner.getMostSignificantBits();
+            ownerLow[size] = owner == null ? 0L : owner.getLeastSignificantBits();
+            size++;
+        }
+
+        private void assign(long cell, UUID owner) {
+            int i = indexOf(cell);
+            if (i >= 0) {
+                ownerHigh[i] = owner == null ? 0L : owner.getMostSignificantBits();
+                ownerLow[i] = owner == null ? 0L : owner.getLeastSignificantBits();
+            }
+        }
+
+        private boolean remove(long cell) {
+            int i = indexOf(cell);
+            if (i < 0) {
+                return false;
+            }
+            // The last entry fills the gap, as the order of a tile does not matter
+            size--;
+            cells[i] = cells[size];
+            ownerHigh[i] = ownerHigh[size];
+            ownerLow[i] = ownerLow[size];
+            return true;
+        }
+
+        private int indexOf(long cell) {
+            for (int i = 0; i < size; i++) {
+                if (cells[i] == cell) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
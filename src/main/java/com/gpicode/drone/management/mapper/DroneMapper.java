@@ -3,6 +3,7 @@ package com.gpicode.drone.management.mapper;
 import com.gpicode.drone.management.dto.DroneResponse;
 import com.gpicode.drone.management.dto.MoveDroneRequest;
 import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Direction;
 import com.gpicode.drone.management.entity.Drone;
 
 public class DroneMapper {
@@ -11,7 +12,7 @@ public class DroneMapper {
         Drone drone = new Drone();
         drone.setCoordinateX(request.getXCoordinate());
         drone.setCoordinateY(request.getYCoordinate());
-        drone.setDirection(request.getDirection().toUpperCase());
+        drone.setDirection(Direction.valueOf(request.getDirection().toUpperCase()));
         return drone;
     }
 
@@ -25,7 +26,7 @@ public class DroneMapper {
         response.setDroneId(drone.getDroneId());
         response.setXCoordinate(drone.getCoordinateX());
         response.setYCoordinate(drone.getCoordinateY());
-        response.setDirection(drone.getDirection());
+        response.setDirection(drone.getDirection().name());
         return response;
     }
 }
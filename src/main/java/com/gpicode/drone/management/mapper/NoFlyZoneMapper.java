@@ -0,0 +1,21 @@
+package com.gpicode.drone.management.mapper;
+
+import com.gpicode.drone.management.dto.NoFlyZoneRequest;
+import com.gpicode.drone.management.index.NoFlyZone;
+
+import java.util.UUID;
+
+public class NoFlyZoneMapper {
+
+    public static NoFlyZone toZone(NoFlyZoneRequest request) {
+        boolean rectangle = request.getMinX() != null && request.getMinY() != null && request.getMaxX() != null && request.getMaxY() != null;
+        if (rectangle == (request.getPolygon() != null)) {
+            throw new IllegalArgumentException("A zone needs either minX, minY, maxX and maxY or a polygon");
+        }
+        if (rectangle) {
+            return NoFlyZone.rectangle(UUID.randomUUID(), request.getName(), request.getMinX(), request.getMinY(),
+                    request.getMaxX(), request.getMaxY(), request.getActiveFrom(), request.getActiveUntil());
+        }
+        return NoFlyZone.polygon(UUID.randomUUID(), request.getName(), request.getPolygon(), request.getActiveFrom(), request.getActiveUntil());
+    }
+}
@@ -0,0 +1,127 @@
+package com.gpicode.drone.management.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the drone operations, published through Actuator at {@code /actuator/prometheus}.
+ * <ul>
+ *     <li>{@code drone.service.phase}: time spent in each phase of a register or move, tagged by operation and phase</li>
+ *     <li>{@code drone.service.rejections}: requests or batch entries refused, tagged by operation and cause</li>
+ *     <li>{@code drone.history.requests}: time spent handing history to or reading it from the history log</li>
+ *     <li>{@code drone.occupancy.undo.conflicts}: rolled back moves whose origin another drone had claimed meanwhile,
+ *     each followed by a rebuild of the occupancy index</li>
+ * </ul>
+ * Meters are created the first time they are used and kept in arrays indexed by the enums, so recording one costs
+ * no registry lookup. Histogram buckets are turned on through {@code management.metrics.distribution}. Every timed
+ * phase is also added to the {@link RequestTiming} of the request in progress, if any.
+ */
+@Component
+public class DroneMetrics {
+
+    public enum Operation {
+        REGISTER, REGISTER_BULK, MOVE, MOVE_BATCH, MISSION
+    }
+
+    public enum Phase {
+        // Loading the drones from the repository
+        LOOKUP,
+        // Checking and claiming cells in the occupancy index
+        OCCUPANCY,
+        // Planning the turns and moves
+        PLAN,
+        // Saving the drones to the repository
+        PERSIST
+    }
+
+    public enum Rejection {
+        BOUNDARY, OCCUPIED, NO_MOVEMENT, NOT_FOUND,
+        // The drone was changed by another instance between being read and being updated
+        CONFLICT,
+        // Every route to the target is blocked by other drones
+        NO_ROUTE,
+        // The route search reached drone.planner.max-search-cells before finding a route or ruling one out
+        SEARCH_LIMIT,
+        // The position lies in a no-fly zone in force
+        NO_FLY_ZONE
+    }
+
+    public enum HistoryOperation {
+        CREATE, APPEND, LOAD, READ
+    }
+
+    private final MeterRegistry registry;
+    private final Timer[][] phaseTimers = new Timer[Operation.values().length][Phase.values().length];
+    private final Counter[][] rejectionCounters = new Counter[Operation.values().length][Rejection.values().length];
+    private final Timer[] historyTimers = new Timer[HistoryOperation.values().length];
+    private final Counter indexConflicts;
+
+    public DroneMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.indexConflicts = Counter.builder("drone.occupancy.undo.conflicts")
+                .description("Rolled back moves whose origin was claimed by another drone before it could be handed back")
+                .register(registry);
+    }
+
+    /**
+     * Records the time since {@code startNanos}, a {@link System#nanoTime()} reading, against a phase of an operation.
+     */
+    public void record(Operation operation, Phase phase, long startNanos) {
+        Timer timer = phaseTimers[operation.ordinal()][phase.ordinal()];
+        if (timer == null) {
+            // Racing threads may both build it; the registry hands them the same timer.
+            timer = Timer.builder("drone.service.phase")
+                    .description("Time spent in one phase of a drone operation")
+                    .tag("operation", tag(operation))
+                    .tag("phase", tag(phase))
+                    .register(registry);
+            phaseTimers[operation.ordinal()][phase.ordinal()] = timer;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        RequestTiming.record(phase, elapsedNanos);
+    }
+
+    public void reject(Operation operation, Rejection cause) {
+        Counter counter = rejectionCounters[operation.ordinal()][cause.ordinal()];
+        if (counter == null) {
+            counter = Counter.builder("drone.service.rejections")
+                    .description("Drone operations refused, by cause")
+                    .tag("operation", tag(operation))
+                    .tag("cause", tag(cause))
+                    .register(registry);
+            rejectionCounters[operation.ordinal()][cause.ordinal()] = counter;
+        }
+        counter.increment();
+    }
+
+    public void indexConflict() {
+        indexConflicts.increment();
+    }
+
+    /**
+     * Records the time since {@code startNanos}, a {@link System#nanoTime()} reading, against a history operation.
+     */
+    public void recordHistory(HistoryOperation operation, long startNanos) {
+        Timer timer = historyTimers[operation.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder("drone.history.requests")
+                    .description("Time spent handing drone history to or reading it from the history log")
+                    .tag("operation", tag(operation))
+                    .register(registry);
+            historyTimers[operation.ordinal()] = timer;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        RequestTiming.record(operation, elapsedNanos);
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
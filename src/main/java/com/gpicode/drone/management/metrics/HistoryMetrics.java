@@ -0,0 +1,80 @@
+package com.gpicode.drone.management.metrics;
+
+import com.gpicode.drone.management.history.DroneHistoryLog;
+import com.gpicode.drone.management.history.DroneHistoryStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Publishes the state of the drone history storage: its size on disk, the bytes it has read and written,
+ * the depth of the write queue, the acknowledged states lost to failed writes and how well the history cache is doing.
+ * Everything is read from the log and the store when the registry is scraped, so nothing is counted twice on the write
+ * path.
+ */
+@Component
+public class HistoryMetrics implements MeterBinder {
+
+    private final DroneHistoryStore droneHistoryStore;
+    private final DroneHistoryLog droneHistoryLog;
+
+    public HistoryMetrics(DroneHistoryStore droneHistoryStore, DroneHistoryLog droneHistoryLog) {
+        this.droneHistoryStore = droneHistoryStore;
+        this.droneHistoryLog = droneHistoryLog;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("drone.history.storage.size", droneHistoryStore, HistoryMetrics::sizeOnDisk)
+                .description("Bytes the drone history takes up on disk")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        FunctionCounter.builder("drone.history.io", droneHistoryStore, DroneHistoryStore::bytesRead)
+                .description("Bytes of drone history read from or written to disk")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("direction", "read")
+                .register(registry);
+        FunctionCounter.builder("drone.history.io", droneHistoryStore, DroneHistoryStore::bytesWritten)
+                .description("Bytes of drone history read from or written to disk")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("direction", "write")
+                .register(registry);
+        Gauge.builder("drone.history.queue.size", droneHistoryLog, DroneHistoryLog::queueSize)
+                .description("Batches of history waiting for the background writer")
+                .register(registry);
+        FunctionCounter.builder("drone.history.lost.states", droneHistoryLog, DroneHistoryLog::lostStates)
+                .description("Acknowledged drone history states dropped because their background write failed")
+                .register(registry);
+
+        FunctionCounter.builder("drone.history.cache.requests", droneHistoryLog, log -> log.cacheStats().getHits())
+                .description("Drone history reads served from or missed by the cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("drone.history.cache.requests", droneHistoryLog, log -> log.cacheStats().getMisses())
+                .description("Drone history reads served from or missed by the cache")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("drone.history.cache.evictions", droneHistoryLog, log -> log.cacheStats().getEvictions())
+                .description("Drone histories evicted from the cache")
+                .register(registry);
+        Gauge.builder("drone.history.cache.hit.ratio", droneHistoryLog, log -> log.cacheStats().getHitRatio())
+                .description("Share of drone history reads served from the cache")
+                .register(registry);
+        Gauge.builder("drone.history.cache.states", droneHistoryLog, log -> log.cacheStats().getCachedStates())
+                .description("States held by the drone history cache")
+                .register(registry);
+    }
+
+    private static double sizeOnDisk(DroneHistoryStore store) {
+        try {
+            return store.sizeOnDisk();
+        } catch (IOException exception) {
+            return Double.NaN;
+        }
+    }
+}
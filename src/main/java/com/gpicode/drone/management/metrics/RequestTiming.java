@@ -0,0 +1,123 @@
+package com.gpicode.drone.management.metrics;
+
+import com.gpicode.drone.management.metrics.DroneMetrics.HistoryOperation;
+import com.gpicode.drone.management.metrics.DroneMetrics.Phase;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time spent in each phase of the request being handled by the current thread.
+ * <p>
+ * Every thread keeps a single instance that is reset at the start of each request, and a phase is a slot in a
+ * primitive array, so recording costs no allocation. {@link DroneMetrics} adds to the current request whenever it
+ * records a phase; nothing is recorded outside of {@link #begin()} and {@link #end()}.
+ */
+public final class RequestTiming {
+
+    private static final int HISTORY_SLOTS = Phase.values().length;
+    private static final String[] NAMES = new String[Phase.values().length + HistoryOperation.values().length];
+    private static final ThreadLocal<RequestTiming> CURRENT = ThreadLocal.withInitial(RequestTiming::new);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            NAMES[phase.ordinal()] = phase.name().toLowerCase(Locale.ROOT);
+        }
+        for (HistoryOperation operation : HistoryOperation.values()) {
+            NAMES[HISTORY_SLOTS + operation.ordinal()] = "history-" + operation.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final long[] nanos = new long[NAMES.length];
+    // Bit i is set once slot i has been recorded
+    private int recorded;
+    private long startNanos;
+    private boolean active;
+
+    private RequestTiming() {
+    }
+
+    /**
+     * Starts timing a request on the current thread.
+     */
+    public static RequestTiming begin() {
+        RequestTiming timing = CURRENT.get();
+        Arrays.fill(timing.nanos, 0L);
+        timing.recorded = 0;
+        timing.startNanos = System.nanoTime();
+        timing.active = true;
+        return timing;
+    }
+
+    /**
+     * @return the timing of the request handled by the current thread, or {@code null} outside of a request
+     */
+    public static RequestTiming current() {
+        RequestTiming timing = CURRENT.get();
+        return timing.active ? timing : null;
+    }
+
+    public static void end() {
+        CURRENT.get().active = false;
+    }
+
+    static void record(Phase phase, long elapsedNanos) {
+        add(phase.ordinal(), elapsedNanos);
+    }
+
+    static void record(HistoryOperation operation, long elapsedNanos) {
+        add(HISTORY_SLOTS + operation.ordinal(), elapsedNanos);
+    }
+
+    private static void add(int slot, long elapsedNanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.nanos[slot] += elapsedNanos;
+            timing.recorded |= 1 << slot;
+        }
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return the recorded phases and the time elapsed so far, as a {@code Server-Timing} header value,
+     * e.g. {@code lookup;dur=0.412, occupancy;dur=0.003, total;dur=1.250}
+     */
+    public String serverTiming() {
+        StringBuilder header = new StringBuilder(160);
+        for (int slot = 0; slot < NAMES.length; slot++) {
+            if ((recorded & (1 << slot)) != 0) {
+                appendMillis(header.append(NAMES[slot]).append(";dur="), nanos[slot]).append(", ");
+            }
+        }
+        return appendMillis(header.append("total;dur="), elapsedNanos()).toString();
+    }
+
+    /**
+     * @return the recorded phases as {@code name=millis} pairs, e.g. {@code lookup=0.412 occupancy=0.003}
+     */
+    public String phases() {
+        StringBuilder phases = new StringBuilder(160);
+        for (int slot = 0; slot < NAMES.length; slot++) {
+            if ((recorded & (1 << slot)) != 0) {
+                if (!phases.isEmpty()) {
+                    phases.append(' ');
+                }
+                appendMillis(phases.append(NAMES[slot]).append('='), nanos[slot]);
+            }
+        }
+        return phases.toString();
+    }
+
+    static StringBuilder appendMillis(StringBuilder builder, long nanos) {
+        long micros = nanos / 1_000;
+        long fraction = micros % 1_000;
+        builder.append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            builder.append(fraction < 10 ? "00" : "0");
+        }
+        return builder.append(fraction);
+    }
+}
@@ -0,0 +1,54 @@
+package com.gpicode.drone.management.metrics;
+
+import com.gpicode.drone.management.config.TimingProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Times every drone API request with a {@link RequestTiming}, and logs the ones slower than
+ * {@code drone.timing.slow-request-threshold-ms} with the time spent in each phase.
+ * The phases are sent to the client by {@link ServerTimingAdvice}, as the response is committed before this filter
+ * regains control.
+ */
+@Component
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTimingFilter.class);
+
+    private final TimingProperties timingProperties;
+
+    public RequestTimingFilter(TimingProperties timingProperties) {
+        this.timingProperties = timingProperties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/v1/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTiming timing = RequestTiming.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsedNanos = timing.elapsedNanos();
+            long threshold = timingProperties.getSlowRequestThresholdMs();
+            if (threshold >= 0 && elapsedNanos >= threshold * 1_000_000) {
+                log.warn("Slow request: method={} uri={} status={} totalMs={} phases=[{}]", request.getMethod(),
+                        request.getRequestURI(), response.getStatus(),
+                        RequestTiming.appendMillis(new StringBuilder(), elapsedNanos), timing.phases());
+            }
+            RequestTiming.end();
+        }
+    }
+}
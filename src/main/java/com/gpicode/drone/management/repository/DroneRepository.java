@@ -1,10 +1,27 @@
 package com.gpicode.drone.management.repository;
 
+import com.gpicode.drone.management.entity.Direction;
 import com.gpicode.drone.management.entity.Drone;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.UUID;
 
 public interface DroneRepository extends JpaRepository<Drone, UUID> {
     boolean existsByCoordinateXAndCoordinateY(Integer xCoordinate, Integer yCoordinate);
+
+    /**
+     * Moves a drone in one conditional statement, provided it is still at the version it was read at. A target cell
+     * held by another drone fails the statement on the coordinates' unique constraint, which surfaces as a
+     * {@link org.springframework.dao.DataIntegrityViolationException}.
+     *
+     * @return {@code 1} once moved, {@code 0} if the drone no longer exists or has changed since it was read
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Drone d set d.coordinateX = :x, d.coordinateY = :y, d.direction = :direction, d.version = d.version + 1 "
+            + "where d.droneId = :droneId and d.version = :version")
+    int moveIfUnchanged(@Param("droneId") UUID droneId, @Param("version") long version,
+                        @Param("x") int x, @Param("y") int y, @Param("direction") Direction direction);
 }
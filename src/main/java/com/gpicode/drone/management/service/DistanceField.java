@@ -0,0 +1,97 @@
+package com.gpicode.drone.management.service;
+
+/**
+ * Distances in steps from a goal cell to the free cells of a search window, found breadth-first, which the route
+ * searches use as their estimate of the cost left.
+ * <p>
+ * Cells are the row-major cells of the window and taken cells are set in a bitset. The pass stops as soon as every
+ * cell as close to the goal as the start is labeled, so it costs little more than the cells that matter; a cell left
+ * unlabeled is known to be at least {@link #beyond} steps away, or cut off from the goal altogether.
+ */
+final class DistanceField {
+
+    // Cell offsets of one step ahead, by direction ordinal: NORTH is +y and EAST is +x
+    static final int[] DX = {0, 1, 0, -1};
+    static final int[] DY = {1, 0, -1, 0};
+
+    // The distance plus one, so that zero reads as unlabeled; cleared again through the queue that set it
+    private int[] distance = new int[0];
+    private int[] queue = new int[0];
+    private int labeled;
+    private int beyond;
+
+    /**
+     * Labels the free cells around {@code goal}, one level at a time, until the start is labeled or nothing is left.
+     *
+     * @return whether the start can be reached from the goal at all
+     */
+    boolean measure(long[] blocked, int width, int height, int goal, int start) {
+        clear();
+        int cells = width * height;
+        if (distance.length < cells) {
+            distance = new int[cells];
+            queue = new int[cells];
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = goal;
+        distance[goal] = 1;
+        int level = 0;
+        int levelEnd = tail;
+        boolean found = goal == start;
+        beyond = 1;
+        while (!found && head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int heading = 0; heading < 4; heading++) {
+                int nextX = x + DX[heading];
+                int nextY = y + DY[heading];
+                if (nextX < 0 || nextX >= width || nextY < 0 || nextY >= height) {
+                    continue;
+                }
+                int next = nextY * width + nextX;
+                if (distance[next] == 0 && (blocked[next >>> 6] & 1L << next) == 0) {
+                    distance[next] = level + 2;
+                    queue[tail++] = next;
+                }
+            }
+            if (head == levelEnd) {
+                // Every cell one step further than this level is labeled now
+                level++;
+                levelEnd = tail;
+                found = distance[start] != 0;
+                beyond = level + 1;
+            }
+        }
+        labeled = tail;
+        return found;
+    }
+
+    /**
+     * @return a number of steps from the cell to the goal that is never more than the real one
+     */
+    int estimate(int cell) {
+        int label = distance[cell];
+        return label == 0 ? beyond : label - 1;
+    }
+
+    void clear() {
+        for (int i = 0; i < labeled; i++) {
+            distance[queue[i]] = 0;
+        }
+        labeled = 0;
+    }
+
+    /**
+     * @return the quarter turns any route from a drone heading {@code heading} to a cell {@code (dx, dy)} away needs
+     */
+    static int turnsNeeded(int heading, int dx, int dy) {
+        int ahead = dx * DX[heading] + dy * DY[heading];
+        int aside = dx * DY[heading] - dy * DX[heading];
+        if (aside == 0) {
+            return ahead >= 0 ? 0 : 2;
+        }
+        return ahead >= 0 ? 1 : 2;
+    }
+}
@@ -1,172 +1,1021 @@
 package com.gpicode.drone.management.service;
 
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.QueryProperties;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.dto.BatchMoveResult;
 import com.gpicode.drone.management.dto.DroneResponse;
 import com.gpicode.drone.management.dto.MoveDroneRequest;
 import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.dto.OccupancyIndexReport;
 import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Direction;
 import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.exception.BulkRegistrationException;
 import com.gpicode.drone.management.exception.DroneNotFoundException;
 import com.gpicode.drone.management.exception.InvalidBoundaryException;
+import com.gpicode.drone.management.exception.RouteSearchLimitException;
+import com.gpicode.drone.management.index.DroneLocks;
+import com.gpicode.drone.management.index.DronePosition;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
 import com.gpicode.drone.management.mapper.DroneMapper;
-import com.gpicode.drone.management.repository.DroneRepository;
+import com.gpicode.drone.management.metrics.DroneMetrics;
+import com.gpicode.drone.management.metrics.DroneMetrics.Operation;
+import com.gpicode.drone.management.metrics.DroneMetrics.Phase;
+import com.gpicode.drone.management.metrics.DroneMetrics.Rejection;
+import com.gpicode.drone.management.service.TileExecutor.Claim;
+import com.gpicode.drone.management.store.DroneStore;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 @Service
     public class DroneService {
         @Autowired
-        private DroneRepository droneRepository;
+        private DroneStore droneStore;
 
-        public DroneService(DroneRepository droneRepository) {
-            this.droneRepository = droneRepository;
-        }
+        @Autowired
+        private OccupancyIndex occupancyIndex;
+
+        @Autowired
+        private FieldProperties fieldProperties;
 
-        public enum Direction {
-            NORTH, EAST, SOUTH, WEST;
+        @Autowired
+        private DroneMetrics droneMetrics;
+
+        @Autowired
+        private DroneLocks droneLocks;
+
+        @Autowired
+        private QueryProperties queryProperties;
+
+        @Autowired
+        private RoutePlanner routePlanner;
+
+        @Autowired
+        private MoveScheduler moveScheduler;
+
+        @Autowired
+        private GeofenceIndex geofenceIndex;
+
+        @Autowired
+        private TileExecutor tileExecutor;
+
+        private static final Logger log = LoggerFactory.getLogger(DroneService.class);
+
+        private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+        // Shared by every request claiming cells until its transaction completes, and exclusive to a rebuild of the
+        // occupancy index, so that a rebuild never reads the store while a claim is in the index but not yet committed.
+        // With tiled claims, single registrations and moves leave it alone and a rebuild pauses the tile workers instead.
+        private final ReentrantReadWriteLock claims = new ReentrantReadWriteLock();
+
+        public DroneService(DroneStore droneStore, OccupancyIndex occupancyIndex, FieldProperties fieldProperties, DroneMetrics droneMetrics, DroneLocks droneLocks, QueryProperties queryProperties, RoutePlanner routePlanner, MoveScheduler moveScheduler, GeofenceIndex geofenceIndex, TileExecutor tileExecutor) {
+            this.droneStore = droneStore;
+            this.occupancyIndex = occupancyIndex;
+            this.fieldProperties = fieldProperties;
+            this.droneMetrics = droneMetrics;
+            this.droneLocks = droneLocks;
+            this.queryProperties = queryProperties;
+            this.routePlanner = routePlanner;
+            this.moveScheduler = moveScheduler;
+            this.geofenceIndex = geofenceIndex;
+            this.tileExecutor = tileExecutor;
         }
 
         @Transactional
         public DroneResponse registerDrone(RegisterDroneRequest droneDetails) throws InvalidBoundaryException {
-            validatePosition(droneDetails.getXCoordinate(), droneDetails.getYCoordinate());
+            if (tileExecutor.isTiled()) {
+                return registerClaiming(droneDetails);
+            }
+            claims.readLock().lock();
+            try {
+                return registerClaiming(droneDetails);
+            } finally {
+                afterCompletion(() -> claims.readLock().unlock());
+            }
+        }
+
+        private DroneResponse registerClaiming(RegisterDroneRequest droneDetails) throws InvalidBoundaryException {
+            validatePosition(Operation.REGISTER, droneDetails.getXCoordinate(), droneDetails.getYCoordinate());
 
-            if (droneRepository.existsByCoordinateXAndCoordinateY(droneDetails.getXCoordinate(), droneDetails.getYCoordinate())) {
-                throw new IllegalArgumentException("Another drone already exists in this position");
+            int x = droneDetails.getXCoordinate();
+            int y = droneDetails.getYCoordinate();
+            long start = System.nanoTime();
+            boolean occupied = !claimCell(x, y);
+            droneMetrics.record(Operation.REGISTER, Phase.OCCUPANCY, start);
+            if (occupied) {
+                throw rejected(Operation.REGISTER, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists in this position"));
+            }
+            Drone registeredDrone;
+            start = System.nanoTime();
+            try {
+                Drone drone = DroneMapper.toDroneEntity(droneDetails);
+                // A cell taken through another instance fails here on the store's own uniqueness check
+                registeredDrone = droneStore.insert(drone);
+            } catch (DataIntegrityViolationException exception) {
+                releaseClaimedCell(x, y);
+                throw rejected(Operation.REGISTER, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists in this position"));
+            } catch (RuntimeException exception) {
+                releaseClaimedCell(x, y);
+                throw exception;
+            }
+            droneMetrics.record(Operation.REGISTER, Phase.PERSIST, start);
+            UUID droneId = registeredDrone.getDroneId();
+            occupancyIndex.assign(x, y, droneId);
+            if (tileExecutor.isTiled()) {
+                onCompletion(committed -> {
+                    if (committed) {
+                        tileExecutor.registered(x, y, droneId);
+                        tileExecutor.completed();
+                    } else {
+                        releaseClaimedCell(x, y);
+                    }
+                });
+            } else {
+                onRollback(() -> occupancyIndex.release(x, y));
             }
-            Drone drone = DroneMapper.toDroneEntity(droneDetails);
-            Drone registeredDrone = droneRepository.save(drone);
             return DroneMapper.toDroneResponse(registeredDrone);
         }
 
+        /**
+         * Claims a free cell for a drone being registered in the occupancy index, once the worker owning the cell has
+         * granted it with tiled claims.
+         */
+        private boolean claimCell(int x, int y) {
+            if (!tileExecutor.isTiled()) {
+                return occupancyIndex.tryOccupy(x, y);
+            }
+            if (!tileExecutor.register(x, y)) {
+                return false;
+            }
+            // The index only ever holds cells the workers have granted, so this cannot fail
+            occupancyIndex.tryOccupy(x, y);
+            return true;
+        }
+
+        private void releaseClaimedCell(int x, int y) {
+            occupancyIndex.release(x, y);
+            if (tileExecutor.isTiled()) {
+                tileExecutor.unregister(x, y);
+                tileExecutor.completed();
+            }
+        }
+
+        /**
+         * Registers many drones in one transaction, or none of them if any is invalid. The positions are checked
+         * against the field, against the drones already registered and against each other before anything is saved,
+         * and the drones are then inserted with a single {@link DroneStore#insertAll}, which the database stores send as
+         * JDBC batches. The rejection is a checked exception, so the transaction is told to roll back on it too, which
+         * undoes rows a store inserted before it hit a cell taken through another instance.
+         */
+        @Transactional(rollbackOn = BulkRegistrationException.class)
+        public List<DroneResponse> registerDrones(List<RegisterDroneRequest> requests) throws BulkRegistrationException {
+            if (tileExecutor.isTiled()) {
+                tileExecutor.pause();
+                try {
+                    return registerAllClaiming(requests);
+                } finally {
+                    resumeAfterCompletion();
+                }
+            }
+            claims.readLock().lock();
+            try {
+                return registerAllClaiming(requests);
+            } finally {
+                afterCompletion(() -> claims.readLock().unlock());
+            }
+        }
+
+        private List<DroneResponse> registerAllClaiming(List<RegisterDroneRequest> requests) throws BulkRegistrationException {
+            long start = System.nanoTime();
+            long[] cells = new long[requests.size()];
+            Map<Long, Integer> firstAtCell = new HashMap<>();
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < cells.length; i++) {
+                RegisterDroneRequest request = requests.get(i);
+                cells[i] = OccupancyIndex.pack(request.getXCoordinate(), request.getYCoordinate());
+                Integer first = firstAtCell.putIfAbsent(cells[i], i);
+                if (!fieldProperties.contains(request.getXCoordinate(), request.getYCoordinate())) {
+                    errors.add(rejected(Operation.REGISTER_BULK, Rejection.BOUNDARY, "drones[" + i + "]: Out of field values for Coordinates"));
+                } else if (geofenceIndex.isRestricted(request.getXCoordinate(), request.getYCoordinate())) {
+                    errors.add(rejected(Operation.REGISTER_BULK, Rejection.NO_FLY_ZONE, "drones[" + i + "]: Position is inside a no-fly zone"));
+                } else if (first != null) {
+                    errors.add(rejected(Operation.REGISTER_BULK, Rejection.OCCUPIED, "drones[" + i + "]: Same position as drones[" + first + "]"));
+                } else if (isClaimed(request.getXCoordinate(), request.getYCoordinate())) {
+                    errors.add(rejected(Operation.REGISTER_BULK, Rejection.OCCUPIED, "drones[" + i + "]: Another drone already exists in this position"));
+                }
+            }
+            if (errors.isEmpty()) {
+                // A concurrent registration may have taken a cell since it was checked.
+                int conflict = occupancyIndex.tryOccupyAll(cells);
+                if (conflict >= 0) {
+                    errors.add(rejected(Operation.REGISTER_BULK, Rejection.OCCUPIED, "drones[" + conflict + "]: Another drone already exists in this position"));
+                }
+            }
+            droneMetrics.record(Operation.REGISTER_BULK, Phase.OCCUPANCY, start);
+            if (!errors.isEmpty()) {
+                throw new BulkRegistrationException(errors);
+            }
+
+            List<Drone> registeredDrones;
+            start = System.nanoTime();
+            try {
+                List<Drone> drones = new ArrayList<>(requests.size());
+                for (RegisterDroneRequest request : requests) {
+                    drones.add(DroneMapper.toDroneEntity(request));
+                }
+                registeredDrones = droneStore.insertAll(drones);
+            } catch (DataIntegrityViolationException exception) {
+                occupancyIndex.releaseAll(cells);
+                throw new BulkRegistrationException(List.of(rejected(Operation.REGISTER_BULK, Rejection.OCCUPIED, "Another drone already exists in one of these positions")));
+            } catch (RuntimeException exception) {
+                occupancyIndex.releaseAll(cells);
+                throw exception;
+            }
+            droneMetrics.record(Operation.REGISTER_BULK, Phase.PERSIST, start);
+            List<DroneResponse> responses = new ArrayList<>(registeredDrones.size());
+            for (Drone drone : registeredDrones) {
+                occupancyIndex.assign(drone.getCoordinateX(), drone.getCoordinateY(), drone.getDroneId());
+                responses.add(DroneMapper.toDroneResponse(drone));
+            }
+            onRollback(() -> occupancyIndex.releaseAll(cells));
+            onCommit(() -> {
+                for (Drone drone : registeredDrones) {
+                    tileExecutor.place(drone.getCoordinateX(), drone.getCoordinateY(), drone.getDroneId());
+                }
+            });
+            return responses;
+        }
+
+        /**
+         * Loads the occupancy index from the Drone table, so that occupancy checks never need SQL afterwards. Requests
+         * claiming cells wait for the load, and it waits for those in flight to complete, so no claim is lost.
+         */
+        @PostConstruct
+        public void loadOccupancyIndex() {
+            claims.writeLock().lock();
+            tileExecutor.pause();
+            try {
+                List<Drone> drones = droneStore.findAll();
+                occupancyIndex.rebuild(drones);
+                tileExecutor.reload(drones);
+            } finally {
+                tileExecutor.resume();
+                claims.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Compares the occupancy index with the Drone table and optionally rebuilds the index from it. A repair holds
+         * off requests claiming cells from reading the table to replacing the index, as {@link #loadOccupancyIndex} does.
+         */
+        public OccupancyIndexReport verifyOccupancyIndex(boolean repair) {
+            if (!repair) {
+                return verifyOccupancyIndexAgainstStore(false);
+            }
+            claims.writeLock().lock();
+            tileExecutor.pause();
+            try {
+                return verifyOccupancyIndexAgainstStore(true);
+            } finally {
+                tileExecutor.resume();
+                claims.writeLock().unlock();
+            }
+        }
+
+        private OccupancyIndexReport verifyOccupancyIndexAgainstStore(boolean repair) {
+            List<Drone> drones = droneStore.findAll();
+            long[] indexed = occupancyIndex.snapshot();
+            long[] stored = new long[drones.size()];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = OccupancyIndex.pack(drones.get(i).getCoordinateX(), drones.get(i).getCoordinateY());
+            }
+            Arrays.sort(stored);
+
+            List<String> missingCells = new ArrayList<>();
+            List<String> staleCells = new ArrayList<>();
+            List<String> misassignedCells = new ArrayList<>();
+            int i = 0;
+            int j = 0;
+            while (i < stored.length || j < indexed.length) {
+                if (j == indexed.length || (i < stored.length && stored[i] < indexed[j])) {
+                    missingCells.add(formatCell(stored[i++]));
+                } else if (i == stored.length || indexed[j] < stored[i]) {
+                    staleCells.add(formatCell(indexed[j++]));
+                } else {
+                    long cell = stored[i];
+                    while (i < stored.length && stored[i] == cell) {
+                        i++;
+                    }
+                    j++;
+                }
+            }
+
+            for (Drone drone : drones) {
+                UUID owner = occupancyIndex.droneAt(drone.getCoordinateX(), drone.getCoordinateY());
+                if (owner != null && !owner.equals(drone.getDroneId())) {
+                    misassignedCells.add(formatCell(OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY())));
+                }
+            }
+
+            boolean consistent = missingCells.isEmpty() && staleCells.isEmpty() && misassignedCells.isEmpty();
+            boolean rebuilt = repair && !consistent;
+            if (rebuilt) {
+                occupancyIndex.rebuild(drones);
+                tileExecutor.reload(drones);
+            }
+            return new OccupancyIndexReport(consistent, indexed.length, drones.size(), missingCells, staleCells, misassignedCells, rebuilt);
+        }
+
+    /**
+     * Moves one drone. The drone stays locked until the transaction completes, so a concurrent move of the same drone
+     * starts from the committed position rather than the one this move is leaving. With tiled claims no lock is taken:
+     * the drone's cells stay held by the tile workers instead, and are released once the transaction completes, or
+     * the hold the caller has open is closed.
+     */
+    @Transactional
     public MoveDroneResponse moveDrone(UUID id, MoveDroneRequest request) throws InvalidBoundaryException, DroneNotFoundException {
-        Drone drone = droneRepository.findById(id)
-                .orElseThrow(() -> new DroneNotFoundException("Drone not found"));
-        validatePosition(request.getXCoordinate(), request.getYCoordinate());
+        if (tileExecutor.isTiled()) {
+            return moveLocked(id, request);
+        }
+        droneLocks.lock(id);
+        // Always taken after the drone locks, so that no request waits for a drone lock while a rebuild waits for it
+        claims.readLock().lock();
+        try {
+            return moveLocked(id, request);
+        } finally {
+            afterCompletion(() -> droneLocks.unlock(id));
+            afterCompletion(() -> claims.readLock().unlock());
+        }
+    }
+
+    private MoveDroneResponse moveLocked(UUID id, MoveDroneRequest request) throws InvalidBoundaryException, DroneNotFoundException {
+        while (true) {
+            MoveDroneResponse move = tryMoveLocked(id, request);
+            if (move != null) {
+                return move;
+            }
+        }
+    }
+
+    /**
+     * @return the move, or with tiled claims {@code null} if the drone was moved by another request since it was read,
+     * so that the move has to start again from where it is now
+     */
+    private MoveDroneResponse tryMoveLocked(UUID id, MoveDroneRequest request) throws InvalidBoundaryException, DroneNotFoundException {
+        long start = System.nanoTime();
+        Optional<Drone> found = droneStore.findById(id);
+        droneMetrics.record(Operation.MOVE, Phase.LOOKUP, start);
+        Drone drone = found.orElseThrow(() -> rejected(Operation.MOVE, Rejection.NOT_FOUND, new DroneNotFoundException("Drone not found")));
+        validatePosition(Operation.MOVE, request.getXCoordinate(), request.getYCoordinate());
 
         if (drone.getCoordinateX() == request.getXCoordinate() && drone.getCoordinateY() == request.getYCoordinate()) {
-            throw new IllegalArgumentException("Drone is already at the specified position, no movement detected");
+            throw rejected(Operation.MOVE, Rejection.NO_MOVEMENT, new IllegalArgumentException("Drone is already at the specified position, no movement detected"));
         }
 
-        if (droneRepository.existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate())) {
-            throw new IllegalArgumentException("Another drone already exists at the new position");
+        int fromX = drone.getCoordinateX();
+        int fromY = drone.getCoordinateY();
+        int toX = request.getXCoordinate();
+        int toY = request.getYCoordinate();
+        start = System.nanoTime();
+        boolean occupied = occupancyIndex.isOccupied(toX, toY);
+        droneMetrics.record(Operation.MOVE, Phase.OCCUPANCY, start);
+        if (occupied) {
+            throw rejected(Operation.MOVE, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists at the new position"));
         }
 
-        List<String> details = new ArrayList<>();
-        validateMove(drone, request.getXCoordinate(), request.getYCoordinate(), details);
+        // Planned before the target is claimed, so a move without a route never has to hand back cells that another
+        // request may have taken in the meantime.
+        start = System.nanoTime();
+        MovePlan plan;
+        try {
+            plan = routePlanner.plan(drone.getDirection(), fromX, fromY, toX, toY);
+        } catch (RouteSearchLimitException exception) {
+            throw rejected(Operation.MOVE, Rejection.SEARCH_LIMIT, new IllegalArgumentException(exception.getMessage()));
+        } finally {
+            droneMetrics.record(Operation.MOVE, Phase.PLAN, start);
+        }
+        if (plan == null) {
+            throw rejected(Operation.MOVE, Rejection.NO_ROUTE, new IllegalArgumentException("No route to the new position avoids the other drones"));
+        }
 
-        DroneMapper.updateDroneEntity(drone, request);
-        Drone updatedDrone = droneRepository.save(drone);
+        start = System.nanoTime();
+        Claim claim = claimMove(id, fromX, fromY, toX, toY);
+        droneMetrics.record(Operation.MOVE, Phase.OCCUPANCY, start);
+        if (claim == Claim.MOVED) {
+            Optional<Drone> current = droneStore.findById(id);
+            if (current.isPresent() && current.get().getVersion() == drone.getVersion()) {
+                // The store has not seen the move the workers found, so their ledgers have lost track of the drone
+                log.warn("Drone {} is not at ({}, {}) for the tile workers, as it is in the store; rebuilding the occupancy index", id, fromX, fromY);
+                droneMetrics.indexConflict();
+                scheduleOccupancyIndexRebuild();
+                throw rejected(Operation.MOVE, Rejection.CONFLICT, new IllegalArgumentException("Drone was moved by another request, retry the move"));
+            }
+            return null;
+        }
+        if (claim == Claim.OCCUPIED) {
+            throw rejected(Operation.MOVE, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists at the new position"));
+        }
 
-        return new MoveDroneResponse(updatedDrone.getDroneId(), updatedDrone.getCoordinateX(), updatedDrone.getCoordinateY(), updatedDrone.getDirection(), details);
+        boolean updated;
+        start = System.nanoTime();
+        try {
+            updated = droneStore.move(id, drone.getVersion(), toX, toY, plan.facing());
+        } catch (DataIntegrityViolationException exception) {
+            undoClaimedMove(id, fromX, fromY, toX, toY);
+            throw rejected(Operation.MOVE, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists at the new position"));
+        } catch (RuntimeException exception) {
+            undoClaimedMove(id, fromX, fromY, toX, toY);
+            throw exception;
+        }
+        droneMetrics.record(Operation.MOVE, Phase.PERSIST, start);
+        if (!updated) {
+            undoClaimedMove(id, fromX, fromY, toX, toY);
+            if (tileExecutor.isTiled()) {
+                // The drone moved away and back since it was read, unseen by the workers, so the move starts again
+                return null;
+            }
+            throw rejected(Operation.MOVE, Rejection.CONFLICT, new IllegalArgumentException("Drone was moved by another request, retry the move"));
+        }
+        if (tileExecutor.isTiled()) {
+            onCompletion(committed -> {
+                if (committed) {
+                    // Put off while the caller records the move, so the drone's next move waits for its history
+                    tileExecutor.afterHold(() -> tileExecutor.settle(id, fromX, fromY, toX, toY));
+                    tileExecutor.completed();
+                } else {
+                    undoClaimedMove(id, fromX, fromY, toX, toY);
+                }
+            });
+        } else {
+            onRollback(() -> undoMove(id, fromX, fromY, toX, toY));
+        }
+
+        return new MoveDroneResponse(id, toX, toY, plan.facing().name(), plan);
     }
 
-    private void validatePosition(int x, int y) throws InvalidBoundaryException {
-        if (x < 0 || x > 9 || y < 0 || y > 9) {
-            throw new InvalidBoundaryException("Out of field values for Coordinates");
+    /**
+     * Claims the target of a move and releases the drone's cell in the occupancy index, once the workers owning both
+     * cells have granted the move with tiled claims.
+     */
+    private Claim claimMove(UUID id, int fromX, int fromY, int toX, int toY) {
+        if (!tileExecutor.isTiled()) {
+            return occupancyIndex.tryMove(fromX, fromY, toX, toY) ? Claim.GRANTED : Claim.OCCUPIED;
         }
+        Claim claim = tileExecutor.move(id, fromX, fromY, toX, toY);
+        if (claim == Claim.GRANTED) {
+            // The index only ever holds cells the workers have granted, and they hold both until the move completes
+            occupancyIndex.tryMove(fromX, fromY, toX, toY);
+        }
+        return claim;
     }
 
-    private void validateMove(Drone drone, int x, int y, List<String> details) {
-        Direction currentDirection = Direction.valueOf(drone.getDirection().toUpperCase());
-        int currentX = drone.getCoordinateX();
-        int currentY = drone.getCoordinateY();
+    private void undoClaimedMove(UUID id, int fromX, int fromY, int toX, int toY) {
+        undoMove(id, fromX, fromY, toX, toY);
+        if (tileExecutor.isTiled()) {
+            tileExecutor.undo(id, fromX, fromY, toX, toY);
+            tileExecutor.completed();
+        }
+    }
 
-        if (currentX != x && currentY != y) {
-            handleTwoAxisChange(drone, x, y, details);
-        } else {
-            // Handle X-axis movement first
-            if (currentX != x) {
-                if (currentX < x) {
-                    changeDirectionIfNeeded(drone, Direction.EAST, details);
-                } else {
-                    changeDirectionIfNeeded(drone, Direction.WEST, details);
+    /**
+     * Flies a drone through the waypoints in order. Every waypoint is checked up front with the same rules as
+     * {@link #moveDrone}, the whole route is planned at once with its turns minimised across the legs, and only the
+     * last waypoint is claimed and saved. The drone stays locked until the transaction completes.
+     *
+     * @return the state of the drone at each waypoint, in order
+     */
+    @Transactional
+    public List<MoveDroneResponse> flyMission(UUID id, List<MoveDroneRequest> waypoints) throws InvalidBoundaryException, DroneNotFoundException {
+        if (tileExecutor.isTiled()) {
+            tileExecutor.pause();
+            try {
+                return flyMissionLocked(id, waypoints);
+            } finally {
+                resumeAfterCompletion();
+            }
+        }
+        droneLocks.lock(id);
+        claims.readLock().lock();
+        try {
+            return flyMissionLocked(id, waypoints);
+        } finally {
+            afterCompletion(() -> droneLocks.unlock(id));
+            afterCompletion(() -> claims.readLock().unlock());
+        }
+    }
+
+    private List<MoveDroneResponse> flyMissionLocked(UUID id, List<MoveDroneRequest> waypoints) throws InvalidBoundaryException, DroneNotFoundException {
+        long start = System.nanoTime();
+        Optional<Drone> found = droneStore.findById(id);
+        droneMetrics.record(Operation.MISSION, Phase.LOOKUP, start);
+        Drone drone = found.orElseThrow(() -> rejected(Operation.MISSION, Rejection.NOT_FOUND, new DroneNotFoundException("Drone not found")));
+        if (tileExecutor.isHeld(drone.getCoordinateX(), drone.getCoordinateY())) {
+            throw rejected(Operation.MISSION, Rejection.CONFLICT, new IllegalArgumentException("Drone was moved by another request, retry the move"));
+        }
+
+        int fromX = drone.getCoordinateX();
+        int fromY = drone.getCoordinateY();
+        int[] toX = new int[waypoints.size()];
+        int[] toY = new int[waypoints.size()];
+        start = System.nanoTime();
+        for (int i = 0; i < toX.length; i++) {
+            toX[i] = waypoints.get(i).getXCoordinate();
+            toY[i] = waypoints.get(i).getYCoordinate();
+            if (!fieldProperties.contains(toX[i], toY[i])) {
+                throw rejected(Operation.MISSION, Rejection.BOUNDARY, new InvalidBoundaryException("waypoints[" + i + "]: Out of field values for Coordinates"));
+            }
+            if (geofenceIndex.isRestricted(toX[i], toY[i])) {
+                throw rejected(Operation.MISSION, Rejection.NO_FLY_ZONE, new InvalidBoundaryException("waypoints[" + i + "]: Position is inside a no-fly zone"));
+            }
+            if (toX[i] == (i == 0 ? fromX : toX[i - 1]) && toY[i] == (i == 0 ? fromY : toY[i - 1])) {
+                throw rejected(Operation.MISSION, Rejection.NO_MOVEMENT, new IllegalArgumentException("waypoints[" + i + "]: Drone is already at the specified position, no movement detected"));
+            }
+            // The drone's own cell is free once it has left it
+            if ((toX[i] != fromX || toY[i] != fromY) && isClaimed(toX[i], toY[i])) {
+                throw rejected(Operation.MISSION, Rejection.OCCUPIED, new IllegalArgumentException("waypoints[" + i + "]: Another drone already exists at the new position"));
+            }
+        }
+        droneMetrics.record(Operation.MISSION, Phase.OCCUPANCY, start);
+
+        start = System.nanoTime();
+        MovePlan[] plans;
+        try {
+            plans = routePlanner.planMission(drone.getDirection(), fromX, fromY, toX, toY);
+        } catch (RouteSearchLimitException exception) {
+            throw rejected(Operation.MISSION, Rejection.SEARCH_LIMIT, new IllegalArgumentException(exception.getMessage()));
+        } finally {
+            droneMetrics.record(Operation.MISSION, Phase.PLAN, start);
+        }
+        if (plans == null) {
+            throw rejected(Operation.MISSION, Rejection.NO_ROUTE, new IllegalArgumentException("No route through the waypoints avoids the other drones"));
+        }
+
+        List<MoveDroneResponse> states = new ArrayList<>(plans.length);
+        for (int i = 0; i < plans.length; i++) {
+            states.add(new MoveDroneResponse(id, toX[i], toY[i], plans[i].facing().name(), plans[i]));
+        }
+        int lastX = toX[toX.length - 1];
+        int lastY = toY[toY.length - 1];
+        Direction facing = plans[plans.length - 1].facing();
+        if (lastX == fromX && lastY == fromY) {
+            // Back where it started, so only the direction changes
+            persistMission(drone, fromX, fromY, facing, () -> { });
+            return states;
+        }
+
+        start = System.nanoTime();
+        boolean occupied = !occupancyIndex.tryMove(fromX, fromY, lastX, lastY);
+        droneMetrics.record(Operation.MISSION, Phase.OCCUPANCY, start);
+        if (occupied) {
+            throw rejected(Operation.MISSION, Rejection.OCCUPIED, new IllegalArgumentException("waypoints[" + (toX.length - 1) + "]: Another drone already exists at the new position"));
+        }
+        persistMission(drone, lastX, lastY, facing, () -> undoMove(id, fromX, fromY, lastX, lastY));
+        onCommit(() -> {
+            tileExecutor.clear(fromX, fromY);
+            tileExecutor.place(lastX, lastY, id);
+        });
+        return states;
+    }
+
+    /**
+     * Saves the final state of a mission, undoing its claim on the occupancy index if the save fails or is rolled
+     * back.
+     */
+    private void persistMission(Drone drone, int x, int y, Direction facing, Runnable undo) {
+        boolean updated;
+        long start = System.nanoTime();
+        try {
+            updated = droneStore.move(drone.getDroneId(), drone.getVersion(), x, y, facing);
+        } catch (DataIntegrityViolationException exception) {
+            undo.run();
+            throw rejected(Operation.MISSION, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists at the new position"));
+        } catch (RuntimeException exception) {
+            undo.run();
+            throw exception;
+        }
+        droneMetrics.record(Operation.MISSION, Phase.PERSIST, start);
+        if (!updated) {
+            undo.run();
+            throw rejected(Operation.MISSION, Rejection.CONFLICT, new IllegalArgumentException("Drone was moved by another request, retry the move"));
+        }
+        onRollback(undo);
+    }
+
+    /**
+     * Applies many moves in one transaction. Each move is accepted or rejected on its own, with the same rules and
+     * messages as {@link #moveDrone}, but occupancy is judged against the batch as a whole: a drone may move into a
+     * cell that another drone of the batch is leaving, so chains and swaps go through. When two moves target the same
+     * cell, the first one in request order wins. The moves are flown at the same time, on timed routes from the
+     * {@link MoveScheduler} that never put two drones in one cell. Every drone of the batch stays locked until the
+     * transaction completes.
+     *
+     * @return one result per requested move, in request order
+     */
+    @Transactional
+    public List<BatchMoveResult> moveDrones(Map<UUID, MoveDroneRequest> requests) {
+        if (tileExecutor.isTiled()) {
+            tileExecutor.pause();
+            try {
+                return moveAllLocked(requests);
+            } finally {
+                resumeAfterCompletion();
+            }
+        }
+        int[] locked = droneLocks.lockAll(requests.keySet());
+        claims.readLock().lock();
+        try {
+            return moveAllLocked(requests);
+        } finally {
+            afterCompletion(() -> droneLocks.unlockAll(locked));
+            afterCompletion(() -> claims.readLock().unlock());
+        }
+    }
+
+    private List<BatchMoveResult> moveAllLocked(Map<UUID, MoveDroneRequest> requests) {
+        List<UUID> droneIds = new ArrayList<>(requests.keySet());
+        Map<UUID, Drone> drones = new HashMap<>();
+        long start = System.nanoTime();
+        for (Drone drone : droneStore.findAllById(droneIds)) {
+            drones.put(drone.getDroneId(), drone);
+        }
+        droneMetrics.record(Operation.MOVE_BATCH, Phase.LOOKUP, start);
+
+        String[] errors = new String[droneIds.size()];
+        Set<Long> targets = new HashSet<>();
+        for (int i = 0; i < droneIds.size(); i++) {
+            Drone drone = drones.get(droneIds.get(i));
+            MoveDroneRequest request = requests.get(droneIds.get(i));
+            if (drone == null) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.NOT_FOUND, "Drone not found");
+            } else if (tileExecutor.isHeld(drone.getCoordinateX(), drone.getCoordinateY())) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.CONFLICT, "Drone was moved by another request, retry the move");
+            } else if (!fieldProperties.contains(request.getXCoordinate(), request.getYCoordinate())) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.BOUNDARY, "Out of field values for Coordinates");
+            } else if (geofenceIndex.isRestricted(request.getXCoordinate(), request.getYCoordinate())) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.NO_FLY_ZONE, "Position is inside a no-fly zone");
+            } else if (drone.getCoordinateX() == request.getXCoordinate() && drone.getCoordinateY() == request.getYCoordinate()) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.NO_MOVEMENT, "Drone is already at the specified position, no movement detected");
+            } else if (!targets.add(OccupancyIndex.pack(request.getXCoordinate(), request.getYCoordinate()))) {
+                errors[i] = rejected(Operation.MOVE_BATCH, Rejection.OCCUPIED, "Another drone already exists at the new position");
+            }
+        }
+
+        int[] accepted;
+        long[] from;
+        long[] to;
+        UUID[] movingIds;
+        MovePlan[] plans = new MovePlan[droneIds.size()];
+        start = System.nanoTime();
+        while (true) {
+            rejectBlockedMoves(droneIds, drones, requests, errors);
+            // The moves are flown at once, so they are scheduled together around the drones that stay and around each
+            // other. A move without a route is rejected, and as its drone then stays behind, the rest is scheduled again.
+            long planStart = System.nanoTime();
+            accepted = acceptedMoves(errors);
+            Direction[] headings = new Direction[accepted.length];
+            from = new long[accepted.length];
+            to = new long[accepted.length];
+            movingIds = new UUID[accepted.length];
+            for (int i = 0; i < accepted.length; i++) {
+                Drone drone = drones.get(droneIds.get(accepted[i]));
+                MoveDroneRequest request = requests.get(droneIds.get(accepted[i]));
+                movingIds[i] = drone.getDroneId();
+                headings[i] = drone.getDirection();
+                from[i] = OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY());
+                to[i] = OccupancyIndex.pack(request.getXCoordinate(), request.getYCoordinate());
+            }
+            boolean[] searchLimited = new boolean[accepted.length];
+            MovePlan[] scheduled = moveScheduler.schedule(headings, from, to, searchLimited);
+            boolean unroutable = false;
+            for (int i = 0; i < accepted.length; i++) {
+                plans[accepted[i]] = scheduled[i];
+                if (scheduled[i] == null) {
+                    errors[accepted[i]] = searchLimited[i]
+                            ? rejected(Operation.MOVE_BATCH, Rejection.SEARCH_LIMIT, "Route search limit exceeded")
+                            : rejected(Operation.MOVE_BATCH, Rejection.NO_ROUTE, "No route to the new position avoids the other drones");
+                    unroutable = true;
                 }
-                details.add("Moved to (" + x + ", " + currentY + ")");
             }
-            // Handle Y-axis movement next
-            if (currentY != y) {
-                if (currentY < y) {
-                    changeDirectionIfNeeded(drone, Direction.NORTH, details);
-                } else {
-                    changeDirectionIfNeeded(drone, Direction.SOUTH, details);
+            droneMetrics.record(Operation.MOVE_BATCH, Phase.PLAN, planStart);
+            // Planning is timed on its own, so it is left out of the occupancy phase
+            start += System.nanoTime() - planStart;
+            if (unroutable) {
+                continue;
+            }
+            // A concurrent request may have taken a target since it was checked; reject that move and try again.
+            int conflict = occupancyIndex.tryMoveAll(movingIds, from, to);
+            if (conflict < 0) {
+                break;
+            }
+            errors[accepted[conflict]] = rejected(Operation.MOVE_BATCH, Rejection.OCCUPIED, "Another drone already exists at the new position");
+        }
+        droneMetrics.record(Operation.MOVE_BATCH, Phase.OCCUPANCY, start);
+
+        MoveDroneResponse[] moves = new MoveDroneResponse[droneIds.size()];
+        List<Drone> updatedDrones = new ArrayList<>(accepted.length);
+        try {
+            int[] x = new int[accepted.length];
+            int[] y = new int[accepted.length];
+            Direction[] facing = new Direction[accepted.length];
+            for (int i = 0; i < accepted.length; i++) {
+                Drone drone = drones.get(droneIds.get(accepted[i]));
+                MoveDroneRequest request = requests.get(droneIds.get(accepted[i]));
+                x[i] = request.getXCoordinate();
+                y[i] = request.getYCoordinate();
+                facing[i] = plans[accepted[i]].facing();
+                updatedDrones.add(drone);
+                moves[accepted[i]] = new MoveDroneResponse(drone.getDroneId(), x[i], y[i], facing[i].name(), plans[accepted[i]]);
+            }
+            start = System.nanoTime();
+            droneStore.moveAll(updatedDrones, x, y, facing);
+            droneMetrics.record(Operation.MOVE_BATCH, Phase.PERSIST, start);
+        } catch (DataIntegrityViolationException exception) {
+            undoMoveAll(movingIds, from, to);
+            throw rejected(Operation.MOVE_BATCH, Rejection.OCCUPIED, new IllegalArgumentException("Another drone already exists at the new position"));
+        } catch (OptimisticLockingFailureException exception) {
+            undoMoveAll(movingIds, from, to);
+            throw rejected(Operation.MOVE_BATCH, Rejection.CONFLICT, new IllegalArgumentException("Drone was moved by another request, retry the move"));
+        } catch (RuntimeException exception) {
+            undoMoveAll(movingIds, from, to);
+            throw exception;
+        }
+        UUID[] movedIds = movingIds;
+        long[] movedFrom = from;
+        long[] movedTo = to;
+        onRollback(() -> undoMoveAll(movedIds, movedFrom, movedTo));
+        onCommit(() -> {
+            for (long cell : movedFrom) {
+                tileExecutor.clear(OccupancyIndex.unpackX(cell), OccupancyIndex.unpackY(cell));
+            }
+            for (int i = 0; i < movedIds.length; i++) {
+                tileExecutor.place(OccupancyIndex.unpackX(movedTo[i]), OccupancyIndex.unpackY(movedTo[i]), movedIds[i]);
+            }
+        });
+
+        List<BatchMoveResult> results = new ArrayList<>(droneIds.size());
+        for (int i = 0; i < droneIds.size(); i++) {
+            results.add(errors[i] == null ? BatchMoveResult.moved(moves[i]) : BatchMoveResult.rejected(droneIds.get(i), errors[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Rejects, until nothing changes, every move whose target is occupied by a drone that is not itself moving away.
+     * Rejecting a move keeps its drone in place, which can in turn block a move into that drone's cell.
+     */
+    private void rejectBlockedMoves(List<UUID> droneIds, Map<UUID, Drone> drones, Map<UUID, MoveDroneRequest> requests, String[] errors) {
+        Set<Long> vacated = new HashSet<>();
+        for (int index : acceptedMoves(errors)) {
+            Drone drone = drones.get(droneIds.get(index));
+            vacated.add(OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY()));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index : acceptedMoves(errors)) {
+                MoveDroneRequest request = requests.get(droneIds.get(index));
+                long target = OccupancyIndex.pack(request.getXCoordinate(), request.getYCoordinate());
+                if (isClaimed(request.getXCoordinate(), request.getYCoordinate()) && !vacated.contains(target)) {
+                    errors[index] = rejected(Operation.MOVE_BATCH, Rejection.OCCUPIED, "Another drone already exists at the new position");
+                    Drone drone = drones.get(droneIds.get(index));
+                    vacated.remove(OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY()));
+                    changed = true;
                 }
-                details.add("Moved to (" + x + ", " + y + ")");
             }
         }
     }
 
-    private void handleTwoAxisChange(Drone drone, int x, int y, List<String> details) {
-        int currentX = drone.getCoordinateX();
-        int currentY = drone.getCoordinateY();
-        Direction currentDirection = Direction.valueOf(drone.getDirection().toUpperCase());
+    private static int[] acceptedMoves(String[] errors) {
+        int count = 0;
+        for (String error : errors) {
+            if (error == null) {
+                count++;
+            }
+        }
+        int[] accepted = new int[count];
+        count = 0;
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null) {
+                accepted[count++] = i;
+            }
+        }
+        return accepted;
+    }
 
-        // Determine intermediate directions
-        Direction xDirection = currentX < x ? Direction.EAST : Direction.WEST;
-        Direction yDirection = currentY < y ? Direction.NORTH : Direction.SOUTH;
+    /**
+     * Hands a claim taken by {@link OccupancyIndex#tryMove} back. If another drone has claimed the origin in the
+     * meantime the drone cannot be put back, so the conflict is logged and counted and the index rebuilt from the store.
+     */
+    private void undoMove(UUID id, int fromX, int fromY, int toX, int toY) {
+        if (!occupancyIndex.undoMove(id, fromX, fromY, toX, toY)) {
+            log.warn("Drone {} could not be put back at ({}, {}), the cell was claimed by another drone; rebuilding the occupancy index", id, fromX, fromY);
+            droneMetrics.indexConflict();
+            scheduleOccupancyIndexRebuild();
+        }
+    }
 
-        // Move along the axis that doesn't require a 180-degree turn first
-        if (currentDirection == Direction.NORTH || currentDirection == Direction.SOUTH) {
-            // Move along X-axis first
-            if (currentX != x) {
-                details.add("Pointed from " + currentDirection + " to " + xDirection);
-                drone.setDirection(xDirection.name());
-                currentDirection = xDirection;
-                drone.setCoordinateX(x);
-                details.add("Moved to (" + x + ", " + currentY + ") towards " + xDirection);
-            }
+    /**
+     * Hands the claims taken by {@link OccupancyIndex#tryMoveAll} back, rebuilding the index as {@link #undoMove} does
+     * if any origin has been claimed by another drone in the meantime.
+     */
+    private void undoMoveAll(UUID[] droneIds, long[] from, long[] to) {
+        if (!occupancyIndex.undoMoveAll(droneIds, from, to)) {
+            log.warn("Drones of a batch move could not all be put back, their cells were claimed by other drones; rebuilding the occupancy index");
+            droneMetrics.indexConflict();
+            scheduleOccupancyIndexRebuild();
+        }
+    }
 
-            // Then move along Y-axis
-            if (currentY != y) {
-                if (currentDirection != yDirection) {
-                    details.add("Pointed from " + currentDirection + " to " + yDirection);
-                    drone.setDirection(yDirection.name());
+    /**
+     * Rebuilds the occupancy index from the store on a background thread, once however many requests ask for it while
+     * a rebuild is pending. It may be called from a transaction callback, where the store can no longer be used.
+     */
+    private void scheduleOccupancyIndexRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            VirtualThreads.factory("drone-occupancy-rebuild", false).newThread(() -> {
+                rebuildPending.set(false);
+                try {
+                    loadOccupancyIndex();
+                } catch (RuntimeException exception) {
+                    log.error("Occupancy index rebuild failed", exception);
                 }
-                drone.setCoordinateY(y);
-                details.add("Moved to (" + x + ", " + y + ") towards " + yDirection);
+            }).start();
+        }
+    }
+
+    /**
+     * Whether another drone holds the cell, or with tiled claims a move not yet released is leaving it. Only called
+     * while the tile workers are paused.
+     */
+    private boolean isClaimed(int x, int y) {
+        return occupancyIndex.isOccupied(x, y) || tileExecutor.isHeld(x, y);
+    }
+
+    /**
+     * Resumes the tile workers paused for an operation spanning the field once its transaction completes, and the
+     * hold the caller has open is closed, so that the drones it moved are not moved again before their history is
+     * recorded.
+     */
+    private void resumeAfterCompletion() {
+        afterCompletion(() -> tileExecutor.afterHold(tileExecutor::resume));
+    }
+
+    private void onCommit(Runnable action) {
+        onCompletion(committed -> {
+            if (committed) {
+                action.run();
             }
+        });
+    }
+
+    /**
+     * Runs the action with whether the current transaction committed once it has completed, or with {@code true}
+     * right away outside a transaction.
+     */
+    private void onCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
         } else {
-            // Move along Y-axis first
-            if (currentY != y) {
-                details.add("Pointed from " + currentDirection + " to " + yDirection);
-                drone.setDirection(yDirection.name());
-                currentDirection = yDirection;
-                drone.setCoordinateY(y);
-                details.add("Moved to (" + currentX + ", " + y + ") towards " + yDirection);
-            }
-
-            // Then move along X-axis
-            if (currentX != x) {
-                if (currentDirection != xDirection) {
-                    details.add("Pointed from " + currentDirection + " to " + xDirection);
-                    drone.setDirection(xDirection.name());
+            action.accept(true);
+        }
+    }
+
+    private void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
                 }
-                drone.setCoordinateX(x);
-                details.add("Moved to (" + x + ", " + y + ") towards " + xDirection);
-            }
+            });
         }
     }
 
-    private void changeDirectionIfNeeded(Drone drone, Direction newDirection, List<String> details) {
-        Direction currentDirection = Direction.valueOf(drone.getDirection().toUpperCase());
+    /**
+     * Runs the action once the current transaction has committed or rolled back, or right away outside a transaction.
+     */
+    private void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 
-        // Check for 180-degree turn and change direction accordingly
-        if ((currentDirection == Direction.NORTH && newDirection == Direction.SOUTH) ||
-                (currentDirection == Direction.SOUTH && newDirection == Direction.NORTH) ||
-                (currentDirection == Direction.EAST && newDirection == Direction.WEST) ||
-                (currentDirection == Direction.WEST && newDirection == Direction.EAST)) {
-            Direction intermediateDirection = (newDirection == Direction.NORTH || newDirection == Direction.SOUTH) ? Direction.EAST : Direction.NORTH;
-            details.add("Could not directly travel from " + currentDirection + " to " + newDirection + ", pointed towards " + intermediateDirection + " first.");
-            drone.setDirection(intermediateDirection.name());
-            currentDirection = intermediateDirection;
+    private static String formatCell(long cell) {
+        return "(" + OccupancyIndex.unpackX(cell) + ", " + OccupancyIndex.unpackY(cell) + ")";
+    }
+
+    private void validatePosition(Operation operation, int x, int y) throws InvalidBoundaryException {
+        if (!fieldProperties.contains(x, y)) {
+            throw rejected(operation, Rejection.BOUNDARY, new InvalidBoundaryException("Out of field values for Coordinates"));
+        }
+        if (geofenceIndex.isRestricted(x, y)) {
+            throw rejected(operation, Rejection.NO_FLY_ZONE, new InvalidBoundaryException("Position is inside a no-fly zone"));
         }
-        details.add("Pointed from " + currentDirection + " to " + newDirection);
-        drone.setDirection(newDirection.name());
+    }
+
+    /**
+     * Counts a rejection and hands back the exception or error message that reports it.
+     */
+    private <T> T rejected(Operation operation, Rejection cause, T rejection) {
+        droneMetrics.reject(operation, cause);
+        return rejection;
     }
 
     public Drone getDrone(UUID id) throws DroneNotFoundException {
-            return droneRepository.findById(id).orElseThrow(() -> new DroneNotFoundException("Drone not found"));
+            return droneStore.findById(id).orElseThrow(() -> new DroneNotFoundException("Drone not found"));
+        }
+
+    /**
+     * Drones whose cells lie in the rectangle, bounds included.
+     */
+    public List<DroneResponse> findDronesInArea(int minX, int minY, int maxX, int maxY, Integer limit) {
+        if (minX > maxX || minY > maxY) {
+            throw new IllegalArgumentException("minX and minY must not be greater than maxX and maxY");
+        }
+        return toResponses(occupancyIndex.dronesInArea(minX, minY, maxX, maxY, queryLimit(limit)));
+    }
+
+    /**
+     * Drones at most {@code radius} cells from {@code (x, y)} in a straight line, nearest first.
+     */
+    public List<DroneResponse> findDronesWithin(int x, int y, int radius, Integer limit) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        return toResponses(occupancyIndex.dronesWithin(x, y, radius, queryLimit(limit)));
+    }
+
+    /**
+     * The {@code k} drones nearest to {@code (x, y)} in a straight line, nearest first.
+     */
+    public List<DroneResponse> findNearestDrones(int x, int y, int k) {
+        return toResponses(occupancyIndex.nearestDrones(x, y, queryLimit(k)));
+    }
+
+    private int queryLimit(Integer limit) {
+        int maxResults = queryProperties.getMaxResults();
+        if (limit == null) {
+            return maxResults;
+        }
+        if (limit < 1 || limit > maxResults) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxResults);
+        }
+        return limit;
+    }
+
+    /**
+     * Loads the drones found by a spatial query, in the order the index gave them. A drone that has moved since the
+     * index was read is left out, as the query no longer describes where it is.
+     */
+    private List<DroneResponse> toResponses(List<DronePosition> positions) {
+        if (positions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<UUID> droneIds = new ArrayList<>(positions.size());
+        for (DronePosition position : positions) {
+            droneIds.add(position.getDroneId());
+        }
+        Map<UUID, Drone> drones = new HashMap<>();
+        for (Drone drone : droneStore.findAllById(droneIds)) {
+            drones.put(drone.getDroneId(), drone);
         }
+        List<DroneResponse> responses = new ArrayList<>(positions.size());
+        for (DronePosition position : positions) {
+            Drone drone = drones.get(position.getDroneId());
+            if (drone != null && drone.getCoordinateX() == position.getX() && drone.getCoordinateY() == position.getY()) {
+                responses.add(DroneMapper.toDroneResponse(drone));
+            }
+        }
+        return responses;
+    }
     }
 
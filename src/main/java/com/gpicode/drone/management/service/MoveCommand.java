@@ -0,0 +1,56 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.dto.MoveCommandStatus.State;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A move accepted by the {@link MoveCommandQueue}, and its outcome once it has run.
+ */
+@Getter
+public final class MoveCommand {
+
+    private final UUID commandId;
+    private final UUID droneId;
+    private volatile State state = State.QUEUED;
+    // The completed move, once SUCCEEDED
+    private volatile MoveDroneResponse move;
+    // What the move threw, once FAILED
+    private volatile Throwable failure;
+    @Getter(AccessLevel.NONE)
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    MoveCommand(UUID commandId, UUID droneId) {
+        this.commandId = commandId;
+        this.droneId = droneId;
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the command to finish.
+     *
+     * @return whether it has finished
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    void run(MoveCommandQueue.Move command) {
+        state = State.RUNNING;
+        try {
+            move = command.run();
+            state = State.SUCCEEDED;
+        } catch (Throwable throwable) {
+            failure = throwable;
+            state = State.FAILED;
+        }
+    }
+
+    void finish() {
+        finished.countDown();
+    }
+}
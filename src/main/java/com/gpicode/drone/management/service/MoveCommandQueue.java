@@ -0,0 +1,132 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.CommandProperties;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.exception.CommandRejectedException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves accepted with {@code async=true}: answered as soon as they are queued, run in the background and reported by
+ * command id.
+ * <p>
+ * A move passes through three stages, each on its own threads. The request thread checks the shape of the request,
+ * assigns the command id and queues the move. A runner then validates, plans and persists it in one transaction. Last,
+ * its history record is handed to the history writer, which appends it together with those of concurrent moves. Drones
+ * are spread over the runners by id and every runner takes its moves in order, so the moves of one drone run one after
+ * the other in the order they were accepted, while other drones' moves go ahead on the other runners.
+ * <p>
+ * The outcome of a finished command is kept until {@code drone.commands.max-retained} newer ones have finished.
+ */
+@Component
+public class MoveCommandQueue {
+
+    private final ThreadPoolExecutor[] runners;
+    private final Map<UUID, MoveCommand> commands = new ConcurrentHashMap<>();
+    // Finished commands, oldest first
+    private final Queue<UUID> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+    private final int maxRetained;
+    private final long maxWaitMs;
+
+    public MoveCommandQueue(CommandProperties commandProperties) {
+        this.maxRetained = commandProperties.getMaxRetained();
+        this.maxWaitMs = commandProperties.getMaxWaitMs();
+        int count = commandProperties.getRunners() > 0 ? commandProperties.getRunners() : Runtime.getRuntime().availableProcessors();
+        this.runners = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            runners[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(commandProperties.getQueueCapacity()),
+                    VirtualThreads.factory("drone-move-runner-" + i, false));
+        }
+    }
+
+    /**
+     * A move, throwing whatever the service does.
+     */
+    @FunctionalInterface
+    public interface Move {
+        MoveDroneResponse run() throws Throwable;
+    }
+
+    /**
+     * Queues a move of the drone behind its earlier ones.
+     *
+     * @throws CommandRejectedException when the drone's runner has no room left or the queue is shut down
+     */
+    public MoveCommand submit(UUID droneId, Move move) {
+        MoveCommand command = new MoveCommand(UUID.randomUUID(), droneId);
+        commands.put(command.getCommandId(), command);
+        try {
+            runnerOf(droneId).execute(() -> {
+                command.run(move);
+                // Retired before waiters are released, so a status request sent after one returns sees it retained
+                retire(command.getCommandId());
+                command.finish();
+            });
+        } catch (RejectedExecutionException exception) {
+            commands.remove(command.getCommandId());
+            throw new CommandRejectedException("Move command queue is full, try again later");
+        }
+        return command;
+    }
+
+    /**
+     * Waits up to {@code waitMs}, capped at {@code drone.commands.max-wait-ms}, for the command to finish.
+     *
+     * @return the command, finished or not, or {@code null} if it is unknown or has been forgotten
+     */
+    public MoveCommand await(UUID commandId, long waitMs) {
+        MoveCommand command = commands.get(commandId);
+        if (command != null && waitMs > 0) {
+            try {
+                command.await(Math.min(waitMs, maxWaitMs));
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Stops taking moves and waits for those already accepted to run.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        for (ThreadPoolExecutor runner : runners) {
+            runner.shutdown();
+        }
+        for (ThreadPoolExecutor runner : runners) {
+            runner.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void retire(UUID commandId) {
+        finished.add(commandId);
+        if (finishedCount.incrementAndGet() > maxRetained) {
+            UUID oldest = finished.poll();
+            if (oldest != null) {
+                finishedCount.decrementAndGet();
+                commands.remove(oldest);
+            }
+        }
+    }
+
+    private ThreadPoolExecutor runnerOf(UUID droneId) {
+        long h = droneId.getMostSignificantBits() ^ droneId.getLeastSignificantBits();
+        h *= 0x9E3779B97F4A7C15L;
+        return runners[(int) ((h >>> 32) % runners.length)];
+    }
+}
@@ -0,0 +1,224 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.entity.Direction;
+
+import java.util.AbstractList;
+import java.util.Objects;
+
+/**
+ * The turns and straight moves that take a drone from one cell to another, planned without building any strings.
+ * <p>
+ * Every step is packed into one byte of a single {@code long}: two bits for the kind of step and two bits for each of
+ * its operands, which are direction ordinals or the cell a move ends in. A plan is also the {@code details} list of the
+ * move's response, and a step's description is only rendered when the list is read, which in practice means when the
+ * response or its history entry is serialized.
+ * <p>
+ * A plan following a route found around other drones can have more steps than one {@code long} holds, so its steps
+ * are kept one per {@code int}, with the index of the corner a move ends in above the low byte, and the corners in
+ * their own array. A plan scheduled alongside other moves can also wait at a corner, and keeps the cell it holds at
+ * every tick.
+ */
+public final class MovePlan extends AbstractList<String> {
+
+    // "Pointed from A to B"
+    private static final int TURN = 0;
+    // "Could not directly travel from A to B, pointed towards C first."
+    private static final int DETOUR = 1;
+    // "Moved to (x, y)"
+    private static final int MOVE = 2;
+    // "Moved to (x, y) towards A"
+    private static final int MOVE_TOWARDS = 3;
+
+    // Cells a move can end in: after travelling along the x axis only, along the y axis only, at the target, or at a
+    // corner of a route.
+    private static final int ALONG_X = 0;
+    private static final int ALONG_Y = 1;
+    private static final int TARGET = 2;
+    private static final int CORNER = 3;
+
+    private static final int STEP_BITS = 8;
+    // Route steps only: "Waited n ticks at (x, y)", the ticks kept with the corner
+    private static final int WAIT = 1 << 31;
+
+    private final int fromX;
+    private final int fromY;
+    private final int toX;
+    private final int toY;
+    private Direction facing;
+    private long steps;
+    private int[] routeSteps;
+    private int[] corners;
+    private int[] waits;
+    private long[] timeline;
+    private int size;
+
+    private MovePlan(Direction facing, int fromX, int fromY, int toX, int toY) {
+        this.facing = facing;
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.toX = toX;
+        this.toY = toY;
+    }
+
+    /**
+     * Plans the move of a drone facing {@code facing} from {@code (fromX, fromY)} to {@code (toX, toY)}. A move along
+     * one axis turns to face it, going through a quarter turn first instead of reversing. A move along both axes
+     * starts with the axis the drone can turn to directly and finishes with the other one.
+     */
+    public static MovePlan plan(Direction facing, int fromX, int fromY, int toX, int toY) {
+        MovePlan plan = new MovePlan(facing, fromX, fromY, toX, toY);
+        Direction xDirection = fromX < toX ? Direction.EAST : Direction.WEST;
+        Direction yDirection = fromY < toY ? Direction.NORTH : Direction.SOUTH;
+
+        if (fromX != toX && fromY != toY) {
+            if (facing == Direction.NORTH || facing == Direction.SOUTH) {
+                plan.turn(xDirection);
+                plan.add(MOVE_TOWARDS, ALONG_X, xDirection.ordinal(), 0);
+                plan.turn(yDirection);
+                plan.add(MOVE_TOWARDS, TARGET, yDirection.ordinal(), 0);
+            } else {
+                plan.turn(yDirection);
+                plan.add(MOVE_TOWARDS, ALONG_Y, yDirection.ordinal(), 0);
+                plan.turn(xDirection);
+                plan.add(MOVE_TOWARDS, TARGET, xDirection.ordinal(), 0);
+            }
+        } else if (fromX != toX) {
+            plan.reverseOrTurn(xDirection);
+            plan.add(MOVE, ALONG_X, 0, 0);
+        } else if (fromY != toY) {
+            plan.reverseOrTurn(yDirection);
+            plan.add(MOVE, TARGET, 0, 0);
+        }
+        return plan;
+    }
+
+    /**
+     * Plans a move along a route of straight segments, segment {@code i} heading {@code directions[i]} and ending at
+     * {@code (cornerX[i], cornerY[i])}. The drone turns only where the route does, going through a quarter turn first
+     * instead of reversing.
+     */
+    static MovePlan route(Direction facing, int fromX, int fromY, int[] cornerX, int[] cornerY, int[] directions, int segments) {
+        return route(facing, fromX, fromY, cornerX, cornerY, directions, null, segments);
+    }
+
+    /**
+     * Plans a move along a route as above, where a segment with {@code waits[i] > 0} holds the drone at its corner for
+     * that many ticks instead of moving.
+     */
+    static MovePlan route(Direction facing, int fromX, int fromY, int[] cornerX, int[] cornerY, int[] directions, int[] waits, int segments) {
+        MovePlan plan = new MovePlan(facing, fromX, fromY, cornerX[segments - 1], cornerY[segments - 1]);
+        // At most a detour, a turn and a move per segment
+        plan.routeSteps = new int[segments * 3];
+        plan.corners = new int[segments * 2];
+        for (int i = 0; i < segments; i++) {
+            plan.corners[2 * i] = cornerX[i];
+            plan.corners[2 * i + 1] = cornerY[i];
+            if (waits != null && waits[i] > 0) {
+                if (plan.waits == null) {
+                    plan.waits = new int[segments];
+                }
+                plan.waits[i] = waits[i];
+                plan.routeSteps[plan.size++] = WAIT | i << STEP_BITS;
+                continue;
+            }
+            Direction direction = Direction.of(directions[i]);
+            if (plan.facing != direction) {
+                plan.reverseOrTurn(direction);
+            }
+            plan.add(MOVE_TOWARDS, CORNER, direction.ordinal(), 0, i);
+        }
+        return plan;
+    }
+
+    /**
+     * Marks a plan as scheduled against other moves, keeping the packed cell the drone holds at every tick from the
+     * start of the schedule until it arrives.
+     */
+    static MovePlan timed(MovePlan plan, long[] timeline) {
+        plan.timeline = timeline;
+        return plan;
+    }
+
+    /**
+     * @return the direction the drone faces once the plan has been carried out
+     */
+    public Direction facing() {
+        return facing;
+    }
+
+    /**
+     * @return the packed cell held at each tick of a scheduled move, or {@code null} for a move planned on its own
+     */
+    long[] timeline() {
+        return timeline;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        int step;
+        if (routeSteps == null) {
+            // Only the byte of this step; the bits above it belong to the steps after it
+            step = (int) (steps >>> (index * STEP_BITS)) & 0xFF;
+        } else {
+            step = routeSteps[index];
+        }
+        if (routeSteps != null && (step & WAIT) != 0) {
+            int corner = (step & ~WAIT) >>> STEP_BITS;
+            return "Waited " + waits[corner] + " ticks at " + cell(CORNER, step & ~WAIT);
+        }
+        int a = (step >>> 2) & 3;
+        int b = (step >>> 4) & 3;
+        int c = (step >>> 6) & 3;
+        return switch (step & 3) {
+            case TURN -> "Pointed from " + Direction.of(a) + " to " + Direction.of(b);
+            case DETOUR -> "Could not directly travel from " + Direction.of(a) + " to " + Direction.of(b)
+                    + ", pointed towards " + Direction.of(c) + " first.";
+            case MOVE -> "Moved to " + cell(a, step);
+            default -> "Moved to " + cell(a, step) + " towards " + Direction.of(b);
+        };
+    }
+
+    private void reverseOrTurn(Direction direction) {
+        if (facing.opposite() == direction) {
+            Direction intermediate = direction == Direction.NORTH || direction == Direction.SOUTH ? Direction.EAST : Direction.NORTH;
+            add(DETOUR, facing.ordinal(), direction.ordinal(), intermediate.ordinal());
+            facing = intermediate;
+        }
+        turn(direction);
+    }
+
+    private void turn(Direction direction) {
+        add(TURN, facing.ordinal(), direction.ordinal(), 0);
+        facing = direction;
+    }
+
+    private void add(int kind, int a, int b, int c) {
+        add(kind, a, b, c, 0);
+    }
+
+    private void add(int kind, int a, int b, int c, int corner) {
+        int step = kind | a << 2 | b << 4 | c << 6;
+        if (routeSteps != null) {
+            routeSteps[size] = step | corner << STEP_BITS;
+        } else {
+            steps |= (long) step << (size * STEP_BITS);
+        }
+        size++;
+    }
+
+    private String cell(int cell, int step) {
+        if (cell == CORNER) {
+            int corner = step >>> STEP_BITS;
+            return "(" + corners[2 * corner] + ", " + corners[2 * corner + 1] + ")";
+        }
+        int x = cell == ALONG_Y ? fromX : toX;
+        int y = cell == ALONG_X ? fromY : toY;
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,596 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Schedules the moves of a batch so that they can all be flown at once without two drones ever meeting, and without
+ * any of them entering a no-fly zone.
+ * <p>
+ * Time advances in ticks, and in every tick a drone moves one cell ahead, makes a quarter turn or waits where it is.
+ * Moves are scheduled one after the other in request order by cooperative A* over (cell, heading, tick) states: each
+ * timed route is entered into a {@link ReservationTable} as soon as it is found, and every later route keeps clear of
+ * it, never holding a cell at a tick it is reserved and never passing another drone head-on between two ticks. A
+ * drone that has arrived holds its target for good. A drone not yet scheduled stays in its cell, which only a move
+ * ending there may enter, and no sooner than that drone could have left it; the drone is then scheduled to be gone by
+ * then.
+ * <p>
+ * Each move first keeps to the rectangle spanned by its origin and target, widened by
+ * {@code drone.planner.region-margin} cells. Moves whose rectangles overlap, directly or through others, form a region
+ * with its own reservation table, and regions are scheduled in parallel since their routes cannot meet. A move left
+ * without a route, typically one hemmed in by drones scheduled after it, is tried again once every other move has its
+ * route, against the reservations of every region: in the same window first, and in one that doubles like the one of
+ * {@link RoutePlanner} if that holds no route at all. The search uses the breadth-first distances of
+ * {@link DistanceField} as its estimate; in the first pass it gives up after a few states per cell of its window, and
+ * in the second after {@code drone.planner.max-search-cells} states. A move whose second pass stops at that limit, or
+ * whose window would pass as many cells, is reported as such rather than as a move without a route.
+ */
+@Component
+public class MoveScheduler {
+
+    private static final int[] DX = DistanceField.DX;
+    private static final int[] DY = DistanceField.DY;
+    // Outcomes of a search: a route was found, the window holds no route even with the other moves out of the way,
+    // the other moves leave it no route, or the search gave up before finding out
+    private static final int SCHEDULED = 0;
+    private static final int WALLED_IN = 1;
+    private static final int CROWDED = 2;
+    private static final int SEARCH_LIMIT = 3;
+
+    private final OccupancyIndex occupancyIndex;
+    private final GeofenceIndex geofenceIndex;
+    private final FieldProperties fieldProperties;
+    private final PlannerProperties plannerProperties;
+    private final BlockingQueue<Search> pool = new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    public MoveScheduler(OccupancyIndex occupancyIndex, GeofenceIndex geofenceIndex, FieldProperties fieldProperties, PlannerProperties plannerProperties) {
+        this.occupancyIndex = occupancyIndex;
+        this.geofenceIndex = geofenceIndex;
+        this.fieldProperties = fieldProperties;
+        this.plannerProperties = plannerProperties;
+    }
+
+    /**
+     * Schedules the moves of drones facing {@code facing[i]} from cell {@code from[i]} to cell {@code to[i]}, cells
+     * packed as in {@link OccupancyIndex#pack}. The targets must differ from each other and from every cell held by a
+     * drone that is not moving.
+     *
+     * @return the timed plan of every move, {@code null} where no route was found
+     */
+    public MovePlan[] schedule(Direction[] facing, long[] from, long[] to) {
+        return schedule(facing, from, to, new boolean[from.length]);
+    }
+
+    /**
+     * Schedules the moves as above, setting {@code searchLimited[i]} where move {@code i} was left without a route
+     * because its search reached {@code drone.planner.max-search-cells}.
+     */
+    public MovePlan[] schedule(Direction[] facing, long[] from, long[] to, boolean[] searchLimited) {
+        Batch batch = new Batch(facing, from, to);
+        int margin = Math.max(1, plannerProperties.getRegionMargin());
+        int[][] regions = batch.regions(margin);
+        ReservationTable[] tables = new ReservationTable[regions.length];
+        IntStream indices = IntStream.range(0, regions.length);
+        (regions.length > 1 ? indices.parallel() : indices).forEach(region -> {
+            tables[region] = new ReservationTable();
+            for (int move : regions[region]) {
+                // Kept short, as a move stuck behind drones scheduled later is better tried again once they are
+                batch.schedule(move, margin, tables[region], (int) Math.min(plannerProperties.getMaxSearchCells(), 16 * batch.cells(move, margin)));
+            }
+        });
+
+        ReservationTable all = null;
+        for (int move = 0; move < from.length; move++) {
+            if (batch.plans[move] != null) {
+                continue;
+            }
+            if (all == null) {
+                all = new ReservationTable();
+                for (ReservationTable table : tables) {
+                    all.addAll(table);
+                }
+            }
+            // Every other drone now has its route, so only a move walled in within its window gets a wider one
+            long wider = margin;
+            int outcome;
+            while ((outcome = batch.schedule(move, wider, all, plannerProperties.getMaxSearchCells())) == WALLED_IN && !batch.coversField(move, wider)) {
+                if (batch.cells(move, wider * 2) > plannerProperties.getMaxSearchCells()) {
+                    outcome = SEARCH_LIMIT;
+                    break;
+                }
+                wider *= 2;
+            }
+            searchLimited[move] = outcome == SEARCH_LIMIT;
+        }
+        return batch.plans;
+    }
+
+    /**
+     * The moves being scheduled, and which drone of the batch stands in which cell before the batch moves.
+     */
+    private final class Batch {
+        private final Direction[] facing;
+        private final long[] from;
+        private final long[] to;
+        private final MovePlan[] plans;
+        private final long[] origins;
+        private final int[] originMoves;
+        // The earliest tick each drone can have left its cell
+        private final int[] earliestDeparture;
+
+        private Batch(Direction[] facing, long[] from, long[] to) {
+            this.facing = facing;
+            this.from = from;
+            this.to = to;
+            this.plans = new MovePlan[from.length];
+            Integer[] order = new Integer[from.length];
+            for (int move = 0; move < from.length; move++) {
+                order[move] = move;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(from[a], from[b]));
+            this.origins = new long[from.length];
+            this.originMoves = new int[from.length];
+            for (int i = 0; i < order.length; i++) {
+                origins[i] = from[order[i]];
+                originMoves[i] = order[i];
+            }
+            this.earliestDeparture = new int[from.length];
+            for (int move = 0; move < from.length; move++) {
+                earliestDeparture[move] = earliestDeparture(move);
+            }
+        }
+
+        /**
+         * @return the move of the drone standing in the cell before the batch, or {@code -1}
+         */
+        private int moveFrom(long cell) {
+            int i = Arrays.binarySearch(origins, cell);
+            return i >= 0 ? originMoves[i] : -1;
+        }
+
+        private int earliestDeparture(int move) {
+            int x = OccupancyIndex.unpackX(from[move]);
+            int y = OccupancyIndex.unpackY(from[move]);
+            int earliest = Integer.MAX_VALUE;
+            for (int heading = 0; heading < 4; heading++) {
+                int nextX = x + DX[heading];
+                int nextY = y + DY[heading];
+                if (!fieldProperties.contains(nextX, nextY)) {
+                    continue;
+                }
+                // A drone of the batch may clear the cell in time, unless it is coming the other way into this one
+                int neighbour = moveFrom(OccupancyIndex.pack(nextX, nextY));
+                if (neighbour >= 0 ? to[neighbour] == from[move] : occupancyIndex.isOccupied(nextX, nextY)) {
+                    continue;
+                }
+                earliest = Math.min(earliest, quarterTurns(facing[move].ordinal(), heading) + 1);
+            }
+            return earliest;
+        }
+
+        /**
+         * Groups the moves whose rectangles overlap, directly or through other moves, each group in request order.
+         */
+        private int[][] regions(int margin) {
+            int count = from.length;
+            int[] minX = new int[count];
+            int[] minY = new int[count];
+            int[] maxX = new int[count];
+            int[] maxY = new int[count];
+            int[] parent = new int[count];
+            for (int move = 0; move < count; move++) {
+                parent[move] = move;
+            }
+            boolean merged = true;
+            while (merged) {
+                merged = false;
+                // The bounds of every region, kept at its root
+                for (int move = 0; move < count; move++) {
+                    minX[move] = Integer.MAX_VALUE;
+                    minY[move] = Integer.MAX_VALUE;
+                    maxX[move] = Integer.MIN_VALUE;
+                    maxY[move] = Integer.MIN_VALUE;
+                }
+                for (int move = 0; move < count; move++) {
+                    int root = find(parent, move);
+                    minX[root] = Math.min(minX[root], minX(move, margin));
+                    minY[root] = Math.min(minY[root], minY(move, margin));
+                    maxX[root] = Math.max(maxX[root], maxX(move, margin));
+                    maxY[root] = Math.max(maxY[root], maxY(move, margin));
+                }
+                int roots = 0;
+                long[] byMinX = new long[count];
+                for (int move = 0; move < count; move++) {
+                    if (parent[move] == move) {
+                        byMinX[roots++] = (long) minX[move] << 32 | move;
+                    }
+                }
+                Arrays.sort(byMinX, 0, roots);
+                for (int i = 0; i < roots; i++) {
+                    int a = (int) byMinX[i];
+                    for (int j = i + 1; j < roots && (int) (byMinX[j] >>> 32) <= maxX[a]; j++) {
+                        int b = (int) byMinX[j];
+                        if (minY[b] <= maxY[a] && minY[a] <= maxY[b] && find(parent, a) != find(parent, b)) {
+                            parent[find(parent, b)] = find(parent, a);
+                            merged = true;
+                        }
+                    }
+                }
+            }
+            Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+            for (int move = 0; move < count; move++) {
+                groups.computeIfAbsent(find(parent, move), root -> new ArrayList<>()).add(move);
+            }
+            int[][] regions = new int[groups.size()][];
+            int region = 0;
+            for (List<Integer> moves : groups.values()) {
+                regions[region++] = moves.stream().mapToInt(Integer::intValue).toArray();
+            }
+            return regions;
+        }
+
+        private int minX(int move, long margin) {
+            return (int) Math.max(0, Math.min(OccupancyIndex.unpackX(from[move]), OccupancyIndex.unpackX(to[move])) - margin);
+        }
+
+        private int minY(int move, long margin) {
+            return (int) Math.max(0, Math.min(OccupancyIndex.unpackY(from[move]), OccupancyIndex.unpackY(to[move])) - margin);
+        }
+
+        private int maxX(int move, long margin) {
+            return (int) Math.min(fieldProperties.getWidth() - 1L, Math.max(OccupancyIndex.unpackX(from[move]), OccupancyIndex.unpackX(to[move])) + margin);
+        }
+
+        private int maxY(int move, long margin) {
+            return (int) Math.min(fieldProperties.getHeight() - 1L, Math.max(OccupancyIndex.unpackY(from[move]), OccupancyIndex.unpackY(to[move])) + margin);
+        }
+
+        private long cells(int move, long margin) {
+            return ((long) maxX(move, margin) - minX(move, margin) + 1) * ((long) maxY(move, margin) - minY(move, margin) + 1);
+        }
+
+        private boolean coversField(int move, long margin) {
+            return minX(move, margin) == 0 && minY(move, margin) == 0
+                    && maxX(move, margin) == fieldProperties.getWidth() - 1 && maxY(move, margin) == fieldProperties.getHeight() - 1;
+        }
+
+        /**
+         * Looks for a timed route of one move within {@code margin} cells of its rectangle, visiting at most
+         * {@code budget} states, and reserves it if found.
+         *
+         * @return {@link #SCHEDULED}, {@link #WALLED_IN}, {@link #CROWDED} or {@link #SEARCH_LIMIT}
+         */
+        private int schedule(int move, long margin, ReservationTable table, int budget) {
+            if (cells(move, margin) > plannerProperties.getMaxSearchCells()) {
+                return SEARCH_LIMIT;
+            }
+            Search search = pool.poll();
+            if (search == null) {
+                search = new Search();
+            }
+            try {
+                int minX = minX(move, margin);
+                int minY = minY(move, margin);
+                return search.run(this, move, table, minX, minY, maxX(move, margin) - minX + 1, maxY(move, margin) - minY + 1, budget);
+            } finally {
+                pool.offer(search);
+            }
+        }
+    }
+
+    private static int find(int[] parent, int move) {
+        while (parent[move] != move) {
+            parent[move] = parent[parent[move]];
+            move = parent[move];
+        }
+        return move;
+    }
+
+    private static int quarterTurns(int heading, int direction) {
+        int turns = (direction - heading) & 3;
+        return turns == 3 ? 1 : turns;
+    }
+
+    /**
+     * Buffers of one search. States are {@code cell * 4 + heading} for the row-major cells of the window, and a node
+     * is a state at a tick; as every action takes one tick, the cost of a node is its tick and each is opened once.
+     * Past the last tick of the reservations the field no longer changes, so later ticks are not told apart, which
+     * keeps a search for a route that does not exist from waiting forever.
+     */
+    private final class Search {
+        private long[] blocked = new long[0];
+        // Cells of the window some drone of the batch starts from, so that most cells skip looking for one
+        private long[] origins = new long[0];
+        private final DistanceField distances = new DistanceField();
+        private final SearchHeap open = new SearchHeap();
+        private int[] nodeStates = new int[1024];
+        private int[] nodeTicks = new int[1024];
+        private int[] nodeParents = new int[1024];
+        private int nodes;
+        // (tick, state) -> node, valid only where the stamp matches so that it never needs clearing
+        private long[] seenKeys = new long[4096];
+        private int[] seenNodes = new int[4096];
+        private int[] seenStamps = new int[4096];
+        private int generation;
+        // From this tick on nothing changes any more, so a state needs visiting at one tick only
+        private int horizon;
+
+        private Batch batch;
+        private int move;
+        private ReservationTable table;
+        private int minX;
+        private int minY;
+        private int width;
+        private int height;
+        private int goalX;
+        private int goalY;
+        private long goalCell;
+
+        private int run(Batch batch, int move, ReservationTable table, int minX, int minY, int width, int height, int budget) {
+            this.batch = batch;
+            this.move = move;
+            this.table = table;
+            this.minX = minX;
+            this.minY = minY;
+            this.width = width;
+            this.height = height;
+            int cells = width * height;
+            if (blocked.length < (cells + 63) >>> 6) {
+                blocked = new long[(cells + 63) >>> 6];
+                origins = new long[(cells + 63) >>> 6];
+            } else {
+                Arrays.fill(blocked, 0, (cells + 63) >>> 6, 0L);
+                Arrays.fill(origins, 0, (cells + 63) >>> 6, 0L);
+            }
+            occupancyIndex.markOccupied(minX, minY, width, height, blocked);
+            // Drones of the batch are not obstacles: where they are at each tick is up to the schedule
+            int first = Arrays.binarySearch(batch.origins, OccupancyIndex.pack(minX, 0));
+            for (int i = first >= 0 ? first : -first - 1; i < batch.origins.length; i++) {
+                int x = OccupancyIndex.unpackX(batch.origins[i]);
+                int y = OccupancyIndex.unpackY(batch.origins[i]);
+                if (x >= minX + width) {
+                    break;
+                }
+                if (y >= minY && y < minY + height) {
+                    int cell = local(x, y);
+                    blocked[cell >>> 6] &= ~(1L << cell);
+                    origins[cell >>> 6] |= 1L << cell;
+                }
+            }
+            // No-fly zones are, even where a drone of the batch starts from
+            geofenceIndex.markRestricted(minX, minY, width, height, blocked);
+            int fromX = OccupancyIndex.unpackX(batch.from[move]);
+            int fromY = OccupancyIndex.unpackY(batch.from[move]);
+            goalCell = batch.to[move];
+            goalX = OccupancyIndex.unpackX(goalCell) - minX;
+            goalY = OccupancyIndex.unpackY(goalCell) - minY;
+            int start = local(fromX, fromY);
+            int goal = goalY * width + goalX;
+            blocked[start >>> 6] &= ~(1L << start);
+            blocked[goal >>> 6] &= ~(1L << goal);
+            try {
+                if (!distances.measure(blocked, width, height, goal, start)) {
+                    return WALLED_IN;
+                }
+                batch.plans[move] = search(start, goal, budget);
+                if (batch.plans[move] != null) {
+                    return SCHEDULED;
+                }
+                // States still open mean the search ran out of budget rather than of routes
+                return open.isEmpty() ? CROWDED : SEARCH_LIMIT;
+            } finally {
+                distances.clear();
+                this.batch = null;
+                this.table = null;
+            }
+        }
+
+        private MovePlan search(int start, int goal, int budget) {
+            open.clear();
+            nodes = 0;
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(seenStamps, 0);
+                generation = 1;
+            }
+            // Drones not scheduled yet leave their cells within three ticks if they can at all
+            horizon = Math.max(table.lastTick(), 3) + 1;
+            open(start * 4 + batch.facing[move].ordinal(), 0, -1);
+            while (!open.isEmpty() && nodes < budget) {
+                int node = open.pop();
+                int state = nodeStates[node];
+                int tick = nodeTicks[node];
+                int cell = state >>> 2;
+                int heading = state & 3;
+                if (cell == goal && table.lastTick(goalCell) < tick) {
+                    return reserve(node);
+                }
+                int x = cell % width;
+                int y = cell / width;
+                long here = OccupancyIndex.pack(minX + x, minY + y);
+                if (isFree(here, cell, tick + 1)) {
+                    open(state, tick + 1, node);
+                    open(cell * 4 + ((heading + 1) & 3), tick + 1, node);
+                    open(cell * 4 + ((heading + 3) & 3), tick + 1, node);
+                }
+                int aheadX = x + DX[heading];
+                int aheadY = y + DY[heading];
+                if (aheadX < 0 || aheadX >= width || aheadY < 0 || aheadY >= height) {
+                    continue;
+                }
+                int ahead = aheadY * width + aheadX;
+                long there = OccupancyIndex.pack(minX + aheadX, minY + aheadY);
+                if ((blocked[ahead >>> 6] & 1L << ahead) == 0 && isFree(there, ahead, tick + 1) && !isHeadOn(here, there, tick)) {
+                    open(ahead * 4 + heading, tick + 1, node);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the drone may hold the cell at the tick
+         */
+        private boolean isFree(long cell, int local, int tick) {
+            int owner = table.owner(cell, tick);
+            if (owner >= 0 && owner != move) {
+                return false;
+            }
+            if ((origins[local >>> 6] & 1L << local) == 0) {
+                return true;
+            }
+            int standing = batch.moveFrom(cell);
+            if (standing >= 0 && standing != move && batch.plans[standing] == null) {
+                // A drone not scheduled yet is in the way, except for a move ending in its cell once it can have left
+                return cell == goalCell && tick >= batch.earliestDeparture[standing];
+            }
+            return true;
+        }
+
+        /**
+         * @return whether a drone moving the other way between the two cells would be passed between the ticks
+         */
+        private boolean isHeadOn(long here, long there, int tick) {
+            int other = table.owner(there, tick);
+            return other >= 0 && other != move && table.owner(here, tick + 1) == other;
+        }
+
+        private void open(int state, int tick, int parent) {
+            long key = (long) Math.min(tick, horizon) << 32 | state;
+            int mask = seenKeys.length - 1;
+            int slot = slot(key, mask);
+            while (seenStamps[slot] == generation) {
+                if (seenKeys[slot] == key) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (nodes == nodeStates.length) {
+                nodeStates = Arrays.copyOf(nodeStates, nodes * 2);
+                nodeTicks = Arrays.copyOf(nodeTicks, nodes * 2);
+                nodeParents = Arrays.copyOf(nodeParents, nodes * 2);
+            }
+            int node = nodes++;
+            nodeStates[node] = state;
+            nodeTicks[node] = tick;
+            nodeParents[node] = parent;
+            seenKeys[slot] = key;
+            seenNodes[slot] = node;
+            seenStamps[slot] = generation;
+            if (nodes * 2 > seenKeys.length) {
+                growSeen();
+            }
+            int cell = state >>> 2;
+            int left = distances.estimate(cell) + DistanceField.turnsNeeded(state & 3, goalX - cell % width, goalY - cell / width);
+            open.push((long) (tick + left) << 32 | left, node);
+        }
+
+        private void growSeen() {
+            int capacity = seenKeys.length * 2;
+            long[] keys = new long[capacity];
+            int[] found = new int[capacity];
+            int[] stamps = new int[capacity];
+            for (int old = 0; old < seenKeys.length; old++) {
+                if (seenStamps[old] == generation) {
+                    int slot = slot(seenKeys[old], capacity - 1);
+                    while (stamps[slot] == generation) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    keys[slot] = seenKeys[old];
+                    found[slot] = seenNodes[old];
+                    stamps[slot] = generation;
+                }
+            }
+            seenKeys = keys;
+            seenNodes = found;
+            seenStamps = stamps;
+        }
+
+        /**
+         * Reserves the route ending at the node and turns it into a plan: straight runs of cells become segments, and
+         * ticks spent in a cell beyond the turns made there become a wait.
+         */
+        private MovePlan reserve(int node) {
+            int arrival = nodeTicks[node];
+            long[] timeline = new long[arrival + 1];
+            for (int at = node; at >= 0; at = nodeParents[at]) {
+                int cell = nodeStates[at] >>> 2;
+                timeline[nodeTicks[at]] = OccupancyIndex.pack(minX + cell % width, minY + cell / width);
+            }
+            for (int tick = 0; tick < arrival; tick++) {
+                table.reserve(timeline[tick], tick, move);
+            }
+            table.park(goalCell, arrival, move);
+
+            int[] cornerX = new int[arrival + 1];
+            int[] cornerY = new int[arrival + 1];
+            int[] directions = new int[arrival + 1];
+            int[] waits = new int[arrival + 1];
+            int segments = 0;
+            int facing = batch.facing[move].ordinal();
+            int tick = 0;
+            while (tick < arrival) {
+                int stay = 0;
+                while (tick < arrival && timeline[tick + 1] == timeline[tick]) {
+                    stay++;
+                    tick++;
+                }
+                int direction = tick < arrival ? direction(timeline[tick], timeline[tick + 1]) : facing;
+                if (stay > quarterTurns(facing, direction)) {
+                    cornerX[segments] = OccupancyIndex.unpackX(timeline[tick]);
+                    cornerY[segments] = OccupancyIndex.unpackY(timeline[tick]);
+                    waits[segments++] = stay - quarterTurns(facing, direction);
+                }
+                if (tick == arrival) {
+                    break;
+                }
+                while (tick < arrival && timeline[tick + 1] != timeline[tick] && direction(timeline[tick], timeline[tick + 1]) == direction) {
+                    tick++;
+                }
+                cornerX[segments] = OccupancyIndex.unpackX(timeline[tick]);
+                cornerY[segments] = OccupancyIndex.unpackY(timeline[tick]);
+                directions[segments++] = direction;
+                facing = direction;
+            }
+            Direction initial = batch.facing[move];
+            int fromX = OccupancyIndex.unpackX(batch.from[move]);
+            int fromY = OccupancyIndex.unpackY(batch.from[move]);
+            boolean waited = false;
+            for (int segment = 0; segment < segments; segment++) {
+                waited |= waits[segment] > 0;
+            }
+            // A route without waits that is also the direct one is described the way a single move describes it
+            boolean alongXFirst = initial == Direction.NORTH || initial == Direction.SOUTH;
+            boolean direct = !waited && (segments == 1 || (segments == 2
+                    && cornerX[0] == (alongXFirst ? cornerX[1] : fromX) && cornerY[0] == (alongXFirst ? fromY : cornerY[1])));
+            return MovePlan.timed(direct ? MovePlan.plan(initial, fromX, fromY, cornerX[segments - 1], cornerY[segments - 1])
+                    : MovePlan.route(initial, fromX, fromY, cornerX, cornerY, directions, waits, segments), timeline);
+        }
+
+        private int local(int x, int y) {
+            return (y - minY) * width + (x - minX);
+        }
+
+        private static int direction(long from, long to) {
+            int dx = OccupancyIndex.unpackX(to) - OccupancyIndex.unpackX(from);
+            int dy = OccupancyIndex.unpackY(to) - OccupancyIndex.unpackY(from);
+            return dy > 0 ? 0 : dx > 0 ? 1 : dy < 0 ? 2 : 3;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
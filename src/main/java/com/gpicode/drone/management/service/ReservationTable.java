@@ -0,0 +1,183 @@
+package com.gpicode.drone.management.service;
+
+/**
+ * Space-time reservations of scheduled moves: which move holds a cell at a tick, and from which tick a move that has
+ * arrived holds its target for good.
+ * <p>
+ * Cells are packed as in the occupancy index. Both tables are linear-probing tables of primitives, the first keyed by
+ * cell and tick, the second by cell, where the last tick reserved at each cell is also kept so that a search can tell
+ * at once whether a cell stays free from some tick on. A table is filled by one thread at a time.
+ */
+final class ReservationTable {
+
+    private static final int NONE = -1;
+
+    // (cell, tick) -> move, the move stored plus one so that zero marks an empty slot
+    private long[] cells = new long[256];
+    private int[] ticks = new int[256];
+    private int[] owners = new int[256];
+    private int size;
+
+    // cell -> last tick reserved, and the tick and move parked there; slots in use are marked in the last array
+    private long[] keys = new long[64];
+    private int[] lastTicks = new int[64];
+    private int[] parkedFrom = new int[64];
+    private int[] parkedBy = new int[64];
+    private boolean[] used = new boolean[64];
+    private int cellCount;
+    private int lastTick = NONE;
+
+    /**
+     * @return the move holding the cell at the tick, or {@code -1}
+     */
+    int owner(long cell, int tick) {
+        int mask = owners.length - 1;
+        for (int slot = slot(cell, tick, mask); owners[slot] != 0; slot = (slot + 1) & mask) {
+            if (cells[slot] == cell && ticks[slot] == tick) {
+                return owners[slot] - 1;
+            }
+        }
+        int parked = cellSlot(cell);
+        return parked >= 0 && parkedBy[parked] != NONE && parkedFrom[parked] <= tick ? parkedBy[parked] : NONE;
+    }
+
+    /**
+     * @return the last tick the cell is reserved at, or {@code -1}; a parked cell counts as reserved for good
+     */
+    int lastTick(long cell) {
+        int slot = cellSlot(cell);
+        if (slot < 0) {
+            return NONE;
+        }
+        return parkedBy[slot] != NONE ? Integer.MAX_VALUE : lastTicks[slot];
+    }
+
+    /**
+     * @return the last tick anything changes in the table, after which every cell is either free or held for good
+     */
+    int lastTick() {
+        return lastTick;
+    }
+
+    void reserve(long cell, int tick, int move) {
+        if ((size + 1) * 2 > owners.length) {
+            long[] oldCells = cells;
+            int[] oldTicks = ticks;
+            int[] oldOwners = owners;
+            cells = new long[oldOwners.length * 2];
+            ticks = new int[oldOwners.length * 2];
+            owners = new int[oldOwners.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldOwners.length; slot++) {
+                if (oldOwners[slot] != 0) {
+                    put(oldCells[slot], oldTicks[slot], oldOwners[slot]);
+                }
+            }
+        }
+        put(cell, tick, move + 1);
+        int slot = claimCell(cell);
+        lastTicks[slot] = Math.max(lastTicks[slot], tick);
+        lastTick = Math.max(lastTick, tick);
+    }
+
+    /**
+     * Holds the cell for {@code move} from {@code tick} on.
+     */
+    void park(long cell, int tick, int move) {
+        int slot = claimCell(cell);
+        parkedFrom[slot] = tick;
+        parkedBy[slot] = move;
+        lastTick = Math.max(lastTick, tick);
+    }
+
+    /**
+     * Copies every reservation of another table into this one.
+     */
+    void addAll(ReservationTable other) {
+        for (int slot = 0; slot < other.owners.length; slot++) {
+            if (other.owners[slot] != 0) {
+                reserve(other.cells[slot], other.ticks[slot], other.owners[slot] - 1);
+            }
+        }
+        for (int slot = 0; slot < other.used.length; slot++) {
+            if (other.used[slot] && other.parkedBy[slot] != NONE) {
+                park(other.keys[slot], other.parkedFrom[slot], other.parkedBy[slot]);
+            }
+        }
+    }
+
+    private void put(long cell, int tick, int owner) {
+        int mask = owners.length - 1;
+        int slot = slot(cell, tick, mask);
+        while (owners[slot] != 0 && (cells[slot] != cell || ticks[slot] != tick)) {
+            slot = (slot + 1) & mask;
+        }
+        if (owners[slot] == 0) {
+            size++;
+        }
+        cells[slot] = cell;
+        ticks[slot] = tick;
+        owners[slot] = owner;
+    }
+
+    private int cellSlot(long cell) {
+        int mask = used.length - 1;
+        for (int slot = slot(cell, 0, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == cell) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private int claimCell(long cell) {
+        int slot = cellSlot(cell);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((cellCount + 1) * 2 > used.length) {
+            long[] oldKeys = keys;
+            int[] oldLastTicks = lastTicks;
+            int[] oldParkedFrom = parkedFrom;
+            int[] oldParkedBy = parkedBy;
+            boolean[] oldUsed = used;
+            keys = new long[oldUsed.length * 2];
+            lastTicks = new int[oldUsed.length * 2];
+            parkedFrom = new int[oldUsed.length * 2];
+            parkedBy = new int[oldUsed.length * 2];
+            used = new boolean[oldUsed.length * 2];
+            for (int old = 0; old < oldUsed.length; old++) {
+                if (oldUsed[old]) {
+                    int moved = freeCellSlot(oldKeys[old]);
+                    keys[moved] = oldKeys[old];
+                    lastTicks[moved] = oldLastTicks[old];
+                    parkedFrom[moved] = oldParkedFrom[old];
+                    parkedBy[moved] = oldParkedBy[old];
+                    used[moved] = true;
+                }
+            }
+        }
+        slot = freeCellSlot(cell);
+        keys[slot] = cell;
+        lastTicks[slot] = NONE;
+        parkedFrom[slot] = Integer.MAX_VALUE;
+        parkedBy[slot] = NONE;
+        used[slot] = true;
+        cellCount++;
+        return slot;
+    }
+
+    private int freeCellSlot(long cell) {
+        int mask = used.length - 1;
+        int slot = slot(cell, 0, mask);
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int slot(long cell, int tick, int mask) {
+        long h = (cell * 31 + tick) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,453 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.exception.RouteSearchLimitException;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Routes a move around the other drones on the field and around the no-fly zones in force.
+ * <p>
+ * The straight or L-shaped route of {@link MovePlan#plan} is kept whenever none of its cells is taken or restricted,
+ * which is the common case on a sparse field and costs a few look-ups in the spatial grid of the occupancy index and in
+ * the tiles of the geofence index. Otherwise an A*
+ * search runs over (cell, heading) states in a window around the move: moving one cell ahead costs 1 and a quarter
+ * turn costs {@code drone.planner.turn-cost}, so of two routes the one with fewer turns wins unless the other is
+ * clearly shorter. The window is the rectangle spanned by origin and target, widened by
+ * {@code drone.planner.search-margin} cells, and its margin doubles until a route is found, the window covers the
+ * field, or it would pass {@code drone.planner.max-search-cells}. A search stopped by that limit is reported apart from
+ * a move that has no route, as the part of the field left unsearched may still hold one.
+ * <p>
+ * Each window first gets a breadth-first pass from the target over its free cells. If that never reaches the origin
+ * the window is widened without searching it at all; otherwise the distances it found guide the A* search, which then
+ * expands little more than the cells of the route itself. Taken cells and closed states are kept in bitsets, and
+ * distances, costs, parents and the open heap in arrays indexed by cell or state. All of them live in buffers borrowed
+ * from a small pool and grown only for a larger window than any before, so once warm a search allocates nothing but
+ * the plan it returns. Other drones keep moving while a route is planned, so a route describes the field as the search
+ * saw it.
+ * <p>
+ * A mission through several waypoints is searched leg by leg, each leg starting from every heading the drone can
+ * arrive at its first waypoint with, at the cost of arriving that way. Turns are thus minimised over the whole mission
+ * rather than leg by leg, and a leg ends facing away from the next one only when that is cheaper overall.
+ */
+@Component
+public class RoutePlanner {
+
+    private static final int[] DX = DistanceField.DX;
+    private static final int[] DY = DistanceField.DY;
+    // How a state was reached, to walk the route back from the target
+    private static final byte START = 0;
+    private static final byte AHEAD = 1;
+    private static final byte TURNED_RIGHT = 2;
+    private static final byte TURNED_LEFT = 3;
+    // Outcomes of a widening search: a route was found, the whole field holds none, or the window grew too large
+    private static final int FOUND = 0;
+    private static final int NO_ROUTE = 1;
+    private static final int SEARCH_LIMIT = 2;
+
+    private final OccupancyIndex occupancyIndex;
+    private final GeofenceIndex geofenceIndex;
+    private final FieldProperties fieldProperties;
+    private final PlannerProperties plannerProperties;
+    private final BlockingQueue<Search> pool = new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    public RoutePlanner(OccupancyIndex occupancyIndex, GeofenceIndex geofenceIndex, FieldProperties fieldProperties, PlannerProperties plannerProperties) {
+        this.occupancyIndex = occupancyIndex;
+        this.geofenceIndex = geofenceIndex;
+        this.fieldProperties = fieldProperties;
+        this.plannerProperties = plannerProperties;
+    }
+
+    /**
+     * Plans the move of a drone facing {@code facing} from {@code (fromX, fromY)} to {@code (toX, toY)} through free
+     * cells outside the no-fly zones only. The origin and the target are not checked, as the drone itself holds them
+     * while it is moved.
+     *
+     * @return the plan, or {@code null} if no route was found
+     * @throws RouteSearchLimitException if the search would pass {@code drone.planner.max-search-cells} first
+     */
+    public MovePlan plan(Direction facing, int fromX, int fromY, int toX, int toY) {
+        if (isDirectRouteFree(facing, fromX, fromY, toX, toY)) {
+            return MovePlan.plan(facing, fromX, fromY, toX, toY);
+        }
+        Search search = borrow();
+        try {
+            MovePlan[] plan = new MovePlan[1];
+            int outcome = searchWidening(fromX, fromY, toX, toY, (minX, minY, width, height) ->
+                    (plan[0] = search.run(facing, fromX, fromY, toX, toY, minX, minY, width, height)) != null);
+            if (outcome == SEARCH_LIMIT) {
+                throw new RouteSearchLimitException("Route search limit exceeded");
+            }
+            return plan[0];
+        } finally {
+            pool.offer(search);
+        }
+    }
+
+    /**
+     * Plans a mission of a drone facing {@code facing} from {@code (fromX, fromY)} through the cells
+     * {@code (toX[i], toY[i])} in order, none of which may be the cell before it. The cell the drone starts from is
+     * free for later legs to cross, while the waypoints are not checked.
+     *
+     * @return the plan of every leg, or {@code null} if some leg has no route
+     * @throws RouteSearchLimitException if the search of some leg would pass {@code drone.planner.max-search-cells}
+     *                                   first
+     */
+    public MovePlan[] planMission(Direction facing, int fromX, int fromY, int[] toX, int[] toY) {
+        int legs = toX.length;
+        // Cheapest cost of standing on each waypoint facing each way, and the route of the last leg that does so
+        int[][] arrivalCosts = new int[legs + 1][4];
+        Leg[][] arrivals = new Leg[legs][4];
+        Arrays.fill(arrivalCosts[0], Integer.MAX_VALUE);
+        arrivalCosts[0][facing.ordinal()] = 0;
+        Search search = borrow();
+        try {
+            for (int leg = 0; leg < legs; leg++) {
+                int legFromX = leg == 0 ? fromX : toX[leg - 1];
+                int legFromY = leg == 0 ? fromY : toY[leg - 1];
+                int legToX = toX[leg];
+                int legToY = toY[leg];
+                int[] startCosts = arrivalCosts[leg];
+                int[] legCosts = arrivalCosts[leg + 1];
+                Leg[] legArrivals = arrivals[leg];
+                int outcome = searchWidening(legFromX, legFromY, legToX, legToY, (minX, minY, width, height) ->
+                        search.runLeg(startCosts, legFromX, legFromY, legToX, legToY, fromX, fromY, minX, minY, width, height, legCosts, legArrivals));
+                if (outcome == SEARCH_LIMIT) {
+                    throw new RouteSearchLimitException("Route search limit exceeded");
+                }
+                if (outcome == NO_ROUTE) {
+                    return null;
+                }
+            }
+        } finally {
+            pool.offer(search);
+        }
+
+        // Walk back from the cheapest way to stand on the last waypoint, each leg starting as the one before it ended
+        int heading = 0;
+        for (int h = 1; h < 4; h++) {
+            if (arrivalCosts[legs][h] < arrivalCosts[legs][heading]) {
+                heading = h;
+            }
+        }
+        Leg[] chosen = new Leg[legs];
+        for (int leg = legs - 1; leg >= 0; leg--) {
+            chosen[leg] = arrivals[leg][heading];
+            heading = chosen[leg].startHeading;
+        }
+        MovePlan[] plans = new MovePlan[legs];
+        Direction current = facing;
+        for (int leg = 0; leg < legs; leg++) {
+            Leg route = chosen[leg];
+            plans[leg] = MovePlan.route(current, leg == 0 ? fromX : toX[leg - 1], leg == 0 ? fromY : toY[leg - 1],
+                    route.cornerX, route.cornerY, route.directions, route.cornerX.length);
+            current = plans[leg].facing();
+        }
+        return plans;
+    }
+
+    /**
+     * Runs a search in the rectangle spanned by two cells, widening its margin until the search succeeds, the window
+     * covers the field, or it would pass {@code drone.planner.max-search-cells}.
+     *
+     * @return {@link #FOUND}, {@link #NO_ROUTE} or {@link #SEARCH_LIMIT}
+     */
+    private int searchWidening(int fromX, int fromY, int toX, int toY, WindowSearch search) {
+        long margin = Math.max(1, plannerProperties.getSearchMargin());
+        while (true) {
+            int minX = (int) Math.max(0, Math.min(fromX, toX) - margin);
+            int minY = (int) Math.max(0, Math.min(fromY, toY) - margin);
+            int maxX = (int) Math.min(fieldProperties.getWidth() - 1L, Math.max(fromX, toX) + margin);
+            int maxY = (int) Math.min(fieldProperties.getHeight() - 1L, Math.max(fromY, toY) + margin);
+            long cells = ((long) maxX - minX + 1) * ((long) maxY - minY + 1);
+            if (cells > plannerProperties.getMaxSearchCells()) {
+                return SEARCH_LIMIT;
+            }
+            if (search.run(minX, minY, maxX - minX + 1, maxY - minY + 1)) {
+                return FOUND;
+            }
+            if (minX == 0 && minY == 0 && maxX == fieldProperties.getWidth() - 1 && maxY == fieldProperties.getHeight() - 1) {
+                return NO_ROUTE;
+            }
+            margin *= 2;
+        }
+    }
+
+    private Search borrow() {
+        Search search = pool.poll();
+        return search != null ? search : new Search();
+    }
+
+    private boolean isDirectRouteFree(Direction facing, int fromX, int fromY, int toX, int toY) {
+        if (fromX != toX && fromY != toY) {
+            boolean alongXFirst = facing == Direction.NORTH || facing == Direction.SOUTH;
+            int cornerX = alongXFirst ? toX : fromX;
+            int cornerY = alongXFirst ? fromY : toY;
+            return isBetweenFree(fromX, fromY, cornerX, cornerY)
+                    && isAreaFree(cornerX, cornerY, cornerX, cornerY)
+                    && isBetweenFree(cornerX, cornerY, toX, toY);
+        }
+        return isBetweenFree(fromX, fromY, toX, toY);
+    }
+
+    /**
+     * @return whether every cell strictly between two cells of one row or column is free
+     */
+    private boolean isBetweenFree(int fromX, int fromY, int toX, int toY) {
+        if (fromX == toX) {
+            int low = Math.min(fromY, toY) + 1;
+            int high = Math.max(fromY, toY) - 1;
+            return low > high || isAreaFree(fromX, low, fromX, high);
+        }
+        int low = Math.min(fromX, toX) + 1;
+        int high = Math.max(fromX, toX) - 1;
+        return low > high || isAreaFree(low, fromY, high, fromY);
+    }
+
+    private boolean isAreaFree(int minX, int minY, int maxX, int maxY) {
+        return occupancyIndex.isAreaFree(minX, minY, maxX, maxY) && geofenceIndex.isAreaFree(minX, minY, maxX, maxY);
+    }
+
+    private interface WindowSearch {
+        boolean run(int minX, int minY, int width, int height);
+    }
+
+    /**
+     * The route of one leg of a mission to one of the headings it can arrive with.
+     */
+    private record Leg(int startHeading, int[] cornerX, int[] cornerY, int[] directions) {
+    }
+
+    /**
+     * Buffers of one search, state {@code cell * 4 + heading} for the row-major cells of the window.
+     */
+    private final class Search {
+        private long[] blocked = new long[0];
+        private long[] closed = new long[0];
+        private int[] cost = new int[0];
+        private int[] stamp = new int[0];
+        private byte[] via = new byte[0];
+        private final DistanceField distances = new DistanceField();
+        private final SearchHeap open = new SearchHeap();
+        // Costs are valid only where the stamp matches, so they never need clearing
+        private int generation;
+        private int[] cornerX = new int[8];
+        private int[] cornerY = new int[8];
+        private int[] directions = new int[8];
+
+        private int width;
+        private int height;
+        private int start;
+        private int goal;
+        // Heading of the state the last collected route starts from
+        private int startHeading;
+        private int goalX;
+        private int goalY;
+        private int turnCost;
+
+        private MovePlan run(Direction facing, int fromX, int fromY, int toX, int toY, int minX, int minY, int width, int height) {
+            try {
+                // A window the target cannot be reached in is widened without searching it
+                if (!measure(fromX, fromY, toX, toY, fromX, fromY, minX, minY, width, height)) {
+                    return null;
+                }
+                relax(start * 4 + facing.ordinal(), fromX - minX, fromY - minY, 0, START);
+                while (!open.isEmpty()) {
+                    int state = open.pop();
+                    if ((closed[state >>> 6] & 1L << state) != 0) {
+                        continue;
+                    }
+                    closed[state >>> 6] |= 1L << state;
+                    if (state >>> 2 == goal) {
+                        int segments = collect(state, minX, minY);
+                        return MovePlan.route(facing, fromX, fromY, cornerX, cornerY, directions, segments);
+                    }
+                    expand(state);
+                }
+                return null;
+            } finally {
+                distances.clear();
+            }
+        }
+
+        /**
+         * Searches one leg of a mission, starting from every heading with a cost in {@code startCosts}, until the
+         * target has been reached facing each way or no state is left. The cost and route of every way found to stand
+         * on the target go to {@code arrivalCosts} and {@code arrivals}.
+         *
+         * @return whether the target was reached at all
+         */
+        private boolean runLeg(int[] startCosts, int fromX, int fromY, int toX, int toY, int originX, int originY,
+                               int minX, int minY, int width, int height, int[] arrivalCosts, Leg[] arrivals) {
+            try {
+                if (!measure(fromX, fromY, toX, toY, originX, originY, minX, minY, width, height)) {
+                    return false;
+                }
+                Arrays.fill(arrivalCosts, Integer.MAX_VALUE);
+                for (int heading = 0; heading < 4; heading++) {
+                    if (startCosts[heading] != Integer.MAX_VALUE) {
+                        relax(start * 4 + heading, fromX - minX, fromY - minY, startCosts[heading], START);
+                    }
+                }
+                int arrived = 0;
+                while (!open.isEmpty() && arrived < 4) {
+                    int state = open.pop();
+                    if ((closed[state >>> 6] & 1L << state) != 0) {
+                        continue;
+                    }
+                    closed[state >>> 6] |= 1L << state;
+                    if (state >>> 2 == goal) {
+                        int segments = collect(state, minX, minY);
+                        arrivalCosts[state & 3] = cost[state];
+                        arrivals[state & 3] = new Leg(startHeading, Arrays.copyOf(cornerX, segments),
+                                Arrays.copyOf(cornerY, segments), Arrays.copyOf(directions, segments));
+                        arrived++;
+                    }
+                    expand(state);
+                }
+                return arrived > 0;
+            } finally {
+                distances.clear();
+            }
+        }
+
+        /**
+         * Marks the taken and restricted cells of the window, leaving free the cells of the move and the cell the
+         * drone starts from, and measures the distances to the target.
+         *
+         * @return whether the target can be reached in the window at all
+         */
+        private boolean measure(int fromX, int fromY, int toX, int toY, int originX, int originY, int minX, int minY, int width, int height) {
+            prepare(width * height);
+            this.width = width;
+            this.height = height;
+            this.goalX = toX - minX;
+            this.goalY = toY - minY;
+            this.turnCost = plannerProperties.getTurnCost();
+            occupancyIndex.markOccupied(minX, minY, width, height, blocked);
+            geofenceIndex.markRestricted(minX, minY, width, height, blocked);
+            start = (fromY - minY) * width + (fromX - minX);
+            goal = goalY * width + goalX;
+            blocked[start >>> 6] &= ~(1L << start);
+            blocked[goal >>> 6] &= ~(1L << goal);
+            if (originX >= minX && originX < minX + width && originY >= minY && originY < minY + height) {
+                int origin = (originY - minY) * width + (originX - minX);
+                blocked[origin >>> 6] &= ~(1L << origin);
+            }
+            return distances.measure(blocked, width, height, goal, start);
+        }
+
+        private void expand(int state) {
+            int cell = state >>> 2;
+            int heading = state & 3;
+            int x = cell % width;
+            int y = cell / width;
+            int g = cost[state];
+            int aheadX = x + DX[heading];
+            int aheadY = y + DY[heading];
+            if (aheadX >= 0 && aheadX < width && aheadY >= 0 && aheadY < height) {
+                int ahead = aheadY * width + aheadX;
+                if ((blocked[ahead >>> 6] & 1L << ahead) == 0) {
+                    relax(ahead * 4 + heading, aheadX, aheadY, g + 1, AHEAD);
+                }
+            }
+            relax(cell * 4 + ((heading + 1) & 3), x, y, g + turnCost, TURNED_RIGHT);
+            relax(cell * 4 + ((heading + 3) & 3), x, y, g + turnCost, TURNED_LEFT);
+        }
+
+        private void prepare(int cells) {
+            int states = cells * 4;
+            if (cost.length < states) {
+                blocked = new long[(cells + 63) >>> 6];
+                closed = new long[(states + 63) >>> 6];
+                cost = new int[states];
+                stamp = new int[states];
+                via = new byte[states];
+                generation = 0;
+            } else {
+                Arrays.fill(blocked, 0, (cells + 63) >>> 6, 0L);
+                Arrays.fill(closed, 0, (states + 63) >>> 6, 0L);
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            open.clear();
+        }
+
+        private void relax(int state, int x, int y, int g, byte reachedBy) {
+            if ((closed[state >>> 6] & 1L << state) != 0 || (stamp[state] == generation && cost[state] <= g)) {
+                return;
+            }
+            stamp[state] = generation;
+            cost[state] = g;
+            via[state] = reachedBy;
+            // Steps to the goal around the taken cells, plus the turns any route from this heading needs: neither
+            // part overestimates and neither drops by more than one step or one turn costs
+            int left = distances.estimate(y * width + x) + DistanceField.turnsNeeded(state & 3, goalX - x, goalY - y) * turnCost;
+            open.push((long) (g + left) << 32 | left, state);
+        }
+
+        /**
+         * Walks back from the target, collecting a corner wherever a straight run of cells ends.
+         *
+         * @return the number of segments collected
+         */
+        private int collect(int state, int minX, int minY) {
+            int segments = 0;
+            int runEnd = -1;
+            int runHeading = 0;
+            while (via[state] != START) {
+                int cell = state >>> 2;
+                int heading = state & 3;
+                if (via[state] == AHEAD) {
+                    if (runEnd < 0) {
+                        runEnd = cell;
+                        runHeading = heading;
+                    }
+                    state = (cell - DX[heading] - DY[heading] * width) * 4 + heading;
+                } else {
+                    if (runEnd >= 0) {
+                        addSegment(segments++, runEnd, runHeading, minX, minY);
+                        runEnd = -1;
+                    }
+                    state = cell * 4 + (via[state] == TURNED_RIGHT ? (heading + 3) & 3 : (heading + 1) & 3);
+                }
+            }
+            if (runEnd >= 0) {
+                addSegment(segments++, runEnd, runHeading, minX, minY);
+            }
+            for (int i = 0, j = segments - 1; i < j; i++, j--) {
+                swap(cornerX, i, j);
+                swap(cornerY, i, j);
+                swap(directions, i, j);
+            }
+            startHeading = state & 3;
+            return segments;
+        }
+
+        private void addSegment(int segment, int cell, int heading, int minX, int minY) {
+            if (segment == cornerX.length) {
+                cornerX = Arrays.copyOf(cornerX, segment * 2);
+                cornerY = Arrays.copyOf(cornerY, segment * 2);
+                directions = Arrays.copyOf(directions, segment * 2);
+            }
+            cornerX[segment] = minX + cell % width;
+            cornerY[segment] = minY + cell / width;
+            directions[segment] = heading;
+        }
+
+        private static void swap(int[] values, int i, int j) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.gpicode.drone.management.service;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of search states, ordered by a {@code long} key and kept in two parallel primitive arrays, so that
+ * once grown it allocates nothing. Searches key their open states by estimate, then by distance left, so of equally
+ * good states the deepest comes out first.
+ */
+final class SearchHeap {
+
+    private long[] keys = new long[64];
+    private int[] states = new int[64];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void push(long key, int state) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+        int i = size++;
+        while (i > 0 && keys[(i - 1) >>> 1] > key) {
+            keys[i] = keys[(i - 1) >>> 1];
+            states[i] = states[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        keys[i] = key;
+        states[i] = state;
+    }
+
+    /**
+     * @return the state with the smallest key, which is removed
+     */
+    int pop() {
+        int top = states[0];
+        long last = keys[--size];
+        int lastState = states[size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= last) {
+                break;
+            }
+            keys[i] = keys[child];
+            states[i] = states[child];
+            i = child;
+        }
+        keys[i] = last;
+        states[i] = lastState;
+        return top;
+    }
+}
@@ -0,0 +1,555 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.ExecutorProperties;
+import com.gpicode.drone.management.config.ExecutorProperties.Mode;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.exception.CommandRejectedException;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which drone holds a cell on worker threads that each own a part of the field, so that registrations and moves
+ * of single drones claim cells without taking a lock.
+ * <p>
+ * With {@code drone.executor.mode=TILED} the field is split into square tiles of {@code drone.executor.tile-size}
+ * cells, spread by hash over a fixed set of dedicated workers. Each worker keeps the cells of its tiles in a ledger that
+ * no other thread touches, and takes requests from a lock-free inbox that request threads append to without waiting on
+ * one another. A registration asks the worker owning the new drone's cell to claim it. A move asks the worker owning
+ * the drone's cell, which checks the drone is still there and claims the target: itself when it owns the target's tile
+ * too, or else through a two-tile handoff, marking the drone as leaving and passing the claim on to the target's
+ * worker, which either grants it or hands it back to be refused.
+ * <p>
+ * A granted move holds both cells, the drone in each, until the request thread has saved it and {@link #settle settles}
+ * or {@link #undo undoes} it, so a move is never lost halfway and an undo never finds its cell taken. A move of a drone
+ * whose cell is held waits in the ledger until it is released, so the moves of one drone are decided one after the
+ * other; releases put off by a {@link #hold} keep them apart until the caller has also recorded the move's history.
+ * <p>
+ * Workers only ever touch their ledgers: the store, the occupancy index that queries and route planning read, and the
+ * history are all written by the request thread. Operations spanning the field, such as bulk registrations, batch moves,
+ * missions and rebuilds of the index, {@link #pause} every worker and read and change the ledgers themselves.
+ * <p>
+ * With the default {@code DIRECT} mode no worker is started and the occupancy index alone decides, under its locks.
+ */
+@Component
+public class TileExecutor {
+
+    public enum Claim {
+        // The cells are held for the caller until it settles or undoes the claim
+        GRANTED,
+        // Another drone holds the cell
+        OCCUPIED,
+        // The drone is no longer where the caller read it, so the move has to start again from its new position
+        MOVED
+    }
+
+    /**
+     * Puts off the releases handed to {@link #afterHold} on the thread that opened it until it is closed.
+     */
+    public interface Hold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final int tileSize;
+    private final int inboxCapacity;
+    private final Worker[] workers;
+    // Claims granted whose transaction has not completed yet, which a pause waits for
+    private final AtomicInteger unsettled = new AtomicInteger();
+    // Held by the one thread at a time that has paused the workers, until it resumes them
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private CountDownLatch resumed;
+    // Releases put off until the hold opened on this thread is closed, unset while it has none open
+    private final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<>();
+    private volatile boolean running = true;
+
+    public TileExecutor(ExecutorProperties executorProperties) {
+        this.tileSize = executorProperties.getTileSize();
+        this.inboxCapacity = executorProperties.getInboxCapacity();
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("drone.executor.tile-size must be positive");
+        }
+        int count = executorProperties.getWorkers() > 0 ? executorProperties.getWorkers() : Runtime.getRuntime().availableProcessors();
+        this.workers = new Worker[executorProperties.getMode() == Mode.TILED ? count : 0];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker("drone-tile-worker-" + i);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    public boolean isTiled() {
+        return workers.length > 0;
+    }
+
+    /**
+     * Claims a free cell for a drone about to be saved, to be completed by {@link #registered} or {@link #unregister}.
+     *
+     * @return whether the cell was free
+     * @throws CommandRejectedException when the worker's inbox is full or the executor is shut down
+     */
+    public boolean register(int x, int y) {
+        long cell = OccupancyIndex.pack(x, y);
+        Worker worker = workerOf(cell);
+        CompletableFuture<Claim> reply = new CompletableFuture<>();
+        worker.request(new Message(() -> worker.register(cell, reply), reply));
+        return await(reply) == Claim.GRANTED;
+    }
+
+    /**
+     * Gives a cell claimed by {@link #register} to the drone saved there.
+     */
+    public void registered(int x, int y, UUID droneId) {
+        long cell = OccupancyIndex.pack(x, y);
+        Worker worker = workerOf(cell);
+        worker.send(new Message(() -> worker.registered(cell, droneId), null));
+    }
+
+    /**
+     * Hands back a cell claimed by {@link #register} for a drone that was not saved.
+     */
+    public void unregister(int x, int y) {
+        long cell = OccupancyIndex.pack(x, y);
+        Worker worker = workerOf(cell);
+        worker.send(new Message(() -> worker.unregister(cell), null));
+    }
+
+    /**
+     * Claims the target of a move for the drone, if it is still at {@code (fromX, fromY)}, waiting first for any move
+     * of it under way to be released. A granted claim is completed by {@link #settle} or {@link #undo}.
+     *
+     * @throws CommandRejectedException when the worker's inbox is full or the executor is shut down
+     */
+    public Claim move(UUID droneId, int fromX, int fromY, int toX, int toY) {
+        long from = OccupancyIndex.pack(fromX, fromY);
+        long to = OccupancyIndex.pack(toX, toY);
+        Worker origin = workerOf(from);
+        CompletableFuture<Claim> reply = new CompletableFuture<>();
+        origin.request(new Message(() -> origin.move(droneId, from, to, reply), reply));
+        return await(reply);
+    }
+
+    /**
+     * Completes a move granted by {@link #move} with the drone at its target, freeing the cell it left.
+     */
+    public void settle(UUID droneId, int fromX, int fromY, int toX, int toY) {
+        long from = OccupancyIndex.pack(fromX, fromY);
+        long to = OccupancyIndex.pack(toX, toY);
+        Worker origin = workerOf(from);
+        Worker target = workerOf(to);
+        origin.send(new Message(() -> origin.vacate(droneId, from), null));
+        target.send(new Message(() -> target.keep(droneId, to), null));
+    }
+
+    /**
+     * Hands back a move granted by {@link #move} with the drone where it started, freeing the target.
+     */
+    public void undo(UUID droneId, int fromX, int fromY, int toX, int toY) {
+        long from = OccupancyIndex.pack(fromX, fromY);
+        long to = OccupancyIndex.pack(toX, toY);
+        Worker origin = workerOf(from);
+        Worker target = workerOf(to);
+        target.send(new Message(() -> target.vacate(droneId, to), null));
+        origin.send(new Message(() -> origin.keep(droneId, from), null));
+    }
+
+    /**
+     * Tells a waiting {@link #pause} that the transaction of a granted claim has completed, once the store and the
+     * occupancy index no longer change for it.
+     */
+    public void completed() {
+        unsettled.decrementAndGet();
+    }
+
+    /**
+     * Opens a hold on this thread. Holds nest, and only closing the outermost one runs the releases put off.
+     */
+    public Hold hold() {
+        if (deferred.get() != null) {
+            return () -> { };
+        }
+        List<Runnable> releases = new ArrayList<>();
+        deferred.set(releases);
+        return () -> {
+            deferred.remove();
+            releases.forEach(Runnable::run);
+        };
+    }
+
+    /**
+     * Runs the release when the hold open on this thread is closed, or right away if there is none.
+     */
+    public void afterHold(Runnable release) {
+        List<Runnable> releases = deferred.get();
+        if (releases == null) {
+            release.run();
+        } else {
+            releases.add(release);
+        }
+    }
+
+    /**
+     * Stops every worker once it has decided the requests queued before, and waits for the claims they granted to
+     * complete. Until {@link #resume} is called on this thread, requests wait in the inboxes and the ledgers are read
+     * and changed by this thread alone. Does nothing when claims are not tiled.
+     */
+    public void pause() {
+        if (workers.length == 0) {
+            return;
+        }
+        if (pauseLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Tile workers are already paused by this thread");
+        }
+        pauseLock.lock();
+        CountDownLatch paused = new CountDownLatch(workers.length);
+        CountDownLatch resume = new CountDownLatch(1);
+        resumed = resume;
+        for (Worker worker : workers) {
+            worker.send(new Message(() -> {
+                paused.countDown();
+                awaitUninterruptibly(resume);
+            }, null));
+        }
+        awaitUninterruptibly(paused);
+        // Granted claims complete on the request threads without the workers, so these do not wait on the pause
+        while (unsettled.get() > 0) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    public void resume() {
+        if (workers.length == 0) {
+            return;
+        }
+        resumed.countDown();
+        pauseLock.unlock();
+    }
+
+    /**
+     * Whether the cell is claimed by a registration or a move not yet released, while paused.
+     */
+    public boolean isHeld(int x, int y) {
+        if (workers.length == 0) {
+            return false;
+        }
+        checkPaused();
+        long cell = OccupancyIndex.pack(x, y);
+        Slot slot = workerOf(cell).cells.get(cell);
+        return slot != null && slot.held;
+    }
+
+    /**
+     * Puts the drone at the cell, while paused.
+     */
+    public void place(int x, int y, UUID droneId) {
+        if (workers.length == 0) {
+            return;
+        }
+        checkPaused();
+        long cell = OccupancyIndex.pack(x, y);
+        workerOf(cell).cells.put(cell, new Slot(droneId, false));
+    }
+
+    /**
+     * Frees the cell, while paused.
+     */
+    public void clear(int x, int y) {
+        if (workers.length == 0) {
+            return;
+        }
+        checkPaused();
+        long cell = OccupancyIndex.pack(x, y);
+        workerOf(cell).cells.remove(cell);
+    }
+
+    /**
+     * Replaces the ledgers with the drones, while paused. Cells still held are kept as they are, for the releases
+     * already sent or put off to complete.
+     */
+    public void reload(Iterable<Drone> drones) {
+        if (workers.length == 0) {
+            return;
+        }
+        checkPaused();
+        List<Map<Long, Slot>> heldCells = new ArrayList<>(workers.length);
+        for (Worker worker : workers) {
+            Map<Long, Slot> held = new HashMap<>();
+            worker.cells.forEach((cell, slot) -> {
+                if (slot.held) {
+                    held.put(cell, slot);
+                }
+            });
+            heldCells.add(held);
+            worker.cells.clear();
+        }
+        for (Drone drone : drones) {
+            long cell = OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY());
+            workerOf(cell).cells.put(cell, new Slot(drone.getDroneId(), false));
+        }
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].cells.putAll(heldCells.get(i));
+        }
+    }
+
+    /**
+     * @return the registrations and moves queued on every worker and not yet started
+     */
+    public int queueSize() {
+        int size = 0;
+        for (Worker worker : workers) {
+            size += worker.queued.get();
+        }
+        return size;
+    }
+
+    /**
+     * Stops the workers once they have decided every request already queued.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            worker.thread.join();
+        }
+        // Anything queued after a worker saw it was the last request, or left waiting on a drone, is turned down
+        for (Worker worker : workers) {
+            List<Message> left = new ArrayList<>(worker.inbox);
+            worker.waiting.values().forEach(left::addAll);
+            for (Message message : left) {
+                if (message.reply != null) {
+                    message.reply.completeExceptionally(new CommandRejectedException("Drone executor is shut down"));
+                }
+            }
+        }
+    }
+
+    private void checkPaused() {
+        if (!pauseLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Tile ledgers are only read or changed with the workers paused");
+        }
+    }
+
+    private Worker workerOf(long cell) {
+        long tile = OccupancyIndex.pack(Math.floorDiv(OccupancyIndex.unpackX(cell), tileSize), Math.floorDiv(OccupancyIndex.unpackY(cell), tileSize));
+        long h = tile * 0x9E3779B97F4A7C15L;
+        return workers[(int) ((h >>> 32) % workers.length)];
+    }
+
+    private static Claim await(CompletableFuture<Claim> reply) {
+        // Not interruptible, so a claim granted to this thread is never left behind unanswered
+        try {
+            return reply.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Worker {
+        private final ConcurrentLinkedQueue<Message> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Thread thread;
+        // Set while the worker is parked or about to park, so senders only unpark a worker that may be asleep
+        private volatile boolean idle;
+        // Only read and changed by the worker, or by the thread that has paused it
+        private final Map<Long, Slot> cells = new HashMap<>();
+        // Moves of drones whose cell is held, decided again once it is released
+        private final Map<Long, List<Message>> waiting = new HashMap<>();
+
+        private Worker(String name) {
+            this.thread = VirtualThreads.factory(name, false).newThread(this::run);
+        }
+
+        private void request(Message message) {
+            if (!running) {
+                throw new CommandRejectedException("Drone executor is shut down");
+            }
+            if (queued.incrementAndGet() > inboxCapacity) {
+                queued.decrementAndGet();
+                throw new CommandRejectedException("Drone command queue is full, try again later");
+            }
+            message.counted = true;
+            send(message);
+        }
+
+        // Messages between workers and releases are never turned away, or a claim would stay held
+        private void send(Message message) {
+            inbox.offer(message);
+            if (idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            while (true) {
+                Message message = inbox.poll();
+                if (message == null) {
+                    if (!running) {
+                        return;
+                    }
+                    // Checked again after announcing the park: a sender either sees idle set or its message is seen here
+                    idle = true;
+                    if (inbox.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    continue;
+                }
+                if (message.counted) {
+                    queued.decrementAndGet();
+                }
+                message.action.run();
+            }
+        }
+
+        private void register(long cell, CompletableFuture<Claim> reply) {
+            if (cells.containsKey(cell)) {
+                reply.complete(Claim.OCCUPIED);
+                return;
+            }
+            cells.put(cell, new Slot(null, true));
+            unsettled.incrementAndGet();
+            reply.complete(Claim.GRANTED);
+        }
+
+        private void registered(long cell, UUID droneId) {
+            Slot slot = cells.get(cell);
+            if (slot != null && slot.droneId == null) {
+                slot.droneId = droneId;
+                slot.held = false;
+            }
+        }
+
+        private void unregister(long cell) {
+            Slot slot = cells.get(cell);
+            if (slot != null && slot.droneId == null) {
+                cells.remove(cell);
+            }
+        }
+
+        private void move(UUID droneId, long from, long to, CompletableFuture<Claim> reply) {
+            Slot origin = cells.get(from);
+            if (origin == null || !droneId.equals(origin.droneId)) {
+                reply.complete(Claim.MOVED);
+                return;
+            }
+            if (origin.held) {
+                waiting.computeIfAbsent(from, cell -> new ArrayList<>()).add(new Message(() -> move(droneId, from, to, reply), reply));
+                return;
+            }
+            Worker target = workerOf(to);
+            if (target != this) {
+                // The drone cannot move again, or be claimed from under the handoff, until the target's worker answers
+                origin.held = true;
+                target.send(new Message(() -> target.arrive(droneId, from, to, this, reply), reply));
+                return;
+            }
+            if (cells.containsKey(to)) {
+                reply.complete(Claim.OCCUPIED);
+                return;
+            }
+            origin.held = true;
+            cells.put(to, new Slot(droneId, true));
+            unsettled.incrementAndGet();
+            reply.complete(Claim.GRANTED);
+        }
+
+        private void arrive(UUID droneId, long from, long to, Worker origin, CompletableFuture<Claim> reply) {
+            if (cells.containsKey(to)) {
+                origin.send(new Message(() -> {
+                    origin.keep(droneId, from);
+                    reply.complete(Claim.OCCUPIED);
+                }, reply));
+                return;
+            }
+            cells.put(to, new Slot(droneId, true));
+            unsettled.incrementAndGet();
+            reply.complete(Claim.GRANTED);
+        }
+
+        // Releases the drone's cell, keeping the drone there
+        private void keep(UUID droneId, long cell) {
+            Slot slot = cells.get(cell);
+            if (slot != null && droneId.equals(slot.droneId)) {
+                slot.held = false;
+                decideWaiting(cell);
+            }
+        }
+
+        // Releases the drone's cell, freeing it
+        private void vacate(UUID droneId, long cell) {
+            Slot slot = cells.get(cell);
+            if (slot != null && droneId.equals(slot.droneId)) {
+                cells.remove(cell);
+                decideWaiting(cell);
+            }
+        }
+
+        private void decideWaiting(long cell) {
+            List<Message> moves = waiting.remove(cell);
+            if (moves != null) {
+                for (Message move : moves) {
+                    move.action.run();
+                }
+            }
+        }
+    }
+
+    private static final class Slot {
+        // Unset while the drone registered there is being saved
+        private UUID droneId;
+        private boolean held;
+
+        private Slot(UUID droneId, boolean held) {
+            this.droneId = droneId;
+            this.held = held;
+        }
+    }
+
+    private static final class Message {
+        private final Runnable action;
+        // The caller waiting on the message, turned down if the executor shuts down first
+        private final CompletableFuture<Claim> reply;
+        private boolean counted;
+
+        private Message(Runnable action, CompletableFuture<Claim> reply) {
+            this.action = action;
+            this.reply = reply;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Drone;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cell arithmetic shared by the stores.
+ */
+final class Cells {
+
+    private Cells() {
+    }
+
+    static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return whether any drone moves into a cell that another drone of the set is leaving, in which case writing the
+     * moves one row at a time would briefly put two drones in one cell
+     */
+    static boolean targetsAnOrigin(List<Drone> drones, int[] x, int[] y) {
+        long[] origins = new long[drones.size()];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = pack(drones.get(i).getCoordinateX(), drones.get(i).getCoordinateY());
+        }
+        Arrays.sort(origins);
+        for (int i = 0; i < x.length; i++) {
+            if (Arrays.binarySearch(origins, pack(x[i], y[i])) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
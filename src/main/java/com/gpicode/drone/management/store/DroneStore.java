@@ -0,0 +1,54 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage for the current position and direction of every drone.
+ * <p>
+ * Every implementation enforces that no two drones share a cell, failing the write with a
+ * {@link org.springframework.dao.DataIntegrityViolationException}, and versions each drone so that a move only applies
+ * to the state it was planned from.
+ */
+public interface DroneStore {
+
+    Optional<Drone> findById(UUID droneId);
+
+    /**
+     * @return the drones that exist among the given ids, in no particular order
+     */
+    List<Drone> findAllById(Collection<UUID> droneIds);
+
+    List<Drone> findAll();
+
+    /**
+     * Stores a new drone, assigning its id.
+     */
+    Drone insert(Drone drone);
+
+    /**
+     * Stores new drones, assigning their ids, or none of them if any cell is already taken.
+     */
+    List<Drone> insertAll(List<Drone> drones);
+
+    /**
+     * Moves a drone, provided it is still at the version it was read at.
+     *
+     * @return {@code false} if the drone no longer exists or has changed since it was read
+     */
+    boolean move(UUID droneId, long version, int x, int y, Direction direction);
+
+    /**
+     * Moves every given drone to {@code (x[i], y[i])} facing {@code directions[i]}, or none of them. A drone may move
+     * into a cell another drone of the set is leaving, so chains and swaps are allowed; the targets must be distinct.
+     * On success the given drones are updated in place to their new state and version.
+     *
+     * @throws org.springframework.dao.OptimisticLockingFailureException if a drone has changed since it was read
+     */
+    void moveAll(List<Drone> drones, int[] x, int[] y, Direction[] directions);
+}
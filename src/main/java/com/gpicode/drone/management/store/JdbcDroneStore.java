@@ -0,0 +1,206 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps drones in the Drone table through hand-written prepared statements, with no entities, persistence context or
+ * dirty checking. Statements run on the connection of the surrounding transaction, and many rows are written as one
+ * JDBC batch. The writes of many rows run in a transaction of their own when there is none around them, so a batch
+ * failing part way, on a taken cell or a changed drone, never leaves the rows before the failure behind.
+ */
+@Component
+@ConditionalOnProperty(name = "drone.store.type", havingValue = "JDBC")
+public class JdbcDroneStore implements DroneStore {
+
+    private static final String COLUMNS = "drone_id, coordinate_x, coordinate_y, direction, version";
+    private static final String SELECT = "select " + COLUMNS + " from drone";
+    private static final String SELECT_BY_ID = SELECT + " where drone_id = ?";
+    private static final String INSERT = "insert into drone (" + COLUMNS + ") values (?, ?, ?, ?, 0)";
+    private static final String MOVE = "update drone set coordinate_x = ?, coordinate_y = ?, direction = ?, version = version + 1 "
+            + "where drone_id = ? and version = ?";
+    private static final String PARK = "update drone set coordinate_x = ?, coordinate_y = ? where drone_id = ? and version = ?";
+    // Ids bound per statement when looking up many drones
+    private static final int IN_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean binaryIds;
+    private final RowMapper<Drone> droneMapper = this::mapDrone;
+
+    public JdbcDroneStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Hibernate creates UUID ids as BINARY(16) on MySQL and MariaDB, and with a native UUID type elsewhere
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        String database = product == null ? "" : product.toLowerCase(Locale.ROOT);
+        this.binaryIds = database.contains("mysql") || database.contains("mariadb");
+    }
+
+    @Override
+    public Optional<Drone> findById(UUID droneId) {
+        List<Drone> drones = jdbcTemplate.query(SELECT_BY_ID, statement -> bindId(statement, 1, droneId), droneMapper);
+        return drones.isEmpty() ? Optional.empty() : Optional.of(drones.get(0));
+    }
+
+    @Override
+    public List<Drone> findAllById(Collection<UUID> droneIds) {
+        List<UUID> ids = new ArrayList<>(droneIds);
+        List<Drone> drones = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            String sql = SELECT + " where drone_id in (" + "?, ".repeat(chunk.size() - 1) + "?)";
+            drones.addAll(jdbcTemplate.query(sql, statement -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    bindId(statement, i + 1, chunk.get(i));
+                }
+            }, droneMapper));
+        }
+        return drones;
+    }
+
+    @Override
+    public List<Drone> findAll() {
+        return jdbcTemplate.query(SELECT, droneMapper);
+    }
+
+    @Override
+    public Drone insert(Drone drone) {
+        drone.setDroneId(UUID.randomUUID());
+        drone.setVersion(0);
+        jdbcTemplate.update(INSERT, statement -> bindInsert(statement, drone));
+        return drone;
+    }
+
+    @Override
+    @Transactional
+    public List<Drone> insertAll(List<Drone> drones) {
+        for (Drone drone : drones) {
+            drone.setDroneId(UUID.randomUUID());
+            drone.setVersion(0);
+        }
+        jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                bindInsert(statement, drones.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return drones.size();
+            }
+        });
+        return drones;
+    }
+
+    @Override
+    public boolean move(UUID droneId, long version, int x, int y, Direction direction) {
+        return jdbcTemplate.update(MOVE, statement -> {
+            statement.setInt(1, x);
+            statement.setInt(2, y);
+            statement.setString(3, direction.name());
+            bindId(statement, 4, droneId);
+            statement.setLong(5, version);
+        }) == 1;
+    }
+
+    @Override
+    @Transactional
+    public void moveAll(List<Drone> drones, int[] x, int[] y, Direction[] directions) {
+        if (Cells.targetsAnOrigin(drones, x, y)) {
+            // The unique constraint is checked per row, so a chain or swap first parks every moving drone on a cell
+            // of its own outside the field, mirrored from its distinct target.
+            checkUpdated(drones, jdbcTemplate.batchUpdate(PARK, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int i) throws SQLException {
+                    statement.setInt(1, -1 - x[i]);
+                    statement.setInt(2, -1 - y[i]);
+                    bindId(statement, 3, drones.get(i).getDroneId());
+                    statement.setLong(4, drones.get(i).getVersion());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return drones.size();
+                }
+            }));
+        }
+        checkUpdated(drones, jdbcTemplate.batchUpdate(MOVE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setInt(1, x[i]);
+                statement.setInt(2, y[i]);
+                statement.setString(3, directions[i].name());
+                bindId(statement, 4, drones.get(i).getDroneId());
+                statement.setLong(5, drones.get(i).getVersion());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return drones.size();
+            }
+        }));
+        for (int i = 0; i < x.length; i++) {
+            Drone drone = drones.get(i);
+            drone.setCoordinateX(x[i]);
+            drone.setCoordinateY(y[i]);
+            drone.setDirection(directions[i]);
+            drone.setVersion(drone.getVersion() + 1);
+        }
+    }
+
+    private static void checkUpdated(List<Drone> drones, int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            // Drivers that rewrite batches may report SUCCESS_NO_INFO rather than a row count
+            if (counts[i] == 0) {
+                throw new OptimisticLockingFailureException("Drone " + drones.get(i).getDroneId() + " has changed since it was read");
+            }
+        }
+    }
+
+    private void bindInsert(PreparedStatement statement, Drone drone) throws SQLException {
+        bindId(statement, 1, drone.getDroneId());
+        statement.setInt(2, drone.getCoordinateX());
+        statement.setInt(3, drone.getCoordinateY());
+        statement.setString(4, drone.getDirection().name());
+    }
+
+    private void bindId(PreparedStatement statement, int index, UUID droneId) throws SQLException {
+        if (binaryIds) {
+            statement.setBytes(index, ByteBuffer.allocate(16)
+                    .putLong(droneId.getMostSignificantBits())
+                    .putLong(droneId.getLeastSignificantBits())
+                    .array());
+        } else {
+            statement.setObject(index, droneId);
+        }
+    }
+
+    private Drone mapDrone(ResultSet row, int rowNumber) throws SQLException {
+        UUID droneId;
+        if (binaryIds) {
+            ByteBuffer bytes = ByteBuffer.wrap(row.getBytes(1));
+            droneId = new UUID(bytes.getLong(), bytes.getLong());
+        } else {
+            droneId = row.getObject(1, UUID.class);
+        }
+        return new Drone(droneId, row.getInt(2), row.getInt(3), Direction.valueOf(row.getString(4)), row.getLong(5));
+    }
+}
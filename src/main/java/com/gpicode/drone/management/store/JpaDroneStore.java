@@ -0,0 +1,85 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.repository.DroneRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps drones in the Drone table through {@link DroneRepository}. Writes are flushed as they are made, so that a
+ * unique constraint or version conflict surfaces from the call that caused it rather than at commit.
+ */
+@Component
+@ConditionalOnProperty(name = "drone.store.type", havingValue = "JPA", matchIfMissing = true)
+public class JpaDroneStore implements DroneStore {
+
+    private final DroneRepository droneRepository;
+
+    public JpaDroneStore(DroneRepository droneRepository) {
+        this.droneRepository = droneRepository;
+    }
+
+    @Override
+    public Optional<Drone> findById(UUID droneId) {
+        return droneRepository.findById(droneId);
+    }
+
+    @Override
+    public List<Drone> findAllById(Collection<UUID> droneIds) {
+        return droneRepository.findAllById(droneIds);
+    }
+
+    @Override
+    public List<Drone> findAll() {
+        return droneRepository.findAll();
+    }
+
+    @Override
+    public Drone insert(Drone drone) {
+        return droneRepository.saveAndFlush(drone);
+    }
+
+    @Override
+    public List<Drone> insertAll(List<Drone> drones) {
+        return droneRepository.saveAllAndFlush(drones);
+    }
+
+    @Override
+    public boolean move(UUID droneId, long version, int x, int y, Direction direction) {
+        return droneRepository.moveIfUnchanged(droneId, version, x, y, direction) == 1;
+    }
+
+    @Override
+    public void moveAll(List<Drone> drones, int[] x, int[] y, Direction[] directions) {
+        List<Drone> managed = drones;
+        if (Cells.targetsAnOrigin(drones, x, y)) {
+            // The unique constraint is checked per row, so a chain or swap first parks every moving drone on a cell
+            // of its own outside the field, mirrored from its distinct target.
+            for (int i = 0; i < x.length; i++) {
+                managed.get(i).setCoordinateX(-1 - x[i]);
+                managed.get(i).setCoordinateY(-1 - y[i]);
+            }
+            managed = droneRepository.saveAllAndFlush(managed);
+        }
+        for (int i = 0; i < x.length; i++) {
+            managed.get(i).setCoordinateX(x[i]);
+            managed.get(i).setCoordinateY(y[i]);
+            managed.get(i).setDirection(directions[i]);
+        }
+        // Versioned updates, so a drone changed since it was read fails the flush
+        managed = droneRepository.saveAllAndFlush(managed);
+        for (int i = 0; i < x.length; i++) {
+            Drone drone = drones.get(i);
+            drone.setCoordinateX(x[i]);
+            drone.setCoordinateY(y[i]);
+            drone.setDirection(directions[i]);
+            drone.setVersion(managed.get(i).getVersion());
+        }
+    }
+}
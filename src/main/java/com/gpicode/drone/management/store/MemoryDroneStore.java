@@ -0,0 +1,743 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.config.StoreProperties;
+import com.gpicode.drone.management.config.VirtualThreads;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps every drone in memory, as parallel primitive arrays indexed by a dense slot per drone, and makes the state
+ * durable through an append-only write-ahead log and periodic snapshots of the arrays.
+ * <p>
+ * Each write appends one frame laid out as {@code [record count][CRC32 of the records][records]}, where a record is
+ * {@code [type][drone id][x][y][direction][version]}, and is applied to memory only once the frame is written, so a
+ * multi-drone write is recovered entirely or not at all. Replay stops at the first incomplete or corrupt frame and
+ * cuts the log there. Writes take effect when they are made rather than when the surrounding transaction commits, as
+ * the log has nothing to roll back with.
+ * <p>
+ * The log is split into numbered files. A snapshot copies the arrays under the write lock, starts the next log file
+ * and then writes the copy off the lock, so snapshot {@code N} holds every write in the log files before {@code N}.
+ * Once it is safely renamed into place, older snapshots and log files are deleted. Startup loads the newest snapshot
+ * that passes its checksum and replays the log files from its number on.
+ */
+@Component
+@ConditionalOnProperty(name = "drone.store.type", havingValue = "MEMORY")
+public class MemoryDroneStore implements DroneStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryDroneStore.class);
+
+    // The single log file written before the log was split into numbered files
+    private static final String LEGACY_WAL_FILE = "drones.wal";
+    private static final Pattern WAL_NAME = Pattern.compile("wal-(\\d{12})\\.log");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{12})\\.snap");
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int SNAPSHOT_MAGIC = 0x44534E50;
+    private static final int SNAPSHOT_HEADER_BYTES = 4 + 8 + 4;
+    private static final int SNAPSHOT_SLOT_BYTES = 8 + 8 + 4 + 4 + 8 + 1;
+    private static final byte TYPE_INSERT = 1;
+    private static final byte TYPE_MOVE = 2;
+    private static final int RECORD_BYTES = 1 + 16 + 4 + 4 + 1 + 8;
+    private static final int FRAME_HEADER_BYTES = 4 + 4;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<UUID, Integer> slots = new HashMap<>();
+    private CellTable cells = new CellTable(INITIAL_CAPACITY);
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private byte[] directions = new byte[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final long snapshotMinWalBytes;
+    // Held for the whole of a snapshot, so two snapshots never overlap
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final ScheduledExecutorService snapshotExecutor;
+    private FileChannel wal;
+    private Path walFile;
+    private long walSequence;
+    // Log bytes written since the newest snapshot
+    private long walBytes;
+
+    public MemoryDroneStore(StoreProperties storeProperties) {
+        this.directory = Paths.get(storeProperties.getWalPath());
+        this.fsync = storeProperties.isWalFsync();
+        this.snapshotMinWalBytes = storeProperties.getSnapshotMinWalBytes();
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not recover drone state from " + directory, exception);
+        }
+        if (storeProperties.getSnapshotIntervalMs() > 0) {
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(VirtualThreads.factory("drone-state-snapshot", false));
+            long interval = storeProperties.getSnapshotIntervalMs();
+            snapshotExecutor.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotExecutor = null;
+        }
+    }
+
+    @Override
+    public Optional<Drone> findById(UUID droneId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(droneId);
+            return slot == null ? Optional.empty() : Optional.of(drone(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Drone> findAllById(Collection<UUID> droneIds) {
+        lock.readLock().lock();
+        try {
+            List<Drone> drones = new ArrayList<>(droneIds.size());
+            for (UUID droneId : droneIds) {
+                Integer slot = slots.get(droneId);
+                if (slot != null) {
+                    drones.add(drone(slot));
+                }
+            }
+            return drones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Drone> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Drone> drones = new ArrayList<>(size);
+            for (int slot = 0; slot < size; slot++) {
+                drones.add(drone(slot));
+            }
+            return drones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Drone insert(Drone drone) {
+        return insertAll(List.of(drone)).get(0);
+    }
+
+    @Override
+    public List<Drone> insertAll(List<Drone> drones) {
+        if (drones.isEmpty()) {
+            return drones;
+        }
+        lock.writeLock().lock();
+        try {
+            long[] targets = new long[drones.size()];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = Cells.pack(drones.get(i).getCoordinateX(), drones.get(i).getCoordinateY());
+                if (cells.get(targets[i]) >= 0) {
+                    throw cellTaken(drones.get(i).getCoordinateX(), drones.get(i).getCoordinateY());
+                }
+            }
+            checkDistinct(targets);
+
+            ByteBuffer frame = frame(drones.size());
+            for (Drone drone : drones) {
+                drone.setDroneId(UUID.randomUUID());
+                drone.setVersion(0);
+                putRecord(frame, TYPE_INSERT, drone.getDroneId(), drone.getCoordinateX(), drone.getCoordinateY(), drone.getDirection(), 0);
+            }
+            writeFrame(frame);
+            for (Drone drone : drones) {
+                add(drone.getDroneId(), drone.getCoordinateX(), drone.getCoordinateY(), drone.getDirection().ordinal(), 0);
+            }
+            return drones;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean move(UUID droneId, long version, int x, int y, Direction direction) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(droneId);
+            if (slot == null || versions[slot] != version) {
+                return false;
+            }
+            int holder = cells.get(Cells.pack(x, y));
+            if (holder >= 0 && holder != slot) {
+                throw cellTaken(x, y);
+            }
+            ByteBuffer frame = frame(1);
+            putRecord(frame, TYPE_MOVE, droneId, x, y, direction, version + 1);
+            writeFrame(frame);
+            relocate(new int[]{slot}, new int[]{x}, new int[]{y});
+            directions[slot] = (byte) direction.ordinal();
+            versions[slot] = version + 1;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void moveAll(List<Drone> drones, int[] x, int[] y, Direction[] directions) {
+        if (drones.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] moving = new int[drones.size()];
+            for (int i = 0; i < moving.length; i++) {
+                Drone drone = drones.get(i);
+                Integer slot = slots.get(drone.getDroneId());
+                if (slot == null || versions[slot] != drone.getVersion()) {
+                    throw new OptimisticLockingFailureException("Drone " + drone.getDroneId() + " has changed since it was read");
+                }
+                moving[i] = slot;
+            }
+            int[] sortedMoving = moving.clone();
+            Arrays.sort(sortedMoving);
+            long[] targets = new long[moving.length];
+            for (int i = 0; i < moving.length; i++) {
+                targets[i] = Cells.pack(x[i], y[i]);
+                int holder = cells.get(targets[i]);
+                if (holder >= 0 && Arrays.binarySearch(sortedMoving, holder) < 0) {
+                    throw cellTaken(x[i], y[i]);
+                }
+            }
+            checkDistinct(targets);
+
+            ByteBuffer frame = frame(moving.length);
+            for (int i = 0; i < moving.length; i++) {
+                putRecord(frame, TYPE_MOVE, drones.get(i).getDroneId(), x[i], y[i], directions[i], versions[moving[i]] + 1);
+            }
+            writeFrame(frame);
+            relocate(moving, x, y);
+            for (int i = 0; i < moving.length; i++) {
+                this.directions[moving[i]] = (byte) directions[i].ordinal();
+                versions[moving[i]]++;
+                Drone drone = drones.get(i);
+                drone.setCoordinateX(x[i]);
+                drone.setCoordinateY(y[i]);
+                drone.setDirection(directions[i]);
+                drone.setVersion(versions[moving[i]]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every drone and deletes the log files and snapshots it replaces.
+     *
+     * @return {@code false} if nothing was written since the newest snapshot, so none was taken
+     */
+    public boolean snapshot() throws IOException {
+        return snapshot(1);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        snapshotLock.lock();
+        lock.writeLock().lock();
+        try {
+            wal.close();
+        } finally {
+            lock.writeLock().unlock();
+            snapshotLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot(snapshotMinWalBytes);
+        } catch (IOException | RuntimeException exception) {
+            log.error("Drone state snapshot failed", exception);
+        }
+    }
+
+    private boolean snapshot(long minWalBytes) throws IOException {
+        snapshotLock.lock();
+        try {
+            long sequence;
+            int count;
+            ByteBuffer snapshot;
+            lock.writeLock().lock();
+            try {
+                if (walBytes < minWalBytes || !wal.isOpen()) {
+                    return false;
+                }
+                count = size;
+                snapshot = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + count * SNAPSHOT_SLOT_BYTES + 4);
+                sequence = walSequence + 1;
+                snapshot.putInt(SNAPSHOT_MAGIC).putLong(sequence).putInt(count);
+                snapshot.asLongBuffer().put(idHigh, 0, count);
+                snapshot.position(snapshot.position() + count * 8);
+                snapshot.asLongBuffer().put(idLow, 0, count);
+                snapshot.position(snapshot.position() + count * 8);
+                snapshot.asIntBuffer().put(xs, 0, count);
+                snapshot.position(snapshot.position() + count * 4);
+                snapshot.asIntBuffer().put(ys, 0, count);
+                snapshot.position(snapshot.position() + count * 4);
+                snapshot.asLongBuffer().put(versions, 0, count);
+                snapshot.position(snapshot.position() + count * 8);
+                snapshot.put(directions, 0, count);
+                // Later writes go to a new log file, which the snapshot does not cover
+                FileChannel next = openWal(sequence);
+                wal.close();
+                wal = next;
+                walFile = walPath(sequence);
+                walSequence = sequence;
+                walBytes = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(snapshot.array(), 0, snapshot.position());
+            snapshot.putInt((int) crc.getValue());
+            snapshot.flip();
+            Path target = snapshotPath(sequence);
+            Path temporary = directory.resolve(target.getFileName() + TEMPORARY_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            for (Map.Entry<Long, Path> older : files(SNAPSHOT_NAME).headMap(sequence).entrySet()) {
+                Files.deleteIfExists(older.getValue());
+            }
+            for (Map.Entry<Long, Path> covered : files(WAL_NAME).headMap(sequence).entrySet()) {
+                Files.deleteIfExists(covered.getValue());
+            }
+            log.debug("Wrote snapshot {} of {} drones", target, count);
+            return true;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private Drone drone(int slot) {
+        return new Drone(new UUID(idHigh[slot], idLow[slot]), xs[slot], ys[slot], DIRECTIONS[directions[slot]], versions[slot]);
+    }
+
+    private void add(UUID droneId, int x, int y, int direction, long version) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            idHigh = Arrays.copyOf(idHigh, capacity);
+            idLow = Arrays.copyOf(idLow, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            directions = Arrays.copyOf(directions, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        int slot = size++;
+        idHigh[slot] = droneId.getMostSignificantBits();
+        idLow[slot] = droneId.getLeastSignificantBits();
+        xs[slot] = x;
+        ys[slot] = y;
+        directions[slot] = (byte) direction;
+        versions[slot] = version;
+        slots.put(droneId, slot);
+        cells.put(Cells.pack(x, y), slot);
+    }
+
+    private void relocate(int[] moving, int[] x, int[] y) {
+        // Vacate every origin before occupying any target, so a cell handed from one drone to another is free.
+        for (int slot : moving) {
+            cells.remove(Cells.pack(xs[slot], ys[slot]));
+        }
+        for (int i = 0; i < moving.length; i++) {
+            xs[moving[i]] = x[i];
+            ys[moving[i]] = y[i];
+            cells.put(Cells.pack(x[i], y[i]), moving[i]);
+        }
+    }
+
+    private static void checkDistinct(long[] targets) {
+        long[] sorted = targets.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                throw new DataIntegrityViolationException("Two drones cannot take the same cell");
+            }
+        }
+    }
+
+    private static DataIntegrityViolationException cellTaken(int x, int y) {
+        return new DataIntegrityViolationException("Cell (" + x + ", " + y + ") is already taken");
+    }
+
+    private static ByteBuffer frame(int records) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + records * RECORD_BYTES);
+        frame.putInt(records);
+        frame.putInt(0);
+        return frame;
+    }
+
+    private static void putRecord(ByteBuffer frame, byte type, UUID droneId, int x, int y, Direction direction, long version) {
+        frame.put(type);
+        frame.putLong(droneId.getMostSignificantBits());
+        frame.putLong(droneId.getLeastSignificantBits());
+        frame.putInt(x);
+        frame.putInt(y);
+        frame.put((byte) direction.ordinal());
+        frame.putLong(version);
+    }
+
+    private void writeFrame(ByteBuffer frame) {
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), FRAME_HEADER_BYTES, frame.position() - FRAME_HEADER_BYTES);
+        frame.putInt(4, (int) crc.getValue());
+        frame.flip();
+        try {
+            while (frame.hasRemaining()) {
+                wal.write(frame);
+            }
+            if (fsync) {
+                wal.force(false);
+            }
+            walBytes += frame.limit();
+        } catch (IOException exception) {
+            throw new DataAccessResourceFailureException("Could not write to drone write-ahead log " + walFile, exception);
+        }
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Path legacy = directory.resolve(LEGACY_WAL_FILE);
+        if (Files.exists(legacy) && files(WAL_NAME).isEmpty()) {
+            Files.move(legacy, walPath(0));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(TEMPORARY_SUFFIX)) {
+                    // A snapshot that was still being written when the process stopped
+                    Files.delete(file);
+                }
+            }
+        }
+
+        long snapshotSequence = 0;
+        for (Map.Entry<Long, Path> snapshot : files(SNAPSHOT_NAME).descendingMap().entrySet()) {
+            if (loadSnapshot(snapshot.getValue(), snapshot.getKey())) {
+                snapshotSequence = snapshot.getKey();
+                break;
+            }
+            log.warn("Drone state snapshot {} is incomplete or corrupt, falling back to an older one", snapshot.getValue());
+        }
+        int loaded = size;
+
+        walSequence = snapshotSequence;
+        int frames = 0;
+        for (Map.Entry<Long, Path> logFile : files(WAL_NAME).tailMap(snapshotSequence).entrySet()) {
+            frames += replay(logFile.getValue());
+            walSequence = logFile.getKey();
+        }
+        wal = openWal(walSequence);
+        walFile = walPath(walSequence);
+        wal.position(wal.size());
+        if (size > 0) {
+            log.info("Recovered {} drones, {} from a snapshot and the rest from {} write-ahead log frames, in {} ms",
+                    size, loaded, frames, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    private boolean loadSnapshot(Path file, long sequence) throws IOException {
+        ByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < SNAPSHOT_HEADER_BYTES + 4 || length > Integer.MAX_VALUE) {
+                return false;
+            }
+            snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        int count = snapshot.getInt(12);
+        if (snapshot.getInt(0) != SNAPSHOT_MAGIC || snapshot.getLong(4) != sequence || count < 0
+                || snapshot.capacity() != SNAPSHOT_HEADER_BYTES + (long) count * SNAPSHOT_SLOT_BYTES + 4) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.duplicate().limit(snapshot.capacity() - 4));
+        if ((int) crc.getValue() != snapshot.getInt(snapshot.capacity() - 4)) {
+            return false;
+        }
+
+        int capacity = Math.max(INITIAL_CAPACITY, count);
+        idHigh = new long[capacity];
+        idLow = new long[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        versions = new long[capacity];
+        directions = new byte[capacity];
+        snapshot.position(SNAPSHOT_HEADER_BYTES);
+        snapshot.asLongBuffer().get(idHigh, 0, count);
+        snapshot.position(snapshot.position() + count * 8);
+        snapshot.asLongBuffer().get(idLow, 0, count);
+        snapshot.position(snapshot.position() + count * 8);
+        snapshot.asIntBuffer().get(xs, 0, count);
+        snapshot.position(snapshot.position() + count * 4);
+        snapshot.asIntBuffer().get(ys, 0, count);
+        snapshot.position(snapshot.position() + count * 4);
+        snapshot.asLongBuffer().get(versions, 0, count);
+        snapshot.position(snapshot.position() + count * 8);
+        snapshot.get(directions, 0, count);
+
+        size = count;
+        slots = new HashMap<>(capacity * 4 / 3 + 1);
+        cells = new CellTable(capacity);
+        for (int slot = 0; slot < count; slot++) {
+            slots.put(new UUID(idHigh[slot], idLow[slot]), slot);
+            cells.put(Cells.pack(xs[slot], ys[slot]), slot);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the complete frames of one log file and cuts off anything after them.
+     *
+     * @return the number of frames applied
+     */
+    private int replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            long position = 0;
+            int frames = 0;
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            while (position + FRAME_HEADER_BYTES <= length) {
+                header.clear();
+                readFully(channel, file, header, position);
+                int records = header.getInt(0);
+                long end = position + FRAME_HEADER_BYTES + (long) records * RECORD_BYTES;
+                if (records <= 0 || end > length) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(records * RECORD_BYTES);
+                readFully(channel, file, body, position + FRAME_HEADER_BYTES);
+                CRC32 crc = new CRC32();
+                crc.update(body.array());
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    break;
+                }
+                body.flip();
+                applyFrame(body, records);
+                position = end;
+                frames++;
+            }
+            if (position < length) {
+                log.warn("Drone write-ahead log {} ends with {} bytes of an incomplete or corrupt write, discarding them",
+                        file, length - position);
+                channel.truncate(position);
+            }
+            walBytes += position;
+            return frames;
+        }
+    }
+
+    private void applyFrame(ByteBuffer body, int records) {
+        int[] moving = new int[records];
+        int[] x = new int[records];
+        int[] y = new int[records];
+        int moves = 0;
+        for (int i = 0; i < records; i++) {
+            byte type = body.get();
+            UUID droneId = new UUID(body.getLong(), body.getLong());
+            int recordX = body.getInt();
+            int recordY = body.getInt();
+            byte direction = body.get();
+            long version = body.getLong();
+            if (type == TYPE_INSERT) {
+                add(droneId, recordX, recordY, direction, version);
+                continue;
+            }
+            int slot = slots.get(droneId);
+            directions[slot] = direction;
+            versions[slot] = version;
+            moving[moves] = slot;
+            x[moves] = recordX;
+            y[moves] = recordY;
+            moves++;
+        }
+        // Moves of one frame may hand cells to each other, so they are relocated together
+        relocate(Arrays.copyOf(moving, moves), Arrays.copyOf(x, moves), Arrays.copyOf(y, moves));
+    }
+
+    private static void readFully(FileChannel channel, Path file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private FileChannel openWal(long sequence) throws IOException {
+        return FileChannel.open(walPath(sequence), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path walPath(long sequence) {
+        return directory.resolve(String.format("wal-%012d.log", sequence));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("snapshot-%012d.snap", sequence));
+    }
+
+    /**
+     * Lists the files of the state directory whose names match the pattern, by the number in their name.
+     */
+    private TreeMap<Long, Path> files(Pattern name) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                Matcher matcher = name.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Open-addressing map of packed cells to drone slots.
+     */
+    private static final class CellTable {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        CellTable(int expected) {
+            // Kept at most half full
+            int capacity = Integer.highestOneBit(Math.max(expected, 1) * 2 - 1) * 2;
+            keys = emptyKeys(capacity);
+            values = new int[capacity];
+        }
+
+        int get(long cell) {
+            int mask = keys.length - 1;
+            for (int slot = hash(cell, mask); ; slot = (slot + 1) & mask) {
+                if (keys[slot] == cell) {
+                    return values[slot];
+                }
+                if (keys[slot] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long cell, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(cell, mask);
+            while (keys[slot] != EMPTY && keys[slot] != cell) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = cell;
+            values[slot] = value;
+        }
+
+        void remove(long cell) {
+            int mask = keys.length - 1;
+            int slot = hash(cell, mask);
+            while (keys[slot] != cell) {
+                if (keys[slot] == EMPTY) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Shift later entries of the probe run back, so lookups never stop at the freed slot too early
+            int free = slot;
+            for (int next = (free + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = hash(keys[next], mask);
+                if (((next - home) & mask) >= ((next - free) & mask)) {
+                    keys[free] = keys[next];
+                    values[free] = values[next];
+                    free = next;
+                }
+            }
+            keys[free] = EMPTY;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = emptyKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long[] emptyKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int hash(long cell, int mask) {
+            long h = cell * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
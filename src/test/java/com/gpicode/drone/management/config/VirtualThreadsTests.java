@@ -0,0 +1,21 @@
+package com.gpicode.drone.management.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadsTests {
+
+    @Test
+    public void testFactory_CreatesNamedDaemonThreads() {
+        Thread platform = VirtualThreads.factory("drone-test", false).newThread(() -> { });
+        assertEquals("drone-test", platform.getName());
+        assertTrue(platform.isDaemon());
+
+        // Falls back to a platform thread where virtual threads are not available
+        Thread requested = VirtualThreads.factory("drone-test", true).newThread(() -> { });
+        assertEquals("drone-test", requested.getName());
+        assertTrue(requested.isDaemon());
+        assertEquals(VirtualThreads.isSupported(), Runtime.version().feature() >= 21);
+    }
+}
@@ -2,13 +2,25 @@ package com.gpicode.drone.management.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gpicode.drone.management.dto.*;
+import com.gpicode.drone.management.entity.Direction;
 import com.gpicode.drone.management.entity.Drone;
 import com.gpicode.drone.management.exception.*;
+import com.gpicode.drone.management.config.CommandProperties;
+import com.gpicode.drone.management.config.ExecutorProperties;
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.history.DroneHistoryLog;
+import com.gpicode.drone.management.history.NdjsonDroneHistoryStore;
+import com.gpicode.drone.management.index.DroneLocks;
+import com.gpicode.drone.management.metrics.DroneMetrics;
 import com.gpicode.drone.management.service.DroneService;
+import com.gpicode.drone.management.service.MoveCommandQueue;
+import com.gpicode.drone.management.service.TileExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,17 +30,22 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 public class DroneControllerTests {
@@ -45,19 +62,41 @@ public class DroneControllerTests {
     @Mock
     private DroneService droneService;
 
-    @InjectMocks
     private DroneController droneController;
 
+    private DroneHistoryLog droneHistoryLog;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private GlobalExceptionHandler globalExceptionHandler;
 
+    private MoveCommandQueue moveCommandQueue;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        globalExceptionHandler = new GlobalExceptionHandler();
+        globalExceptionHandler = new GlobalExceptionHandler(new ErrorResponses());
+
+        // Copy the test resources history into a temporary directory, so tests never modify the checked-in files
+        Path testResourcePath = Paths.get("src", "test", "resources", "test-drone-history");
+        try (Stream<Path> files = Files.list(testResourcePath)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, tempDir.resolve(file.getFileName()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        HistoryProperties historyProperties = new HistoryProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        droneHistoryLog = new DroneHistoryLog(new NdjsonDroneHistoryStore(tempDir.toString()), historyProperties);
+        moveCommandQueue = new MoveCommandQueue(new CommandProperties());
+        droneController = new DroneController(droneService, droneHistoryLog, historyProperties, new DroneMetrics(meterRegistry), new DroneLocks(), moveCommandQueue, new TileExecutor(new ExecutorProperties()), new ErrorResponses());
+    }
 
-        // Set storage path to test resources directory for testing
-        String testResourcePath = Paths.get("src", "test", "resources", "test-drone-history").toString() + File.separator;
-        droneController.setStoragePath(testResourcePath);
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        moveCommandQueue.close();
+        droneHistoryLog.close();
     }
 
     @Test
@@ -96,11 +135,239 @@ public class DroneControllerTests {
         verify(droneService, times(1)).moveDrone(droneId, request);
     }
 
+    @Test
+    public void testMoveDrone_AppendsToHistory() throws InvalidBoundaryException, DroneNotFoundException, DroneHistoryReadException, DroneHistoryNotFoundException {
+        RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+        UUID droneId = UUID.randomUUID();
+        when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+        droneController.createDrone(registerRequest);
+
+        for (int x = 2; x <= 4; x++) {
+            MoveDroneRequest request = new MoveDroneRequest(x, 1);
+            when(droneService.moveDrone(droneId, request)).thenReturn(new MoveDroneResponse(droneId, x, 1, "EAST", List.of("Moved to (" + x + ", 1)")));
+            droneController.moveDrone(droneId, request);
+        }
+
+        ResponseEntity<?> responseEntity = droneController.getDroneHistory(droneId, null, null, null);
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        List<MoveDroneResponse> states = states(responseEntity);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(1, 2, 3, 4);
+        assertThat(states.get(3).getDetails()).containsExactly("Moved to (4, 1)");
+        assertThat(meterRegistry.get("drone.history.requests").tag("operation", "create").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("drone.history.requests").tag("operation", "append").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("drone.history.requests").tag("operation", "load").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMoveDrone_TiledReleasesTheDroneOnceItsMoveIsRecorded() throws Throwable {
+        ExecutorProperties executorProperties = new ExecutorProperties();
+        executorProperties.setMode(ExecutorProperties.Mode.TILED);
+        executorProperties.setWorkers(1);
+        TileExecutor tileExecutor = new TileExecutor(executorProperties);
+        DroneLocks droneLocks = spy(new DroneLocks());
+        DroneController tiledController = new DroneController(droneService, droneHistoryLog, new HistoryProperties(), new DroneMetrics(meterRegistry), droneLocks, moveCommandQueue, tileExecutor, new ErrorResponses());
+        try {
+            RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+            UUID droneId = UUID.randomUUID();
+            when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+            tiledController.createDrone(registerRequest);
+
+            MoveDroneRequest request = new MoveDroneRequest(2, 1);
+            List<Integer> recordedWhenReleased = new ArrayList<>();
+            when(droneService.moveDrone(droneId, request)).thenAnswer(invocation -> {
+                // The service puts the release of the drone's cells off like this, until the move is recorded
+                tileExecutor.afterHold(() -> {
+                    try {
+                        recordedWhenReleased.add(states(tiledController.getDroneHistory(droneId, null, null, null)).size());
+                    } catch (DroneHistoryReadException | DroneHistoryNotFoundException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                });
+                return new MoveDroneResponse(droneId, 2, 1, "EAST", List.of("Moved to (2, 1)"));
+            });
+            tiledController.moveDrone(droneId, request);
+
+            assertThat(recordedWhenReleased).containsExactly(2);
+            verify(droneLocks, never()).lock(any());
+        } finally {
+            tileExecutor.close();
+        }
+    }
+
+    @Test
+    public void testMoveDroneAsync_RunsMovesInOrderAndReportsThem() throws Throwable {
+        RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+        UUID droneId = UUID.randomUUID();
+        when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+        droneController.createDrone(registerRequest);
+        List<MoveDroneRequest> requests = new ArrayList<>();
+        for (int x = 2; x <= 6; x++) {
+            MoveDroneRequest request = new MoveDroneRequest(x, 1);
+            requests.add(request);
+            when(droneService.moveDrone(droneId, request)).thenReturn(new MoveDroneResponse(droneId, x, 1, "EAST", List.of("Moved to (" + x + ", 1)")));
+        }
+
+        List<MoveCommandStatus> accepted = new ArrayList<>();
+        for (MoveDroneRequest request : requests) {
+            ResponseEntity<?> responseEntity = droneController.moveDroneAsync(droneId, request);
+            assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+            MoveCommandStatus status = (MoveCommandStatus) responseEntity.getBody();
+            assertThat(responseEntity.getHeaders().getLocation()).hasToString("/v1/api/drones/commands/" + status.getCommandId());
+            assertThat(status.getDroneId()).isEqualTo(droneId);
+            accepted.add(status);
+        }
+
+        MoveCommandStatus last = (MoveCommandStatus) droneController.getMoveCommand(accepted.get(4).getCommandId(), 10_000).getBody();
+        assertThat(last.getState()).isEqualTo(MoveCommandStatus.State.SUCCEEDED);
+        assertThat(last.getMove().getXCoordinate()).isEqualTo(6);
+        for (MoveCommandStatus status : accepted) {
+            MoveCommandStatus reported = (MoveCommandStatus) droneController.getMoveCommand(status.getCommandId(), 10_000).getBody();
+            assertThat(reported.getState()).isEqualTo(MoveCommandStatus.State.SUCCEEDED);
+            assertThat(reported.getError()).isNull();
+        }
+        InOrder inOrder = inOrder(droneService);
+        for (MoveDroneRequest request : requests) {
+            inOrder.verify(droneService).moveDrone(droneId, request);
+        }
+        List<MoveDroneResponse> states = states(droneController.getDroneHistory(droneId, null, null, null));
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(1, 2, 3, 4, 5, 6);
+    }
+
+    @Test
+    public void testMoveDroneAsync_ReportsTheErrorOfAFailedMove() throws Throwable {
+        UUID droneId = UUID.randomUUID();
+        MoveDroneRequest request = new MoveDroneRequest(3, 30);
+        when(droneService.moveDrone(droneId, request)).thenThrow(new InvalidBoundaryException("Out of field values for Coordinates"));
+
+        MoveCommandStatus accepted = (MoveCommandStatus) droneController.moveDroneAsync(droneId, request).getBody();
+        MoveCommandStatus status = (MoveCommandStatus) droneController.getMoveCommand(accepted.getCommandId(), 10_000).getBody();
+
+        assertThat(status.getState()).isEqualTo(MoveCommandStatus.State.FAILED);
+        assertThat(status.getMove()).isNull();
+        assertThat(status.getError().getResponseCode()).isEqualTo(400);
+        assertThat(status.getError().getMessage()).isEqualTo("Invalid values");
+        assertThat(status.getError().getDetails()).containsExactly("Out of field values for Coordinates");
+        assertThat(droneController.getMoveCommand(UUID.randomUUID(), 0).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void testGetDroneHistory_Paginated() throws Throwable {
+        RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+        UUID droneId = UUID.randomUUID();
+        when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+        droneController.createDrone(registerRequest);
+        for (int x = 2; x <= 4; x++) {
+            MoveDroneRequest request = new MoveDroneRequest(x, 1);
+            when(droneService.moveDrone(droneId, request)).thenReturn(new MoveDroneResponse(droneId, x, 1, "EAST", List.of()));
+            droneController.moveDrone(droneId, request);
+        }
+
+        DroneHistoryPage page = (DroneHistoryPage) droneController.getDroneHistory(droneId, 1, 2, null).getBody();
+        assertThat(page.getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(2, 3);
+        assertThat(page.getTotal()).isEqualTo(4);
+        assertThat(page.getNextFrom()).isEqualTo(3);
+
+        DroneHistoryPage latest = (DroneHistoryPage) droneController.getDroneHistory(droneId, null, null, 2).getBody();
+        assertThat(latest.getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(3, 4);
+        assertThat(latest.getFrom()).isEqualTo(2);
+        assertThat(latest.getNextFrom()).isNull();
+
+        assertThrows(IllegalArgumentException.class, () -> droneController.getDroneHistory(droneId, -1, 2, null));
+        assertThrows(IllegalArgumentException.class, () -> droneController.getDroneHistory(droneId, 0, 5000, null));
+        assertThrows(IllegalArgumentException.class, () -> droneController.getDroneHistory(droneId, 1, null, 2));
+    }
+
+    @Test
+    public void testStreamDroneHistory_WritesStatesAsJsonArray() throws Throwable {
+        UUID droneId = UUID.fromString("b9cbc74f-0e2e-4b53-9659-f0a34a6c69be");
+        int total = ((List<?>) droneController.getDroneHistory(droneId, null, null, null).getBody()).size();
+
+        ResponseEntity<StreamingResponseBody> response = droneController.streamDroneHistory(droneId, 1, null, null);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+
+        MoveDroneResponse[] states = new ObjectMapper().readValue(output.toByteArray(), MoveDroneResponse[].class);
+        assertThat(states).hasSize(total - 1);
+        assertThat(states[0].getXCoordinate()).isEqualTo(7);
+        assertThrows(DroneHistoryNotFoundException.class, () -> droneController.streamDroneHistory(UUID.randomUUID(), null, null, null));
+    }
+
+    @Test
+    public void testMoveDrones_RecordsHistoryOfMovedDronesOnly() throws Throwable {
+        RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+        UUID droneId = UUID.randomUUID();
+        UUID rejectedId = UUID.randomUUID();
+        when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+        droneController.createDrone(registerRequest);
+        BatchMoveRequest request = new BatchMoveRequest();
+        request.getMoves().put(droneId, new MoveDroneRequest(2, 1));
+        request.getMoves().put(rejectedId, new MoveDroneRequest(3, 1));
+        when(droneService.moveDrones(request.getMoves())).thenReturn(List.of(
+                BatchMoveResult.moved(new MoveDroneResponse(droneId, 2, 1, "EAST", List.of("Moved to (2, 1)"))),
+                BatchMoveResult.rejected(rejectedId, "Drone not found")));
+
+        ResponseEntity<?> responseEntity = droneController.moveDrones(request);
+
+        BatchMoveResponse response = (BatchMoveResponse) responseEntity.getBody();
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getMoved()).isEqualTo(1);
+        assertThat(response.getRejected()).isEqualTo(1);
+        List<MoveDroneResponse> states = states(droneController.getDroneHistory(droneId, null, null, null));
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(1, 2);
+        assertThat(droneHistoryLog.exists(rejectedId)).isFalse();
+    }
+
+    @Test
+    public void testFlyMission_AppendsEveryWaypointInOneWrite() throws Throwable {
+        RegisterDroneRequest registerRequest = new RegisterDroneRequest(1, 1, "North");
+        UUID droneId = UUID.randomUUID();
+        when(droneService.registerDrone(registerRequest)).thenReturn(new DroneResponse(droneId, 1, 1, "NORTH"));
+        droneController.createDrone(registerRequest);
+        MissionRequest request = new MissionRequest(List.of(new MoveDroneRequest(1, 4), new MoveDroneRequest(5, 4)));
+        List<MoveDroneResponse> legs = List.of(new MoveDroneResponse(droneId, 1, 4, "NORTH", List.of("Moved to (1, 4)")),
+                new MoveDroneResponse(droneId, 5, 4, "EAST", List.of("Pointed from NORTH to EAST", "Moved to (5, 4)")));
+        when(droneService.flyMission(droneId, request.getWaypoints())).thenReturn(legs);
+
+        ResponseEntity<?> responseEntity = droneController.flyMission(droneId, request);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(responseEntity.getBody()).isEqualTo(legs);
+        List<MoveDroneResponse> states = states(droneController.getDroneHistory(droneId, null, null, null));
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(1, 1, 5);
+        assertThat(meterRegistry.get("drone.history.requests").tag("operation", "append").timer().count()).isEqualTo(1);
+        assertThrows(DroneHistoryNotFoundException.class, () -> droneController.flyMission(UUID.randomUUID(), request));
+    }
+
+    @Test
+    public void testCreateDrones_StartsHistoryOfEveryDrone() throws Throwable {
+        BulkRegisterRequest request = new BulkRegisterRequest(List.of(new RegisterDroneRequest(1, 1, "North"), new RegisterDroneRequest(2, 2, "East")));
+        List<DroneResponse> registered = List.of(new DroneResponse(UUID.randomUUID(), 1, 1, "NORTH"), new DroneResponse(UUID.randomUUID(), 2, 2, "EAST"));
+        when(droneService.registerDrones(request.getDrones())).thenReturn(registered);
+
+        ResponseEntity<?> responseEntity = droneController.createDrones(request);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(responseEntity.getBody()).isEqualTo(registered);
+        for (DroneResponse drone : registered) {
+            List<MoveDroneResponse> states = states(droneController.getDroneHistory(drone.getDroneId(), null, null, null));
+            assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(drone.getXCoordinate());
+        }
+    }
+
+    @Test
+    public void testMoveDrone_HistoryNotFound() throws InvalidBoundaryException, DroneNotFoundException {
+        UUID droneId = UUID.randomUUID();
+        MoveDroneRequest request = new MoveDroneRequest(7, 7);
+        when(droneService.moveDrone(droneId, request)).thenReturn(new MoveDroneResponse(droneId, 7, 7, "NORTH", List.of()));
+
+        assertThrows(DroneHistoryNotFoundException.class, () -> droneController.moveDrone(droneId, request));
+    }
+
 
     @Test
     public void testGetDrone_Success() throws DroneNotFoundException {
         UUID droneId = UUID.randomUUID();
-        Drone expectedDrone = new Drone(droneId, 5, 5, "North");
+        Drone expectedDrone = new Drone(droneId, 5, 5, Direction.NORTH);
         when(droneService.getDrone(droneId)).thenReturn(expectedDrone);
         ResponseEntity<?> responseEntity = droneController.getDrone(droneId);
         assertThat(responseEntity).isNotNull();
@@ -166,6 +433,18 @@ public class DroneControllerTests {
         }
     }
 
+    @Test
+    public void testOccupancyIndex_VerifyOnlyReportsAndRepairRebuilds() {
+        OccupancyIndexReport drifted = new OccupancyIndexReport(false, 1, 2, List.of("(3, 4)"), List.of(), List.of(), false);
+        OccupancyIndexReport rebuilt = new OccupancyIndexReport(false, 1, 2, List.of("(3, 4)"), List.of(), List.of(), true);
+        when(droneService.verifyOccupancyIndex(false)).thenReturn(drifted);
+        when(droneService.verifyOccupancyIndex(true)).thenReturn(rebuilt);
+
+        assertThat(droneController.verifyOccupancyIndex().getBody()).isSameAs(drifted);
+        verify(droneService, never()).verifyOccupancyIndex(true);
+        assertThat(droneController.repairOccupancyIndex().getBody()).isSameAs(rebuilt);
+    }
+
     @Test
     public void testCreateDrone_ValidationException() {
         RegisterDroneRequest invalidRequest = new RegisterDroneRequest(-1, -1, "North");
@@ -190,4 +469,8 @@ public class DroneControllerTests {
         assertThat(responseEntity.getBody().getDetails().get(1)).isEqualTo("y: must be greater than or equal to 0");
     }
 
+    @SuppressWarnings("unchecked")
+    private static List<MoveDroneResponse> states(ResponseEntity<?> responseEntity) {
+        return (List<MoveDroneResponse>) responseEntity.getBody();
+    }
 }
@@ -0,0 +1,391 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.config.HistoryProperties.Durability;
+import com.gpicode.drone.management.dto.HistoryCacheStats;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import com.gpicode.drone.management.exception.DroneHistoryWriteException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DroneHistoryLogTests {
+
+    @Test
+    public void testFsyncMode_GroupsConcurrentRequestsIntoFewerWrites() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.FSYNC));
+        List<UUID> droneIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            UUID droneId = UUID.randomUUID();
+            droneIds.add(droneId);
+            historyLog.create(history(droneId));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> moves = new ArrayList<>();
+        for (UUID droneId : droneIds) {
+            moves.add(executor.submit(() -> {
+                try {
+                    historyLog.append(droneId, state(droneId, 1));
+                } catch (DroneHistoryNotFoundException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            }));
+        }
+        for (Future<?> move : moves) {
+            move.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(store.records).hasSize(100);
+        assertThat(store.syncs).isEqualTo(store.writes);
+        assertThat(store.writes).isLessThanOrEqualTo(100);
+        for (UUID droneId : droneIds) {
+            assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1);
+        }
+        historyLog.close();
+    }
+
+    @Test
+    public void testFsyncMode_ReportsWriteFailureToCaller() {
+        RecordingStore store = new RecordingStore();
+        store.failWrites = true;
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.FSYNC));
+
+        assertThrows(DroneHistoryWriteException.class, () -> historyLog.create(history(UUID.randomUUID())));
+    }
+
+    @Test
+    public void testAsyncMode_CountsDroppedStatesAgainstTheirDroneOnly() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.ASYNC));
+        UUID failed = UUID.randomUUID();
+        UUID healthy = UUID.randomUUID();
+        historyLog.create(history(failed));
+        historyLog.create(history(healthy));
+        while (!store.exists(failed) || !store.exists(healthy)) {
+            Thread.onSpinWait();
+        }
+
+        store.failWrites = true;
+        historyLog.append(failed, state(failed, 1));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (historyLog.lostStates(failed) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        store.failWrites = false;
+
+        // The loss is reported against the drone it hit, and later requests of other drones go through
+        assertThat(historyLog.lostStates(failed)).isEqualTo(1);
+        assertThat(historyLog.lostStates(healthy)).isZero();
+        assertThat(historyLog.lostStates()).isEqualTo(1);
+        historyLog.append(healthy, state(healthy, 1));
+        historyLog.close();
+        assertThat(historyLog.load(healthy).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1);
+        assertThat(historyLog.load(failed).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0);
+    }
+
+    @Test
+    public void testBatchedMode_QueuedRecordsAreVisibleToReads() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        store.blockWrites = new CountDownLatch(1);
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.BATCHED));
+        UUID droneId = UUID.randomUUID();
+
+        historyLog.create(history(droneId));
+        historyLog.append(droneId, state(droneId, 1));
+        historyLog.append(droneId, state(droneId, 2));
+
+        assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1, 2);
+        store.blockWrites.countDown();
+        historyLog.close();
+        assertThat(store.records).hasSize(3);
+        assertThat(store.syncs).isPositive();
+        assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void testFullQueue_RejectsAfterTimeout() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        store.blockWrites = new CountDownLatch(1);
+        HistoryProperties properties = properties(Durability.ASYNC);
+        properties.setQueueCapacity(2);
+        properties.setEnqueueTimeoutMs(50);
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties);
+
+        DroneHistoryWriteException rejected = null;
+        for (int i = 0; i < 10 && rejected == null; i++) {
+            try {
+                historyLog.create(history(UUID.randomUUID()));
+            } catch (DroneHistoryWriteException exception) {
+                rejected = exception;
+            }
+        }
+
+        assertThat(rejected).isNotNull();
+        store.blockWrites.countDown();
+        historyLog.close();
+    }
+
+    @Test
+    public void testAppend_UnknownDroneIsNotFound() {
+        DroneHistoryLog historyLog = new DroneHistoryLog(new RecordingStore(), properties(Durability.ASYNC));
+        UUID droneId = UUID.randomUUID();
+        assertThrows(DroneHistoryNotFoundException.class, () -> historyLog.append(droneId, state(droneId, 1)));
+    }
+
+    @Test
+    public void testCache_HotDronesAreServedWithoutStoreReads() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.FSYNC));
+        UUID droneId = UUID.randomUUID();
+
+        historyLog.create(history(droneId));
+        historyLog.append(droneId, state(droneId, 1));
+        historyLog.append(droneId, state(droneId, 2));
+
+        assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1, 2);
+        assertThat(store.loads).isZero();
+        assertThat(store.existsChecks).isZero();
+        HistoryCacheStats stats = historyLog.cacheStats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getCachedStates()).isEqualTo(3);
+        historyLog.close();
+    }
+
+    @Test
+    public void testCache_EvictsLeastRecentlyUsedHistoriesBeyondCapacity() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        HistoryProperties properties = properties(Durability.FSYNC);
+        properties.setCacheMaxStates(4);
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        historyLog.create(history(first));
+        historyLog.append(first, state(first, 1));
+        historyLog.create(history(second));
+        historyLog.load(first);
+        historyLog.create(history(third));
+        historyLog.append(third, state(third, 1));
+
+        HistoryCacheStats stats = historyLog.cacheStats();
+        assertThat(stats.getEvictions()).isEqualTo(1);
+        assertThat(stats.getCachedStates()).isEqualTo(4);
+        assertThat(historyLog.load(second).getStates()).hasSize(1);
+        assertThat(store.loads).isEqualTo(1);
+        assertThat(historyLog.cacheStats().getMisses()).isEqualTo(1);
+        historyLog.close();
+    }
+
+    @Test
+    public void testCache_FailedWriteIsNotServedFromCache() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.FSYNC));
+        UUID droneId = UUID.randomUUID();
+        historyLog.create(history(droneId));
+
+        store.failWrites = true;
+        assertThrows(DroneHistoryWriteException.class, () -> historyLog.append(droneId, state(droneId, 1)));
+
+        assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0);
+        assertThat(store.loads).isEqualTo(1);
+        historyLog.close();
+    }
+
+    @Test
+    public void testCache_HistoryGrownPastCapacityIsDroppedAlone() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        HistoryProperties properties = properties(Durability.FSYNC);
+        properties.setCacheMaxStates(3);
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties);
+        UUID other = UUID.randomUUID();
+        UUID droneId = UUID.randomUUID();
+
+        historyLog.create(history(other));
+        historyLog.create(history(droneId));
+        historyLog.appendAll(droneId, List.of(state(droneId, 1), state(droneId, 2), state(droneId, 3)));
+
+        // The history too large to cache is dropped, instead of first evicting every other drone
+        HistoryCacheStats stats = historyLog.cacheStats();
+        assertThat(stats.getCachedDrones()).isEqualTo(1);
+        assertThat(stats.getCachedStates()).isEqualTo(1);
+        assertThat(stats.getEvictions()).isZero();
+        assertThat(historyLog.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1, 2, 3);
+        assertThat(historyLog.load(other).getStates()).hasSize(1);
+        assertThat(store.loads).isEqualTo(1);
+        historyLog.close();
+    }
+
+    @Test
+    public void testCache_FailedCreateIsNotServedFromCache() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        store.failWrites = true;
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties(Durability.ASYNC));
+        List<UUID> droneIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID droneId = UUID.randomUUID();
+            historyLog.create(history(droneId));
+            droneIds.add(droneId);
+        }
+        historyLog.close();
+
+        // However quickly the writer failed a batch, none of its records may be left in the cache
+        for (UUID droneId : droneIds) {
+            assertThat(historyLog.exists(droneId)).isFalse();
+        }
+        assertThat(historyLog.cacheStats().getCachedStates()).isZero();
+    }
+
+    @Test
+    public void testRead_ReturnsRangeWhetherStatesAreStoredOrQueued() throws Throwable {
+        RecordingStore store = new RecordingStore();
+        HistoryProperties properties = properties(Durability.ASYNC);
+        properties.setCacheMaxStates(0);
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties);
+        UUID droneId = UUID.randomUUID();
+        historyLog.create(history(droneId));
+        for (int x = 1; x <= 4; x++) {
+            historyLog.append(droneId, state(droneId, x));
+        }
+
+        // Some of these states may still be queued, the range must not depend on it.
+        List<MoveDroneResponse> states = new ArrayList<>();
+        int total = historyLog.read(droneId, HistoryRange.page(1, 3), states::add);
+        assertThat(total).isEqualTo(5);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(1, 2, 3);
+
+        historyLog.close();
+        states.clear();
+        historyLog.read(droneId, HistoryRange.latest(2), states::add);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(3, 4);
+        assertThat(store.loads).isPositive();
+    }
+
+    private static HistoryProperties properties(Durability durability) {
+        HistoryProperties properties = new HistoryProperties();
+        properties.setDurability(durability);
+        properties.setFlushIntervalMs(5);
+        return properties;
+    }
+
+    private static DroneHistory history(UUID droneId) {
+        List<MoveDroneResponse> states = new ArrayList<>();
+        states.add(state(droneId, 0));
+        return new DroneHistory(droneId, states);
+    }
+
+    private static MoveDroneResponse state(UUID droneId, int x) {
+        return new MoveDroneResponse(droneId, x, 0, "EAST", null);
+    }
+
+    /**
+     * In-memory store counting writes and syncs, which can be made to block or fail.
+     */
+    private static final class RecordingStore implements DroneHistoryStore {
+        private final List<HistoryRecord> records = new ArrayList<>();
+        private volatile int writes;
+        private volatile int syncs;
+        private volatile int loads;
+        private volatile int existsChecks;
+        private volatile boolean failWrites;
+        private volatile CountDownLatch blockWrites;
+
+        @Override
+        public void create(DroneHistory history) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void append(UUID droneId, MoveDroneResponse state) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized DroneHistory load(UUID droneId) throws DroneHistoryNotFoundException {
+            loads++;
+            DroneHistory history = new DroneHistory();
+            history.setDroneId(droneId);
+            for (HistoryRecord record : records) {
+                if (record.droneId().equals(droneId)) {
+                    history.getStates().add(record.state());
+                }
+            }
+            if (history.getStates().isEmpty()) {
+                throw new DroneHistoryNotFoundException("Drone history not found for ID: " + droneId);
+            }
+            return history;
+        }
+
+        @Override
+        public synchronized boolean exists(UUID droneId) {
+            existsChecks++;
+            return records.stream().anyMatch(record -> record.droneId().equals(droneId));
+        }
+
+        @Override
+        public synchronized int count(UUID droneId) throws DroneHistoryNotFoundException {
+            return load(droneId).getStates().size();
+        }
+
+        @Override
+        public void read(UUID droneId, int from, int limit, Consumer<MoveDroneResponse> consumer) throws DroneHistoryNotFoundException {
+            List<MoveDroneResponse> states = load(droneId).getStates();
+            states.subList(Math.min(from, states.size()), (int) Math.min(states.size(), (long) from + limit)).forEach(consumer);
+        }
+
+        @Override
+        public void write(List<HistoryRecord> batch) throws IOException {
+            if (blockWrites != null) {
+                try {
+                    blockWrites.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failWrites) {
+                throw new IOException("disk full");
+            }
+            synchronized (this) {
+                records.addAll(batch);
+                writes++;
+            }
+        }
+
+        @Override
+        public void sync() {
+            syncs++;
+        }
+
+        @Override
+        public long sizeOnDisk() {
+            return 0;
+        }
+
+        @Override
+        public long bytesRead() {
+            return 0;
+        }
+
+        @Override
+        public long bytesWritten() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NdjsonDroneHistoryStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAppend_ReturnsStatesInOrder() throws Throwable {
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+        UUID droneId = UUID.randomUUID();
+        store.create(history(droneId, state(droneId, 0, 0, null)));
+        for (int i = 1; i <= 5; i++) {
+            store.append(droneId, state(droneId, i, i, List.of("Moved to (" + i + ", " + i + ")")));
+        }
+
+        DroneHistory history = store.load(droneId);
+        assertThat(history.getDroneId()).isEqualTo(droneId);
+        assertThat(history.getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(history.getStates().get(5).getDetails()).containsExactly("Moved to (5, 5)");
+        assertThat(Files.readAllLines(tempDir.resolve(droneId + ".ndjson"))).hasSize(6);
+    }
+
+    @Test
+    public void testRead_ReturnsRequestedRange() throws Throwable {
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+        UUID droneId = UUID.randomUUID();
+        store.create(history(droneId, state(droneId, 0, 0, null)));
+        for (int i = 1; i <= 9; i++) {
+            store.append(droneId, state(droneId, i, i, null));
+        }
+
+        List<MoveDroneResponse> states = new ArrayList<>();
+        store.read(droneId, 7, 5, states::add);
+        assertThat(store.count(droneId)).isEqualTo(10);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(7, 8, 9);
+        assertThrows(DroneHistoryNotFoundException.class, () -> store.count(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testLegacyJsonHistory_IsMigratedOnFirstAppend() throws Throwable {
+        UUID droneId = UUID.randomUUID();
+        Path legacyFile = tempDir.resolve(droneId + ".json");
+        Files.writeString(legacyFile, "{\"droneId\":\"" + droneId + "\",\"states\":["
+                + "{\"details\":null,\"droneId\":\"" + droneId + "\",\"xCoordinate\":5,\"yCoordinate\":5,\"direction\":\"North\"},"
+                + "{\"details\":[\"sample detail\"],\"droneId\":\"" + droneId + "\",\"xCoordinate\":7,\"yCoordinate\":7,\"direction\":\"North\"}]}");
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+
+        store.append(droneId, state(droneId, 8, 7, null));
+
+        assertThat(Files.exists(legacyFile)).isFalse();
+        DroneHistory history = store.load(droneId);
+        assertThat(history.getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(5, 7, 8);
+        assertThat(history.getStates().get(1).getDetails()).containsExactly("sample detail");
+    }
+
+    @Test
+    public void testTornLastLine_IsIgnoredAndRepairedByNextAppend() throws Throwable {
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+        UUID droneId = UUID.randomUUID();
+        store.create(history(droneId, state(droneId, 0, 0, null)));
+        Files.writeString(tempDir.resolve(droneId + ".ndjson"), "{\"droneId\":\"" + droneId + "\",\"xCoord",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertThat(store.load(droneId).getStates()).hasSize(1);
+
+        store.append(droneId, state(droneId, 1, 0, null));
+        assertThat(store.load(droneId).getStates()).extracting(MoveDroneResponse::getXCoordinate).containsExactly(0, 1);
+    }
+
+    @Test
+    public void testMissingHistory_IsNotFound() {
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+        UUID droneId = UUID.randomUUID();
+        assertThrows(DroneHistoryNotFoundException.class, () -> store.load(droneId));
+        assertThrows(DroneHistoryNotFoundException.class, () -> store.append(droneId, state(droneId, 1, 1, null)));
+    }
+
+    private static DroneHistory history(UUID droneId, MoveDroneResponse initialState) {
+        List<MoveDroneResponse> states = new ArrayList<>();
+        states.add(initialState);
+        return new DroneHistory(droneId, states);
+    }
+
+    private static MoveDroneResponse state(UUID droneId, int x, int y, List<String> details) {
+        return new MoveDroneResponse(droneId, x, y, "NORTH", details);
+    }
+}
@@ -0,0 +1,211 @@
+package com.gpicode.drone.management.history;
+
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.exception.DroneHistoryNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SegmentDroneHistoryStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAppend_RollsSegmentsAndKeepsOrder() throws Throwable {
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties(512));
+        List<UUID> droneIds = createDrones(store, 3);
+        appendMoves(store, droneIds, 20);
+
+        assertThat(store.segmentCount()).isGreaterThan(3);
+        for (UUID droneId : droneIds) {
+            assertHistory(store.load(droneId), droneId, 20);
+        }
+        assertThat(Files.list(tempDir).filter(Files::isRegularFile).count()).isZero();
+        store.close();
+    }
+
+    @Test
+    public void testRead_ReturnsRangeAcrossSegmentsAndCompaction() throws Throwable {
+        HistoryProperties properties = properties(512);
+        properties.setCompactionMinSegments(2);
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties);
+        List<UUID> droneIds = createDrones(store, 2);
+        appendMoves(store, droneIds, 600);
+        UUID droneId = droneIds.get(1);
+
+        List<MoveDroneResponse> states = new ArrayList<>();
+        store.read(droneId, 295, 10, states::add);
+        assertThat(store.count(droneId)).isEqualTo(601);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(295, 296, 297, 298, 299, 300, 301, 302, 303, 304);
+
+        store.compact();
+        states.clear();
+        store.read(droneId, 598, 10, states::add);
+        assertThat(states).extracting(MoveDroneResponse::getXCoordinate).containsExactly(598, 599, 600);
+        store.close();
+    }
+
+    @Test
+    public void testRestart_RecoversIndexByScanningSegments() throws Throwable {
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties(512));
+        List<UUID> droneIds = createDrones(store, 3);
+        appendMoves(store, droneIds, 10);
+        store.close();
+
+        SegmentDroneHistoryStore reopened = new SegmentDroneHistoryStore(properties(512));
+        for (UUID droneId : droneIds) {
+            assertHistory(reopened.load(droneId), droneId, 10);
+        }
+        reopened.append(droneIds.get(0), state(droneIds.get(0), 11));
+        assertHistory(reopened.load(droneIds.get(0)), droneIds.get(0), 11);
+        reopened.close();
+    }
+
+    @Test
+    public void testCompaction_PreservesHistoriesAcrossRestart() throws Throwable {
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties(512));
+        List<UUID> droneIds = createDrones(store, 4);
+        appendMoves(store, droneIds, 25);
+        int segmentsBefore = store.segmentCount();
+
+        store.compact();
+
+        assertThat(store.segmentCount()).isLessThan(segmentsBefore);
+        for (UUID droneId : droneIds) {
+            assertHistory(store.load(droneId), droneId, 25);
+        }
+        appendMoves(store, droneIds.subList(0, 1), 26, 30);
+        store.close();
+
+        SegmentDroneHistoryStore reopened = new SegmentDroneHistoryStore(properties(512));
+        assertHistory(reopened.load(droneIds.get(0)), droneIds.get(0), 30);
+        assertHistory(reopened.load(droneIds.get(3)), droneIds.get(3), 25);
+        reopened.close();
+    }
+
+    @Test
+    public void testCompaction_MergesCompactedSegmentsAgain() throws Throwable {
+        HistoryProperties properties = properties(512);
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties);
+        List<UUID> droneIds = createDrones(store, 2);
+        for (int round = 0; round < 40; round++) {
+            appendMoves(store, droneIds, round * 5 + 1, round * 5 + 5);
+            store.compact();
+        }
+
+        // One compacted segment per round would leave 40 of them; merging by size keeps a few per size tier
+        assertThat(store.segmentCount()).isLessThan(15);
+        try (Stream<Path> files = Files.list(tempDir.resolve("segments"))) {
+            assertThat(files.count()).isEqualTo(store.segmentCount());
+        }
+        store.close();
+
+        SegmentDroneHistoryStore reopened = new SegmentDroneHistoryStore(properties);
+        for (UUID droneId : droneIds) {
+            assertHistory(reopened.load(droneId), droneId, 200);
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void testRestart_TruncatesTornRecord() throws Throwable {
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties(1 << 20));
+        List<UUID> droneIds = createDrones(store, 1);
+        appendMoves(store, droneIds, 3);
+        store.close();
+        Path newest;
+        try (Stream<Path> files = Files.list(tempDir.resolve("segments"))) {
+            newest = files.filter(path -> {
+                try {
+                    return Files.size(path) > 0;
+                } catch (java.io.IOException e) {
+                    return false;
+                }
+            }).sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        Files.write(newest, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        SegmentDroneHistoryStore reopened = new SegmentDroneHistoryStore(properties(1 << 20));
+        assertHistory(reopened.load(droneIds.get(0)), droneIds.get(0), 3);
+        reopened.close();
+    }
+
+    @Test
+    public void testLegacyPerDroneFile_IsImported() throws Throwable {
+        NdjsonDroneHistoryStore legacyStore = new NdjsonDroneHistoryStore(tempDir.toString());
+        UUID droneId = UUID.randomUUID();
+        legacyStore.create(history(droneId));
+        legacyStore.append(droneId, state(droneId, 1));
+
+        SegmentDroneHistoryStore store = new SegmentDroneHistoryStore(properties(1 << 20));
+        store.append(droneId, state(droneId, 2));
+
+        assertHistory(store.load(droneId), droneId, 2);
+        assertThat(Files.exists(tempDir.resolve(droneId + ".ndjson"))).isFalse();
+        assertThrows(DroneHistoryNotFoundException.class, () -> store.load(UUID.randomUUID()));
+        store.close();
+    }
+
+    private HistoryProperties properties(long segmentSizeBytes) {
+        HistoryProperties properties = new HistoryProperties();
+        properties.setStoragePath(tempDir.toString());
+        properties.setSegmentSizeBytes(segmentSizeBytes);
+        properties.setCompactionMinSegments(2);
+        properties.setCompactionIntervalMs(0);
+        return properties;
+    }
+
+    private static List<UUID> createDrones(SegmentDroneHistoryStore store, int count) throws Throwable {
+        List<UUID> droneIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID droneId = UUID.randomUUID();
+            store.create(history(droneId));
+            droneIds.add(droneId);
+        }
+        return droneIds;
+    }
+
+    private static void appendMoves(SegmentDroneHistoryStore store, List<UUID> droneIds, int moves) throws Throwable {
+        appendMoves(store, droneIds, 1, moves);
+    }
+
+    private static void appendMoves(SegmentDroneHistoryStore store, List<UUID> droneIds, int from, int to) throws Throwable {
+        for (int move = from; move <= to; move++) {
+            for (UUID droneId : droneIds) {
+                store.append(droneId, state(droneId, move));
+            }
+        }
+    }
+
+    private static void assertHistory(DroneHistory history, UUID droneId, int moves) {
+        assertThat(history.getDroneId()).isEqualTo(droneId);
+        assertThat(history.getStates()).hasSize(moves + 1);
+        for (int i = 0; i <= moves; i++) {
+            assertThat(history.getStates().get(i).getDroneId()).isEqualTo(droneId);
+            assertThat(history.getStates().get(i).getXCoordinate()).isEqualTo(i);
+        }
+    }
+
+    private static DroneHistory history(UUID droneId) {
+        List<MoveDroneResponse> states = new ArrayList<>();
+        states.add(state(droneId, 0));
+        return new DroneHistory(droneId, states);
+    }
+
+    private static MoveDroneResponse state(UUID droneId, int x) {
+        return new MoveDroneResponse(droneId, x, 0, "EAST", x == 0 ? null : List.of("Moved to (" + x + ", 0)"));
+    }
+}
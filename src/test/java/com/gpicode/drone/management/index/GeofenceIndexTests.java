@@ -0,0 +1,122 @@
+package com.gpicode.drone.management.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeofenceIndexTests {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    @Test
+    public void testPolygon_CoversInsideAndOutlineOnly() {
+        // A right triangle with its right angle at (0, 0) and its hypotenuse from (4, 0) to (0, 4)
+        NoFlyZone triangle = NoFlyZone.polygon(UUID.randomUUID(), "triangle", new int[][]{{0, 0}, {4, 0}, {0, 4}}, null, null);
+        for (int y = -1; y <= 5; y++) {
+            for (int x = -1; x <= 5; x++) {
+                assertEquals(x >= 0 && y >= 0 && x + y <= 4, triangle.contains(x, y), "(" + x + ", " + y + ")");
+            }
+        }
+
+        // A U shape: the notch between the arms stays open
+        NoFlyZone u = NoFlyZone.polygon(UUID.randomUUID(), "u", new int[][]{{0, 0}, {6, 0}, {6, 6}, {4, 6}, {4, 2}, {2, 2}, {2, 6}, {0, 6}}, null, null);
+        assertTrue(u.contains(1, 5));
+        assertTrue(u.contains(5, 5));
+        assertTrue(u.contains(3, 2));
+        assertFalse(u.contains(3, 3));
+        assertFalse(u.contains(3, 6));
+    }
+
+    @Test
+    public void testIsRestricted_HonoursTimeWindows() {
+        NoFlyZone later = NoFlyZone.rectangle(UUID.randomUUID(), "later", 0, 0, 2, 2, NOW.plusSeconds(60), null);
+        NoFlyZone over = NoFlyZone.rectangle(UUID.randomUUID(), "over", 5, 5, 6, 6, null, NOW);
+        NoFlyZone now = NoFlyZone.rectangle(UUID.randomUUID(), "now", 8, 8, 8, 8, NOW.minusSeconds(60), NOW.plusSeconds(60));
+
+        GeofenceIndex index = new GeofenceIndex(Clock.fixed(NOW, ZoneOffset.UTC));
+        index.addAll(List.of(later, over, now));
+        assertFalse(index.isRestricted(1, 1));
+        assertFalse(index.isRestricted(5, 5));
+        assertTrue(index.isRestricted(8, 8));
+        assertTrue(index.isAreaFree(0, 0, 7, 7));
+
+        GeofenceIndex inAMinute = new GeofenceIndex(Clock.fixed(NOW.plusSeconds(60), ZoneOffset.UTC));
+        inAMinute.addAll(List.of(later, over, now));
+        assertTrue(inAMinute.isRestricted(1, 1));
+        assertFalse(inAMinute.isRestricted(8, 8));
+
+        assertThrows(IllegalArgumentException.class, () -> NoFlyZone.rectangle(UUID.randomUUID(), "never", 0, 0, 1, 1, NOW, NOW));
+    }
+
+    @Test
+    public void testMarkRestricted_MatchesCellByCellChecks() {
+        Random random = new Random(7);
+        List<NoFlyZone> zones = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(2000);
+            int y = random.nextInt(2000);
+            if (i % 2 == 0) {
+                zones.add(NoFlyZone.rectangle(UUID.randomUUID(), "r" + i, x, y, x + random.nextInt(40), y + random.nextInt(40), null, null));
+            } else {
+                int[][] corners = new int[3 + random.nextInt(5)][];
+                for (int c = 0; c < corners.length; c++) {
+                    corners[c] = new int[]{x + random.nextInt(60), y + random.nextInt(60)};
+                }
+                zones.add(NoFlyZone.polygon(UUID.randomUUID(), "p" + i, corners, null, null));
+            }
+        }
+        // One zone larger than the tiles take
+        zones.add(NoFlyZone.rectangle(UUID.randomUUID(), "large", 0, 1500, 1999, 1510, null, null));
+        GeofenceIndex index = new GeofenceIndex();
+        index.addAll(zones);
+
+        for (int window = 0; window < 20; window++) {
+            int minX = random.nextInt(1900);
+            int minY = random.nextInt(1900);
+            int width = 1 + random.nextInt(100);
+            int height = 1 + random.nextInt(100);
+            long[] bits = new long[(width * height + 63) >>> 6];
+            index.markRestricted(minX, minY, width, height, bits);
+            boolean any = false;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int cell = y * width + x;
+                    boolean restricted = index.isRestricted(minX + x, minY + y);
+                    assertEquals(restricted, (bits[cell >>> 6] & 1L << cell) != 0, "(" + (minX + x) + ", " + (minY + y) + ")");
+                    any |= restricted;
+                }
+            }
+            assertEquals(!any, index.isAreaFree(minX, minY, minX + width - 1, minY + height - 1));
+        }
+        assertTrue(index.isRestricted(1000, 1505));
+    }
+
+    @Test
+    public void testUpdates_SwapWholeSnapshots() {
+        GeofenceIndex index = new GeofenceIndex();
+        NoFlyZone first = NoFlyZone.rectangle(UUID.randomUUID(), "first", 0, 0, 3, 3, null, null);
+        NoFlyZone second = NoFlyZone.rectangle(UUID.randomUUID(), "second", 10, 10, 12, 12, null, null);
+        index.addAll(List.of(first, second));
+        List<NoFlyZone> before = index.zones();
+
+        assertTrue(index.remove(first.getId()));
+        assertFalse(index.remove(first.getId()));
+        assertFalse(index.isRestricted(1, 1));
+        assertTrue(index.isRestricted(11, 11));
+        // What was read before the update is left as it was
+        assertEquals(List.of(first, second), before);
+
+        index.replaceAll(List.of(first));
+        assertEquals(List.of(first), index.zones());
+        assertTrue(index.isRestricted(1, 1));
+        assertFalse(index.isRestricted(11, 11));
+    }
+}
@@ -0,0 +1,257 @@
+package com.gpicode.drone.management.index;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyIndexTests {
+
+    @Test
+    public void testTryOccupy_RejectsOccupiedCell() {
+        OccupancyIndex index = new OccupancyIndex();
+        assertTrue(index.tryOccupy(3, 4));
+        assertFalse(index.tryOccupy(3, 4));
+        assertTrue(index.isOccupied(3, 4));
+        assertFalse(index.isOccupied(4, 3));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testTryMoveAll_AppliesChainsAndSwapsAtomically() {
+        OccupancyIndex index = new OccupancyIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        index.tryOccupy(1, 1, first);
+        index.tryOccupy(2, 2, second);
+        index.tryOccupy(3, 3, third);
+        index.tryOccupy(9, 9, UUID.randomUUID());
+
+        // first and second swap, third moves into a cell held outside the set
+        UUID[] droneIds = {first, second, third};
+        long[] from = {OccupancyIndex.pack(1, 1), OccupancyIndex.pack(2, 2), OccupancyIndex.pack(3, 3)};
+        long[] to = {OccupancyIndex.pack(2, 2), OccupancyIndex.pack(1, 1), OccupancyIndex.pack(9, 9)};
+        assertEquals(2, index.tryMoveAll(droneIds, from, to));
+        assertEquals(first, index.droneAt(1, 1));
+
+        to[2] = OccupancyIndex.pack(4, 4);
+        assertEquals(-1, index.tryMoveAll(droneIds, from, to));
+        assertEquals(second, index.droneAt(1, 1));
+        assertEquals(first, index.droneAt(2, 2));
+        assertEquals(third, index.droneAt(4, 4));
+        assertFalse(index.isOccupied(3, 3));
+
+        assertTrue(index.undoMoveAll(droneIds, from, to));
+        assertEquals(first, index.droneAt(1, 1));
+        assertEquals(third, index.droneAt(3, 3));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testTryMove_LeavesIndexUntouchedWhenTargetOccupied() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.tryOccupy(1, 1);
+        index.tryOccupy(2, 2);
+
+        assertFalse(index.tryMove(1, 1, 2, 2));
+        assertTrue(index.isOccupied(1, 1));
+
+        assertTrue(index.tryMove(1, 1, 3, 3));
+        assertFalse(index.isOccupied(1, 1));
+        assertTrue(index.isOccupied(3, 3));
+
+        assertTrue(index.undoMove(null, 1, 1, 3, 3));
+        assertTrue(index.isOccupied(1, 1));
+        assertFalse(index.isOccupied(3, 3));
+    }
+
+    @Test
+    public void testUndoMove_LeavesCellsClaimedByOtherDronesAlone() {
+        OccupancyIndex index = new OccupancyIndex();
+        UUID mover = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        index.tryOccupy(1, 1, mover);
+        assertTrue(index.tryMove(1, 1, 3, 3));
+
+        // Another drone takes the vacated origin before the failed move is rolled back
+        assertTrue(index.tryOccupy(1, 1, other));
+        assertFalse(index.undoMove(mover, 1, 1, 3, 3));
+        assertEquals(other, index.droneAt(1, 1));
+        assertFalse(index.isOccupied(3, 3));
+
+        // The target was released and claimed by a third drone before the rollback
+        index.release(1, 1);
+        index.tryOccupy(1, 1, mover);
+        assertTrue(index.tryMove(1, 1, 3, 3));
+        index.release(3, 3);
+        assertTrue(index.tryOccupy(3, 3, third));
+        assertTrue(index.undoMove(mover, 1, 1, 3, 3));
+        assertEquals(mover, index.droneAt(1, 1));
+        assertEquals(third, index.droneAt(3, 3));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testOwnerFollowsMoves() {
+        OccupancyIndex index = new OccupancyIndex();
+        UUID droneId = UUID.randomUUID();
+        assertTrue(index.tryOccupy(999_999, 0));
+        assertNull(index.droneAt(999_999, 0));
+        index.assign(999_999, 0, droneId);
+
+        assertTrue(index.tryMove(999_999, 0, 0, 999_999));
+        assertEquals(droneId, index.droneAt(0, 999_999));
+        assertNull(index.droneAt(999_999, 0));
+    }
+
+    @Test
+    public void testRandomOperations_MatchReferenceSet() {
+        OccupancyIndex index = new OccupancyIndex();
+        Set<Long> reference = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int x = random.nextInt(200);
+            int y = random.nextInt(200);
+            if (random.nextBoolean()) {
+                assertEquals(reference.add(OccupancyIndex.pack(x, y)), index.tryOccupy(x, y));
+            } else {
+                reference.remove(OccupancyIndex.pack(x, y));
+                index.release(x, y);
+            }
+        }
+        assertEquals(reference.size(), index.size());
+        for (long cell : index.snapshot()) {
+            assertTrue(reference.contains(cell));
+        }
+    }
+
+    @Test
+    public void testSpatialQueries_MatchBruteForceAfterMoves() {
+        OccupancyIndex index = new OccupancyIndex();
+        Map<Long, UUID> reference = new HashMap<>();
+        Random random = new Random(7);
+        while (reference.size() < 2000) {
+            int x = random.nextInt(300);
+            int y = random.nextInt(300);
+            UUID droneId = UUID.randomUUID();
+            if (index.tryOccupy(x, y, droneId)) {
+                reference.put(OccupancyIndex.pack(x, y), droneId);
+            }
+        }
+        List<Long> cells = new ArrayList<>(reference.keySet());
+        for (int i = 0; i < 5000; i++) {
+            long from = cells.get(random.nextInt(cells.size()));
+            int toX = random.nextInt(300);
+            int toY = random.nextInt(300);
+            if (index.tryMove(OccupancyIndex.unpackX(from), OccupancyIndex.unpackY(from), toX, toY)) {
+                reference.put(OccupancyIndex.pack(toX, toY), reference.remove(from));
+                cells = new ArrayList<>(reference.keySet());
+            }
+        }
+
+        for (int query = 0; query < 50; query++) {
+            int x = random.nextInt(340) - 20;
+            int y = random.nextInt(340) - 20;
+            int size = random.nextInt(60);
+            Set<UUID> expected = new HashSet<>();
+            reference.forEach((cell, droneId) -> {
+                int cellX = OccupancyIndex.unpackX(cell);
+                int cellY = OccupancyIndex.unpackY(cell);
+                if (cellX >= x && cellX <= x + size && cellY >= y && cellY <= y + size) {
+                    expected.add(droneId);
+                }
+            });
+            Set<UUID> found = new HashSet<>();
+            index.dronesInArea(x, y, x + size, y + size, Integer.MAX_VALUE).forEach(position -> found.add(position.getDroneId()));
+            assertEquals(expected, found);
+
+            List<Long> byDistance = new ArrayList<>(reference.keySet());
+            byDistance.sort(Comparator.comparingLong(cell -> distanceSquared(x, y, cell)));
+            List<DronePosition> within = index.dronesWithin(x, y, size, Integer.MAX_VALUE);
+            assertEquals(byDistance.stream().filter(cell -> distanceSquared(x, y, cell) <= (long) size * size).count(), within.size());
+
+            int k = 1 + random.nextInt(20);
+            List<DronePosition> nearest = index.nearestDrones(x, y, k);
+            assertEquals(k, nearest.size());
+            for (int i = 0; i < k; i++) {
+                // Ties may come back in any order, so only the distances are compared
+                assertEquals(distanceSquared(x, y, byDistance.get(i)),
+                        distanceSquared(x, y, OccupancyIndex.pack(nearest.get(i).getX(), nearest.get(i).getY())));
+                assertEquals(reference.get(OccupancyIndex.pack(nearest.get(i).getX(), nearest.get(i).getY())), nearest.get(i).getDroneId());
+            }
+        }
+    }
+
+    @Test
+    public void testSpatialQueries_ReportADroneMovingBetweenTilesOnce() throws Exception {
+        OccupancyIndex index = new OccupancyIndex();
+        UUID mover = UUID.randomUUID();
+        index.tryOccupy(15, 0, mover);
+        // Drones filling the first tile widen the window between scanning it and the next one
+        for (int y = 1; y < SpatialGrid.TILE_SIZE; y++) {
+            index.tryOccupy(0, y, UUID.randomUUID());
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread moves = new Thread(() -> {
+            while (running.get()) {
+                index.tryMove(15, 0, 16, 0);
+                index.tryMove(16, 0, 15, 0);
+            }
+        });
+        moves.start();
+        try {
+            for (int query = 0; query < 20_000; query++) {
+                assertDistinct(index.dronesInArea(0, 0, 2 * SpatialGrid.TILE_SIZE - 1, SpatialGrid.TILE_SIZE - 1, Integer.MAX_VALUE));
+                assertDistinct(index.dronesWithin(15, 0, 2 * SpatialGrid.TILE_SIZE, Integer.MAX_VALUE));
+                assertDistinct(index.nearestDrones(16, 0, SpatialGrid.TILE_SIZE));
+            }
+        } finally {
+            running.set(false);
+            moves.join();
+        }
+    }
+
+    private static void assertDistinct(List<DronePosition> positions) {
+        Set<UUID> droneIds = new HashSet<>();
+        for (DronePosition position : positions) {
+            assertTrue(droneIds.add(position.getDroneId()), "Drone reported twice: " + position.getDroneId());
+        }
+    }
+
+    @Test
+    public void testSpatialQueries_SkipUnassignedCellsAndFollowRebuild() {
+        OccupancyIndex index = new OccupancyIndex();
+        UUID droneId = UUID.randomUUID();
+        index.tryOccupy(5, 5);
+        assertTrue(index.dronesInArea(0, 0, 10, 10, 10).isEmpty());
+        index.assign(5, 5, droneId);
+        assertEquals(droneId, index.nearestDrones(1_000_000, 1_000_000, 1).get(0).getDroneId());
+        // Fewer drones than asked for
+        assertEquals(1, index.nearestDrones(0, 0, 5).size());
+
+        UUID rebuilt = UUID.randomUUID();
+        index.rebuild(List.of(new Drone(rebuilt, 40, 2, Direction.NORTH)));
+        assertTrue(index.dronesWithin(5, 5, 3, 10).isEmpty());
+        assertEquals(rebuilt, index.dronesWithin(40, 5, 3, 10).get(0).getDroneId());
+    }
+
+    private static long distanceSquared(int x, int y, long cell) {
+        long dx = OccupancyIndex.unpackX(cell) - x;
+        long dy = OccupancyIndex.unpackY(cell) - y;
+        return dx * dx + dy * dy;
+    }
+}
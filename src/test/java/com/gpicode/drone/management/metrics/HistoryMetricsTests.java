@@ -0,0 +1,51 @@
+package com.gpicode.drone.management.metrics;
+
+import com.gpicode.drone.management.config.HistoryProperties;
+import com.gpicode.drone.management.config.HistoryProperties.Durability;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.DroneHistory;
+import com.gpicode.drone.management.history.DroneHistoryLog;
+import com.gpicode.drone.management.history.NdjsonDroneHistoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HistoryMetricsTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testBindTo_PublishesStorageAndCacheState() throws Throwable {
+        HistoryProperties properties = new HistoryProperties();
+        properties.setDurability(Durability.FSYNC);
+        NdjsonDroneHistoryStore store = new NdjsonDroneHistoryStore(tempDir.toString());
+        DroneHistoryLog historyLog = new DroneHistoryLog(store, properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new HistoryMetrics(store, historyLog).bindTo(registry);
+        try {
+            UUID droneId = UUID.randomUUID();
+            DroneHistory history = new DroneHistory();
+            history.setDroneId(droneId);
+            history.getStates().add(new MoveDroneResponse(droneId, 1, 1, "NORTH", null));
+            historyLog.create(history);
+            historyLog.load(droneId);
+            historyLog.load(droneId);
+
+            long fileSize = Files.size(tempDir.resolve(droneId + ".ndjson"));
+            assertThat(registry.get("drone.history.storage.size").gauge().value()).isEqualTo(fileSize);
+            assertThat(registry.get("drone.history.io").tag("direction", "write").functionCounter().count()).isEqualTo(fileSize);
+            assertThat(registry.get("drone.history.cache.requests").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+            assertThat(registry.get("drone.history.cache.hit.ratio").gauge().value()).isEqualTo(1.0);
+            assertThat(registry.get("drone.history.queue.size").gauge().value()).isZero();
+        } finally {
+            historyLog.close();
+        }
+    }
+}
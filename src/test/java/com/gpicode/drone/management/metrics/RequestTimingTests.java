@@ -0,0 +1,63 @@
+package com.gpicode.drone.management.metrics;
+
+import com.gpicode.drone.management.config.TimingProperties;
+import com.gpicode.drone.management.metrics.DroneMetrics.HistoryOperation;
+import com.gpicode.drone.management.metrics.DroneMetrics.Operation;
+import com.gpicode.drone.management.metrics.DroneMetrics.Phase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestTimingTests {
+
+    private final DroneMetrics droneMetrics = new DroneMetrics(new SimpleMeterRegistry());
+
+    @Test
+    public void testServerTiming_ListsRecordedPhasesInOrder() {
+        RequestTiming timing = RequestTiming.begin();
+        try {
+            long start = System.nanoTime();
+            droneMetrics.recordHistory(HistoryOperation.APPEND, start);
+            droneMetrics.record(Operation.MOVE, Phase.PERSIST, start);
+            droneMetrics.record(Operation.MOVE, Phase.LOOKUP, start);
+
+            assertThat(timing.serverTiming())
+                    .matches("lookup;dur=\\d+\\.\\d{3}, persist;dur=\\d+\\.\\d{3}, history-append;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}");
+            assertThat(timing.phases()).matches("lookup=\\d+\\.\\d{3} persist=\\d+\\.\\d{3} history-append=\\d+\\.\\d{3}");
+        } finally {
+            RequestTiming.end();
+        }
+        assertThat(RequestTiming.current()).isNull();
+        assertThat(RequestTiming.appendMillis(new StringBuilder(), 12_034_567).toString()).isEqualTo("12.034");
+    }
+
+    @Test
+    public void testFilter_TimesApiRequestsAndAdviceAddsHeader() throws Exception {
+        TimingProperties properties = new TimingProperties();
+        properties.setSlowRequestThresholdMs(0);
+        RequestTimingFilter filter = new RequestTimingFilter(properties);
+        ServerTimingAdvice advice = new ServerTimingAdvice(properties);
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/v1/api/drones/move");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (servletRequest, servletResponse) -> {
+            // A phase recorded before the body is written makes it into the header
+            droneMetrics.record(Operation.MOVE_BATCH, Phase.OCCUPANCY, System.nanoTime());
+            ServletServerHttpResponse serverResponse = new ServletServerHttpResponse(response);
+            advice.beforeBodyWrite("body", null, null, null, new ServletServerHttpRequest(request), serverResponse);
+            serverResponse.flush();
+        });
+
+        assertThat(response.getHeader(ServerTimingAdvice.SERVER_TIMING)).startsWith("occupancy;dur=").contains(", total;dur=");
+        assertThat(RequestTiming.current()).isNull();
+
+        MockHttpServletResponse actuatorResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), actuatorResponse,
+                (servletRequest, servletResponse) -> assertThat(RequestTiming.current()).isNull());
+    }
+}
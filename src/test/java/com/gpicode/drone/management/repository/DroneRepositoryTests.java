@@ -0,0 +1,43 @@
+package com.gpicode.drone.management.repository;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class DroneRepositoryTests {
+
+    @Autowired
+    private DroneRepository droneRepository;
+
+    @Test
+    public void testUniqueConstraint_RejectsSecondDroneInCell() {
+        droneRepository.saveAndFlush(new Drone(null, 1, 1, Direction.NORTH));
+
+        assertThrows(DataIntegrityViolationException.class, () -> droneRepository.saveAndFlush(new Drone(null, 1, 1, Direction.EAST)));
+    }
+
+    @Test
+    public void testMoveIfUnchanged_UpdatesOnlyTheVersionItWasReadAt() {
+        Drone drone = droneRepository.saveAndFlush(new Drone(null, 1, 1, Direction.NORTH));
+        Drone other = droneRepository.saveAndFlush(new Drone(null, 4, 4, Direction.NORTH));
+        long version = drone.getVersion();
+
+        assertEquals(1, droneRepository.moveIfUnchanged(drone.getDroneId(), version, 2, 3, Direction.EAST));
+        Drone moved = droneRepository.findById(drone.getDroneId()).orElseThrow();
+        assertEquals(2, moved.getCoordinateX());
+        assertEquals(3, moved.getCoordinateY());
+        assertEquals(Direction.EAST, moved.getDirection());
+        assertEquals(version + 1, moved.getVersion());
+
+        // Read before the move above, so it no longer matches
+        assertEquals(0, droneRepository.moveIfUnchanged(drone.getDroneId(), version, 5, 5, Direction.SOUTH));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> droneRepository.moveIfUnchanged(drone.getDroneId(), version + 1, other.getCoordinateX(), other.getCoordinateY(), Direction.SOUTH));
+    }
+}
@@ -0,0 +1,57 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.exception.BulkRegistrationException;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import com.gpicode.drone.management.store.DroneStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A bulk registration refused by the store's own uniqueness check leaves nothing behind, run against each database
+ * store by its subclass in a full application context, with the service's real transactions.
+ */
+public abstract class BulkRegistrationRollbackTests {
+
+    @Autowired
+    private DroneService droneService;
+
+    @Autowired
+    private DroneStore droneStore;
+
+    @Autowired
+    private OccupancyIndex occupancyIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("delete from drone");
+        droneService.loadOccupancyIndex();
+    }
+
+    @Test
+    public void testRegisterDrones_CellTakenInTheStoreOnlyInsertsNothing() {
+        // Registered through another instance, so the occupancy index of this one does not know the cell is taken
+        droneStore.insert(new Drone(null, 3, 3, Direction.NORTH));
+
+        BulkRegistrationException exception = assertThrows(BulkRegistrationException.class, () -> droneService.registerDrones(List.of(
+                new RegisterDroneRequest(1, 1, "NORTH"), new RegisterDroneRequest(3, 3, "EAST"))));
+
+        assertEquals(List.of("Another drone already exists in one of these positions"), exception.getDetails());
+        List<Drone> stored = droneStore.findAll();
+        assertEquals(1, stored.size());
+        assertEquals(3, stored.get(0).getCoordinateX());
+        assertFalse(occupancyIndex.isOccupied(1, 1));
+        assertFalse(occupancyIndex.isOccupied(3, 3));
+    }
+}
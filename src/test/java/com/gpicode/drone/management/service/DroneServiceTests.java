@@ -1,23 +1,53 @@
 package com.gpicode.drone.management.service;
 
+import com.gpicode.drone.management.config.ExecutorProperties;
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.config.QueryProperties;
+import com.gpicode.drone.management.dto.BatchMoveResult;
 import com.gpicode.drone.management.dto.DroneResponse;
 import com.gpicode.drone.management.dto.MoveDroneRequest;
 import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.dto.OccupancyIndexReport;
 import com.gpicode.drone.management.dto.RegisterDroneRequest;
+import com.gpicode.drone.management.entity.Direction;
 import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.exception.BulkRegistrationException;
 import com.gpicode.drone.management.exception.DroneNotFoundException;
 import com.gpicode.drone.management.exception.InvalidBoundaryException;
+import com.gpicode.drone.management.index.DroneLocks;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.NoFlyZone;
+import com.gpicode.drone.management.index.OccupancyIndex;
 import com.gpicode.drone.management.mapper.DroneMapper;
-import com.gpicode.drone.management.repository.DroneRepository;
+import com.gpicode.drone.management.metrics.DroneMetrics;
+import com.gpicode.drone.management.store.DroneStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,7 +56,38 @@ import static org.mockito.Mockito.*;
 public class DroneServiceTests {
 
     @Mock
-    private DroneRepository droneRepository;
+    private DroneStore droneStore;
+
+    @Spy
+    private OccupancyIndex occupancyIndex = new OccupancyIndex();
+
+    @Spy
+    private FieldProperties fieldProperties = new FieldProperties();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private DroneMetrics droneMetrics = new DroneMetrics(meterRegistry);
+
+    @Spy
+    private DroneLocks droneLocks = new DroneLocks();
+
+    @Spy
+    private QueryProperties queryProperties = new QueryProperties();
+
+    @Spy
+    private GeofenceIndex geofenceIndex = new GeofenceIndex();
+
+    private final PlannerProperties plannerProperties = new PlannerProperties();
+
+    @Spy
+    private RoutePlanner routePlanner = new RoutePlanner(occupancyIndex, geofenceIndex, fieldProperties, plannerProperties);
+
+    @Spy
+    private MoveScheduler moveScheduler = new MoveScheduler(occupancyIndex, geofenceIndex, fieldProperties, plannerProperties);
+
+    @Spy
+    private TileExecutor tileExecutor = new TileExecutor(new ExecutorProperties());
 
     @InjectMocks
     private DroneService droneService;
@@ -40,29 +101,94 @@ public class DroneServiceTests {
     public void testRegisterDrone_Success() throws InvalidBoundaryException {
         RegisterDroneRequest request = new RegisterDroneRequest(5, 5, "North".toUpperCase());
         Drone droneEntity = DroneMapper.toDroneEntity(request);
-        when(droneRepository.existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate()))
-                .thenReturn(false);
-        when(droneRepository.save(any(Drone.class))).thenReturn(droneEntity);
+        when(droneStore.insert(any(Drone.class))).thenReturn(droneEntity);
         DroneResponse response = droneService.registerDrone(request);
         assertNotNull(response);
         assertEquals(request.getXCoordinate(), response.getXCoordinate());
         assertEquals(request.getYCoordinate(), response.getYCoordinate());
         assertEquals(request.getDirection(), response.getDirection());
-
-        verify(droneRepository, times(1)).existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate());
-        verify(droneRepository, times(1)).save(any(Drone.class));
+        assertTrue(occupancyIndex.isOccupied(5, 5));
+        verify(droneStore, times(1)).insert(any(Drone.class));
     }
 
     @Test
     public void testRegisterDrone_DroneAlreadyExists() {
         RegisterDroneRequest request = new RegisterDroneRequest(5, 5, "North");
 
-        when(droneRepository.existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate()))
-                .thenReturn(true);
+        occupancyIndex.tryOccupy(request.getXCoordinate(), request.getYCoordinate());
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> droneService.registerDrone(request));
+        assertEquals("Another drone already exists in this position", exception.getMessage());
+        verify(droneStore, never()).insert(any(Drone.class));
+    }
+
+    @Test
+    public void testRegisterDrone_SaveFailureReleasesCell() {
+        RegisterDroneRequest request = new RegisterDroneRequest(5, 5, "North");
+        when(droneStore.insert(any(Drone.class))).thenThrow(new IllegalStateException("database unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> droneService.registerDrone(request));
+        assertFalse(occupancyIndex.isOccupied(5, 5));
+    }
+
+    @Test
+    public void testRegisterDrone_UniqueConstraintViolationReportsOccupiedCell() {
+        // Another instance registered a drone at the cell, which only the database knows about
+        RegisterDroneRequest request = new RegisterDroneRequest(5, 5, "North");
+        when(droneStore.insert(any(Drone.class))).thenThrow(new DataIntegrityViolationException("uk_drone_cell"));
+
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> droneService.registerDrone(request));
         assertEquals("Another drone already exists in this position", exception.getMessage());
-        verify(droneRepository, times(1)).existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate());
-        verify(droneRepository, never()).save(any(Drone.class));
+        assertFalse(occupancyIndex.isOccupied(5, 5));
+    }
+
+    @Test
+    public void testRegisterDrones_SavesAllInOneCall() throws BulkRegistrationException {
+        List<RegisterDroneRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new RegisterDroneRequest(i, 9 - i, "North"));
+        }
+        when(droneStore.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Drone> drones = invocation.getArgument(0);
+            drones.forEach(drone -> drone.setDroneId(UUID.randomUUID()));
+            return drones;
+        });
+
+        List<DroneResponse> responses = droneService.registerDrones(requests);
+
+        assertEquals(10, responses.size());
+        assertEquals(10, occupancyIndex.size());
+        assertEquals(responses.get(3).getDroneId(), occupancyIndex.droneAt(3, 6));
+        assertEquals("NORTH", responses.get(0).getDirection());
+        verify(droneStore, times(1)).insertAll(anyList());
+        verify(droneStore, never()).insert(any(Drone.class));
+    }
+
+    @Test
+    public void testRegisterDrones_RejectsWholeListWithEveryProblem() {
+        occupancyIndex.tryOccupy(4, 4, UUID.randomUUID());
+        List<RegisterDroneRequest> requests = List.of(
+                new RegisterDroneRequest(1, 1, "North"),
+                new RegisterDroneRequest(11, 1, "North"),
+                new RegisterDroneRequest(1, 1, "East"),
+                new RegisterDroneRequest(4, 4, "South"));
+
+        BulkRegistrationException exception = assertThrows(BulkRegistrationException.class, () -> droneService.registerDrones(requests));
+
+        assertEquals(List.of(
+                "drones[1]: Out of field values for Coordinates",
+                "drones[2]: Same position as drones[0]",
+                "drones[3]: Another drone already exists in this position"), exception.getDetails());
+        assertFalse(occupancyIndex.isOccupied(1, 1));
+        verify(droneStore, never()).insertAll(anyList());
+    }
+
+    @Test
+    public void testRegisterDrones_SaveFailureReleasesCells() {
+        List<RegisterDroneRequest> requests = List.of(new RegisterDroneRequest(1, 1, "North"), new RegisterDroneRequest(2, 2, "North"));
+        when(droneStore.insertAll(anyList())).thenThrow(new IllegalStateException("database unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> droneService.registerDrones(requests));
+        assertEquals(0, occupancyIndex.size());
     }
 
     @Test
@@ -70,108 +196,647 @@ public class DroneServiceTests {
         UUID droneId = UUID.randomUUID();
         MoveDroneRequest request = new MoveDroneRequest(7, 7);
 
-        Drone existingDrone = new Drone(droneId, 5, 5, "North");
-        Drone updatedDrone = new Drone(droneId, request.getXCoordinate(), request.getYCoordinate(), "North");
+        Drone existingDrone = new Drone(droneId, 5, 5, Direction.NORTH, 3);
 
-        when(droneRepository.findById(droneId)).thenReturn(java.util.Optional.of(existingDrone));
-        when(droneRepository.existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate()))
-                .thenReturn(false);
-        when(droneRepository.save(any(Drone.class))).thenReturn(updatedDrone);
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        when(droneStore.findById(droneId)).thenReturn(java.util.Optional.of(existingDrone));
+        when(droneStore.move(droneId, 3, 7, 7, Direction.NORTH)).thenReturn(true);
         MoveDroneResponse response = droneService.moveDrone(droneId, request);
         assertNotNull(response);
         assertEquals(request.getXCoordinate(), response.getXCoordinate());
         assertEquals(request.getYCoordinate(), response.getYCoordinate());
+        assertFalse(occupancyIndex.isOccupied(5, 5));
+        assertTrue(occupancyIndex.isOccupied(7, 7));
+        assertEquals(droneId, occupancyIndex.droneAt(7, 7));
 
-        verify(droneRepository, times(1)).findById(droneId);
-        verify(droneRepository, times(1)).existsByCoordinateXAndCoordinateY(request.getXCoordinate(), request.getYCoordinate());
-        verify(droneRepository, times(1)).save(any(Drone.class));
+        verify(droneStore, times(1)).findById(droneId);
+        verify(droneStore, times(1)).move(droneId, 3, 7, 7, Direction.NORTH);
+        verify(droneStore, never()).insert(any(Drone.class));
     }
 
     @Test
     public void testMoveDrone_SouthDirection() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "South", 5, 7, false, false);
+        testMoveDrone(5, 5, Direction.SOUTH, 5, 7, false, false);
     }
 
     @Test
     public void testMoveDrone_NorthDirection() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "North", 7, 7, false, false);
+        testMoveDrone(5, 5, Direction.NORTH, 7, 7, false, false);
     }
 
     @Test
     public void testMoveDrone_EastDirection() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "East", 7, 7, false, false);
+        testMoveDrone(5, 5, Direction.EAST, 7, 7, false, false);
     }
 
     @Test
     public void testMoveDrone_WestDirection() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "East", 7, 5, false, false);
+        testMoveDrone(5, 5, Direction.EAST, 7, 5, false, false);
     }
 
     @Test
     public void testMoveDrone_DroneNotFound() {
         UUID droneId = UUID.randomUUID();
         MoveDroneRequest request = new MoveDroneRequest(7, 7);
-        when(droneRepository.findById(droneId)).thenReturn(java.util.Optional.empty());
+        when(droneStore.findById(droneId)).thenReturn(java.util.Optional.empty());
         assertThrows(DroneNotFoundException.class, () -> droneService.moveDrone(droneId, request));
 
-        verify(droneRepository, times(1)).findById(droneId);
-        verifyNoMoreInteractions(droneRepository);
+        verify(droneStore, times(1)).findById(droneId);
+        verifyNoMoreInteractions(droneStore);
     }
 
     @Test
     public void testMoveDrone_DroneAtSamePosition() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "North", 5, 5, true, false);
+        testMoveDrone(5, 5, Direction.NORTH, 5, 5, true, false);
     }
 
     @Test
     public void testMoveDrone_DroneAtNewPositionOccupied() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "North", 7, 7, false, true);
+        testMoveDrone(5, 5, Direction.NORTH, 7, 7, false, true);
     }
 
     @Test
     public void testMoveDrone_InvalidMoveDirection() throws InvalidBoundaryException, DroneNotFoundException {
-        testMoveDrone(5, 5, "North", 5, 6, false, false);
+        testMoveDrone(5, 5, Direction.NORTH, 5, 6, false, false);
     }
 
 
 
-    private void testMoveDrone(int initialX, int initialY, String initialDirection,
+    private void testMoveDrone(int initialX, int initialY, Direction initialDirection,
                                int newX, int newY, boolean expectSamePositionError,
                                boolean expectOccupiedError) throws InvalidBoundaryException, DroneNotFoundException {
         UUID droneId = UUID.randomUUID();
         MoveDroneRequest request = new MoveDroneRequest(newX, newY);
 
         Drone existingDrone = new Drone(droneId, initialX, initialY, initialDirection);
-        when(droneRepository.findById(droneId)).thenReturn(java.util.Optional.of(existingDrone));
+        when(droneStore.findById(droneId)).thenReturn(java.util.Optional.of(existingDrone));
 
         if (expectSamePositionError) {
             IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, request));
             assertEquals("Drone is already at the specified position, no movement detected", exception.getMessage());
         } else if (expectOccupiedError) {
-            when(droneRepository.existsByCoordinateXAndCoordinateY(newX, newY)).thenReturn(true);
+            occupancyIndex.tryOccupy(newX, newY);
             IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, request));
             assertEquals("Another drone already exists at the new position", exception.getMessage());
-            verify(droneRepository, times(1)).existsByCoordinateXAndCoordinateY(newX, newY);
+            verify(droneStore, never()).move(any(), anyLong(), anyInt(), anyInt(), any());
         } else {
-            when(droneRepository.existsByCoordinateXAndCoordinateY(newX, newY)).thenReturn(false);
-            Drone updatedDrone = new Drone(droneId, newX, newY, initialDirection);
-            when(droneRepository.save(any(Drone.class))).thenReturn(updatedDrone);
+            when(droneStore.move(eq(droneId), eq(0L), eq(newX), eq(newY), any())).thenReturn(true);
             MoveDroneResponse response = droneService.moveDrone(droneId, request);
             assertNotNull(response);
             assertEquals(newX, response.getXCoordinate());
             assertEquals(newY, response.getYCoordinate());
-            verify(droneRepository, times(1)).save(any(Drone.class));
+            verify(droneStore, times(1)).move(eq(droneId), eq(0L), eq(newX), eq(newY), any());
         }
-        verify(droneRepository, times(1)).findById(droneId);
+        verify(droneStore, times(1)).findById(droneId);
+    }
+
+    @Test
+    public void testRegisterDrone_OutsideConfiguredField() {
+        RegisterDroneRequest request = new RegisterDroneRequest(10, 5, "North");
+        assertThrows(InvalidBoundaryException.class, () -> droneService.registerDrone(request));
+
+        fieldProperties.setWidth(1_000_000);
+        fieldProperties.setHeight(1_000_000);
+        RegisterDroneRequest farRequest = new RegisterDroneRequest(999_999, 999_999, "North");
+        UUID droneId = UUID.randomUUID();
+        when(droneStore.insert(any(Drone.class))).thenReturn(new Drone(droneId, 999_999, 999_999, Direction.NORTH));
+        assertDoesNotThrow(() -> droneService.registerDrone(farRequest));
+        assertEquals(droneId, occupancyIndex.droneAt(999_999, 999_999));
+        assertThrows(InvalidBoundaryException.class, () -> droneService.registerDrone(new RegisterDroneRequest(1_000_000, 0, "North")));
+    }
+
+    @Test
+    public void testMoveDrone_SaveFailureRestoresIndex() {
+        UUID droneId = UUID.randomUUID();
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        when(droneStore.findById(droneId)).thenReturn(Optional.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+        when(droneStore.move(eq(droneId), anyLong(), anyInt(), anyInt(), any())).thenThrow(new IllegalStateException("database unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(7, 7)));
+        assertEquals(droneId, occupancyIndex.droneAt(5, 5));
+        assertFalse(occupancyIndex.isOccupied(7, 7));
+    }
+
+    @Test
+    public void testMoveDrone_DatabaseConflictsMapToExistingErrors() {
+        UUID droneId = UUID.randomUUID();
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        when(droneStore.findById(droneId)).thenReturn(Optional.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+
+        // Another instance holds the target cell, which fails the update on the unique constraint
+        when(droneStore.move(eq(droneId), anyLong(), eq(7), eq(7), any())).thenThrow(new DataIntegrityViolationException("uk_drone_cell"));
+        IllegalArgumentException occupied = assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(7, 7)));
+        assertEquals("Another drone already exists at the new position", occupied.getMessage());
+        assertEquals(droneId, occupancyIndex.droneAt(5, 5));
+        assertFalse(occupancyIndex.isOccupied(7, 7));
+
+        // Another instance moved the drone since it was read, so the conditional update matches no row
+        when(droneStore.move(eq(droneId), anyLong(), eq(8), eq(8), any())).thenReturn(false);
+        IllegalArgumentException conflict = assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(8, 8)));
+        assertEquals("Drone was moved by another request, retry the move", conflict.getMessage());
+        assertEquals(droneId, occupancyIndex.droneAt(5, 5));
+        assertFalse(occupancyIndex.isOccupied(8, 8));
+        assertEquals(1, rejections("occupied"));
+        assertEquals(1, rejections("conflict"));
+    }
+
+    @Test
+    public void testMoveDrone_RebuildsTheIndexWhenTheOriginWasTakenBeforeTheUndo() {
+        UUID droneId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        when(droneStore.findById(droneId)).thenReturn(Optional.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+        when(droneStore.move(eq(droneId), anyLong(), eq(7), eq(7), any())).thenAnswer(invocation -> {
+            // Another drone claims the vacated origin while the update is failing
+            occupancyIndex.tryOccupy(5, 5, otherId);
+            throw new DataIntegrityViolationException("uk_drone_cell");
+        });
+        when(droneStore.findAll()).thenReturn(List.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+
+        assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(7, 7)));
+        assertFalse(occupancyIndex.isOccupied(7, 7));
+        assertEquals(1, meterRegistry.get("drone.occupancy.undo.conflicts").counter().count());
+
+        // The store still has the drone at its origin, and the rebuild puts it back
+        verify(droneStore, timeout(5000)).findAll();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!droneId.equals(occupancyIndex.droneAt(5, 5)) && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(droneId, occupancyIndex.droneAt(5, 5));
+    }
+
+    @Test
+    public void testRepairOccupancyIndex_WaitsForMovesInFlight() throws Exception {
+        UUID droneId = UUID.randomUUID();
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        occupancyIndex.tryOccupy(9, 9);
+        when(droneStore.findById(droneId)).thenReturn(Optional.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        when(droneStore.move(eq(droneId), anyLong(), eq(7), eq(5), any())).thenAnswer(invocation -> {
+            // The target is claimed in the index, but the store still has the drone at its origin
+            saving.countDown();
+            committed.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        when(droneStore.findAll()).thenAnswer(invocation -> List.of(
+                committed.getCount() == 0 ? new Drone(droneId, 7, 5, Direction.EAST) : new Drone(droneId, 5, 5, Direction.NORTH)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MoveDroneResponse> move = executor.submit(() -> {
+                try {
+                    return droneService.moveDrone(droneId, new MoveDroneRequest(7, 5));
+                } catch (InvalidBoundaryException | DroneNotFoundException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            });
+            assertTrue(saving.await(5, TimeUnit.SECONDS));
+            Future<OccupancyIndexReport> repair = executor.submit(() -> droneService.verifyOccupancyIndex(true));
+            // The repair must not read the store before the move has completed
+            assertThrows(TimeoutException.class, () -> repair.get(200, TimeUnit.MILLISECONDS));
+            committed.countDown();
+            move.get(5, TimeUnit.SECONDS);
+
+            assertTrue(repair.get(5, TimeUnit.SECONDS).isRebuilt());
+            assertEquals(droneId, occupancyIndex.droneAt(7, 5));
+            assertFalse(occupancyIndex.isOccupied(5, 5));
+            assertFalse(occupancyIndex.isOccupied(9, 9));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMoveDrone_CountsRejectionsByCause() {
+        UUID droneId = UUID.randomUUID();
+        occupancyIndex.tryOccupy(5, 5, droneId);
+        occupancyIndex.tryOccupy(6, 6);
+        when(droneStore.findById(droneId)).thenReturn(Optional.of(new Drone(droneId, 5, 5, Direction.NORTH)));
+
+        assertThrows(InvalidBoundaryException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(10, 5)));
+        assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(5, 5)));
+        assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(6, 6)));
+        assertThrows(IllegalArgumentException.class, () -> droneService.moveDrone(droneId, new MoveDroneRequest(6, 6)));
+        assertThrows(DroneNotFoundException.class, () -> droneService.moveDrone(UUID.randomUUID(), new MoveDroneRequest(1, 1)));
+
+        assertEquals(1, rejections("boundary"));
+        assertEquals(1, rejections("no_movement"));
+        assertEquals(2, rejections("occupied"));
+        assertEquals(1, rejections("not_found"));
+        assertEquals(5, meterRegistry.get("drone.service.phase").tags("operation", "move", "phase", "lookup").timer().count());
+        assertEquals(2, meterRegistry.get("drone.service.phase").tags("operation", "move", "phase", "occupancy").timer().count());
+    }
+
+    private double rejections(String cause) {
+        return meterRegistry.get("drone.service.rejections").tags("operation", "move", "cause", cause).counter().count();
+    }
+
+    @Test
+    public void testLoadOccupancyIndex() {
+        when(droneStore.findAll()).thenReturn(List.of(
+                new Drone(UUID.randomUUID(), 1, 2, Direction.NORTH),
+                new Drone(UUID.randomUUID(), 3, 4, Direction.EAST)));
+
+        droneService.loadOccupancyIndex();
+
+        assertEquals(2, occupancyIndex.size());
+        assertTrue(occupancyIndex.isOccupied(1, 2));
+        assertTrue(occupancyIndex.isOccupied(3, 4));
+    }
+
+    @Test
+    public void testVerifyOccupancyIndex_ReportsAndRepairsDrift() {
+        occupancyIndex.tryOccupy(1, 2, UUID.randomUUID());
+        occupancyIndex.tryOccupy(8, 8);
+        when(droneStore.findAll()).thenReturn(List.of(
+                new Drone(UUID.randomUUID(), 1, 2, Direction.NORTH),
+                new Drone(UUID.randomUUID(), 3, 4, Direction.EAST)));
+
+        OccupancyIndexReport report = droneService.verifyOccupancyIndex(false);
+        assertFalse(report.isConsistent());
+        assertEquals(List.of("(3, 4)"), report.getMissingCells());
+        assertEquals(List.of("(8, 8)"), report.getStaleCells());
+        assertEquals(List.of("(1, 2)"), report.getMisassignedCells());
+        assertFalse(report.isRebuilt());
+        assertTrue(occupancyIndex.isOccupied(8, 8));
+
+        OccupancyIndexReport repaired = droneService.verifyOccupancyIndex(true);
+        assertTrue(repaired.isRebuilt());
+        assertTrue(droneService.verifyOccupancyIndex(false).isConsistent());
+    }
+
+    @Test
+    public void testMoveDrones_AcceptsChainsAndSwaps() {
+        Drone first = placeDrone(1, 1, Direction.NORTH);
+        Drone second = placeDrone(2, 1, Direction.NORTH);
+        Drone third = placeDrone(5, 5, Direction.EAST);
+        Drone fourth = placeDrone(6, 5, Direction.EAST);
+        Map<UUID, MoveDroneRequest> requests = new LinkedHashMap<>();
+        // first follows second, which moves on to a free cell
+        requests.put(first.getDroneId(), new MoveDroneRequest(2, 1));
+        requests.put(second.getDroneId(), new MoveDroneRequest(3, 1));
+        // third and fourth swap
+        requests.put(third.getDroneId(), new MoveDroneRequest(6, 5));
+        requests.put(fourth.getDroneId(), new MoveDroneRequest(5, 5));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(first, second, third, fourth));
+
+        List<BatchMoveResult> results = droneService.moveDrones(requests);
+
+        assertTrue(results.stream().allMatch(BatchMoveResult::isMoved));
+        assertEquals(first.getDroneId(), occupancyIndex.droneAt(2, 1));
+        assertEquals(second.getDroneId(), occupancyIndex.droneAt(3, 1));
+        assertEquals(third.getDroneId(), occupancyIndex.droneAt(6, 5));
+        assertEquals(fourth.getDroneId(), occupancyIndex.droneAt(5, 5));
+        assertFalse(occupancyIndex.isOccupied(1, 1));
+        assertEquals(List.of("Pointed from NORTH to EAST", "Moved to (2, 1)"), results.get(0).getMove().getDetails());
+        verify(droneStore, times(1)).moveAll(anyList(), any(), any(), any());
+        verify(droneStore, never()).insert(any(Drone.class));
+    }
+
+    @Test
+    public void testMoveDrones_RejectsBlockedMovesAndWhatTheyBlock() {
+        Drone first = placeDrone(1, 1, Direction.NORTH);
+        Drone second = placeDrone(2, 1, Direction.NORTH);
+        Drone third = placeDrone(4, 4, Direction.NORTH);
+        Drone fourth = placeDrone(7, 7, Direction.NORTH);
+        placeDrone(3, 1, Direction.NORTH);
+        UUID missing = UUID.randomUUID();
+        Map<UUID, MoveDroneRequest> requests = new LinkedHashMap<>();
+        // second is blocked by a drone outside the batch, so first cannot follow it
+        requests.put(first.getDroneId(), new MoveDroneRequest(2, 1));
+        requests.put(second.getDroneId(), new MoveDroneRequest(3, 1));
+        // third and fourth both want (5, 5), the first request wins
+        requests.put(third.getDroneId(), new MoveDroneRequest(5, 5));
+        requests.put(fourth.getDroneId(), new MoveDroneRequest(5, 5));
+        requests.put(missing, new MoveDroneRequest(0, 0));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(first, second, third, fourth));
+
+        List<BatchMoveResult> results = droneService.moveDrones(requests);
+
+        assertEquals("Another drone already exists at the new position", results.get(0).getError());
+        assertEquals("Another drone already exists at the new position", results.get(1).getError());
+        assertTrue(results.get(2).isMoved());
+        assertEquals("Another drone already exists at the new position", results.get(3).getError());
+        assertEquals("Drone not found", results.get(4).getError());
+        assertEquals(first.getDroneId(), occupancyIndex.droneAt(1, 1));
+        assertEquals(third.getDroneId(), occupancyIndex.droneAt(5, 5));
+        assertEquals(1, first.getCoordinateX());
+    }
+
+    @Test
+    public void testMoveDrones_SaveFailureRestoresIndex() {
+        Drone first = placeDrone(1, 1, Direction.NORTH);
+        Drone second = placeDrone(2, 2, Direction.NORTH);
+        Map<UUID, MoveDroneRequest> requests = new LinkedHashMap<>();
+        requests.put(first.getDroneId(), new MoveDroneRequest(2, 2));
+        requests.put(second.getDroneId(), new MoveDroneRequest(1, 1));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(first, second));
+        doThrow(new IllegalStateException("database unavailable")).when(droneStore).moveAll(anyList(), any(), any(), any());
+
+        assertThrows(IllegalStateException.class, () -> droneService.moveDrones(requests));
+        assertEquals(first.getDroneId(), occupancyIndex.droneAt(1, 1));
+        assertEquals(second.getDroneId(), occupancyIndex.droneAt(2, 2));
+    }
+
+    @Test
+    public void testMoveDrone_RejectsTargetWithNoRoute() throws Throwable {
+        // The target corner is walled in by two drones
+        Drone drone = placeDrone(5, 5, Direction.NORTH);
+        Drone walled = placeDrone(8, 8, Direction.NORTH);
+        placeDrone(0, 1, Direction.NORTH);
+        placeDrone(1, 0, Direction.NORTH);
+        when(droneStore.findById(drone.getDroneId())).thenReturn(Optional.of(drone));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(drone, walled));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> droneService.moveDrone(drone.getDroneId(), new MoveDroneRequest(0, 0)));
+        assertEquals("No route to the new position avoids the other drones", exception.getMessage());
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(5, 5));
+        assertFalse(occupancyIndex.isOccupied(0, 0));
+        assertEquals(1, rejections("no_route"));
+
+        // In a batch only the move without a route is rejected
+        Map<UUID, MoveDroneRequest> requests = new LinkedHashMap<>();
+        requests.put(drone.getDroneId(), new MoveDroneRequest(0, 0));
+        requests.put(walled.getDroneId(), new MoveDroneRequest(8, 2));
+        List<BatchMoveResult> results = droneService.moveDrones(requests);
+        assertFalse(results.get(0).isMoved());
+        assertEquals("No route to the new position avoids the other drones", results.get(0).getError());
+        assertTrue(results.get(1).isMoved());
+        assertEquals(walled.getDroneId(), occupancyIndex.droneAt(8, 2));
+    }
+
+    @Test
+    public void testMoveDrone_ReportsSearchLimitApartFromNoRoute() throws Throwable {
+        // The blocked move needs a wider window than the search may cover, though a route exists
+        plannerProperties.setMaxSearchCells(20);
+        Drone drone = placeDrone(0, 0, Direction.EAST);
+        placeDrone(5, 0, Direction.NORTH);
+        when(droneStore.findById(drone.getDroneId())).thenReturn(Optional.of(drone));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(drone));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> droneService.moveDrone(drone.getDroneId(), new MoveDroneRequest(9, 0)));
+        assertEquals("Route search limit exceeded", exception.getMessage());
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(0, 0));
+        assertFalse(occupancyIndex.isOccupied(9, 0));
+        assertEquals(1, rejections("search_limit"));
+
+        List<BatchMoveResult> results = droneService.moveDrones(Map.of(drone.getDroneId(), new MoveDroneRequest(9, 0)));
+        assertFalse(results.get(0).isMoved());
+        assertEquals("Route search limit exceeded", results.get(0).getError());
+        assertEquals(1, meterRegistry.get("drone.service.rejections").tags("operation", "move_batch", "cause", "search_limit").counter().count());
+    }
+
+    @Test
+    public void testNoFlyZones_RejectRegistrationsAndTargetsInside() throws Throwable {
+        geofenceIndex.addAll(List.of(NoFlyZone.rectangle(UUID.randomUUID(), "tower", 3, 3, 4, 4, null, null)));
+
+        InvalidBoundaryException registration = assertThrows(InvalidBoundaryException.class,
+                () -> droneService.registerDrone(new RegisterDroneRequest(3, 4, "North")));
+        assertEquals("Position is inside a no-fly zone", registration.getMessage());
+        BulkRegistrationException bulk = assertThrows(BulkRegistrationException.class,
+                () -> droneService.registerDrones(List.of(new RegisterDroneRequest(1, 1, "North"), new RegisterDroneRequest(4, 4, "North"))));
+        assertEquals(List.of("drones[1]: Position is inside a no-fly zone"), bulk.getDetails());
+        assertFalse(occupancyIndex.isOccupied(3, 4));
+
+        Drone drone = placeDrone(1, 3, Direction.EAST);
+        when(droneStore.findById(drone.getDroneId())).thenReturn(Optional.of(drone));
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(drone));
+        InvalidBoundaryException move = assertThrows(InvalidBoundaryException.class,
+                () -> droneService.moveDrone(drone.getDroneId(), new MoveDroneRequest(4, 3)));
+        assertEquals("Position is inside a no-fly zone", move.getMessage());
+        assertEquals(1, rejections("no_fly_zone"));
+        List<BatchMoveResult> results = droneService.moveDrones(Map.of(drone.getDroneId(), new MoveDroneRequest(3, 3)));
+        assertEquals("Position is inside a no-fly zone", results.get(0).getError());
+
+        // Moving past the zone goes around it
+        when(droneStore.move(eq(drone.getDroneId()), anyLong(), eq(6), eq(3), any())).thenReturn(true);
+        MoveDroneResponse response = droneService.moveDrone(drone.getDroneId(), new MoveDroneRequest(6, 3));
+        assertNotEquals(List.of("Moved to (6, 3) towards EAST"), response.getDetails());
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(6, 3));
+    }
+
+    @Test
+    public void testFlyMission_SavesOnlyTheLastWaypoint() throws Throwable {
+        Drone drone = placeDrone(0, 0, Direction.EAST);
+        when(droneStore.findById(drone.getDroneId())).thenReturn(Optional.of(drone));
+        when(droneStore.move(drone.getDroneId(), drone.getVersion(), 5, 9, Direction.NORTH)).thenReturn(true);
+
+        List<MoveDroneResponse> states = droneService.flyMission(drone.getDroneId(),
+                List.of(new MoveDroneRequest(5, 0), new MoveDroneRequest(5, 4), new MoveDroneRequest(5, 9)));
+
+        assertEquals(3, states.size());
+        assertEquals(List.of("Moved to (5, 0) towards EAST"), states.get(0).getDetails());
+        assertEquals(List.of("Pointed from EAST to NORTH", "Moved to (5, 4) towards NORTH"), states.get(1).getDetails());
+        assertEquals("NORTH", states.get(2).getDirection());
+        assertFalse(occupancyIndex.isOccupied(0, 0));
+        assertFalse(occupancyIndex.isOccupied(5, 4));
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(5, 9));
+        verify(droneStore, times(1)).move(any(), anyLong(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    public void testFlyMission_ChecksEveryWaypointBeforeMoving() throws Throwable {
+        Drone drone = placeDrone(0, 0, Direction.EAST);
+        placeDrone(3, 3, Direction.NORTH);
+        when(droneStore.findById(drone.getDroneId())).thenReturn(Optional.of(drone));
+
+        InvalidBoundaryException outside = assertThrows(InvalidBoundaryException.class, () -> droneService.flyMission(drone.getDroneId(),
+                List.of(new MoveDroneRequest(5, 0), new MoveDroneRequest(5, 12))));
+        assertEquals("waypoints[1]: Out of field values for Coordinates", outside.getMessage());
+        IllegalArgumentException occupied = assertThrows(IllegalArgumentException.class, () -> droneService.flyMission(drone.getDroneId(),
+                List.of(new MoveDroneRequest(5, 0), new MoveDroneRequest(3, 3))));
+        assertEquals("waypoints[1]: Another drone already exists at the new position", occupied.getMessage());
+        IllegalArgumentException standing = assertThrows(IllegalArgumentException.class, () -> droneService.flyMission(drone.getDroneId(),
+                List.of(new MoveDroneRequest(5, 0), new MoveDroneRequest(5, 0))));
+        assertEquals("waypoints[1]: Drone is already at the specified position, no movement detected", standing.getMessage());
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(0, 0));
+        verify(droneStore, never()).move(any(), anyLong(), anyInt(), anyInt(), any());
+
+        // Back to where it started, through its own cell
+        when(droneStore.move(drone.getDroneId(), drone.getVersion(), 0, 0, Direction.WEST)).thenReturn(true);
+        List<MoveDroneResponse> states = droneService.flyMission(drone.getDroneId(), List.of(new MoveDroneRequest(5, 0), new MoveDroneRequest(0, 0)));
+        assertEquals("WEST", states.get(1).getDirection());
+        assertEquals(drone.getDroneId(), occupancyIndex.droneAt(0, 0));
+    }
+
+    @Test
+    public void testMoveDrone_ConcurrentMovesNeverShareACell() throws Throwable {
+        Map<UUID, Drone> drones = concurrentFleet();
+        for (Drone drone : drones.values()) {
+            occupancyIndex.tryOccupy(drone.getCoordinateX(), drone.getCoordinateY(), drone.getDroneId());
+        }
+
+        moveConcurrently(droneService, drones);
+
+        assertOneDronePerCell(drones);
+    }
+
+    @Test
+    public void testMoveDrone_TiledConcurrentMovesNeverShareACell() throws Throwable {
+        // Tiles of 2x2 cells over 3 workers, so that most moves hand the drone over from one worker to another
+        ExecutorProperties executorProperties = new ExecutorProperties();
+        executorProperties.setMode(ExecutorProperties.Mode.TILED);
+        executorProperties.setTileSize(2);
+        executorProperties.setWorkers(3);
+        TileExecutor tiles = new TileExecutor(executorProperties);
+        try {
+            DroneService tiledService = new DroneService(droneStore, occupancyIndex, fieldProperties, droneMetrics, droneLocks, queryProperties, routePlanner, moveScheduler, geofenceIndex, tiles);
+            Map<UUID, Drone> drones = concurrentFleet();
+            tiledService.loadOccupancyIndex();
+
+            moveConcurrently(tiledService, drones);
+
+            assertOneDronePerCell(drones);
+            // Every move was released, and the workers still know where each drone is
+            tiles.pause();
+            try {
+                for (Drone drone : drones.values()) {
+                    assertFalse(tiles.isHeld(drone.getCoordinateX(), drone.getCoordinateY()));
+                }
+            } finally {
+                tiles.resume();
+            }
+            assertTrue(tiledService.verifyOccupancyIndex(true).isConsistent());
+            verify(droneLocks, never()).lock(any());
+            assertEquals(0, meterRegistry.get("drone.occupancy.undo.conflicts").counter().count());
+        } finally {
+            tiles.close();
+        }
+    }
+
+    /**
+     * 12 drones on a 5x5 field, so that concurrent moves keep contending for the same cells and the same drones, kept
+     * by a store stub that hands out copies and only saves a move made from the version it was read at.
+     */
+    private Map<UUID, Drone> concurrentFleet() {
+        fieldProperties.setWidth(5);
+        fieldProperties.setHeight(5);
+        Map<UUID, Drone> drones = new ConcurrentHashMap<>();
+        for (int i = 0; i < 12; i++) {
+            Drone drone = new Drone(UUID.randomUUID(), i % 5, i / 5, Direction.NORTH);
+            drones.put(drone.getDroneId(), drone);
+        }
+        when(droneStore.findAll()).thenAnswer(invocation -> {
+            List<Drone> found = new ArrayList<>();
+            for (Drone drone : drones.values()) {
+                found.add(copyOf(drone));
+            }
+            return found;
+        });
+        when(droneStore.findById(any())).thenAnswer(invocation -> Optional.ofNullable(drones.get(invocation.<UUID>getArgument(0))).map(DroneServiceTests::copyOf));
+        when(droneStore.findAllById(anyCollection())).thenAnswer(invocation -> {
+            List<Drone> found = new ArrayList<>();
+            for (UUID droneId : invocation.<Iterable<UUID>>getArgument(0)) {
+                found.add(copyOf(drones.get(droneId)));
+            }
+            return found;
+        });
+        when(droneStore.move(any(), anyLong(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            Drone drone = drones.get(invocation.<UUID>getArgument(0));
+            synchronized (drone) {
+                if (drone.getVersion() != invocation.<Long>getArgument(1)) {
+                    return false;
+                }
+                drone.setCoordinateX(invocation.getArgument(2));
+                drone.setCoordinateY(invocation.getArgument(3));
+                drone.setDirection(invocation.getArgument(4));
+                drone.setVersion(drone.getVersion() + 1);
+                return true;
+            }
+        });
+        doAnswer(invocation -> {
+            List<Drone> moved = invocation.getArgument(0);
+            int[] x = invocation.getArgument(1);
+            int[] y = invocation.getArgument(2);
+            Direction[] directions = invocation.getArgument(3);
+            for (int i = 0; i < moved.size(); i++) {
+                Drone drone = drones.get(moved.get(i).getDroneId());
+                synchronized (drone) {
+                    drone.setCoordinateX(x[i]);
+                    drone.setCoordinateY(y[i]);
+                    drone.setDirection(directions[i]);
+                    drone.setVersion(drone.getVersion() + 1);
+                }
+            }
+            return null;
+        }).when(droneStore).moveAll(anyList(), any(), any(), any());
+        return drones;
+    }
+
+    private static Drone copyOf(Drone drone) {
+        synchronized (drone) {
+            return new Drone(drone.getDroneId(), drone.getCoordinateX(), drone.getCoordinateY(), drone.getDirection(), drone.getVersion());
+        }
+    }
+
+    /**
+     * Single moves from 8 threads, with a batch move every tenth time and a mission every tenth time after that. A
+     * single move waits for the moves of its drone under way, so none of them is ever refused as a conflict.
+     */
+    private void moveConcurrently(DroneService service, Map<UUID, Drone> drones) throws Exception {
+        List<UUID> droneIds = new ArrayList<>(drones.keySet());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int worker = 0; worker < 8; worker++) {
+            Random random = new Random(worker);
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    UUID droneId = droneIds.get(random.nextInt(droneIds.size()));
+                    MoveDroneRequest request = new MoveDroneRequest(random.nextInt(5), random.nextInt(5));
+                    if (i % 10 == 0) {
+                        Map<UUID, MoveDroneRequest> batch = new LinkedHashMap<>();
+                        batch.put(droneId, request);
+                        batch.put(droneIds.get(random.nextInt(droneIds.size())), new MoveDroneRequest(random.nextInt(5), random.nextInt(5)));
+                        service.moveDrones(batch);
+                        continue;
+                    }
+                    try {
+                        if (i % 10 == 5) {
+                            service.flyMission(droneId, List.of(request));
+                        } else {
+                            service.moveDrone(droneId, request);
+                        }
+                    } catch (IllegalArgumentException exception) {
+                        // Target occupied or no movement, or a mission refused while its drone was being moved
+                        assertTrue(i % 10 == 5 || !exception.getMessage().startsWith("Drone was moved"), exception.getMessage());
+                    } catch (InvalidBoundaryException | DroneNotFoundException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private void assertOneDronePerCell(Map<UUID, Drone> drones) {
+        Set<Long> cells = new HashSet<>();
+        for (Drone drone : drones.values()) {
+            assertTrue(cells.add(OccupancyIndex.pack(drone.getCoordinateX(), drone.getCoordinateY())), "Two drones share a cell");
+            assertEquals(drone.getDroneId(), occupancyIndex.droneAt(drone.getCoordinateX(), drone.getCoordinateY()));
+        }
+        assertEquals(drones.size(), occupancyIndex.size());
+    }
+
+    private Drone placeDrone(int x, int y, Direction direction) {
+        Drone drone = new Drone(UUID.randomUUID(), x, y, direction);
+        occupancyIndex.tryOccupy(x, y, drone.getDroneId());
+        return drone;
     }
 
     @Test
     public void testGetDrone_Success() throws DroneNotFoundException {
         // Mock data
         UUID droneId = UUID.randomUUID();
-        Drone drone = new Drone(droneId, 5, 5, "North");
+        Drone drone = new Drone(droneId, 5, 5, Direction.NORTH);
         Optional<Drone> optionalDrone = Optional.of(drone);
-        when(droneRepository.findById(droneId)).thenReturn(optionalDrone);
+        when(droneStore.findById(droneId)).thenReturn(optionalDrone);
         Drone retrievedDrone = null;
         try {
             retrievedDrone = droneService.getDrone(droneId);
@@ -183,18 +848,44 @@ public class DroneServiceTests {
         assertEquals(drone.getCoordinateX(), retrievedDrone.getCoordinateX());
         assertEquals(drone.getCoordinateY(), retrievedDrone.getCoordinateY());
         assertEquals(drone.getDirection(), retrievedDrone.getDirection());
-        verify(droneRepository, times(1)).findById(droneId);
+        verify(droneStore, times(1)).findById(droneId);
     }
 
     @Test
     public void testGetDrone_DroneNotFound() {
         UUID nonExistingDroneId = UUID.randomUUID();
-        when(droneRepository.findById(nonExistingDroneId)).thenReturn(Optional.empty());
+        when(droneStore.findById(nonExistingDroneId)).thenReturn(Optional.empty());
         DroneNotFoundException exception = assertThrows(DroneNotFoundException.class, () -> {
             droneService.getDrone(nonExistingDroneId);
         });
         assertEquals("Drone not found", exception.getMessage());
-        verify(droneRepository, times(1)).findById(nonExistingDroneId);
+        verify(droneStore, times(1)).findById(nonExistingDroneId);
+    }
+
+
+    @Test
+    public void testFindDronesWithin_LoadsDronesNearestFirstAndSkipsMovedOnes() {
+        Drone near = new Drone(UUID.randomUUID(), 2, 2, Direction.EAST);
+        Drone far = new Drone(UUID.randomUUID(), 4, 5, Direction.NORTH);
+        Drone moved = new Drone(UUID.randomUUID(), 3, 3, Direction.SOUTH);
+        occupancyIndex.tryOccupy(far.getCoordinateX(), far.getCoordinateY(), far.getDroneId());
+        occupancyIndex.tryOccupy(near.getCoordinateX(), near.getCoordinateY(), near.getDroneId());
+        occupancyIndex.tryOccupy(2, 3, moved.getDroneId());
+        when(droneStore.findAllById(anyCollection())).thenReturn(List.of(far, moved, near));
+
+        List<DroneResponse> drones = droneService.findDronesWithin(1, 1, 5, null);
+        assertEquals(2, drones.size());
+        assertEquals(near.getDroneId(), drones.get(0).getDroneId());
+        assertEquals("EAST", drones.get(0).getDirection());
+        assertEquals(far.getDroneId(), drones.get(1).getDroneId());
     }
 
+    @Test
+    public void testSpatialQueries_RejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> droneService.findDronesInArea(5, 0, 4, 9, null));
+        assertThrows(IllegalArgumentException.class, () -> droneService.findDronesWithin(0, 0, -1, null));
+        assertThrows(IllegalArgumentException.class, () -> droneService.findNearestDrones(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> droneService.findNearestDrones(0, 0, queryProperties.getMaxResults() + 1));
+        verifyNoInteractions(droneStore);
+    }
 }
@@ -0,0 +1,7 @@
+package com.gpicode.drone.management.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "drone.store.type=JDBC")
+public class JdbcBulkRegistrationRollbackTests extends BulkRegistrationRollbackTests {
+}
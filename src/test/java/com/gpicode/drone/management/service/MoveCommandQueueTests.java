@@ -0,0 +1,105 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.CommandProperties;
+import com.gpicode.drone.management.dto.MoveCommandStatus.State;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.exception.CommandRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveCommandQueueTests {
+
+    private MoveCommandQueue moveCommandQueue;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        moveCommandQueue.close();
+    }
+
+    @Test
+    public void testSubmit_RunsTheMovesOfEachDroneInOrder() {
+        moveCommandQueue = new MoveCommandQueue(properties(4, 1000, 1000));
+        List<UUID> drones = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            drones.add(UUID.randomUUID());
+        }
+        Map<UUID, List<Integer>> applied = new ConcurrentHashMap<>();
+        List<MoveCommand> commands = new ArrayList<>();
+        for (int x = 0; x < 25; x++) {
+            for (UUID droneId : drones) {
+                int target = x;
+                commands.add(moveCommandQueue.submit(droneId, () -> {
+                    applied.computeIfAbsent(droneId, id -> new ArrayList<>()).add(target);
+                    return new MoveDroneResponse(droneId, target, 0, "EAST", List.of());
+                }));
+            }
+        }
+
+        for (MoveCommand command : commands) {
+            assertSame(command, moveCommandQueue.await(command.getCommandId(), 10_000));
+            assertEquals(State.SUCCEEDED, command.getState());
+        }
+        for (UUID droneId : drones) {
+            List<Integer> expected = new ArrayList<>();
+            for (int x = 0; x < 25; x++) {
+                expected.add(x);
+            }
+            assertEquals(expected, applied.get(droneId));
+        }
+        assertEquals(24, commands.get(commands.size() - 1).getMove().getXCoordinate());
+    }
+
+    @Test
+    public void testSubmit_ForgetsTheOldestFinishedAndRejectsBeyondCapacity() throws InterruptedException {
+        moveCommandQueue = new MoveCommandQueue(properties(1, 1, 2));
+        UUID droneId = UUID.randomUUID();
+        List<MoveCommand> finished = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MoveCommand command = moveCommandQueue.submit(droneId, () -> {
+                throw new IllegalArgumentException("Another drone already exists at the new position");
+            });
+            assertTrue(command.await(10_000));
+            finished.add(command);
+        }
+        assertEquals(State.FAILED, finished.get(2).getState());
+        assertEquals("Another drone already exists at the new position", finished.get(2).getFailure().getMessage());
+        assertNull(moveCommandQueue.await(finished.get(0).getCommandId(), 0));
+        assertNotNull(moveCommandQueue.await(finished.get(1).getCommandId(), 0));
+
+        // One move running and one queued fill the only runner
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MoveCommand running = moveCommandQueue.submit(droneId, () -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        started.await();
+        MoveCommand queued = moveCommandQueue.submit(droneId, () -> null);
+        assertEquals(State.QUEUED, queued.getState());
+        assertThrows(CommandRejectedException.class, () -> moveCommandQueue.submit(droneId, () -> null));
+        // A status request gives up after its wait
+        assertEquals(State.RUNNING, moveCommandQueue.await(running.getCommandId(), 10).getState());
+
+        release.countDown();
+        assertTrue(queued.await(10_000));
+        assertEquals(State.SUCCEEDED, running.getState());
+    }
+
+    private static CommandProperties properties(int runners, int queueCapacity, int maxRetained) {
+        CommandProperties properties = new CommandProperties();
+        properties.setRunners(runners);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setMaxRetained(maxRetained);
+        return properties;
+    }
+}
@@ -0,0 +1,73 @@
+package com.gpicode.drone.management.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpicode.drone.management.dto.MoveDroneResponse;
+import com.gpicode.drone.management.entity.Direction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MovePlanTests {
+
+    @Test
+    public void testPlan_TwoAxisMoveStartsWithTheAxisItCanTurnTo() {
+        MovePlan plan = MovePlan.plan(Direction.NORTH, 5, 5, 3, 2);
+        assertEquals(Direction.SOUTH, plan.facing());
+        assertEquals(List.of("Pointed from NORTH to WEST", "Moved to (3, 5) towards WEST",
+                "Pointed from WEST to SOUTH", "Moved to (3, 2) towards SOUTH"), plan);
+
+        plan = MovePlan.plan(Direction.EAST, 5, 5, 8, 9);
+        assertEquals(Direction.EAST, plan.facing());
+        assertEquals(List.of("Pointed from EAST to NORTH", "Moved to (5, 9) towards NORTH",
+                "Pointed from NORTH to EAST", "Moved to (8, 9) towards EAST"), plan);
+    }
+
+    @Test
+    public void testPlan_ReversingGoesThroughAQuarterTurn() {
+        MovePlan plan = MovePlan.plan(Direction.NORTH, 5, 5, 5, 2);
+        assertEquals(Direction.SOUTH, plan.facing());
+        assertEquals(List.of("Could not directly travel from NORTH to SOUTH, pointed towards EAST first.",
+                "Pointed from EAST to SOUTH", "Moved to (5, 2)"), plan);
+
+        plan = MovePlan.plan(Direction.WEST, 5, 5, 8, 5);
+        assertEquals(Direction.EAST, plan.facing());
+        assertEquals(List.of("Could not directly travel from WEST to EAST, pointed towards NORTH first.",
+                "Pointed from NORTH to EAST", "Moved to (8, 5)"), plan);
+
+        plan = MovePlan.plan(Direction.NORTH, 5, 5, 5, 9);
+        assertEquals(List.of("Pointed from NORTH to NORTH", "Moved to (5, 9)"), plan);
+    }
+
+    @Test
+    public void testPlan_EachPackedStepIsReadFromItsOwnByte() {
+        // The steps after the one read share its long, and must not change how it is rendered
+        for (Direction facing : Direction.values()) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    MovePlan plan = MovePlan.plan(facing, 5, 5, 5 + dx, 5 + dy);
+                    for (int i = 0; i < plan.size(); i++) {
+                        assertTrue(plan.get(i).matches("(Pointed from|Could not directly travel from|Moved to) .*"), plan.get(i));
+                    }
+                }
+            }
+        }
+        MovePlan plan = MovePlan.plan(Direction.WEST, 5, 5, 8, 9);
+        assertEquals(List.of("Pointed from WEST to NORTH", "Moved to (5, 9) towards NORTH",
+                "Pointed from NORTH to EAST", "Moved to (8, 9) towards EAST"), plan);
+    }
+
+    @Test
+    public void testPlan_RendersDetailsWhenTheResponseIsSerialized() throws Exception {
+        MovePlan plan = MovePlan.plan(Direction.SOUTH, 0, 0, 1_000_000, 0);
+        MoveDroneResponse response = new MoveDroneResponse(UUID.randomUUID(), 1_000_000, 0, plan.facing().name(), plan);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        MoveDroneResponse read = objectMapper.readValue(objectMapper.writeValueAsString(response), MoveDroneResponse.class);
+        assertEquals("EAST", read.getDirection());
+        assertEquals(List.of("Pointed from SOUTH to EAST", "Moved to (1000000, 0)"), read.getDetails());
+        assertThrows(IndexOutOfBoundsException.class, () -> plan.get(2));
+    }
+}
@@ -0,0 +1,259 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveSchedulerTests {
+
+    private final OccupancyIndex occupancyIndex = new OccupancyIndex();
+    private final GeofenceIndex geofenceIndex = new GeofenceIndex();
+    private final FieldProperties fieldProperties = new FieldProperties();
+    private final PlannerProperties plannerProperties = new PlannerProperties();
+    private MoveScheduler moveScheduler;
+
+    @BeforeEach
+    public void setup() {
+        fieldProperties.setWidth(50);
+        fieldProperties.setHeight(50);
+        moveScheduler = new MoveScheduler(occupancyIndex, geofenceIndex, fieldProperties, plannerProperties);
+    }
+
+    @Test
+    public void testSchedule_LetsCrossingDronesPassOneAfterTheOther() {
+        // Both straight routes reach (5, 5) at the same tick
+        occupy(2, 5);
+        occupy(5, 2);
+        MovePlan[] plans = moveScheduler.schedule(new Direction[]{Direction.EAST, Direction.NORTH},
+                new long[]{OccupancyIndex.pack(2, 5), OccupancyIndex.pack(5, 2)},
+                new long[]{OccupancyIndex.pack(8, 5), OccupancyIndex.pack(5, 8)});
+
+        assertNotNull(plans[0]);
+        assertNotNull(plans[1]);
+        // The first move keeps its straight route, the second gives way
+        assertEquals(MovePlan.plan(Direction.EAST, 2, 5, 8, 5), plans[0]);
+        assertEquals(6, plans[0].timeline().length - 1);
+        assertTrue(plans[1].timeline().length - 1 > 6);
+        assertNeverMeet(new long[]{OccupancyIndex.pack(2, 5), OccupancyIndex.pack(5, 2)}, plans);
+    }
+
+    @Test
+    public void testSchedule_SwapsNeighboursWithoutPassingThroughEachOther() {
+        occupy(5, 5);
+        occupy(6, 5);
+        long[] from = {OccupancyIndex.pack(5, 5), OccupancyIndex.pack(6, 5)};
+        MovePlan[] plans = moveScheduler.schedule(new Direction[]{Direction.EAST, Direction.WEST}, from,
+                new long[]{OccupancyIndex.pack(6, 5), OccupancyIndex.pack(5, 5)});
+
+        assertNotNull(plans[0]);
+        assertNotNull(plans[1]);
+        assertNeverMeet(from, plans);
+    }
+
+    @Test
+    public void testSchedule_MovesAColumnUpTogether() {
+        // A column of drones each moving one cell north, the rear one first in request order
+        long[] from = new long[5];
+        long[] to = new long[5];
+        Direction[] facing = new Direction[5];
+        for (int i = 0; i < 5; i++) {
+            occupy(10, 10 + i);
+            from[i] = OccupancyIndex.pack(10, 10 + i);
+            to[i] = OccupancyIndex.pack(10, 11 + i);
+            facing[i] = Direction.NORTH;
+        }
+        MovePlan[] plans = moveScheduler.schedule(facing, from, to);
+
+        for (MovePlan plan : plans) {
+            assertNotNull(plan);
+        }
+        assertNeverMeet(from, plans);
+        // Each drone follows the one ahead into the cell it leaves, all in the first tick
+        for (MovePlan plan : plans) {
+            assertEquals(2, plan.timeline().length);
+        }
+    }
+
+    @Test
+    public void testSchedule_RejectsMoveOnlyWhenWalledIn() {
+        occupy(0, 1);
+        occupy(1, 0);
+        occupy(5, 5);
+        occupy(8, 8);
+        MovePlan[] plans = moveScheduler.schedule(new Direction[]{Direction.NORTH, Direction.NORTH},
+                new long[]{OccupancyIndex.pack(5, 5), OccupancyIndex.pack(8, 8)},
+                new long[]{OccupancyIndex.pack(0, 0), OccupancyIndex.pack(8, 2)});
+
+        assertNull(plans[0]);
+        assertNotNull(plans[1]);
+    }
+
+    @Test
+    public void testSchedule_ThousandsOfSimultaneousMovesNeverMeet() {
+        fieldProperties.setWidth(200);
+        fieldProperties.setHeight(200);
+        Random random = new Random(42);
+        Set<Long> taken = new HashSet<>();
+        // Drones that stay where they are
+        for (int i = 0; i < 2000; i++) {
+            long cell = randomFreeCell(random, taken);
+            occupy(OccupancyIndex.unpackX(cell), OccupancyIndex.unpackY(cell));
+        }
+        int count = 3000;
+        Direction[] facing = new Direction[count];
+        long[] from = new long[count];
+        long[] to = new long[count];
+        for (int i = 0; i < count; i++) {
+            from[i] = randomFreeCell(random, taken);
+            occupy(OccupancyIndex.unpackX(from[i]), OccupancyIndex.unpackY(from[i]));
+            facing[i] = Direction.of(random.nextInt(4));
+        }
+        // Targets within a few cells, some of them cells other drones of the batch are leaving
+        Set<Long> targets = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            long target;
+            do {
+                int x = Math.min(199, Math.max(0, OccupancyIndex.unpackX(from[i]) + random.nextInt(21) - 10));
+                int y = Math.min(199, Math.max(0, OccupancyIndex.unpackY(from[i]) + random.nextInt(21) - 10));
+                target = OccupancyIndex.pack(x, y);
+            } while (target == from[i] || (taken.contains(target) && !isOrigin(from, target)) || !targets.add(target));
+            to[i] = target;
+        }
+
+        // As the batch move does, drop what cannot be scheduled and schedule the rest again, until everything fits
+        List<Integer> moving = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            moving.add(i);
+        }
+        MovePlan[] plans;
+        while (true) {
+            Direction[] movingFacing = new Direction[moving.size()];
+            long[] movingFrom = new long[moving.size()];
+            long[] movingTo = new long[moving.size()];
+            for (int i = 0; i < moving.size(); i++) {
+                movingFacing[i] = facing[moving.get(i)];
+                movingFrom[i] = from[moving.get(i)];
+                movingTo[i] = to[moving.get(i)];
+            }
+            plans = moveScheduler.schedule(movingFacing, movingFrom, movingTo);
+            List<Integer> scheduled = new ArrayList<>();
+            Set<Long> staying = new HashSet<>();
+            for (int i = 0; i < plans.length; i++) {
+                if (plans[i] != null) {
+                    scheduled.add(moving.get(i));
+                } else {
+                    staying.add(from[moving.get(i)]);
+                }
+            }
+            // A move into the cell of a drone that now stays cannot go either, nor can a move into its cell
+            boolean removed = true;
+            while (removed) {
+                removed = false;
+                for (int i = scheduled.size() - 1; i >= 0; i--) {
+                    int move = scheduled.get(i);
+                    if (staying.contains(to[move])) {
+                        staying.add(from[move]);
+                        scheduled.remove(i);
+                        removed = true;
+                    }
+                }
+            }
+            if (scheduled.size() == moving.size()) {
+                long[] origins = new long[moving.size()];
+                for (int i = 0; i < moving.size(); i++) {
+                    origins[i] = from[moving.get(i)];
+                }
+                assertNeverMeet(origins, plans);
+                for (int i = 0; i < plans.length; i++) {
+                    long[] timeline = plans[i].timeline();
+                    assertEquals(to[moving.get(i)], timeline[timeline.length - 1]);
+                }
+                break;
+            }
+            moving = scheduled;
+        }
+        assertTrue(moving.size() > count * 9 / 10, moving.size() + " of " + count + " moves scheduled");
+    }
+
+    /**
+     * Replays the timelines and checks that no two drones hold a cell at the same tick, no drone enters a cell held
+     * by a drone outside the batch, and no two drones pass each other between two ticks.
+     */
+    private void assertNeverMeet(long[] from, MovePlan[] plans) {
+        Set<Long> origins = new HashSet<>();
+        for (long cell : from) {
+            origins.add(cell);
+        }
+        int horizon = 0;
+        for (int i = 0; i < plans.length; i++) {
+            long[] timeline = plans[i].timeline();
+            assertEquals(from[i], timeline[0]);
+            for (int tick = 1; tick < timeline.length; tick++) {
+                int dx = Math.abs(OccupancyIndex.unpackX(timeline[tick]) - OccupancyIndex.unpackX(timeline[tick - 1]));
+                int dy = Math.abs(OccupancyIndex.unpackY(timeline[tick]) - OccupancyIndex.unpackY(timeline[tick - 1]));
+                assertTrue(dx + dy <= 1, "Drone jumped at tick " + tick);
+                assertTrue(origins.contains(timeline[tick]) || !occupancyIndex.isOccupied(OccupancyIndex.unpackX(timeline[tick]), OccupancyIndex.unpackY(timeline[tick])),
+                        "Drone flew into a drone that stays");
+            }
+            horizon = Math.max(horizon, timeline.length);
+        }
+        for (int tick = 0; tick < horizon; tick++) {
+            Map<Long, Integer> holders = new HashMap<>();
+            for (int i = 0; i < plans.length; i++) {
+                Integer other = holders.put(at(plans[i], tick), i);
+                assertNull(other, "Drones " + other + " and " + i + " meet at tick " + tick);
+            }
+            if (tick > 0) {
+                for (int i = 0; i < plans.length; i++) {
+                    long before = at(plans[i], tick - 1);
+                    long after = at(plans[i], tick);
+                    Integer other = holders.get(before);
+                    if (before != after && other != null && at(plans[other], tick - 1) == after) {
+                        fail("Drones " + i + " and " + other + " pass each other at tick " + tick);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long at(MovePlan plan, int tick) {
+        long[] timeline = plan.timeline();
+        return timeline[Math.min(tick, timeline.length - 1)];
+    }
+
+    private static boolean isOrigin(long[] from, long cell) {
+        for (long origin : from) {
+            if (origin == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long randomFreeCell(Random random, Set<Long> taken) {
+        long cell;
+        do {
+            cell = OccupancyIndex.pack(random.nextInt(200), random.nextInt(200));
+        } while (!taken.add(cell));
+        return cell;
+    }
+
+    private void occupy(int x, int y) {
+        assertTrue(occupancyIndex.tryOccupy(x, y, UUID.randomUUID()));
+    }
+}
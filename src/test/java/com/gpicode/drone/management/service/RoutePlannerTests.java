@@ -0,0 +1,198 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.FieldProperties;
+import com.gpicode.drone.management.config.PlannerProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.exception.RouteSearchLimitException;
+import com.gpicode.drone.management.index.GeofenceIndex;
+import com.gpicode.drone.management.index.NoFlyZone;
+import com.gpicode.drone.management.index.OccupancyIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutePlannerTests {
+
+    private static final Pattern MOVED_TO = Pattern.compile("Moved to \\((\\d+), (\\d+)\\).*");
+
+    private final OccupancyIndex occupancyIndex = new OccupancyIndex();
+    private final GeofenceIndex geofenceIndex = new GeofenceIndex();
+    private final FieldProperties fieldProperties = new FieldProperties();
+    private final PlannerProperties plannerProperties = new PlannerProperties();
+    private RoutePlanner routePlanner;
+
+    @BeforeEach
+    public void setup() {
+        fieldProperties.setWidth(50);
+        fieldProperties.setHeight(50);
+        routePlanner = new RoutePlanner(occupancyIndex, geofenceIndex, fieldProperties, plannerProperties);
+    }
+
+    @Test
+    public void testPlan_KeepsDirectRouteWhenItIsFree() {
+        occupy(9, 9);
+        MovePlan plan = routePlanner.plan(Direction.NORTH, 5, 5, 3, 2);
+        assertEquals(MovePlan.plan(Direction.NORTH, 5, 5, 3, 2), plan);
+    }
+
+    @Test
+    public void testPlan_GoesAroundDronesInTheWay() {
+        // A wall across the straight route, open only at y = 12
+        for (int y = 0; y < 12; y++) {
+            occupy(5, y);
+        }
+        MovePlan plan = routePlanner.plan(Direction.EAST, 2, 3, 8, 3);
+        assertNotNull(plan);
+        // Up through the gap and back down: 9 + 6 + 9 cells and three quarter turns
+        assertEquals(24, assertRouteIsFree(2, 3, 8, 3, plan));
+        assertEquals(3, turns(plan));
+        assertEquals("Moved to (8, 3) towards SOUTH", plan.get(plan.size() - 1));
+        assertEquals(Direction.SOUTH, plan.facing());
+    }
+
+    @Test
+    public void testPlan_PrefersFewerTurns() {
+        // A drone in the way along the bottom edge. Leaving the edge at once and coming back at the target takes the
+        // same 12 cells as stepping around the drone, with three quarter turns instead of four.
+        occupy(5, 0);
+        MovePlan plan = routePlanner.plan(Direction.EAST, 0, 0, 10, 0);
+        assertNotNull(plan);
+        assertEquals(12, assertRouteIsFree(0, 0, 10, 0, plan));
+        assertEquals(3, turns(plan));
+
+        // With turns free of charge a route may weave, but never grows longer
+        plannerProperties.setTurnCost(0);
+        assertEquals(12, assertRouteIsFree(0, 0, 10, 0, routePlanner.plan(Direction.EAST, 0, 0, 10, 0)));
+    }
+
+    @Test
+    public void testPlan_WidensTheSearchUntilARouteIsFound() {
+        // A wall longer than the first search window
+        for (int y = 0; y < 40; y++) {
+            occupy(10, y);
+        }
+        MovePlan plan = routePlanner.plan(Direction.EAST, 5, 0, 15, 0);
+        assertNotNull(plan);
+        assertRouteIsFree(5, 0, 15, 0, plan);
+    }
+
+    @Test
+    public void testPlan_RejectsEnclosedTarget() {
+        occupy(20, 21);
+        occupy(20, 19);
+        occupy(21, 20);
+        occupy(19, 20);
+        assertNull(routePlanner.plan(Direction.NORTH, 0, 0, 20, 20));
+
+        // Giving up at the search limit is not reported as having no route
+        plannerProperties.setMaxSearchCells(100);
+        occupy(3, 0);
+        assertThrows(RouteSearchLimitException.class, () -> routePlanner.plan(Direction.EAST, 0, 0, 40, 0));
+        assertThrows(RouteSearchLimitException.class, () -> routePlanner.planMission(Direction.EAST, 0, 0, new int[]{40}, new int[]{0}));
+    }
+
+    @Test
+    public void testPlan_ReportsSearchLimitOnALongBlockedMove() {
+        // A wall just ahead of a long move on a large field, which only a window 32 cells wide gets around
+        fieldProperties.setWidth(5000);
+        fieldProperties.setHeight(5000);
+        for (int y = 0; y <= 20; y++) {
+            occupy(5, y);
+        }
+        assertEquals(4042, assertRouteIsFree(0, 0, 4000, 0, routePlanner.plan(Direction.EAST, 0, 0, 4000, 0)));
+
+        plannerProperties.setMaxSearchCells(100_000);
+        assertThrows(RouteSearchLimitException.class, () -> routePlanner.plan(Direction.EAST, 0, 0, 4000, 0));
+    }
+
+    @Test
+    public void testPlan_KeepsOutOfNoFlyZones() {
+        // A zone across the straight route, open only above y = 11
+        geofenceIndex.addAll(List.of(NoFlyZone.rectangle(UUID.randomUUID(), "wall", 4, 0, 6, 11, null, null)));
+        MovePlan plan = routePlanner.plan(Direction.EAST, 2, 3, 8, 3);
+        assertNotNull(plan);
+        assertRouteIsFree(2, 3, 8, 3, plan);
+
+        // A zone that is not in force yet is flown through
+        geofenceIndex.replaceAll(List.of(NoFlyZone.rectangle(UUID.randomUUID(), "later", 4, 0, 6, 11, Instant.now().plusSeconds(3600), null)));
+        assertEquals(MovePlan.plan(Direction.EAST, 2, 3, 8, 3), routePlanner.plan(Direction.EAST, 2, 3, 8, 3));
+    }
+
+    @Test
+    public void testPlanMission_MinimisesTurnsAcrossLegs() {
+        // Each leg planned on its own turns north first, then back east, then north again for the second leg
+        int chained = (int) (turns(MovePlan.plan(Direction.EAST, 0, 0, 5, 5)) + turns(MovePlan.plan(Direction.EAST, 5, 5, 5, 10)));
+        assertEquals(3, chained);
+
+        MovePlan[] plans = routePlanner.planMission(Direction.EAST, 0, 0, new int[]{5, 5}, new int[]{5, 10});
+        assertNotNull(plans);
+        assertEquals(10, assertRouteIsFree(0, 0, 5, 5, plans[0]));
+        assertEquals(5, assertRouteIsFree(5, 5, 5, 10, plans[1]));
+        // East along the bottom, then north through both waypoints
+        assertEquals(1, turns(plans[0]) + turns(plans[1]));
+        assertEquals(Direction.NORTH, plans[1].facing());
+    }
+
+    @Test
+    public void testPlanMission_CrossesTheCellItStartedFrom() {
+        occupy(10, 5);
+        MovePlan[] plans = routePlanner.planMission(Direction.EAST, 10, 5, new int[]{15, 5}, new int[]{5, 5});
+        assertNotNull(plans);
+        assertEquals("Moved to (15, 5) towards EAST", plans[0].get(0));
+        // Straight back west, through its own cell
+        assertEquals(1, plans[1].stream().filter(step -> step.startsWith("Moved")).count());
+        assertEquals("Moved to (5, 5) towards WEST", plans[1].get(plans[1].size() - 1));
+
+        occupy(20, 21);
+        occupy(20, 19);
+        occupy(21, 20);
+        occupy(19, 20);
+        assertNull(routePlanner.planMission(Direction.EAST, 10, 5, new int[]{15, 5, 20}, new int[]{5, 5, 20}));
+    }
+
+    private void occupy(int x, int y) {
+        assertTrue(occupancyIndex.tryOccupy(x, y, UUID.randomUUID()));
+    }
+
+    private static long turns(MovePlan plan) {
+        return plan.stream().filter(step -> step.startsWith("Pointed") || step.startsWith("Could not")).count();
+    }
+
+    /**
+     * Follows the moves of a plan cell by cell, checking each one is free and outside the no-fly zones, and the last one
+     * is the target.
+     *
+     * @return the number of cells travelled
+     */
+    private int assertRouteIsFree(int fromX, int fromY, int toX, int toY, MovePlan plan) {
+        int x = fromX;
+        int y = fromY;
+        int cells = 0;
+        for (String step : plan) {
+            Matcher matcher = MOVED_TO.matcher(step);
+            if (!matcher.matches()) {
+                continue;
+            }
+            int cornerX = Integer.parseInt(matcher.group(1));
+            int cornerY = Integer.parseInt(matcher.group(2));
+            assertTrue(cornerX == x || cornerY == y, "Not a straight move: " + step);
+            while (x != cornerX || y != cornerY) {
+                x += Integer.signum(cornerX - x);
+                y += Integer.signum(cornerY - y);
+                cells++;
+                assertFalse(occupancyIndex.isOccupied(x, y), "Route passes through (" + x + ", " + y + ")");
+                assertFalse(geofenceIndex.isRestricted(x, y), "Route enters a no-fly zone at (" + x + ", " + y + ")");
+            }
+        }
+        assertEquals(toX, x);
+        assertEquals(toY, y);
+        return cells;
+    }
+}
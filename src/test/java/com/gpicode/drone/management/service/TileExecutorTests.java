@@ -0,0 +1,242 @@
+package com.gpicode.drone.management.service;
+
+import com.gpicode.drone.management.config.ExecutorProperties;
+import com.gpicode.drone.management.config.ExecutorProperties.Mode;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import com.gpicode.drone.management.exception.CommandRejectedException;
+import com.gpicode.drone.management.service.TileExecutor.Claim;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileExecutorTests {
+
+    private TileExecutor tileExecutor;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (tileExecutor != null) {
+            tileExecutor.close();
+        }
+    }
+
+    @Test
+    public void testDirect_StartsNoWorkerAndReleasesRightAway() {
+        tileExecutor = new TileExecutor(new ExecutorProperties());
+
+        assertFalse(tileExecutor.isTiled());
+        tileExecutor.pause();
+        assertFalse(tileExecutor.isHeld(5, 5));
+        tileExecutor.resume();
+        List<String> released = new ArrayList<>();
+        tileExecutor.afterHold(() -> released.add("released"));
+        assertEquals(List.of("released"), released);
+    }
+
+    @Test
+    public void testRegister_ClaimsEachCellOnce() {
+        tileExecutor = new TileExecutor(tiled(4, 3, 100));
+        UUID droneId = UUID.randomUUID();
+
+        assertTrue(tileExecutor.register(5, 5));
+        assertFalse(tileExecutor.register(5, 5));
+        // Handed back, the cell can be claimed again; once saved, it is the drone's
+        tileExecutor.unregister(5, 5);
+        tileExecutor.completed();
+        assertTrue(tileExecutor.register(5, 5));
+        tileExecutor.registered(5, 5, droneId);
+        tileExecutor.completed();
+        assertFalse(tileExecutor.register(5, 5));
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 5, 5, 6, 5));
+    }
+
+    @Test
+    public void testMove_HandsTheDroneOverWithinAndAcrossTiles() {
+        tileExecutor = new TileExecutor(tiled(4, 3, 100));
+        UUID droneId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        place(droneId, 1, 1);
+        place(otherId, 9, 9);
+
+        // Within the tile, then into another one
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 1, 1, 2, 1));
+        tileExecutor.settle(droneId, 1, 1, 2, 1);
+        tileExecutor.completed();
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 2, 1, 9, 1));
+        tileExecutor.settle(droneId, 2, 1, 9, 1);
+        tileExecutor.completed();
+
+        // A move from where the drone no longer is, or into another drone, is refused
+        assertEquals(Claim.MOVED, tileExecutor.move(droneId, 2, 1, 3, 1));
+        assertEquals(Claim.OCCUPIED, tileExecutor.move(droneId, 9, 1, 9, 9));
+        // A refused handoff leaves the drone free to move
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 9, 1, 1, 1));
+        tileExecutor.undo(droneId, 9, 1, 1, 1);
+        tileExecutor.completed();
+        assertEquals(Claim.GRANTED, tileExecutor.move(otherId, 9, 9, 1, 1));
+    }
+
+    @Test
+    public void testMove_WaitsForTheDronesMoveUnderWay() throws Exception {
+        tileExecutor = new TileExecutor(tiled(4, 3, 100));
+        UUID droneId = UUID.randomUUID();
+        place(droneId, 1, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 1, 1, 9, 1));
+            // Both cells stay held until the first move is released
+            Future<Claim> fromOrigin = executor.submit(() -> tileExecutor.move(droneId, 1, 1, 2, 2));
+            assertThrows(TimeoutException.class, () -> fromOrigin.get(200, TimeUnit.MILLISECONDS));
+            assertFalse(tileExecutor.register(1, 1));
+            assertFalse(tileExecutor.register(9, 1));
+
+            // Undone, the drone is still where the waiting move starts from
+            tileExecutor.undo(droneId, 1, 1, 9, 1);
+            tileExecutor.completed();
+            assertEquals(Claim.GRANTED, fromOrigin.get(10, TimeUnit.SECONDS));
+
+            // Settled, the drone has left the cell the next waiting move starts from
+            Future<Claim> again = executor.submit(() -> tileExecutor.move(droneId, 1, 1, 3, 3));
+            assertThrows(TimeoutException.class, () -> again.get(200, TimeUnit.MILLISECONDS));
+            tileExecutor.settle(droneId, 1, 1, 2, 2);
+            tileExecutor.completed();
+            assertEquals(Claim.MOVED, again.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHold_PutsReleasesOffUntilClosed() throws Exception {
+        tileExecutor = new TileExecutor(tiled(4, 3, 100));
+        UUID droneId = UUID.randomUUID();
+        place(droneId, 1, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Claim> next;
+            try (TileExecutor.Hold hold = tileExecutor.hold()) {
+                assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 1, 1, 2, 1));
+                try (TileExecutor.Hold nested = tileExecutor.hold()) {
+                    tileExecutor.afterHold(() -> tileExecutor.settle(droneId, 1, 1, 2, 1));
+                }
+                tileExecutor.completed();
+                next = executor.submit(() -> tileExecutor.move(droneId, 2, 1, 3, 1));
+                assertThrows(TimeoutException.class, () -> next.get(200, TimeUnit.MILLISECONDS));
+            }
+            assertEquals(Claim.GRANTED, next.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPause_WaitsForGrantedClaimsAndKeepsHeldCellsOnReload() throws Exception {
+        tileExecutor = new TileExecutor(tiled(4, 3, 100));
+        UUID droneId = UUID.randomUUID();
+        place(droneId, 1, 1);
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 1, 1, 9, 1));
+
+        CompletableFuture<Void> paused = CompletableFuture.runAsync(() -> {
+            tileExecutor.pause();
+            try {
+                // The store has the drone at its target; the cell it is leaving stays held until released
+                tileExecutor.reload(List.of(new Drone(droneId, 9, 1, Direction.NORTH)));
+                assertTrue(tileExecutor.isHeld(1, 1));
+                assertTrue(tileExecutor.isHeld(9, 1));
+            } finally {
+                tileExecutor.resume();
+            }
+        });
+        assertThrows(TimeoutException.class, () -> paused.get(200, TimeUnit.MILLISECONDS));
+        tileExecutor.completed();
+        paused.get(10, TimeUnit.SECONDS);
+
+        tileExecutor.settle(droneId, 1, 1, 9, 1);
+        assertEquals(Claim.GRANTED, tileExecutor.move(droneId, 9, 1, 1, 1));
+        assertThrows(IllegalStateException.class, () -> tileExecutor.isHeld(1, 1));
+    }
+
+    @Test
+    public void testRegister_ConcurrentClaimsGrantEachCellOnce() throws Exception {
+        tileExecutor = new TileExecutor(tiled(8, 4, 100_000));
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> clients = new ArrayList<>();
+        for (int client = 0; client < 8; client++) {
+            Random random = new Random(client);
+            clients.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    if (tileExecutor.register(random.nextInt(40), random.nextInt(40))) {
+                        granted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> client : clients) {
+            client.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < granted.get(); i++) {
+            tileExecutor.completed();
+        }
+        int held = 0;
+        tileExecutor.pause();
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                if (tileExecutor.isHeld(x, y)) {
+                    held++;
+                }
+            }
+        }
+        tileExecutor.resume();
+        assertEquals(granted.get(), held);
+    }
+
+    @Test
+    public void testRegister_FullInboxIsRejected() throws Exception {
+        tileExecutor = new TileExecutor(tiled(4, 1, 1));
+        tileExecutor.pause();
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> tileExecutor.register(1, 1));
+        while (tileExecutor.queueSize() == 0) {
+            Thread.sleep(1);
+        }
+
+        CommandRejectedException exception = assertThrows(CommandRejectedException.class, () -> tileExecutor.register(2, 2));
+        assertEquals("Drone command queue is full, try again later", exception.getMessage());
+        tileExecutor.resume();
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+    }
+
+    private void place(UUID droneId, int x, int y) {
+        tileExecutor.pause();
+        try {
+            tileExecutor.place(x, y, droneId);
+        } finally {
+            tileExecutor.resume();
+        }
+    }
+
+    private static ExecutorProperties tiled(int tileSize, int workers, int inboxCapacity) {
+        ExecutorProperties properties = new ExecutorProperties();
+        properties.setMode(Mode.TILED);
+        properties.setTileSize(tileSize);
+        properties.setWorkers(workers);
+        properties.setInboxCapacity(inboxCapacity);
+        return properties;
+    }
+}
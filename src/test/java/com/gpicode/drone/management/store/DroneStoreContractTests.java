@@ -0,0 +1,106 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The behaviour every {@link DroneStore} shares, run against each implementation by its subclass. Tests that expect a
+ * failed write end with it, since a database store cannot be used further in a transaction that failed.
+ * <p>
+ * Spring looks for {@code @Transactional} on the class declaring a test method, so it is repeated here for the
+ * database stores to roll back each test; it has no effect on stores tested without a Spring context.
+ */
+@Transactional
+public abstract class DroneStoreContractTests {
+
+    protected abstract DroneStore store();
+
+    @Test
+    public void testInsert_AssignsIdsAndRejectsTakenCell() {
+        Drone drone = store().insert(new Drone(null, 1, 2, Direction.EAST));
+        List<Drone> fleet = store().insertAll(List.of(new Drone(null, 3, 3, Direction.NORTH), new Drone(null, 4, 4, Direction.SOUTH)));
+
+        assertNotNull(drone.getDroneId());
+        Drone found = store().findById(drone.getDroneId()).orElseThrow();
+        assertEquals(1, found.getCoordinateX());
+        assertEquals(2, found.getCoordinateY());
+        assertEquals(Direction.EAST, found.getDirection());
+        assertEquals(3, store().findAll().size());
+        assertEquals(2, store().findAllById(List.of(fleet.get(0).getDroneId(), fleet.get(1).getDroneId(), UUID.randomUUID())).size());
+        assertTrue(store().findById(UUID.randomUUID()).isEmpty());
+
+        assertThrows(DataIntegrityViolationException.class, () -> store().insert(new Drone(null, 4, 4, Direction.WEST)));
+    }
+
+    @Test
+    public void testMove_AppliesOnlyAtTheVersionRead() {
+        UUID droneId = store().insert(new Drone(null, 1, 1, Direction.NORTH)).getDroneId();
+        store().insert(new Drone(null, 5, 5, Direction.NORTH));
+        long version = store().findById(droneId).orElseThrow().getVersion();
+
+        assertTrue(store().move(droneId, version, 2, 3, Direction.EAST));
+        Drone moved = store().findById(droneId).orElseThrow();
+        assertEquals(2, moved.getCoordinateX());
+        assertEquals(3, moved.getCoordinateY());
+        assertEquals(Direction.EAST, moved.getDirection());
+        assertNotEquals(version, moved.getVersion());
+        assertFalse(store().move(droneId, version, 4, 4, Direction.SOUTH));
+        assertFalse(store().move(UUID.randomUUID(), 0, 4, 4, Direction.SOUTH));
+        // The cell it left is free again
+        assertNotNull(store().insert(new Drone(null, 1, 1, Direction.WEST)).getDroneId());
+
+        assertThrows(DataIntegrityViolationException.class, () -> store().move(droneId, moved.getVersion(), 5, 5, Direction.SOUTH));
+    }
+
+    @Test
+    public void testMoveAll_AppliesChainsAndSwaps() {
+        store().insertAll(List.of(new Drone(null, 1, 1, Direction.NORTH), new Drone(null, 2, 1, Direction.NORTH),
+                new Drone(null, 5, 5, Direction.EAST), new Drone(null, 6, 5, Direction.EAST)));
+        List<Drone> drones = store().findAll();
+        Drone first = at(drones, 1, 1);
+        Drone second = at(drones, 2, 1);
+        Drone third = at(drones, 5, 5);
+        Drone fourth = at(drones, 6, 5);
+
+        // first follows second onto a free cell, third and fourth swap
+        store().moveAll(List.of(first, second, third, fourth), new int[]{2, 3, 6, 5}, new int[]{1, 1, 5, 5},
+                new Direction[]{Direction.EAST, Direction.EAST, Direction.EAST, Direction.WEST});
+
+        assertEquals(2, first.getCoordinateX());
+        assertEquals(Direction.WEST, fourth.getDirection());
+        List<Drone> stored = store().findAll();
+        assertEquals(first.getDroneId(), at(stored, 2, 1).getDroneId());
+        assertEquals(second.getDroneId(), at(stored, 3, 1).getDroneId());
+        assertEquals(third.getDroneId(), at(stored, 6, 5).getDroneId());
+        assertEquals(fourth.getDroneId(), at(stored, 5, 5).getDroneId());
+        // The drones were updated to their new versions, so they can be moved on straight away
+        assertTrue(store().move(first.getDroneId(), first.getVersion(), 1, 1, Direction.WEST));
+        store().moveAll(List.of(second), new int[]{4}, new int[]{1}, new Direction[]{Direction.EAST});
+    }
+
+    @Test
+    public void testMoveAll_RejectsDroneChangedSinceRead() {
+        Drone drone = store().insert(new Drone(null, 1, 1, Direction.NORTH));
+        Drone stale = store().findById(drone.getDroneId()).orElseThrow();
+        assertTrue(store().move(drone.getDroneId(), stale.getVersion(), 2, 2, Direction.EAST));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> store().moveAll(List.of(stale), new int[]{3}, new int[]{3}, new Direction[]{Direction.EAST}));
+    }
+
+    private static Drone at(List<Drone> drones, int x, int y) {
+        return drones.stream()
+                .filter(drone -> drone.getCoordinateX() == x && drone.getCoordinateY() == y)
+                .findFirst()
+                .orElseThrow();
+    }
+}
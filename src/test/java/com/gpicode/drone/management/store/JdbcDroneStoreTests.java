@@ -0,0 +1,46 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The Drone table is still created from the entity by Hibernate
+@DataJpaTest(properties = "drone.store.type=JDBC")
+@Import(JdbcDroneStore.class)
+public class JdbcDroneStoreTests extends DroneStoreContractTests {
+
+    @Autowired
+    private JdbcDroneStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    protected DroneStore store() {
+        return store;
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testInsertAll_TakenCellInsertsNothingWithoutASurroundingTransaction() {
+        store.insert(new Drone(null, 3, 3, Direction.NORTH));
+        try {
+            assertThrows(DataIntegrityViolationException.class, () -> store.insertAll(List.of(
+                    new Drone(null, 1, 1, Direction.NORTH), new Drone(null, 3, 3, Direction.EAST))));
+            assertEquals(1, store.findAll().size());
+        } finally {
+            jdbcTemplate.update("delete from drone");
+        }
+    }
+}
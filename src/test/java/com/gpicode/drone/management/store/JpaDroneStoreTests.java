@@ -0,0 +1,18 @@
+package com.gpicode.drone.management.store;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+@DataJpaTest
+@Import(JpaDroneStore.class)
+public class JpaDroneStoreTests extends DroneStoreContractTests {
+
+    @Autowired
+    private JpaDroneStore store;
+
+    @Override
+    protected DroneStore store() {
+        return store;
+    }
+}
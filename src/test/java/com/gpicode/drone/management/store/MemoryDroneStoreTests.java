@@ -0,0 +1,127 @@
+package com.gpicode.drone.management.store;
+
+import com.gpicode.drone.management.config.StoreProperties;
+import com.gpicode.drone.management.entity.Direction;
+import com.gpicode.drone.management.entity.Drone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryDroneStoreTests extends DroneStoreContractTests {
+
+    @TempDir
+    Path walDirectory;
+
+    private MemoryDroneStore store;
+
+    @BeforeEach
+    public void open() {
+        store = new MemoryDroneStore(properties());
+    }
+
+    @AfterEach
+    public void close() throws IOException {
+        store.close();
+    }
+
+    @Override
+    protected DroneStore store() {
+        return store;
+    }
+
+    @Test
+    public void testRestart_ReplaysWriteAheadLog() throws IOException {
+        List<Drone> drones = store.insertAll(List.of(new Drone(null, 1, 1, Direction.NORTH), new Drone(null, 2, 1, Direction.NORTH)));
+        Drone first = drones.get(0);
+        Drone second = drones.get(1);
+        store.moveAll(List.of(first, second), new int[]{2, 1}, new int[]{1, 1}, new Direction[]{Direction.EAST, Direction.WEST});
+        assertTrue(store.move(first.getDroneId(), first.getVersion(), 7, 7, Direction.NORTH));
+        store.close();
+
+        store = new MemoryDroneStore(properties());
+        Drone recovered = store.findById(first.getDroneId()).orElseThrow();
+        assertEquals(7, recovered.getCoordinateX());
+        assertEquals(Direction.NORTH, recovered.getDirection());
+        assertEquals(2, recovered.getVersion());
+        assertEquals(1, store.findById(second.getDroneId()).orElseThrow().getCoordinateX());
+        // The cells were recovered along with the drones
+        assertThrows(DataIntegrityViolationException.class, () -> store.insert(new Drone(null, 1, 1, Direction.NORTH)));
+        assertNotNull(store.insert(new Drone(null, 2, 1, Direction.NORTH)).getDroneId());
+    }
+
+    @Test
+    public void testRestart_DiscardsTornWrite() throws IOException {
+        Drone drone = store.insert(new Drone(null, 1, 1, Direction.NORTH));
+        store.close();
+        Path wal = walDirectory.resolve("wal-000000000000.log");
+        long intact = Files.size(wal);
+        // A frame header announcing two records, cut off before its records
+        Files.write(wal, new byte[]{0, 0, 0, 2, 1, 2, 3, 4, 1}, StandardOpenOption.APPEND);
+
+        store = new MemoryDroneStore(properties());
+        assertEquals(1, store.findAll().size());
+        assertEquals(intact, Files.size(wal));
+        assertTrue(store.move(drone.getDroneId(), 0, 2, 2, Direction.EAST));
+        store.close();
+
+        store = new MemoryDroneStore(properties());
+        assertEquals(2, store.findById(drone.getDroneId()).orElseThrow().getCoordinateX());
+    }
+
+    @Test
+    public void testRestart_LoadsSnapshotThenReplaysLaterWrites() throws IOException {
+        Drone first = store.insert(new Drone(null, 1, 1, Direction.NORTH));
+        Drone second = store.insert(new Drone(null, 2, 2, Direction.NORTH));
+        assertTrue(store.snapshot());
+        assertFalse(store.snapshot());
+        assertTrue(store.move(first.getDroneId(), 0, 3, 3, Direction.SOUTH));
+        store.close();
+        // The snapshot replaced the log written before it
+        assertFalse(Files.exists(walDirectory.resolve("wal-000000000000.log")));
+        assertTrue(Files.exists(walDirectory.resolve("snapshot-000000000001.snap")));
+
+        store = new MemoryDroneStore(properties());
+        Drone recovered = store.findById(first.getDroneId()).orElseThrow();
+        assertEquals(3, recovered.getCoordinateX());
+        assertEquals(Direction.SOUTH, recovered.getDirection());
+        assertEquals(1, recovered.getVersion());
+        assertEquals(2, store.findById(second.getDroneId()).orElseThrow().getCoordinateY());
+        assertThrows(DataIntegrityViolationException.class, () -> store.insert(new Drone(null, 2, 2, Direction.NORTH)));
+        assertNotNull(store.insert(new Drone(null, 1, 1, Direction.NORTH)).getDroneId());
+    }
+
+    @Test
+    public void testRestart_SkipsCorruptSnapshot() throws IOException {
+        Drone drone = store.insert(new Drone(null, 1, 1, Direction.NORTH));
+        assertTrue(store.snapshot());
+        assertTrue(store.move(drone.getDroneId(), 0, 4, 4, Direction.EAST));
+        store.close();
+        // A newer snapshot cut short, as if the process stopped while it was renamed into place
+        byte[] snapshot = Files.readAllBytes(walDirectory.resolve("snapshot-000000000001.snap"));
+        Files.write(walDirectory.resolve("snapshot-000000000002.snap"), Arrays.copyOf(snapshot, snapshot.length - 3));
+
+        store = new MemoryDroneStore(properties());
+        Drone recovered = store.findById(drone.getDroneId()).orElseThrow();
+        assertEquals(4, recovered.getCoordinateX());
+        assertEquals(1, recovered.getVersion());
+    }
+
+    private StoreProperties properties() {
+        StoreProperties properties = new StoreProperties();
+        properties.setWalPath(walDirectory.toString());
+        properties.setType(StoreProperties.StoreType.MEMORY);
+        properties.setSnapshotIntervalMs(0);
+        return properties;
+    }
+}